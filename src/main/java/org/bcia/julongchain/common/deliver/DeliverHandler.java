@@ -73,6 +73,7 @@ public class DeliverHandler implements IDeliverHandler {
         } catch (InvalidProtocolBufferException e) {
             log.error(e.getMessage());
             sendStatusReply(server, Common.Status.BAD_REQUEST);
+            return;
         }
         if (payload.getHeader() == null) {
             try {
@@ -81,6 +82,7 @@ public class DeliverHandler implements IDeliverHandler {
             } catch (ConsenterException e) {
                 log.error(e.getMessage());
             }
+            return;
         }
         Common.GroupHeader chdr = CommonUtils.unmarshalGroupHeader(payload.getHeader().getGroupHeader().toByteArray());
         if (chdr == null) {
@@ -89,12 +91,14 @@ public class DeliverHandler implements IDeliverHandler {
             } catch (ConsenterException e) {
                 log.error(e.getMessage());
             }
+            return;
         }
         try {
             validateGroupHeader(server, chdr);
         } catch (ValidateException e) {
             sendStatusReply(server, Common.Status.BAD_REQUEST);
             log.error(e.getMessage());
+            return;
         }
         ChainSupport chain = sm.getChain(chdr.getGroupId());
         if (chain == null) {
@@ -104,6 +108,7 @@ public class DeliverHandler implements IDeliverHandler {
             } catch (ConsenterException e) {
                 log.error(e.getMessage());
             }
+            return;
         }
         //TODO select case  erroredChan
 //        SessionAc accessControl = null;
@@ -131,6 +136,7 @@ public class DeliverHandler implements IDeliverHandler {
 
         if (seekInfo.getStart() == null || seekInfo.getStop() == null) {
             sendStatusReply(server, Common.Status.BAD_REQUEST);
+            return;
         }
 
         IIterator cursor = null;
@@ -139,76 +145,111 @@ public class DeliverHandler implements IDeliverHandler {
         } catch (LedgerException e) {
           throw new ConsenterException(e);
         }
-        if (cursor instanceof FileLedgerIterator) {
-            FileLedgerIterator fileLedgerIterator = (FileLedgerIterator) cursor;
-            long number = fileLedgerIterator.getBlockNum();
-            long stopNumber = 0;
-            Ab.SeekPosition.TypeCase stop = seekInfo.getStop().getTypeCase();
-            switch (stop) {
-                case OLDEST:
-                    stopNumber = number;
-                    break;
-                case NEWEST:
-                    try {
-                        stopNumber = chain.getLedgerResources().getReadWriteBase().height() - 1;
-                    } catch (LedgerException e) {
-                        throw new ConsenterException(e);
-                    }
-                    break;
-                case SPECIFIED:
-                    stopNumber = stop.getNumber();
-                    if (stopNumber < number) {
-                        log.warn(String.format("[group: %s] Received invalid seekInfo message from %s: start number %d greater than stop number %d", chdr.getGroupId(), number, stopNumber));
-                        sendStatusReply(server, Common.Status.BAD_REQUEST);
-                    }
-                default:
-            }
-            {
-                if (seekInfo.getBehavior() == Ab.SeekInfo.SeekBehavior.FAIL_IF_NOT_READY) {
-                    try {
-                        if (number > chain.getLedgerResources().getReadWriteBase().height() - 1) {
-                            sendStatusReply(server, Common.Status.NOT_FOUND);
-                        }
-                    } catch (LedgerException e) {
-                        throw new ConsenterException(e);
-                    }
-                }
-                QueryResult queryResult = nextBlock(cursor);
-                Map.Entry<QueryResult, Common.Status> block = (Map.Entry<QueryResult, Common.Status>) queryResult.getObj();
+        //登记游标, 流被取消时由gRPC回调关闭游标, 唤醒在BLOCK_UNTIL_READY中等待的线程
+        server.attachCursor(cursor);
+        try {
+            streamBlocks(server, chain, chdr, seekInfo, cursor);
+        } finally {
+            //整个区间发送完成(或中断)后才关闭游标, 已因取消关闭的不再重复关闭
+            if (server.detachCursor(cursor)) {
                 try {
                     cursor.close();
                 } catch (LedgerException e) {
-                    e.printStackTrace();
-                }
-                Common.Block blockData = (Common.Block) block.getKey().getObj();
-                Common.Status status = block.getValue();
-                blockData.getHeader().getNumber();
-                if (status != Common.Status.SUCCESS) {
-                    log.error(String.format("[group: %s] Error reading from group, cause was: %s", chdr.getGroupId(), status));
-                    sendStatusReply(server, status);
+                    log.error(e.getMessage(), e);
                 }
-                number++;
-                //TODO 去掉权限控制部分
-//                try {
-//                    accessControl.enaluate();
-//                } catch (ValidateException e) {
-//                    sendStatusReply(server, Common.Status.FORBIDDEN);
-//                }
-                log.debug(String.format("[group: %s] Delivering block for %s", chdr.getGroupId(), seekInfo));
-                try {
-                    sendBlockReply(server, blockData);
-                } catch (ConsenterException e) {
-                    log.error(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 使用同一个游标从起始区块连续发送到终止区块
+     * 发送前等待gRPC流可写, 避免慢速接收方造成服务端内存堆积
+     *
+     * @param server
+     * @param chain
+     * @param chdr
+     * @param seekInfo
+     * @param cursor
+     * @throws ConsenterException
+     */
+    private void streamBlocks(DeliverServer server, ChainSupport chain, Common.GroupHeader chdr, Ab.SeekInfo
+            seekInfo, IIterator cursor) throws ConsenterException {
+        if (!(cursor instanceof FileLedgerIterator)) {
+            return;
+        }
+        FileLedgerIterator fileLedgerIterator = (FileLedgerIterator) cursor;
+        long number = fileLedgerIterator.getBlockNum();
+        long stopNumber = 0;
+        switch (seekInfo.getStop().getTypeCase()) {
+            case OLDEST:
+                stopNumber = number;
+                break;
+            case NEWEST:
+                //NEWEST以处理请求时的最新高度为终点
+                stopNumber = height(chain) - 1;
+                break;
+            case SPECIFIED:
+                stopNumber = seekInfo.getStop().getSpecified().getNumber();
+                if (stopNumber < number) {
+                    log.warn(String.format("[group: %s] Received invalid seekInfo message: start number %d greater than stop number %d", chdr.getGroupId(), number, stopNumber));
+                    sendStatusReply(server, Common.Status.BAD_REQUEST);
+                    return;
                 }
-                if (stopNumber == blockData.getHeader().getNumber()) {
+                break;
+            default:
+                sendStatusReply(server, Common.Status.BAD_REQUEST);
+                return;
+        }
+
+        while (true) {
+            if (seekInfo.getBehavior() == Ab.SeekInfo.SeekBehavior.FAIL_IF_NOT_READY) {
+                if (number > height(chain) - 1) {
+                    sendStatusReply(server, Common.Status.NOT_FOUND);
                     return;
                 }
             }
+            //BLOCK_UNTIL_READY: 游标在区块未写入前阻塞等待
+            QueryResult queryResult = nextBlock(cursor);
+            if (server.isCancelled()) {
+                log.info(String.format("[group: %s] Deliver stream was cancelled", chdr.getGroupId()));
+                return;
+            }
+            Map.Entry<?, ?> block = (Map.Entry<?, ?>) queryResult.getObj();
+            Common.Status status = (Common.Status) block.getValue();
+            if (status != Common.Status.SUCCESS || block.getKey() == null) {
+                log.error(String.format("[group: %s] Error reading from group, cause was: %s", chdr.getGroupId(), status));
+                sendStatusReply(server, status);
+                return;
+            }
+            Common.Block blockData = (Common.Block) ((QueryResult) block.getKey()).getObj();
+            number++;
+            //TODO 去掉权限控制部分
+//            try {
+//                accessControl.enaluate();
+//            } catch (ValidateException e) {
+//                sendStatusReply(server, Common.Status.FORBIDDEN);
+//            }
+            log.debug(String.format("[group: %s] Delivering block [%d] for %s", chdr.getGroupId(),
+                    blockData.getHeader().getNumber(), seekInfo));
+            //流控: 接收方处理不过来时等待
+            if (!server.awaitReady()) {
+                log.info(String.format("[group: %s] Deliver stream was cancelled", chdr.getGroupId()));
+                return;
+            }
+            sendBlockReply(server, blockData);
+            if (stopNumber == blockData.getHeader().getNumber()) {
+                return;
+            }
         }
-
-
     }
 
+    private long height(ChainSupport chain) throws ConsenterException {
+        try {
+            return chain.getLedgerResources().getReadWriteBase().height();
+        } catch (LedgerException e) {
+            throw new ConsenterException(e);
+        }
+    }
 
     public QueryResult nextBlock(IIterator cursor) throws ConsenterException {
         // FIXME: 2018/5/31
@@ -17,11 +17,18 @@ package org.bcia.julongchain.common.deliver;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.bcia.julongchain.common.exception.ConsenterException;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.blockledger.IIterator;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.consenter.Ab;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Deliver服务实现发送接口
  *
@@ -30,16 +37,141 @@ import org.bcia.julongchain.protos.consenter.Ab;
  * @company Dingxuan
  */
 public class DeliverServer implements ISender {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(DeliverServer.class);
+
+    /**
+     * 等待流可写时的最长单次等待时间(毫秒), 超时后重新检查流是否已取消
+     */
+    private static final long READY_WAIT_INTERVAL = 1000L;
+
     StreamObserver<Ab.DeliverResponse> responseObserver;
     private IPolicyChecker policyChecker;
     private ISender sender;
     private Common.Envelope envelope;
+    /**
+     * 支持流控时为gRPC服务端流, 否则为null
+     */
+    private ServerCallStreamObserver<Ab.DeliverResponse> callStreamObserver;
+    private final Object readyLock = new Object();
+    /**
+     * 正在发送区块的游标, 流被取消时关闭以唤醒等待新区块的发送线程
+     */
+    private final AtomicReference<IIterator> cursor = new AtomicReference<>();
+    private volatile boolean cancelled;
+
+    /**
+     * 每条Deliver流创建一个DeliverServer
+     * 必须在gRPC服务方法返回请求StreamObserver之前调用, 才能注册onReady回调
+     *
+     * @param responseObserver
+     */
+    public DeliverServer(StreamObserver<Ab.DeliverResponse> responseObserver) {
+        this.responseObserver = responseObserver;
+
+        if (responseObserver instanceof ServerCallStreamObserver) {
+            this.callStreamObserver = (ServerCallStreamObserver<Ab.DeliverResponse>) responseObserver;
+            Runnable notifier = new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (readyLock) {
+                        readyLock.notifyAll();
+                    }
+                }
+            };
+            this.callStreamObserver.setOnReadyHandler(notifier);
+            this.callStreamObserver.setOnCancelHandler(new Runnable() {
+                @Override
+                public void run() {
+                    cancel();
+                }
+            });
+        }
+    }
 
     public DeliverServer(StreamObserver<Ab.DeliverResponse> responseObserver, Common.Envelope envelope) {
         this.responseObserver = responseObserver;
         this.envelope = envelope;
     }
 
+    /**
+     * 等待流可写
+     *
+     * @return false表示流已被取消
+     * @throws ConsenterException
+     */
+    public boolean awaitReady() throws ConsenterException {
+        if (isCancelled()) {
+            return false;
+        }
+        if (callStreamObserver == null) {
+            return true;
+        }
+
+        synchronized (readyLock) {
+            while (!callStreamObserver.isReady()) {
+                if (isCancelled()) {
+                    return false;
+                }
+                try {
+                    readyLock.wait(READY_WAIT_INTERVAL);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ConsenterException(e);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * 取消该流: 关闭正在使用的游标并唤醒等待流可写的线程
+     */
+    public void cancel() {
+        cancelled = true;
+        closeCursor(cursor.getAndSet(null));
+        synchronized (readyLock) {
+            readyLock.notifyAll();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled || (callStreamObserver != null && callStreamObserver.isCancelled());
+    }
+
+    /**
+     * 登记正在使用的游标, 流已取消时立即关闭
+     *
+     * @param iterator
+     */
+    public void attachCursor(IIterator iterator) {
+        cursor.set(iterator);
+        if (cancelled) {
+            closeCursor(cursor.getAndSet(null));
+        }
+    }
+
+    /**
+     * 取消登记游标
+     *
+     * @param iterator
+     * @return false表示游标已因流取消被关闭
+     */
+    public boolean detachCursor(IIterator iterator) {
+        return cursor.compareAndSet(iterator, null);
+    }
+
+    private void closeCursor(IIterator iterator) {
+        if (iterator == null) {
+            return;
+        }
+        try {
+            iterator.close();
+        } catch (LedgerException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
     public StreamObserver<Ab.DeliverResponse> getResponseObserver() {
         return responseObserver;
     }
@@ -56,13 +188,21 @@ public class DeliverServer implements ISender {
         return envelope;
     }
 
+    public void setEnvelope(Common.Envelope envelope) {
+        this.envelope = envelope;
+    }
+
     @Override
     public void send(Message msg) throws ConsenterException {
         Ab.DeliverResponse deliverResponse = null;
-        try {
-            deliverResponse = Ab.DeliverResponse.parseFrom(msg.toByteArray());
-        } catch (InvalidProtocolBufferException e) {
-            throw new ConsenterException(e);
+        if (msg instanceof Ab.DeliverResponse) {
+            deliverResponse = (Ab.DeliverResponse) msg;
+        } else {
+            try {
+                deliverResponse = Ab.DeliverResponse.parseFrom(msg.toByteArray());
+            } catch (InvalidProtocolBufferException e) {
+                throw new ConsenterException(e);
+            }
         }
         responseObserver.onNext(deliverResponse);
     }
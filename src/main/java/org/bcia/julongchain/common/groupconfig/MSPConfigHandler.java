@@ -18,6 +18,7 @@ package org.bcia.julongchain.common.groupconfig;
 import org.bcia.julongchain.common.exception.MspException;
 import org.bcia.julongchain.msp.IMsp;
 import org.bcia.julongchain.msp.IMspManager;
+import org.bcia.julongchain.msp.cache.CachedMsp;
 import org.bcia.julongchain.msp.mgmt.Msp;
 import org.bcia.julongchain.msp.mgmt.MspManager;
 import org.bcia.julongchain.protos.msp.MspConfigPackage;
@@ -75,7 +76,7 @@ public class MSPConfigHandler {
 //        IMspOpts opts = new MockMspOpts();
 //
 //        IMsp msp = factory.getMsp(opts);
-        IMsp msp = new Msp();
+        IMsp msp = new CachedMsp(new Msp());
 
         msp.setup(mspConfig);
         String mspId = msp.getIdentifier();
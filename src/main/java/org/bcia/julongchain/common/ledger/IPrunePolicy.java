@@ -15,8 +15,12 @@
  */
 package org.bcia.julongchain.common.ledger;
 
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.blkstorage.IBlockStore;
+
 /**
  * 支持不同修剪策略的通用接口
+ * 策略给出需要保留的最早区块, 区块存储只修剪其中所有区块都早于该区块的已写满区块文件
  *
  * @author wanliangbing
  * @date 2018/3/7
@@ -24,4 +28,13 @@ package org.bcia.julongchain.common.ledger;
  */
 public interface IPrunePolicy {
 
+    /**
+     * 计算需要保留的最小区块号, 小于该区块号的区块可以被修剪
+     */
+    long getMinBlockNumToRetain(IBlockStore blockStore) throws LedgerException;
+
+    /**
+     * 被修剪的区块文件是否压缩归档(仍可较慢地读取), 否则连同索引一起删除
+     */
+    boolean isArchive();
 }
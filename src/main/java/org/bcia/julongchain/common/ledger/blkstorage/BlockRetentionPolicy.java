@@ -0,0 +1,118 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.IPrunePolicy;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.protos.common.Common;
+
+/**
+ * 按保留窗口修剪区块
+ * 保留最近keepBlocks个区块, 或最近keepMillis毫秒内(按区块中第一个交易的时间戳)的区块.
+ * 两个窗口都配置时保留较多的区块, 都不配置时不修剪
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class BlockRetentionPolicy implements IPrunePolicy {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(BlockRetentionPolicy.class);
+
+    private final long keepBlocks;
+    private final long keepMillis;
+    private final boolean archive;
+
+    public BlockRetentionPolicy(long keepBlocks, long keepMillis, boolean archive) {
+        this.keepBlocks = keepBlocks;
+        this.keepMillis = keepMillis;
+        this.archive = archive;
+    }
+
+    @Override
+    public long getMinBlockNumToRetain(IBlockStore blockStore) throws LedgerException {
+        long height = blockStore.getBlockchainInfo().getHeight();
+        if (keepBlocks <= 0 && keepMillis <= 0) {
+            return 0;
+        }
+        long minBlockNum = height;
+        if (keepBlocks > 0) {
+            minBlockNum = Math.max(height - keepBlocks, 0);
+        }
+        if (keepMillis > 0) {
+            //归档模式下只在未归档的区块中查找, 避免为读取时间戳解压归档文件
+            long low = archive ? Math.min(blockStore.getFirstUnarchivedBlockNum(), height) : 0;
+            minBlockNum = Math.min(minBlockNum, findFirstBlockAfter(blockStore, low, height,
+                    System.currentTimeMillis() - keepMillis));
+        }
+        log.debug(String.format("Height [%d], min block to retain [%d]", height, minBlockNum));
+        return minBlockNum;
+    }
+
+    /**
+     * 在[low, height)中二分查找第一个时间戳不早于cutoffMillis的区块, 都早于cutoffMillis时返回height
+     * 区块时间戳随区块号递增, 已被删除或没有时间戳的区块视为早于cutoffMillis
+     */
+    private static long findFirstBlockAfter(IBlockStore blockStore, long low, long height, long cutoffMillis)
+            throws LedgerException {
+        long high = height;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (getBlockTimeMillis(blockStore.retrieveBlockByNumber(mid)) < cutoffMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 区块中第一个交易的时间戳(毫秒), 无法获取时返回-1
+     */
+    private static long getBlockTimeMillis(Common.Block block) {
+        if (block == null || block.getData().getDataCount() == 0) {
+            return -1;
+        }
+        try {
+            Common.Envelope envelope = Common.Envelope.parseFrom(block.getData().getData(0));
+            Common.Payload payload = Common.Payload.parseFrom(envelope.getPayload());
+            Common.GroupHeader groupHeader = Common.GroupHeader.parseFrom(payload.getHeader().getGroupHeader());
+            if (!groupHeader.hasTimestamp()) {
+                return -1;
+            }
+            return groupHeader.getTimestamp().getSeconds() * 1000 + groupHeader.getTimestamp().getNanos() / 1000000;
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("Can not get timestamp of block " + block.getHeader().getNumber() + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    @Override
+    public boolean isArchive() {
+        return archive;
+    }
+
+    public long getKeepBlocks() {
+        return keepBlocks;
+    }
+
+    public long getKeepMillis() {
+        return keepMillis;
+    }
+}
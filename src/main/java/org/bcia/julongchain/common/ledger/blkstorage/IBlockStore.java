@@ -16,6 +16,7 @@
 package org.bcia.julongchain.common.ledger.blkstorage;
 
 import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.IPrunePolicy;
 import org.bcia.julongchain.common.ledger.IResultsIterator;
 import org.bcia.julongchain.common.ledger.blockledger.IFileLedgerBlockStore;
 import org.bcia.julongchain.core.ledger.BlockAndPvtData;
@@ -95,6 +96,26 @@ public interface IBlockStore extends IFileLedgerBlockStore {
      */
     void shutdown();
 
+    /**
+     * 按策略修剪区块文件
+     *
+     * @return 被修剪的区块文件数
+     */
+    int prune(IPrunePolicy policy) throws LedgerException;
+
+    /**
+     * 交易所在的区块是否已被修剪删除
+     * 删除区块时保留交易ID和交易验证码, 交易仍可用于重复交易检查
+     * @param txID 交易ID
+     */
+    boolean isTxPruned(String txID) throws LedgerException;
+
+    /**
+     * 第一个未归档的区块号, 之前的区块已归档或删除
+     * 读取已归档的区块需要解压整个归档文件
+     */
+    long getFirstUnarchivedBlockNum() throws LedgerException;
+
     /**
      * 提交区块
      */
@@ -0,0 +1,99 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import org.apache.commons.io.IOUtils;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 读取归档(gzip压缩)的区块文件
+ * 归档文件解压后与原区块文件内容相同, 索引中的文件编号和偏移量仍然有效.
+ * 首次读取时将整个文件解压到内存, 关闭后释放内存, 再次读取时重新解压
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class ArchivedBlockFileReader extends BlockFileReader {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(ArchivedBlockFileReader.class);
+
+    private volatile byte[] content;
+
+    public ArchivedBlockFileReader(String archivePath) {
+        super(archivePath);
+    }
+
+    @Override
+    public byte[] read(long offset, long length) throws LedgerException {
+        byte[] data = load();
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new LedgerException(String.format("Read [%d] bytes at [%d] out of archived file [%s], size = [%d]",
+                    length, offset, getFile().getPath(), data.length));
+        }
+        return Arrays.copyOfRange(data, (int) offset, (int) (offset + length));
+    }
+
+    @Override
+    public long size() throws LedgerException {
+        return load().length;
+    }
+
+    /**
+     * 归档文件已整体解压到内存, 不需要映射
+     */
+    @Override
+    public void map() {
+    }
+
+    @Override
+    public boolean isMapped() {
+        return content != null;
+    }
+
+    @Override
+    public synchronized void close() {
+        content = null;
+    }
+
+    private byte[] load() throws LedgerException {
+        byte[] data = content;
+        if (data != null) {
+            return data;
+        }
+        synchronized (this) {
+            data = content;
+            if (data == null) {
+                try (InputStream in = new GZIPInputStream(new FileInputStream(getFile()))) {
+                    data = IOUtils.toByteArray(in);
+                } catch (IOException e) {
+                    log.error(e.getMessage(), e);
+                    throw new LedgerException(e);
+                }
+                content = data;
+                log.debug("Loaded archived block file [{}], size = [{}]", getFile().getPath(), data.length);
+            }
+            return data;
+        }
+    }
+}
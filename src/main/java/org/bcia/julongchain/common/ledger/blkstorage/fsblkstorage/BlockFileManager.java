@@ -17,6 +17,7 @@ package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.ledger.blkstorage.IndexConfig;
@@ -30,8 +31,15 @@ import org.bcia.julongchain.protos.common.Ledger;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 import org.bouncycastle.util.encoders.Hex;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 管理block file
@@ -43,6 +51,8 @@ import java.util.*;
 public class BlockFileManager {
 
     private static final String BLOCKFILE_PREFIX = "blockfile";
+    private static final String ARCHIVE_DIR = "archive";
+    private static final String ARCHIVE_SUFFIX = ".gz";
     private static final byte[] BLK_MGR_INFO_KEY = "blkMgrInfo".getBytes(StandardCharsets.UTF_8);
     private static JulongChainLog log = JulongChainLogFactory.getLog(BlockFileManager.class);
     private static final byte BLOCK_BYTES_START = 10;
@@ -57,9 +67,19 @@ public class BlockFileManager {
     private Config config;
     private IDBProvider db;
     private Index index;
-    private CheckpointInfo cpInfo;
-    private BlockFileWriter currentFileWriter;
-    private Ledger.BlockchainInfo bcInfo;
+    private volatile CheckpointInfo cpInfo;
+    private volatile BlockFileWriter currentFileWriter;
+    private BlockFileReaderCache readerCache;
+    /**
+     * 同时只进行一次修剪
+     */
+    private final Object pruneLock = new Object();
+    /**
+     * 编号小于该值的区块文件已被删除(删除总是从最早的文件开始)
+     */
+    private volatile int prunedFileNum;
+    private volatile boolean closed;
+    private volatile Ledger.BlockchainInfo bcInfo;
     private String ledgerId;
 
     /**
@@ -81,6 +101,7 @@ public class BlockFileManager {
         this.config = config;
         this.rootDir = config.getLedgerBlockDir(id);
         this.db = indexStore;
+        this.readerCache = new BlockFileReaderCache(rootDir, config.isMmapCompletedFiles());
 		//检查区块链文件完整性以及是否被篡改
 		// TODO: 9/12/18 consenter中区块与node中不同
         cpInfo = loadCurrentInfo();
@@ -93,7 +114,7 @@ public class BlockFileManager {
             log.debug(String.format("Info constructed by scanning the blocks dir = %s", cpInfo.toString()));
         } else {
             log.debug("Sync block information from block storage (if needed)");
-            syncCpInfoFromFS(this.rootDir, cpInfo);
+            cpInfo = syncCpInfoFromFS(this.rootDir, cpInfo);
         }
         //保存检查点信息到leveldb中
         //blkMgrInfoKey-checkpointInfo
@@ -102,6 +123,7 @@ public class BlockFileManager {
         this.currentFileWriter = new BlockFileWriter(deriveBlockfilePath(this.rootDir, cpInfo.getLastestFileChunkSuffixNum()));
         //修剪文件为检查点保存的文件大小
         this.currentFileWriter.truncateFile(cpInfo.getLatestFileChunksize());
+        this.prunedFileNum = findPrunedFileNum();
         //设置blockindex对象
         this.index = new BlockIndex(indexConfig, indexStore, id);
         //设置blockchainINfo对象
@@ -126,29 +148,39 @@ public class BlockFileManager {
                     .setCurrentBlockHash(lastBlockHash)
                     .setPreviousBlockHash(previousBlockHash)
                     .build();
+        } else if (index.getLastBlockIndexed() >= 0) {
+            //区块全部丢失时删除所有区块的索引
+            index.removeIndexAfter(-1, 0, 0);
         }
     }
 
     /**
      * 更新检查点信息
+     * 区块文件比检查点记录的长时, 扫描检查点之后写入的完整区块;
+     * 区块文件比检查点记录的短时(未刷盘的数据在宕机时丢失), 根据区块文件重新生成检查点
      */
-    private void syncCpInfoFromFS(String rootDir, CheckpointInfo cpInfo) throws LedgerException {
+    private CheckpointInfo syncCpInfoFromFS(String rootDir, CheckpointInfo cpInfo) throws LedgerException {
         log.debug(String.format("Starting checkpoint [%s]", cpInfo));
         //组装区块文件名
         String filePath = deriveBlockfilePath(rootDir, cpInfo.getLastestFileChunkSuffixNum());
         //获取区块文件大小, 判断其存在性
         long size = IoUtil.fileExists(filePath);
-        log.debug(String.format("Status of file [%s]: exists=[%s], size=[%d]", filePath, size < 0, size));
-        if(size < 0 || size == cpInfo.getLatestFileChunksize()){
-            return;
+        log.debug(String.format("Status of file [%s]: exists=[%s], size=[%d]", filePath, size >= 0, size));
+        if((size < 0 && cpInfo.getLatestFileChunksize() == 0) || size == cpInfo.getLatestFileChunksize()){
+            return cpInfo;
+        }
+        if(size < cpInfo.getLatestFileChunksize()){
+            log.warn(String.format("Block file [%s] is shorter than checkpoint [%s], rebuild checkpoint from block files"
+                    , filePath, cpInfo));
+            return BlockFileHelper.constructCheckpointInfoFromBlockFiles(rootDir);
         }
         //获取最新提交的区块
         List<Object> lastCompleteBlockInfo = scanForLastCompleteBlock(rootDir, cpInfo.getLastestFileChunkSuffixNum(), (long) cpInfo.getLatestFileChunksize());
         long endOffsetLastBlock = (long) lastCompleteBlockInfo.get(CURRENT_OFFSET);
         int numBlocks = (int) lastCompleteBlockInfo.get(NUM_BLOCKS);
-        cpInfo.setLastestFileChunkSuffixNum((int) endOffsetLastBlock);
+        cpInfo.setLatestFileChunksize((int) endOffsetLastBlock);
         if(numBlocks == 0){
-            return;
+            return cpInfo;
         }
         if(cpInfo.getChainEmpty()){
             cpInfo.setLastBlockNumber((long) (numBlocks - 1));
@@ -157,6 +189,7 @@ public class BlockFileManager {
         }
         cpInfo.setChainEmpty(false);
         log.debug(String.format("Checkpoint after updates by scanning the last file segment: %s", cpInfo.toString()));
+        return cpInfo;
     }
 
     /**
@@ -172,12 +205,226 @@ public class BlockFileManager {
 		return String.format("%s/%s_%s", rootDir, BLOCKFILE_PREFIX, sb.reverse().toString().toUpperCase());
     }
 
-    public void close() {
+    /**
+     * 组装归档文件名
+     * rootDir/archive/blockfile_000000.gz
+     */
+    public static String deriveArchivePath(String rootDir, int suffixNum) {
+        String blockFileName = new File(deriveBlockfilePath(rootDir, suffixNum)).getName();
+        return String.format("%s/%s/%s%s", rootDir, ARCHIVE_DIR, blockFileName, ARCHIVE_SUFFIX);
+    }
 
+    /**
+     * 修剪区块文件
+     * 只处理已写满且所有区块号都小于minBlockNumToRetain的区块文件.
+     * 归档时将文件压缩后移入归档目录, 归档文件保留原文件编号和文件内偏移, 索引仍然有效, 读取时解压;
+     * 否则删除文件(包括已归档的文件)及其中区块的索引
+     *
+     * @return 被修剪的区块文件数
+     */
+    public int prune(long minBlockNumToRetain, boolean archive) throws LedgerException {
+        CheckpointInfo currentCpInfo = cpInfo;
+        if (minBlockNumToRetain <= 0 || currentCpInfo.getChainEmpty()) {
+            return 0;
+        }
+        long blockNum = Math.min(minBlockNumToRetain, currentCpInfo.getLastBlockNumber());
+        FileLocPointer flp = index.getBlockLocByBlockNum(blockNum);
+        if (flp == null) {
+            log.warn(String.format("Can not locate block [%d] in ledger [%s], skip pruning", blockNum, ledgerId));
+            return 0;
+        }
+        //正在写入的文件不修剪
+        int retainFileNum = Math.min(flp.getFileSuffixNum(), currentCpInfo.getLastestFileChunkSuffixNum());
+        int pruned = 0;
+        synchronized (pruneLock) {
+            for (int fileNum = prunedFileNum; fileNum < retainFileNum && !closed; fileNum++) {
+                File blockFile = new File(deriveBlockfilePath(rootDir, fileNum));
+                File archiveFile = new File(deriveArchivePath(rootDir, fileNum));
+                if (archive) {
+                    if (!blockFile.exists()) {
+                        continue;
+                    }
+                    archiveBlockFile(fileNum, blockFile, archiveFile);
+                } else {
+                    boolean exists = blockFile.exists() || archiveFile.exists();
+                    dropBlockFile(fileNum, blockFile, archiveFile);
+                    if (!exists) {
+                        continue;
+                    }
+                }
+                pruned++;
+            }
+        }
+        if (pruned > 0) {
+            log.info(String.format("%s %d block files of ledger [%s] before block [%d]",
+                    archive ? "Archived" : "Dropped", pruned, ledgerId, minBlockNumToRetain));
+        }
+        return pruned;
+    }
+
+    /**
+     * 压缩区块文件到归档目录
+     * 压缩文件完整落盘后才替换原文件, 中途宕机时原文件仍然有效
+     */
+    private void archiveBlockFile(int fileNum, File blockFile, File archiveFile) throws LedgerException {
+        IoUtil.createDirIfMissing(archiveFile.getParent());
+        File tmpFile = new File(archiveFile.getPath() + ".tmp");
+        try (InputStream in = new FileInputStream(blockFile);
+             FileOutputStream fileOut = new FileOutputStream(tmpFile);
+             GZIPOutputStream out = new GZIPOutputStream(fileOut)) {
+            IOUtils.copy(in, out);
+            out.finish();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            log.error("Got error when archiving block file " + blockFile.getPath(), e);
+            deleteFile(tmpFile);
+            throw new LedgerException(e);
+        }
+        //替换文件期间不能读取该文件, 之后的读取使用归档文件
+        Lock lock = readerCache.writeLock();
+        lock.lock();
+        try {
+            if (!tmpFile.renameTo(archiveFile)) {
+                throw new LedgerException(String.format("Fail to rename [%s] to [%s]", tmpFile.getPath(),
+                        archiveFile.getPath()));
+            }
+            deleteFile(blockFile);
+            readerCache.evict(fileNum);
+        } finally {
+            lock.unlock();
+        }
+        log.debug(String.format("Archived block file [%s] to [%s]", blockFile.getPath(), archiveFile.getPath()));
+    }
+
+    /**
+     * 删除区块文件(或其归档文件)及其中区块的索引
+     */
+    private void dropBlockFile(int fileNum, File blockFile, File archiveFile) throws LedgerException {
+        List<BlockIndexInfo> blockIndexInfos = new ArrayList<>();
+        if (blockFile.exists() || archiveFile.exists()) {
+            blockIndexInfos = readBlockFileIndex(fileNum);
+        }
+        Lock lock = readerCache.writeLock();
+        lock.lock();
+        try {
+            index.removeBlockIndex(blockIndexInfos);
+            deleteFile(blockFile);
+            deleteFile(archiveFile);
+            readerCache.evict(fileNum);
+            prunedFileNum = Math.max(prunedFileNum, fileNum + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取区块文件中所有区块的索引信息
+     */
+    private List<BlockIndexInfo> readBlockFileIndex(int fileNum) throws LedgerException {
+        List<BlockIndexInfo> blockIndexInfos = new ArrayList<>();
+        BlockFileStream stream = new BlockFileStream(readerCache, fileNum, 0);
+        try {
+            while (true) {
+                AbstractMap.SimpleEntry<byte[], BlockPlacementInfo> entry = stream.nextBlockBytesAndPlacementInfo();
+                byte[] blockBytes = entry.getKey();
+                if (blockBytes == null) {
+                    break;
+                }
+                BlockPlacementInfo placementInfo = entry.getValue();
+                SerializedBlockInfo info = BlockSerialization.extractSerializedBlockInfo(blockBytes,
+                        placementInfo.getBlockBytesOffset());
+                blockIndexInfos.add(new BlockIndexInfo(info.getBlockHeader().getNumber(),
+                        Util.getHashBytes(info.getBlockHeader().toByteArray()),
+                        new FileLocPointer(fileNum, (int) placementInfo.getBlockStartOffset(), 0),
+                        info.getTxOffsets(),
+                        info.getMetadata()));
+            }
+        } finally {
+            stream.close();
+        }
+        return blockIndexInfos;
+    }
+
+    /**
+     * 查找已被删除的区块文件
+     * 当前写入文件之前, 区块文件和归档文件都不存在的文件已被删除
+     */
+    private int findPrunedFileNum() {
+        int fileNum = 0;
+        while (fileNum < cpInfo.getLastestFileChunkSuffixNum()
+                && !new File(deriveBlockfilePath(rootDir, fileNum)).exists()
+                && !new File(deriveArchivePath(rootDir, fileNum)).exists()) {
+            fileNum++;
+        }
+        return fileNum;
+    }
+
+    /**
+     * 第一个未归档的区块文件中的第一个区块号
+     * 归档按文件编号依次进行, 该区块之前的区块都已归档或删除, 读取时需要解压整个文件
+     *
+     * @return 区块号, 没有未归档的区块时返回区块链高度
+     */
+    public long getFirstUnarchivedBlockNum() throws LedgerException {
+        CheckpointInfo currentCpInfo = cpInfo;
+        if (currentCpInfo.getChainEmpty()) {
+            return 0;
+        }
+        int fileNum = prunedFileNum;
+        while (fileNum < currentCpInfo.getLastestFileChunkSuffixNum()
+                && !new File(deriveBlockfilePath(rootDir, fileNum)).exists()) {
+            fileNum++;
+        }
+        BlockFileStream stream = new BlockFileStream(readerCache, fileNum, 0);
+        try {
+            AbstractMap.SimpleEntry<byte[], BlockPlacementInfo> entry = stream.nextBlockBytesAndPlacementInfo();
+            byte[] blockBytes = entry.getKey();
+            if (blockBytes == null) {
+                return currentCpInfo.getLastBlockNumber() + 1;
+            }
+            return BlockSerialization.extractSerializedBlockInfo(blockBytes,
+                    entry.getValue().getBlockBytesOffset()).getBlockHeader().getNumber();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * 交易所在的区块文件是否已被删除
+     * 删除区块文件时保留交易ID和交易验证码的索引
+     */
+    public boolean isTxPruned(String txID) throws LedgerException {
+        if (txID == null) {
+            String errMsg = "TxID cannot be null";
+            log.error(errMsg);
+            throw new LedgerException(errMsg);
+        }
+        FileLocPointer loc = index.getTxLoc(txID);
+        return loc != null && loc.getFileSuffixNum() < prunedFileNum;
+    }
+
+    private static void deleteFile(File file) throws LedgerException {
+        if (file.exists() && !file.delete()) {
+            throw new LedgerException("Fail to delete file " + file.getPath());
+        }
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            currentFileWriter.close();
+        } catch (LedgerException e) {
+            log.error("Got error when closing block file of ledger " + ledgerId, e);
+        }
+        readerCache.close();
     }
 
     /**
      * 写下一文件
+     * 上一文件关闭前刷盘, 新检查点指向的文件之前的区块均已落盘
      */
     private void moveToNextFile() throws LedgerException {
         CheckpointInfo newCpInfo = new CheckpointInfo(cpInfo.getLastestFileChunkSuffixNum() + 1,
@@ -185,6 +432,7 @@ public class BlockFileManager {
                 false,
                 cpInfo.getLastBlockNumber());
         BlockFileWriter nextFileWriter = new BlockFileWriter(deriveBlockfilePath(this.rootDir, newCpInfo.getLastestFileChunkSuffixNum()));
+        currentFileWriter.close();
         saveCurrentInfo(newCpInfo, true);
         this.currentFileWriter = nextFileWriter;
         updateCheckpoint(newCpInfo);
@@ -192,6 +440,7 @@ public class BlockFileManager {
 
     /**
      * 添加区块
+     * 配置了syncBlocks时区块文件先刷盘, 再以同步方式写入索引(检查点随同落盘), 索引不会超前于区块文件
      * blockBytesLenEncoded     8
      * blockbytes               blockBytesLen
      */
@@ -227,7 +476,7 @@ public class BlockFileManager {
             throw e;
         }
         //添加区块
-        currentFileWriter.append(blockBytes, true);
+        currentFileWriter.append(blockBytes, config.isSyncBlocks());
         //本次提交区块位置应为之前提交区块位置后8位
         SerializedBlockInfo info = BlockSerialization.serializeBlock(block, cpInfo.getLatestFileChunksize() + BlockFileManager.PEEK_BYTES_LEN);
 		//block中包含的所有交易
@@ -238,8 +487,6 @@ public class BlockFileManager {
                 currentCPInfo.getLatestFileChunksize() + (int) totalBytesToAppend,
                 false,
                 block.getHeader().getNumber());
-        //保存
-        saveCurrentInfo(newCPInfo, false);
         FileLocPointer blockFLP = new FileLocPointer(newCPInfo.getLastestFileChunkSuffixNum(), currentOffset, 0);
         //组装区块索引
         BlockIndexInfo idxInfo = new BlockIndexInfo(block.getHeader().getNumber(),
@@ -247,6 +494,8 @@ public class BlockFileManager {
                 blockFLP,
                 txOffsets,
                 block.getMetadata());
+        //保存
+        saveCurrentInfo(newCPInfo, false);
         index.indexBlock(idxInfo);
         //更新检查点
         updateCheckpoint(newCPInfo);
@@ -280,6 +529,14 @@ public class BlockFileManager {
                 log.debug("Both the block files and indexes are in sync");
                 return;
             }
+            //未刷盘的区块在宕机时丢失, 删除这些区块的索引, 避免交易ID被误判为重复
+            if(lastBlockIndexed > cpInfo.getLastBlockNumber()){
+                log.warn(String.format("Last block indexed [%d] is beyond last block present in block files [%d]" +
+                        ", removing the stale indexes", lastBlockIndexed, cpInfo.getLastBlockNumber()));
+                index.removeIndexAfter(cpInfo.getLastBlockNumber(), cpInfo.getLastestFileChunkSuffixNum(),
+                        cpInfo.getLatestFileChunksize());
+                return;
+            }
             log.debug(String.format("Last block indexed [%d], last block present in block files [%d]"
                     , lastBlockIndexed, cpInfo.getLastBlockNumber()));
             FileLocPointer flp;
@@ -298,7 +555,7 @@ public class BlockFileManager {
         log.debug(String.format("Start building index form block [%d] to last block [%d]"
                 , startingBlockNum, cpInfo.getLastBlockNumber()));
         //初始化block流
-        BlockStream stream = new BlockStream(rootDir, startFileNum, startOffset, endFileNum);
+        BlockStream stream = new BlockStream(readerCache, startFileNum, startOffset, endFileNum);
         byte[] blockBytes;
         BlockPlacementInfo blockPlacementInfo;
         //读取区块文件
@@ -478,6 +735,10 @@ public class BlockFileManager {
 			return null;
 		}
         byte[] blockBytes = fetchBlockBytes(lp);
+        if (blockBytes == null && lp.getFileSuffixNum() < prunedFileNum) {
+            log.debug(String.format("Block at [%s] has been pruned", lp));
+            return null;
+        }
         if (blockBytes == null){
             throw new LedgerException(String.format("Fail to fetch block by [%s]", lp));
         }
@@ -497,6 +758,10 @@ public class BlockFileManager {
 		}
         log.debug(String.format("Entering fetchTransactionEnvelope() %s", lp));
         byte[] txEnvelopeBytes = fetchRawBytes(lp);
+        if (txEnvelopeBytes == null && lp.getFileSuffixNum() < prunedFileNum) {
+            log.debug(String.format("Transaction at [%s] has been pruned", lp));
+            return null;
+        }
         if (txEnvelopeBytes == null){
             throw new LedgerException(String.format("Fail to fetch envelope by [%s]", lp));
         }
@@ -516,33 +781,56 @@ public class BlockFileManager {
 
     /**
      * 获取区块
+     * 区块文件已被删除时返回null
      */
     private byte[] fetchBlockBytes(FileLocPointer lp) throws LedgerException {
 		if (lp == null) {
 			return null;
 		}
+        Lock lock = readerCache.readLock();
+        lock.lock();
         BlockFileStream stream = null;
         try {
-            stream = new BlockFileStream(rootDir, lp.getFileSuffixNum(), lp.getLocPointer().getOffset());
+            if (lp.getFileSuffixNum() < prunedFileNum) {
+                return null;
+            }
+            stream = new BlockFileStream(getReader(lp.getFileSuffixNum()), lp.getFileSuffixNum(), lp.getLocPointer().getOffset());
             return stream.nextBlockBytes();
         } finally {
             if (stream != null) {
                 stream.close();
             }
+            lock.unlock();
         }
     }
 
     /**
      * 获取获取对应位置字节
+     * 区块文件已被删除时返回null
      */
     private byte[] fetchRawBytes(FileLocPointer lp) throws LedgerException {
 		if (lp == null) {
 			return null;
 		}
-        BlockFileReader reader;
-        String filePath = deriveBlockfilePath(rootDir, lp.getFileSuffixNum());
-        reader = new BlockFileReader(filePath);
-        return reader.read(lp.getLocPointer().getOffset(), lp.getLocPointer().getBytesLength());
+        Lock lock = readerCache.readLock();
+        lock.lock();
+        try {
+            if (lp.getFileSuffixNum() < prunedFileNum) {
+                return null;
+            }
+            BlockFileReader reader = getReader(lp.getFileSuffixNum());
+            return reader.read(lp.getLocPointer().getOffset(), lp.getLocPointer().getBytesLength());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取区块文件的共享读取对象
+     * 编号小于当前写入文件的区块文件已写满
+     */
+    private BlockFileReader getReader(int fileNum) throws LedgerException {
+        return readerCache.getReader(fileNum, fileNum < cpInfo.getLastestFileChunkSuffixNum());
     }
 
     /**
@@ -579,6 +867,10 @@ public class BlockFileManager {
             int numBlock = 0;
             stream = new BlockFileStream(rootDir, fileNum, startingOffset);
             while (true) {
+                //文件末尾不完整的区块(写入时宕机)不计入, 之后由truncateFile截掉
+                if(!stream.hasCompleteBlock()){
+                    break;
+                }
                 blockBytes = stream.nextBlockBytes();
                 if(blockBytes == null){
                     break;
@@ -622,6 +914,10 @@ public class BlockFileManager {
         this.db = db;
     }
 
+    public BlockFileReaderCache getReaderCache() {
+        return readerCache;
+    }
+
     public Index getIndex() {
         return index;
     }
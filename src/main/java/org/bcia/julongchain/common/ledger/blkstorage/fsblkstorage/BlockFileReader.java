@@ -20,10 +20,17 @@ import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 
 /**
  * 读取文件
+ * 文件句柄在首次读取时打开并保持, 通过FileChannel按位置读取, 可被多个线程同时使用
+ * 已写满的区块文件不再变化, 可映射到内存后直接读取
  *
  * @author sunzongyu
  * @date 2018/04/09
@@ -32,6 +39,9 @@ import java.io.FileInputStream;
 public class BlockFileReader {
 	private static JulongChainLog log = JulongChainLogFactory.getLog(BlockFileReader.class);
     private File file;
+    private volatile FileChannel channel;
+    private volatile MappedByteBuffer mappedBuffer;
+    private volatile boolean closed;
 
     public BlockFileReader(String filePath){
         this.file = new File(filePath);
@@ -41,21 +51,20 @@ public class BlockFileReader {
      * 从offset位起,读取length字节
      */
     public byte[] read(long offset, long length) throws LedgerException {
-		FileInputStream fis;
-		byte[] result;
+		byte[] result = new byte[(int) length];
+		MappedByteBuffer mapped = mappedBuffer;
+		if (mapped != null && offset + length <= mapped.limit()) {
+			//已映射的文件直接从内存中复制
+			ByteBuffer view = mapped.duplicate();
+			view.position((int) offset);
+			view.get(result);
+			return result;
+		}
 		try {
-			result = new byte[(int) length];
-			fis = new FileInputStream(file);
-			//移动到指定位置
-			long skip = fis.skip(offset);
-			if (skip != offset) {
-				log.debug("Wrong file skip. Expect skip = [{}], actual skip = [{}]", offset, skip);
-			}
-			int read = fis.read(result);
+			int read = readFromChannel(ByteBuffer.wrap(result), offset);
 			if (read != length) {
 				log.debug("Wrong file read. Except read = [{}], actual read = [{}]", length, read);
 			}
-			fis.close();
 		} catch (Throwable e){
 			log.error(e.getMessage(), e);
 			throw new LedgerException(e);
@@ -63,8 +72,110 @@ public class BlockFileReader {
 		return result;
     }
 
-    public void close(){
-    	//nothing to do
+    private int readFromChannel(ByteBuffer buffer, long offset) throws IOException {
+		try {
+			return readFully(getChannel(), buffer, offset);
+		} catch (ClosedChannelException e) {
+			//其他线程被中断时会关闭共享的channel, 重新打开后再读取一次
+			if (closed) {
+				throw e;
+			}
+			log.debug("Channel of file [{}] was closed, reopen it", file.getPath());
+			buffer.clear();
+			return readFully(getChannel(), buffer, offset);
+		}
+	}
+
+    private static int readFully(FileChannel fileChannel, ByteBuffer buffer, long offset) throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int read = fileChannel.read(buffer, offset + total);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	private FileChannel getChannel() throws IOException {
+		FileChannel current = channel;
+		if (current != null && current.isOpen()) {
+			return current;
+		}
+		synchronized (this) {
+			if (closed) {
+				throw new ClosedChannelException();
+			}
+			if (channel == null || !channel.isOpen()) {
+				channel = new RandomAccessFile(file, "r").getChannel();
+			}
+			return channel;
+		}
+	}
+
+	/**
+	 * 将文件映射到内存
+	 * 只能用于不再写入的区块文件, 文件大小超过int范围时仍使用FileChannel读取
+	 */
+	public void map() throws LedgerException {
+		if (mappedBuffer != null) {
+			return;
+		}
+		synchronized (this) {
+			if (mappedBuffer != null || closed) {
+				return;
+			}
+			try {
+				FileChannel fileChannel = getChannel();
+				long size = fileChannel.size();
+				if (size > Integer.MAX_VALUE) {
+					log.debug("File [{}] is too large to map, size = [{}]", file.getPath(), size);
+					return;
+				}
+				mappedBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				log.debug("Mapped block file [{}], size = [{}]", file.getPath(), size);
+			} catch (IOException e) {
+				log.error(e.getMessage(), e);
+				throw new LedgerException(e);
+			}
+		}
+	}
+
+	/**
+	 * 文件当前长度
+	 */
+	public long size() throws LedgerException {
+		MappedByteBuffer mapped = mappedBuffer;
+		if (mapped != null) {
+			return mapped.limit();
+		}
+		FileChannel current = channel;
+		if (current == null || !current.isOpen()) {
+			return file.length();
+		}
+		try {
+			return current.size();
+		} catch (IOException e) {
+			return file.length();
+		}
+	}
+
+    public synchronized void close(){
+		closed = true;
+		mappedBuffer = null;
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				log.error(e.getMessage(), e);
+			}
+			channel = null;
+		}
+	}
+
+    public boolean isMapped() {
+		return mappedBuffer != null;
 	}
 
     public File getFile() {
@@ -0,0 +1,139 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单个账本的区块文件读取对象缓存
+ * 每个区块文件只保留一个BlockFileReader, 查询区块和交易时不再重复打开文件
+ * 区块文件已归档时读取归档文件, 同时只有一个归档文件解压在内存中.
+ * 读取区块期间持有读锁, 修剪时替换或删除区块文件及其读取对象需持有写锁
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class BlockFileReaderCache {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(BlockFileReaderCache.class);
+
+    private final String rootDir;
+    private final boolean mmapCompletedFiles;
+    private final ConcurrentMap<Integer, BlockFileReader> readers = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+    private BlockFileReader lastArchivedReader;
+    private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+
+    public BlockFileReaderCache(String rootDir, boolean mmapCompletedFiles) {
+        this.rootDir = rootDir;
+        this.mmapCompletedFiles = mmapCompletedFiles;
+    }
+
+    /**
+     * 获取区块文件的读取对象
+     *
+     * @param fileNum   区块文件编号
+     * @param completed 文件是否已写满(不再追加区块)
+     */
+    public BlockFileReader getReader(int fileNum, boolean completed) throws LedgerException {
+        if (closed) {
+            throw new LedgerException("Block file reader cache is closed");
+        }
+        BlockFileReader reader = readers.get(fileNum);
+        if (reader == null) {
+            BlockFileReader newReader = newReader(fileNum);
+            reader = readers.putIfAbsent(fileNum, newReader);
+            if (reader == null) {
+                reader = newReader;
+            }
+        }
+        if (reader instanceof ArchivedBlockFileReader) {
+            releaseOtherArchivedReader(reader);
+        }
+        if (completed && mmapCompletedFiles && !reader.isMapped()) {
+            reader.map();
+        }
+        return reader;
+    }
+
+    private BlockFileReader newReader(int fileNum) {
+        String path = BlockFileManager.deriveBlockfilePath(rootDir, fileNum);
+        if (!new File(path).exists()) {
+            File archiveFile = new File(BlockFileManager.deriveArchivePath(rootDir, fileNum));
+            if (archiveFile.exists()) {
+                log.debug("Block file [{}] is archived, read it from [{}]", path, archiveFile.getPath());
+                return new ArchivedBlockFileReader(archiveFile.getPath());
+            }
+        }
+        return new BlockFileReader(path);
+    }
+
+    /**
+     * 释放之前读取的归档文件占用的内存, 该读取对象仍可使用(再次读取时重新解压)
+     */
+    private synchronized void releaseOtherArchivedReader(BlockFileReader reader) {
+        if (lastArchivedReader != null && lastArchivedReader != reader) {
+            lastArchivedReader.close();
+        }
+        lastArchivedReader = reader;
+    }
+
+    /**
+     * 关闭并移除区块文件的读取对象(如文件被删除或归档时)
+     */
+    public void evict(int fileNum) {
+        BlockFileReader reader = readers.remove(fileNum);
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    /**
+     * 读取区块文件时持有的锁, 保证读取期间文件不被归档或删除
+     */
+    public Lock readLock() {
+        return fileLock.readLock();
+    }
+
+    /**
+     * 归档或删除区块文件时持有的锁
+     */
+    public Lock writeLock() {
+        return fileLock.writeLock();
+    }
+
+    public void close() {
+        closed = true;
+        for (BlockFileReader reader : readers.values()) {
+            reader.close();
+        }
+        readers.clear();
+        log.debug("Closed block file readers of [{}]", rootDir);
+    }
+
+    public boolean isMmapCompletedFiles() {
+        return mmapCompletedFiles;
+    }
+}
@@ -22,6 +22,7 @@ import org.bcia.julongchain.core.ledger.util.Util;
 
 import java.io.*;
 import java.util.AbstractMap;
+import java.util.concurrent.locks.Lock;
 
 /**
  * 操作block文件的流方法
@@ -38,19 +39,46 @@ public class BlockFileStream {
     private File file;
     private long currentOffset;
     private boolean init;
+    /**
+     * reader由外部共享时, 关闭流不关闭reader
+     */
+    private boolean sharedReader;
+    /**
+     * 通过缓存读取时, 每次读取区块都从缓存获取当前的reader, 区块文件被归档后仍可继续读取
+     */
+    private BlockFileReaderCache readerCache;
 
     public BlockFileStream(String rootDir, int fileNum, long startOffset) throws LedgerException{
         //根据rootDir获取filePath
-        String filePath = BlockFileManager.deriveBlockfilePath(rootDir, fileNum);
+        this(new BlockFileReader(BlockFileManager.deriveBlockfilePath(rootDir, fileNum)), fileNum, startOffset, false);
+    }
+
+    /**
+     * 使用已打开的reader创建流
+     */
+    public BlockFileStream(BlockFileReader reader, int fileNum, long startOffset) throws LedgerException{
+        this(reader, fileNum, startOffset, true);
+    }
+
+    /**
+     * 通过读取对象缓存创建流
+     */
+    public BlockFileStream(BlockFileReaderCache readerCache, int fileNum, long startOffset) throws LedgerException{
+        this(readerCache.getReader(fileNum, false), fileNum, startOffset, true);
+        this.readerCache = readerCache;
+    }
+
+    private BlockFileStream(BlockFileReader reader, int fileNum, long startOffset, boolean sharedReader) throws LedgerException{
         this.fileNum = fileNum;
-        this.file = new File(filePath);
-		this.reader = new BlockFileReader(filePath);
+        this.file = reader.getFile();
+		this.reader = reader;
+		this.sharedReader = sharedReader;
         this.currentOffset = startOffset;
-        if(this.currentOffset > this.file.length()){
+        if(this.currentOffset > reader.size()){
         	log.error("Current offset is out of file");
             throw new LedgerException("Current offset is out of file");
         }
-        log.debug(String.format("newBlockFileStream(): filePath=[%s], startOffset=[%d]", filePath, startOffset));
+        log.debug(String.format("newBlockFileStream(): filePath=[%s], startOffset=[%d]", file.getPath(), startOffset));
         this.init = true;
     }
 
@@ -61,12 +89,28 @@ public class BlockFileStream {
         if(!init){
             throw new LedgerException("Block file stream is not init.");
         }
+        if (readerCache == null) {
+            return readNextBlock();
+        }
+        //读取一个区块期间文件不会被归档或删除
+        Lock lock = readerCache.readLock();
+        lock.lock();
+        try {
+            reader = readerCache.getReader(fileNum, false);
+            return readNextBlock();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private AbstractMap.SimpleEntry<byte[], BlockPlacementInfo> readNextBlock() throws LedgerException{
+        long fileLength = reader.size();
         //当前读取位置为文件结尾
-        if(currentOffset == file.length()){
+        if(currentOffset == fileLength){
             log.debug(String.format("Finished reading file number [%d]", fileNum));
             return new AbstractMap.SimpleEntry<>(null, null);
         }
-        long remainingBytes = file.length() - currentOffset;
+        long remainingBytes = fileLength - currentOffset;
         //代表block长度的部分占8字节
         //剩余文件长度<8时抛出异常
         if(remainingBytes < BlockFileManager.PEEK_BYTES_LEN){
@@ -95,6 +139,20 @@ public class BlockFileStream {
         return new AbstractMap.SimpleEntry<>(blockBytes, blockPlacementInfo);
     }
 
+    /**
+     * 文件剩余部分是否包含一个完整的区块
+     * 写入区块时宕机, 文件末尾可能只有部分区块数据
+     */
+    public boolean hasCompleteBlock() throws LedgerException {
+        long remainingBytes = reader.size() - currentOffset;
+        if (remainingBytes < BlockFileManager.PEEK_BYTES_LEN) {
+            return false;
+        }
+        byte[] lenBytes = reader.read(currentOffset, BlockFileManager.PEEK_BYTES_LEN);
+        long length = Util.bytesToLong(lenBytes, 0, BlockFileManager.PEEK_BYTES_LEN);
+        return length >= 0 && length + BlockFileManager.PEEK_BYTES_LEN <= remainingBytes;
+    }
+
     /**
      * 下一区块
      */
@@ -109,7 +167,9 @@ public class BlockFileStream {
         if(!init){
             throw new LedgerException("Block file stream is not init.");
         }
-		reader.close();
+		if (!sharedReader) {
+			reader.close();
+		}
     }
 
     public int getFileNum() {
@@ -20,10 +20,16 @@ import org.bcia.julongchain.common.ledger.util.IoUtil;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * 写入文件
+ * 文件打开后保持FileChannel, 追加写入不再每次打开文件, 刷盘由sync控制
  *
  * @author sunzongyu
  * @date 2018/04/12
@@ -34,6 +40,11 @@ public class BlockFileWriter {
 
     private String filePath;
     private File file;
+    private FileChannel channel;
+    /**
+     * 上次刷盘后是否有新写入的数据
+     */
+    private boolean dirty;
 
     public BlockFileWriter(String filePath) throws LedgerException{
         this.filePath = filePath;
@@ -45,51 +56,97 @@ public class BlockFileWriter {
      * 截断文件为指定大小
 	 * 主要用于在文件写入出现异常时恢复文件
      */
-    public void truncateFile(int targetSize) throws LedgerException {
-        if(file.length() <= targetSize){
-            return;
-        }
-        FileInputStream fis;
-        FileOutputStream fos;
+    public synchronized void truncateFile(int targetSize) throws LedgerException {
         try {
-            fis = new FileInputStream(file);
-            byte[] inputBytes = new byte[targetSize];
-            int read = fis.read(inputBytes);
-			if (read != targetSize) {
-				log.debug("Can not read specified size. Expected file size [{}], actual file size [{}]", targetSize, read);
-			}
-            fis.close();
-            fos = new FileOutputStream(file);
-            fos.write(inputBytes);
-            fos.close();
-        } catch (Throwable e) {
+            if(channel.size() <= targetSize){
+                return;
+            }
+            channel.truncate(targetSize);
+            channel.position(targetSize);
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
             throw new LedgerException(e);
         }
     }
 
 	/**
 	 * 将字节b写入文件
+	 *
+	 * @param sync 为true时写入后立即刷盘
 	 */
-    public void append(byte[] b, Boolean sync) throws LedgerException {
-        FileOutputStream fos;
+    public synchronized void append(byte[] b, Boolean sync) throws LedgerException {
         try {
-            fos = new FileOutputStream(file, true);
-            fos.write(b);
-            fos.close();
+            ByteBuffer buffer = ByteBuffer.wrap(b);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            dirty = true;
         } catch (IOException e) {
             throw new LedgerException(e);
         }
+        if (Boolean.TRUE.equals(sync)) {
+            sync();
+        }
     }
 
+	/**
+	 * 将已写入的数据刷到磁盘
+	 * 文件已关闭或没有新数据时直接返回; 刷盘期间不阻塞append
+	 */
+	public void sync() throws LedgerException {
+		FileChannel current;
+		synchronized (this) {
+			if (!dirty || channel == null || !channel.isOpen()) {
+				return;
+			}
+			dirty = false;
+			current = channel;
+		}
+		try {
+			current.force(false);
+		} catch (ClosedChannelException e) {
+			//文件已被close关闭, close会在关闭前刷盘
+			log.debug("Block file [{}] was closed while syncing", filePath);
+		} catch (IOException e) {
+			synchronized (this) {
+				dirty = true;
+			}
+			throw new LedgerException(e);
+		}
+	}
+
 	/**
 	 * 打开文件（文件不存在时创建文件）
 	 */
-	public void open() throws LedgerException{
+	public synchronized void open() throws LedgerException{
         if (!IoUtil.createFileIfMissing(filePath)) {
             throw new LedgerException("Can not create file " + filePath);
         }
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new LedgerException(e);
+        }
     }
 
+	/**
+	 * 刷盘并关闭文件
+	 */
+	public synchronized void close() throws LedgerException {
+		if (channel == null || !channel.isOpen()) {
+			return;
+		}
+		try {
+			channel.force(false);
+			dirty = false;
+			channel.close();
+		} catch (IOException e) {
+			throw new LedgerException(e);
+		}
+	}
+
     public String getFilePath() {
         return filePath;
     }
@@ -20,6 +20,7 @@ import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.ledger.blkstorage.BlockStorage;
 import org.bcia.julongchain.common.ledger.blkstorage.IndexConfig;
 import org.bcia.julongchain.common.ledger.util.IDBProvider;
+import org.bcia.julongchain.common.ledger.util.leveldbhelper.LevelDBProvider;
 import org.bcia.julongchain.common.ledger.util.leveldbhelper.UpdateBatch;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
@@ -28,8 +29,13 @@ import org.bcia.julongchain.core.ledger.util.Util;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -55,6 +61,10 @@ public class BlockIndex implements Index {
     private static final String BLOCK_TX_ID_IDX_KEY_PREFIX          = "b";
     private static final String TX_VALIDATION_RESULT_IDX_KEY_PREFIX = "v";
     private static final String INDEX_CHECK_POINT_KEY_STR			= "indexCheckpointKey";
+    /**
+     * 序列化后的FileLocPointer长度
+     */
+    private static final int FLP_BYTES_LEN = 3 * BlockFileManager.PEEK_BYTES_LEN;
 
     public BlockIndex(IndexConfig indexConfig, IDBProvider db, String id) {
         String[] indexItems = indexConfig.getAttrsToIndex();
@@ -148,6 +158,100 @@ public class BlockIndex implements Index {
         db.writeBatch(batch, true);
     }
 
+    /**
+     * 删除区块的索引
+     * 交易ID及交易验证码的索引仍然保留, 用于重复交易检查
+     */
+    @Override
+    public void removeBlockIndex(List<BlockIndexInfo> blockIndexInfos) throws LedgerException {
+        UpdateBatch batch = new UpdateBatch();
+        for (BlockIndexInfo blockIndexInfo : blockIndexInfos) {
+            batch.delete(constructBlockHashKey(blockIndexInfo.getBlockHash()));
+            batch.delete(constructBlockNumKey(blockIndexInfo.getBlockNum()));
+            for (int i = 0; i < blockIndexInfo.getTxOffsets().size(); i++) {
+                batch.delete(constructBlockNumTranNumKey(blockIndexInfo.getBlockNum(), (long) i));
+            }
+        }
+        db.writeBatch(batch, true);
+    }
+
+    /**
+     * 删除区块文件有效末尾之后的索引
+     * 丢失的区块已无法读取, 因此遍历各类索引, 按索引指向的位置判断是否属于丢失的区块
+     * 只在启动时发现索引超前于区块文件时调用
+     */
+    @Override
+    public void removeIndexAfter(long lastBlockNum, int fileNum, long fileSize) throws LedgerException {
+        UpdateBatch batch = new UpdateBatch();
+        int removedBlocks = 0;
+        for (byte[] key : collectStaleKeys(BLOCK_NUM_IDX_KEY_PREFIX, fileNum, fileSize)) {
+            batch.delete(key);
+            removedBlocks++;
+        }
+        for (byte[] key : collectStaleKeys(BLOCK_HASH_IDX_KEY_PREFIX, fileNum, fileSize)) {
+            batch.delete(key);
+        }
+        for (byte[] key : collectStaleKeys(BLOCK_NUM_TRAN_NUM_IDX_KEY_PREFIX, fileNum, fileSize)) {
+            batch.delete(key);
+        }
+        //交易ID及区块交易ID索引指向丢失区块时, 同时删除交易验证码索引
+        for (String prefix : new String[]{TX_ID_IDX_KEY_PREFIX, BLOCK_TX_ID_IDX_KEY_PREFIX}) {
+            for (byte[] key : collectStaleKeys(prefix, fileNum, fileSize)) {
+                batch.delete(key);
+                String txID = new String(key, prefix.length(), key.length - prefix.length(), StandardCharsets.UTF_8);
+                batch.delete(constructTxValidationCodeIDKey(txID));
+            }
+        }
+        if (lastBlockNum >= 0) {
+            batch.put(constructIndexCheckpointKey(), Util.longToBytes(lastBlockNum, BlockFileManager.PEEK_BYTES_LEN));
+        } else {
+            batch.delete(constructIndexCheckpointKey());
+        }
+        db.writeBatch(batch, true);
+        log.info(String.format("Removed the indexes of %d lost blocks after block [%d] of ledger [%s]",
+                removedBlocks, lastBlockNum, ledgerId));
+    }
+
+    /**
+     * 获取指定前缀的索引中, 位置在区块文件fileNum的fileSize之后(或之后的文件中)的索引键
+     */
+    private List<byte[]> collectStaleKeys(String prefix, int fileNum, long fileSize) throws LedgerException {
+        byte[] appPrefix = prefix.getBytes(StandardCharsets.UTF_8);
+        byte[] levelPrefix = LevelDBProvider.constructLevelKey(db.getLedgerID(), appPrefix);
+        int ledgerPrefixLength = levelPrefix.length - appPrefix.length;
+        List<byte[]> keys = new ArrayList<>();
+        Iterator<Map.Entry<byte[], byte[]>> itr = db.getIterator(appPrefix);
+        try {
+            while (itr.hasNext()) {
+                Map.Entry<byte[], byte[]> entry = itr.next();
+                byte[] key = entry.getKey();
+                if (key.length < levelPrefix.length
+                        || !Arrays.equals(levelPrefix, Arrays.copyOf(key, levelPrefix.length))) {
+                    break;
+                }
+                //同一数据库中以相同字母开头的其他键(如区块文件检查点)不是位置索引
+                if (entry.getValue() == null || entry.getValue().length != FLP_BYTES_LEN) {
+                    continue;
+                }
+                FileLocPointer flp = new FileLocPointer();
+                flp.unmarshal(entry.getValue());
+                if (flp.getFileSuffixNum() > fileNum
+                        || (flp.getFileSuffixNum() == fileNum && flp.getLocPointer().getOffset() >= fileSize)) {
+                    keys.add(Arrays.copyOfRange(key, ledgerPrefixLength, key.length));
+                }
+            }
+        } finally {
+            if (itr instanceof Closeable) {
+                try {
+                    ((Closeable) itr).close();
+                } catch (IOException e) {
+                    log.error(e.getMessage(), e);
+                }
+            }
+        }
+        return keys;
+    }
+
     /**
      * 根据blockhash获取区块位置
      */
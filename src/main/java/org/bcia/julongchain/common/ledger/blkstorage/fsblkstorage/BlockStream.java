@@ -18,7 +18,6 @@ package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
-import org.bouncycastle.util.encoders.Hex;
 
 import java.util.AbstractMap;
 
@@ -36,6 +35,10 @@ public class BlockStream {
     private int currentFileNum;
     private int endFileNum;
     private BlockFileStream currentFileStream;
+    /**
+     * 不为空时通过共享的读取对象读取区块文件(包括已归档的文件)
+     */
+    private BlockFileReaderCache readerCache;
 
     public BlockStream() {
     }
@@ -48,13 +51,27 @@ public class BlockStream {
         this.currentFileStream = startFileStream;
     }
 
+    public BlockStream(BlockFileReaderCache readerCache, int startFileNum, long startOffset, int endFileNum) throws LedgerException{
+        this.readerCache = readerCache;
+        this.currentFileNum = startFileNum;
+        this.endFileNum = endFileNum;
+        this.currentFileStream = openFileStream(startFileNum, startOffset);
+    }
+
+    private BlockFileStream openFileStream(int fileNum, long startOffset) throws LedgerException{
+        if (readerCache == null) {
+            return new BlockFileStream(rootDir, fileNum, startOffset);
+        }
+        return new BlockFileStream(readerCache, fileNum, startOffset);
+    }
+
     /**
      * 移动到下一个BlockfileStream
      */
     public void moveToNextBlockFileStream() throws LedgerException{
         currentFileStream.close();
         currentFileNum++;
-        currentFileStream = new BlockFileStream(rootDir, currentFileNum, 0);
+        currentFileStream = openFileStream(currentFileNum, 0);
     }
 
     /**
@@ -70,7 +87,7 @@ public class BlockStream {
     public AbstractMap.SimpleEntry<byte[], BlockPlacementInfo> nextBlockBytesAndPlacementInfo() throws LedgerException{
         AbstractMap.SimpleEntry<byte[], BlockPlacementInfo> entry = currentFileStream.nextBlockBytesAndPlacementInfo();
         byte[] blockBytes = entry.getKey();
-        log.debug(String.format("Blockbytes [%s] read from file [%d]", Hex.toHexString(blockBytes), currentFileNum));
+        log.debug(String.format("Read [%d] block bytes from file [%d]", blockBytes == null ? 0 : blockBytes.length, currentFileNum));
         //当前文件无法读取出block
 		boolean expected = ((blockBytes == null || blockBytes.length == 0) && (currentFileNum < endFileNum || endFileNum < 0));
         if(expected){
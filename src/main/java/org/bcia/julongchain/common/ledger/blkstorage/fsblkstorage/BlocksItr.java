@@ -36,7 +36,10 @@ public class BlocksItr implements IResultsIterator {
     private long maxBlockNumAvailable;
     private long blockNumToRetrieve;
     private BlockStream stream;
-    private Boolean closeMarker;
+    /**
+     * 关闭标记, 其他线程可以在next()等待新区块时关闭迭代器
+     */
+    private volatile Boolean closeMarker;
 
     public BlocksItr() {
     }
@@ -72,13 +75,16 @@ public class BlocksItr implements IResultsIterator {
      */
     public void initStream() throws LedgerException{
         FileLocPointer lp = mgr.getIndex().getBlockLocByBlockNum(blockNumToRetrieve);
-        stream = new BlockStream(mgr.getRootDir(), lp.getFileSuffixNum(), lp.getLocPointer().getOffset(), -1);
+        if (lp == null) {
+            throw new LedgerException(String.format("Block [%d] is not available, it may have been pruned", blockNumToRetrieve));
+        }
+        stream = new BlockStream(mgr.getReaderCache(), lp.getFileSuffixNum(), lp.getLocPointer().getOffset(), -1);
     }
 
     /**
      * 区块文件迭代器是否可以关闭
      */
-    public synchronized boolean shouldClose() {
+    public boolean shouldClose() {
         return closeMarker;
     }
 
@@ -105,11 +111,17 @@ public class BlocksItr implements IResultsIterator {
         return new QueryResult(BlockSerialization.deserializeBlock(nextBlockBytes));
     }
 
+    /**
+     * 关闭迭代器
+     * 先唤醒在next()中等待新区块的线程, 再关闭文件流, 不能在等待期间持有迭代器锁
+     */
     @Override
-    public synchronized void close() throws LedgerException{
+    public void close() throws LedgerException{
 		closeMarker = true;
 		synchronized (BlockFileManager.LOCK){
 			BlockFileManager.LOCK.notifyAll();
+		}
+		synchronized (this) {
 			if(stream != null){
 				stream.close();
 			}
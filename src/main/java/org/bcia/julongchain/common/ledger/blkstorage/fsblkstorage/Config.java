@@ -31,12 +31,25 @@ public class Config {
 
     private String blockStorageDir;
     private int maxBlockFileSize;
+    /**
+     * 是否将写满的区块文件映射到内存
+     */
+    private boolean mmapCompletedFiles;
+    /**
+     * 添加区块时是否将区块文件刷盘, 为false时由操作系统刷盘
+     */
+    private boolean syncBlocks;
 
     public Config(){}
 
     public Config(String blockStorageDir, int maxBlockFileSize){
+        this(blockStorageDir, maxBlockFileSize, false);
+    }
+
+    public Config(String blockStorageDir, int maxBlockFileSize, boolean mmapCompletedFiles){
         this.blockStorageDir = blockStorageDir;
         this.maxBlockFileSize = maxBlockFileSize <=0 ? DEFAULT_MAX_BLOCKFILE_SIZE : maxBlockFileSize;
+        this.mmapCompletedFiles = mmapCompletedFiles;
     }
 
     public String getIndexDir(){
@@ -66,4 +79,20 @@ public class Config {
     public void setMaxBlockFileSize(int maxBlockFileSize) {
         this.maxBlockFileSize = maxBlockFileSize;
     }
+
+    public boolean isMmapCompletedFiles() {
+        return mmapCompletedFiles;
+    }
+
+    public void setMmapCompletedFiles(boolean mmapCompletedFiles) {
+        this.mmapCompletedFiles = mmapCompletedFiles;
+    }
+
+    public boolean isSyncBlocks() {
+        return syncBlocks;
+    }
+
+    public void setSyncBlocks(boolean syncBlocks) {
+        this.syncBlocks = syncBlocks;
+    }
 }
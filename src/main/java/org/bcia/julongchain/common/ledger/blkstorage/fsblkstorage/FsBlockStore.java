@@ -15,11 +15,17 @@
  */
 package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
 
+import com.google.protobuf.InvalidProtocolBufferException;
 import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.exception.ValidateException;
+import org.bcia.julongchain.common.ledger.IPrunePolicy;
 import org.bcia.julongchain.common.ledger.IResultsIterator;
 import org.bcia.julongchain.common.ledger.blkstorage.IBlockStore;
 import org.bcia.julongchain.common.ledger.blkstorage.IndexConfig;
 import org.bcia.julongchain.common.ledger.util.IDBProvider;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.common.util.proto.BlockUtils;
 import org.bcia.julongchain.core.ledger.BlockAndPvtData;
 import org.bcia.julongchain.core.smartcontract.shim.impl.Handler;
 import org.bcia.julongchain.protos.common.Common;
@@ -37,6 +43,7 @@ import java.util.Map;
  * @company Dingxuan
  */
 public class FsBlockStore implements IBlockStore {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(FsBlockStore.class);
 
     private String id;
     private BlockFileManager blockFileManager;
@@ -104,6 +111,51 @@ public class FsBlockStore implements IBlockStore {
         blockFileManager.close();
     }
 
+    /**
+     * 按策略修剪区块文件
+     * 删除区块文件时不删除最新的配置区块及之后的区块, 以便从账本中读取当前配置
+     */
+    @Override
+    public int prune(IPrunePolicy policy) throws LedgerException {
+        long minBlockNumToRetain = policy.getMinBlockNumToRetain(this);
+        if (!policy.isArchive()) {
+            long lastConfigBlockNum = getLastConfigBlockNum();
+            if (lastConfigBlockNum < minBlockNumToRetain) {
+                log.debug(String.format("Keep blocks from last config block [%d] instead of [%d]",
+                        lastConfigBlockNum, minBlockNumToRetain));
+                minBlockNumToRetain = lastConfigBlockNum;
+            }
+        }
+        return blockFileManager.prune(minBlockNumToRetain, policy.isArchive());
+    }
+
+    @Override
+    public boolean isTxPruned(String txID) throws LedgerException {
+        return blockFileManager.isTxPruned(txID);
+    }
+
+    @Override
+    public long getFirstUnarchivedBlockNum() throws LedgerException {
+        return blockFileManager.getFirstUnarchivedBlockNum();
+    }
+
+    /**
+     * 最新区块中记录的最新配置区块号
+     */
+    private long getLastConfigBlockNum() throws LedgerException {
+        long height = getBlockchainInfo().getHeight();
+        if (height == 0) {
+            return 0;
+        }
+        Common.Block lastBlock = retrieveBlockByNumber(height - 1);
+        try {
+            return BlockUtils.getLastConfigIndexFromBlock(lastBlock);
+        } catch (InvalidProtocolBufferException | ValidateException e) {
+            log.error(e.getMessage(), e);
+            throw new LedgerException("Can not get last config block of ledger " + id, e);
+        }
+    }
+
     @Override
     public void commitWithPvtData(BlockAndPvtData blockAndPvtData) throws LedgerException {
 
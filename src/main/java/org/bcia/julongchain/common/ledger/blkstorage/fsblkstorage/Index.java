@@ -18,6 +18,8 @@ package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 
+import java.util.List;
+
 /**
  * 索引接口
  * 用于对区块文件进行索引
@@ -38,6 +40,20 @@ public interface Index {
 	 */
 	void indexBlock(BlockIndexInfo blockIndexInfo) throws LedgerException;
 
+	/**
+	 * 删除区块的索引(区块文件被修剪时)
+	 */
+	void removeBlockIndex(List<BlockIndexInfo> blockIndexInfos) throws LedgerException;
+
+	/**
+	 * 删除区块文件有效末尾之后的区块及交易索引(宕机时丢失了未落盘的区块)
+	 *
+	 * @param lastBlockNum 区块文件中的最后一个区块号, 没有区块时为-1
+	 * @param fileNum 最新区块文件编号
+	 * @param fileSize 最新区块文件的有效长度
+	 */
+	void removeIndexAfter(long lastBlockNum, int fileNum, long fileSize) throws LedgerException;
+
 	/**
 	 * 根据blockHash获取block位置
 	 */
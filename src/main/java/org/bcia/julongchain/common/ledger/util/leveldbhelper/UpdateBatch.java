@@ -15,16 +15,17 @@
  */
 package org.bcia.julongchain.common.ledger.util.leveldbhelper;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * 批量操作更新包
+ * 以key的内容(按leveldb的字节序)排序去重, 同一批次内对同一key的多次写入/删除只保留最后一次,
+ * 写入leveldb时key按序追加到WriteBatch中
  *
  * @author sunzongyu
  * @date 2018/04/09
@@ -33,7 +34,24 @@ import java.util.Map;
 public class UpdateBatch  {
 	private static JulongChainLog log = JulongChainLogFactory.getLog(UpdateBatch.class);
 
-	private Map<byte[],byte[]> kvs = new HashMap<>();
+	/**
+	 * 与leveldb默认比较器一致的无符号字节序比较
+	 */
+	public static final Comparator<byte[]> KEY_COMPARATOR = new Comparator<byte[]>() {
+		@Override
+		public int compare(byte[] a, byte[] b) {
+			int len = Math.min(a.length, b.length);
+			for (int i = 0; i < len; i++) {
+				int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+				if (cmp != 0) {
+					return cmp;
+				}
+			}
+			return a.length - b.length;
+		}
+	};
+
+	private Map<byte[],byte[]> kvs = new TreeMap<>(KEY_COMPARATOR);
 
 	/**
 	 * 添加K-V
@@ -53,14 +71,36 @@ public class UpdateBatch  {
 		kvs.put(key, null);
 	}
 
+	/**
+	 * 获取批次内key对应的值, 被删除或不存在时返回null
+	 */
+	public byte[] get(byte[] key) {
+		return kvs.get(key);
+	}
+
+	/**
+	 * 批次内是否包含对key的写入或删除
+	 */
+	public boolean contains(byte[] key) {
+		return kvs.containsKey(key);
+	}
+
+	public int size() {
+		return kvs.size();
+	}
+
 	/**
 	 * 批量添加K-V
 	 */
 	public void addAll(UpdateBatch updateBatch, String ledgerID){
 		if(ledgerID == null){
-			kvs = updateBatch.getKvs();
+			if (kvs.isEmpty()) {
+				//直接复用, 避免复制
+				kvs = updateBatch.getKvs();
+			} else {
+				kvs.putAll(updateBatch.getKvs());
+			}
 		} else {
-			byte[] b = ArrayUtils.addAll(ledgerID.getBytes(StandardCharsets.UTF_8), new byte[]{0x00});
 			updateBatch.getKvs().forEach((k, v) -> kvs.put(LevelDBProvider.constructLevelKey(ledgerID, k), v));
 		}
 
@@ -71,6 +111,8 @@ public class UpdateBatch  {
 	}
 
 	public void setKvs(Map<byte[], byte[]> kvs) {
-		this.kvs = kvs;
+		Map<byte[], byte[]> sorted = new TreeMap<>(KEY_COMPARATOR);
+		sorted.putAll(kvs);
+		this.kvs = sorted;
 	}
-}
\ No newline at end of file
+}
@@ -22,9 +22,8 @@ import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.common.policycheck.policies.Evalutor;
 import org.bcia.julongchain.common.policycheck.policies.IEvalutor;
 import org.bcia.julongchain.common.util.proto.SignedData;
+import org.bcia.julongchain.msp.IIdentity;
 import org.bcia.julongchain.msp.IIdentityDeserializer;
-
-import org.bcia.julongchain.msp.mgmt.Identity;
 import org.bcia.julongchain.protos.common.MspPrincipal;
 import org.bcia.julongchain.protos.common.Policies;
 
@@ -51,14 +50,14 @@ public class CAuthDsl {
         Map<String,Object> ids = new HashMap<String,Object>(16);
         List<SignedData> result = new ArrayList<SignedData>();
         for(int i=0;i<signedDatas.size();i++){
-            Identity identity = null;
+            IIdentity identity = null;
             try {
-                identity = (Identity) deserializer.deserializeIdentity(signedDatas.get(i).getIdentity());
+                identity = deserializer.deserializeIdentity(signedDatas.get(i).getIdentity());
             }catch (Exception e){
                 String msg=String.format("Principal deserialization failure  %s for [%s]",e.getMessage(),signedDatas.get(i).getIdentity());
                 throw new PolicyException(msg);
             }
-            String key = identity.getIdentityIdentifier().getMspId()+identity.getIdentityIdentifier().getId();
+            String key = identity.getIdentifier().getMspId()+identity.getIdentifier().getId();
             if(ids.get(key) != null){
                 log.warn("De-duplicating identity [%s] at index [%s] in signature set",signedDatas.get(i).getIdentity(),i);
             }else{
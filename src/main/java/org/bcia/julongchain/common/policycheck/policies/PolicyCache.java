@@ -0,0 +1,109 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.policycheck.policies;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.exception.PolicyException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.common.policies.policy.IPolicy;
+import org.bcia.julongchain.msp.IIdentityDeserializer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按群组缓存编译后的背书策略, 以策略字节为键, 同一策略只调用一次PolicyProvider.makePolicy(CAuthDsl.compile)
+ * 群组的身份反序列化器(MSP管理器)变化或智能合约部署/升级后清除该群组的缓存
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class PolicyCache {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(PolicyCache.class);
+
+    /**
+     * 每个群组缓存的策略数
+     */
+    private static final int POLICIES_PER_GROUP = 64;
+
+    private static final Map<String, GroupPolicies> GROUP_POLICIES = new ConcurrentHashMap<>();
+
+    private PolicyCache() {
+    }
+
+    /**
+     * 获取编译后的策略
+     * @param groupId 群组ID
+     * @param deserializer 群组的身份反序列化器
+     * @param policyBytes 序列化的SignaturePolicyEnvelope
+     * @return
+     * @throws PolicyException
+     */
+    public static IPolicy getPolicy(String groupId, IIdentityDeserializer deserializer, byte[] policyBytes)
+            throws PolicyException {
+        GroupPolicies groupPolicies = GROUP_POLICIES.get(groupId);
+        if (groupPolicies == null || groupPolicies.deserializer != deserializer) {
+            groupPolicies = new GroupPolicies(deserializer);
+            GROUP_POLICIES.put(groupId, groupPolicies);
+        }
+
+        ByteString key = ByteString.copyFrom(policyBytes);
+        IPolicy policy = groupPolicies.get(key);
+        if (policy == null) {
+            policy = new PolicyProvider(deserializer).makePolicy(policyBytes);
+            if (policy != null) {
+                groupPolicies.put(key, policy);
+            }
+        }
+        return policy;
+    }
+
+    /**
+     * 清除群组缓存的策略
+     * @param groupId
+     */
+    public static void invalidate(String groupId) {
+        if (GROUP_POLICIES.remove(groupId) != null) {
+            log.debug("Compiled policies of group " + groupId + " are invalidated");
+        }
+    }
+
+    private static class GroupPolicies {
+        private final IIdentityDeserializer deserializer;
+        private final Map<ByteString, IPolicy> policies = new LinkedHashMap<ByteString, IPolicy>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteString, IPolicy> eldest) {
+                return size() > POLICIES_PER_GROUP;
+            }
+        };
+
+        GroupPolicies(IIdentityDeserializer deserializer) {
+            this.deserializer = deserializer;
+        }
+
+        synchronized IPolicy get(ByteString key) {
+            return policies.get(key);
+        }
+
+        synchronized void put(ByteString key, IPolicy policy) {
+            policies.put(key, policy);
+        }
+    }
+}
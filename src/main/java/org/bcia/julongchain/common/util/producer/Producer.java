@@ -38,9 +38,18 @@ public class Producer<T> {
      * 可阻塞队列，充当内存缓冲区，以保证内存缓冲区不够时，消费者线程阻塞,而内存缓存区满时，生产者线程阻塞
      */
     private BlockingQueue<T> queue;
+    /**
+     * 缓冲区满时的等待时间(毫秒): 小于0时不等待, 等于0时一直等待直到放入
+     */
+    private long timeout;
 
     public Producer(BlockingQueue<T> queue) {
+        this(queue, PRODUCE_TIMEOUT);
+    }
+
+    public Producer(BlockingQueue<T> queue, long timeout) {
         this.queue = queue;
+        this.timeout = timeout;
     }
 
     /**
@@ -51,7 +60,14 @@ public class Producer<T> {
      */
     public boolean produce(T t) {
         try {
-            return queue.offer(t, PRODUCE_TIMEOUT, TimeUnit.MILLISECONDS);
+            if (timeout < 0) {
+                return queue.offer(t);
+            } else if (timeout == 0) {
+                queue.put(t);
+                return true;
+            } else {
+                return queue.offer(t, timeout, TimeUnit.MILLISECONDS);
+            }
         } catch (InterruptedException e) {
             log.error(e.getMessage(), e);
             return false;
@@ -16,20 +16,16 @@
 package org.bcia.julongchain.consenter.common.broadcast;
 
 import com.google.protobuf.InvalidProtocolBufferException;
-import io.grpc.Grpc;
 import io.grpc.stub.StreamObserver;
 import org.bcia.julongchain.common.exception.ConsenterException;
-import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
-import org.bcia.julongchain.consenter.common.server.ConsenterServer;
 import org.bcia.julongchain.consenter.common.server.IBroadcastHandler;
-import org.bcia.julongchain.consenter.consensus.singleton.Singleton;
-import org.bcia.julongchain.consenter.entity.ConfigMessage;
+import org.bcia.julongchain.consenter.consensus.IChain;
 import org.bcia.julongchain.consenter.entity.ConfigMsg;
-import org.bcia.julongchain.consenter.entity.NormalMessage;
 import org.bcia.julongchain.consenter.util.ConsenterConstants;
+import org.bcia.julongchain.consenter.util.RequestHeadersInterceptor;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.consenter.Ab;
 import org.bcia.julongchain.tools.configtxgen.entity.GenesisConfigFactory;
@@ -52,78 +48,82 @@ public class BroadcastHandler implements IBroadcastHandler {
         this.sm = sm;
     }
 
+    /**
+     * 处理一条broadcast消息
+     * 不同gRPC流的消息并发解析及校验, 只有进入各链排序队列的一步是有序的
+     *
+     * @param envelope
+     * @param responseObserver
+     * @throws ConsenterException
+     */
     @Override
     public void handle(Common.Envelope envelope, StreamObserver<Ab.BroadcastResponse> responseObserver) throws ConsenterException {
-        synchronized (BroadcastHandler.class) {
-            if (ConsenterConstants.SINGLETON.equals(GenesisConfigFactory.getGenesisConfig().getConsenter().getConsenterType())) {
-                Common.GroupHeader groupHeader = null;
-                ChainSupport chainSupport = null;
-                boolean isConfig = false;
-                String remoteAddr = ConsenterServer.serverCallCapture.get().getAttributes()
-                        .get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR).toString();
-                if(envelope.toByteArray().length==0){
-                    throw new ConsenterException("Envelop Message length is:"+envelope.toByteArray().length);
-                }
-                try {
-                    Map<String, Object> map = sm.broadcastGroupSupport(envelope);
-                    groupHeader = (Common.GroupHeader) map.get(ConsenterConstants.GROUPHEADER);
-                    isConfig = (boolean) map.get(ConsenterConstants.ISCONFIG);
-                    chainSupport = (ChainSupport) map.get(ConsenterConstants.CHAINSUPPORT);
-                } catch (InvalidProtocolBufferException e) {
-                    responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.INTERNAL_SERVER_ERROR).build());
-                    responseObserver.onCompleted();
-                }
-                try {
-                    chainSupport.getChain().waitReady();
-                } catch (ConsenterException e) {
-                    log.warn(String.format("[group: %s] Rejecting broadcast of message from %s with SERVICE_UNAVAILABLE: rejected by Consenter: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
-                    responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SERVICE_UNAVAILABLE).build());
-                    responseObserver.onCompleted();
-                }
-                if (!isConfig) {
-                    //普通消息
-                    log.debug(String.format("[group: %s] Broadcast is processing normal message from %s with txid '%s' of type %s", groupHeader.getGroupId(), remoteAddr, groupHeader.getTxId(), groupHeader.getType()));
-                    long configSeq = 0;
-                    try {
-                        configSeq = chainSupport.getProcessor().processNormalMsg(envelope);
-                    } catch (InvalidProtocolBufferException e) {
-                        log.warn(String.format("[channel: %s] Rejecting broadcast of normal message from %s because of error: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
-                        responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setInfo(e.getMessage()).build());
-                        responseObserver.onCompleted();
-                    }
-                    Singleton singleton = null;
-                    singleton = Singleton.getInstance(chainSupport);
-                    NormalMessage normalMessage = new NormalMessage(configSeq, envelope);
-
-                    try {
-                        singleton.pushToQueue(normalMessage);
-                    } catch (ValidateException e) {
-                        responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SERVICE_UNAVAILABLE).build());
-                        responseObserver.onCompleted();
-                    }
-                    responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SUCCESS).build());
-                    responseObserver.onCompleted();
-                } else {
-                    //配置消息
-                    ConfigMsg configMsg = null;
-                    try {
-                        log.info(String.format("[group: %s] Broadcast is processing config update message from %s", groupHeader.getGroupId(), remoteAddr));
-                        configMsg = chainSupport.getProcessor().processConfigUpdateMsg(envelope);
-                    } catch (ConsenterException e) {
-                        log.warn(String.format("[group: %s] Rejecting broadcast of config message from %s because of error: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
-                    }
-                    Singleton singleton = null;
-                    singleton = Singleton.getInstance(chainSupport);
-                    ConfigMessage configMessage = new ConfigMessage(configMsg.getConfigSeq(), configMsg.getConfig());
-                    try {
-                        singleton.pushToQueue(configMessage);
-
-                    } catch (ValidateException e) {
-                        throw new ConsenterException(e.getMessage());
-                    }
-                    responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SUCCESS).build());
-                }
+        if (!ConsenterConstants.SINGLETON.equals(GenesisConfigFactory.getGenesisConfig().getConsenter().getConsenterType())) {
+            return;
+        }
+        Common.GroupHeader groupHeader = null;
+        ChainSupport chainSupport = null;
+        boolean isConfig = false;
+        String remoteAddr = String.valueOf(RequestHeadersInterceptor.REMOTE_ADDR.get());
+        if (envelope.getSerializedSize() == 0) {
+            throw new ConsenterException("Envelop Message length is:" + envelope.getSerializedSize());
+        }
+        try {
+            Map<String, Object> map = sm.broadcastGroupSupport(envelope);
+            groupHeader = (Common.GroupHeader) map.get(ConsenterConstants.GROUPHEADER);
+            isConfig = (boolean) map.get(ConsenterConstants.ISCONFIG);
+            chainSupport = (ChainSupport) map.get(ConsenterConstants.CHAINSUPPORT);
+        } catch (InvalidProtocolBufferException e) {
+            responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.INTERNAL_SERVER_ERROR).build());
+            responseObserver.onCompleted();
+            return;
+        }
+        IChain chain = chainSupport.getChain();
+        try {
+            chain.waitReady();
+        } catch (ConsenterException e) {
+            log.warn(String.format("[group: %s] Rejecting broadcast of message from %s with SERVICE_UNAVAILABLE: rejected by Consenter: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
+            responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SERVICE_UNAVAILABLE).build());
+            responseObserver.onCompleted();
+            return;
+        }
+        if (!isConfig) {
+            //普通消息
+            log.debug(String.format("[group: %s] Broadcast is processing normal message from %s with txid '%s' of type %s", groupHeader.getGroupId(), remoteAddr, groupHeader.getTxId(), groupHeader.getType()));
+            long configSeq = 0;
+            try {
+                configSeq = chainSupport.getProcessor().processNormalMsg(envelope);
+            } catch (InvalidProtocolBufferException e) {
+                log.warn(String.format("[channel: %s] Rejecting broadcast of normal message from %s because of error: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
+                responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setInfo(e.getMessage()).build());
+                responseObserver.onCompleted();
+                return;
+            }
+            if (!chain.order(envelope, configSeq)) {
+                log.warn(String.format("[group: %s] Rejecting broadcast of normal message from %s with SERVICE_UNAVAILABLE: rejected by Consenter", groupHeader.getGroupId(), remoteAddr));
+                responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SERVICE_UNAVAILABLE).build());
+                responseObserver.onCompleted();
+                return;
+            }
+            responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SUCCESS).build());
+            responseObserver.onCompleted();
+        } else {
+            //配置消息
+            ConfigMsg configMsg = null;
+            try {
+                log.info(String.format("[group: %s] Broadcast is processing config update message from %s", groupHeader.getGroupId(), remoteAddr));
+                configMsg = chainSupport.getProcessor().processConfigUpdateMsg(envelope);
+            } catch (ConsenterException e) {
+                log.warn(String.format("[group: %s] Rejecting broadcast of config message from %s because of error: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
+                responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.BAD_REQUEST).setInfo(e.getMessage()).build());
+                return;
+            }
+            if (!chain.configure(configMsg.getConfig(), configMsg.getConfigSeq())) {
+                log.warn(String.format("[group: %s] Rejecting broadcast of config message from %s with SERVICE_UNAVAILABLE: rejected by Consenter", groupHeader.getGroupId(), remoteAddr));
+                responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SERVICE_UNAVAILABLE).build());
+                return;
             }
+            responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SUCCESS).build());
         }
     }
 }
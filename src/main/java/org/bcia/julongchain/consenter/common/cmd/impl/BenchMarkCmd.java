@@ -30,6 +30,7 @@ import org.bcia.julongchain.consenter.common.multigroup.Registrar;
 import org.bcia.julongchain.consenter.common.server.ConsenterServer;
 import org.bcia.julongchain.consenter.common.server.PreStart;
 import org.bcia.julongchain.consenter.util.ConsenterConstants;
+import org.bcia.julongchain.gossip.GossipService;
 
 import java.io.IOException;
 
@@ -61,6 +62,9 @@ public class BenchMarkCmd implements IConsenterCmd {
         BroadcastHandler broadCastHandle = new BroadcastHandler(registrar);
         consenterServer.bindBroadcastServer(broadCastHandle);
         consenterServer.bindDeverServer(deliverHandler);
+        if (registrar != null) {
+            consenterServer.bindGossipService(new GossipService(registrar.getLedgerFactory()));
+        }
     }
 
     @Override
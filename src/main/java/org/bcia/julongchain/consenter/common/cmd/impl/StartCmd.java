@@ -29,6 +29,7 @@ import org.bcia.julongchain.consenter.common.multigroup.Registrar;
 import org.bcia.julongchain.consenter.common.server.ConsenterServer;
 import org.bcia.julongchain.consenter.common.server.PreStart;
 import org.bcia.julongchain.consenter.util.ConsenterConstants;
+import org.bcia.julongchain.gossip.GossipService;
 
 import java.io.IOException;
 
@@ -61,6 +62,9 @@ public class StartCmd implements IConsenterCmd {
         consenterServer.bindBroadcastServer(broadCastHandle);
 
         consenterServer.bindDeverServer(deliverHandler);
+        if (registrar != null) {
+            consenterServer.bindGossipService(new GossipService(registrar.getLedgerFactory()));
+        }
 
     }
 
@@ -45,6 +45,7 @@ public class ConsenterConfig {
         private String  version;
         private Map<String,String> tls;
         private Map<String,Integer> keepAlive;
+        private Map<String,Integer> deliver;
         private String logLevel;
         private String logFormat;
         private String genesisMethod;
@@ -104,6 +105,14 @@ public class ConsenterConfig {
             this.keepAlive = keepAlive;
         }
 
+        public Map<String, Integer> getDeliver() {
+            return deliver;
+        }
+
+        public void setDeliver(Map<String, Integer> deliver) {
+            this.deliver = deliver;
+        }
+
         public String getLogLevel() {
             return logLevel;
         }
@@ -22,6 +22,8 @@ import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.exception.PolicyException;
 import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.groupconfig.IGroupConfigBundle;
+import org.bcia.julongchain.common.ledger.blockledger.ReadWriteBase;
+import org.bcia.julongchain.common.ledger.blockledger.Util;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.consenter.util.BlockHelper;
@@ -48,37 +50,57 @@ public class BlockWriter {
 
     private long lastConfigSeq;
 
-    private  Common.Block lastBlock;
+    private volatile Common.Block lastBlock;
+
+    /**
+     * 最近一次组装的区块头,区块可能尚未签名及写入账本
+     */
+    private Common.BlockHeader lastCreatedHeader;
+
+    /**
+     * 签名的锁,保护最新配置块编号;与写入账本的锁分开,使下一个区块的签名不必等待前一个区块落盘
+     */
+    private final Object signLock = new Object();
+
+    /**
+     * 写入账本的锁,与组装区块的锁分开,使下一个区块的组装不必等待前一个区块落盘
+     */
+    private final Object commitLock = new Object();
 
     public BlockWriter(ChainSupport support, Registrar registrar, Common.Block lastBlock) {
-        synchronized (BlockWriter.class) {
-            this.support = support;
-            this.registrar = registrar;
-            this.lastBlock = lastBlock;
-            this.lastConfigSeq = support.getSequence();
-        }
+        this.support = support;
+        this.registrar = registrar;
+        this.lastBlock = lastBlock;
+        this.lastCreatedHeader = lastBlock.getHeader();
+        this.lastConfigSeq = support.getSequence();
     }
 
-
+    /**
+     * 组装下一个区块,区块头依据最近一次组装的区块头生成
+     *
+     * @param messages
+     * @return
+     */
     public Common.Block createNextBlock(Common.Envelope[] messages) {
-        synchronized (BlockWriter.class) {
+        synchronized (this) {
 
-            byte[] previousBlockHash = BlockHelper.hash(lastBlock.getHeader().toByteArray());
+            byte[] previousBlockHash = BlockHelper.hash(lastCreatedHeader.toByteArray());
             Common.BlockData.Builder data = Common.BlockData.newBuilder();
 
             for (int i = 0; i < messages.length; i++) {
                 data.addData(ByteString.copyFrom(messages[i].toByteArray()));
             }
 
-            Common.Block block = BlockHelper.createBlock(lastBlock.getHeader().getNumber() + 1, previousBlockHash);
+            Common.Block block = BlockHelper.createBlock(lastCreatedHeader.getNumber() + 1, previousBlockHash);
             Common.BlockHeader.Builder header = Common.BlockHeader.newBuilder(block.getHeader())
                     .setDataHash(ByteString.copyFrom(BlockHelper.hash(data.build().toByteArray())));
 
 
             Common.Block.Builder updateBlockBuilder = Common.Block.newBuilder(block);
             updateBlockBuilder.setData(data).setHeader(header);
-            //   lastBlock=updateBlockBuilder.build();
-            return updateBlockBuilder.build();
+            Common.Block nextBlock = updateBlockBuilder.build();
+            lastCreatedHeader = nextBlock.getHeader();
+            return nextBlock;
         }
     }
 
@@ -118,36 +140,52 @@ public class BlockWriter {
     }
 
     public void writeBlock(Common.Block block, byte[] encodedMetadataValue) {
-        synchronized (BlockWriter.class) {
-
-            lastBlock = block;
-            commitBlock(encodedMetadataValue);
+        try {
+            appendBlock(signBlock(block, encodedMetadataValue));
+        } catch (LedgerException e) {
+            log.error(e.getMessage(), e);
         }
     }
 
-    private  void commitBlock(byte[] encodedMetadataValue) {
-        if (encodedMetadataValue != null) {
-            Common.Metadata metadata = null;
-            try {
-                metadata = Common.Metadata.parseFrom(encodedMetadataValue);
-            } catch (InvalidProtocolBufferException e) {
-                e.printStackTrace();
+    /**
+     * 为区块添加共识元数据、区块签名及最新配置块签名
+     *
+     * @param block
+     * @param encodedMetadataValue
+     * @return 签名后的区块
+     */
+    public Common.Block signBlock(Common.Block block, byte[] encodedMetadataValue) {
+        synchronized (signLock) {
+            if (encodedMetadataValue != null) {
+                Common.Metadata metadata = null;
+                try {
+                    metadata = Common.Metadata.parseFrom(encodedMetadataValue);
+                } catch (InvalidProtocolBufferException e) {
+                    e.printStackTrace();
+                }
+                Common.Block.Builder builder = Common.Block.newBuilder(block);
+                builder.getMetadataBuilder().setMetadata(Common.BlockMetadataIndex.CONSENTER_VALUE, ByteString.copyFrom(Utils.marshalOrPanic(metadata)));
+                block = builder.build();
             }
-            Common.Block.Builder block = Common.Block.newBuilder(lastBlock);
-            block.getMetadataBuilder().setMetadata(Common.BlockMetadataIndex.CONSENTER_VALUE, ByteString.copyFrom(Utils.marshalOrPanic(metadata)));
-            lastBlock = block.build();
+            return addLastConfigSignature(addBlockSignature(block));
         }
-        addBlockSignature(lastBlock);
-        addLastConfigSignature(lastBlock);
-        try {
-            support.getLedgerResources().getReadWriteBase().append(lastBlock);
-        } catch (LedgerException e) {
-            e.printStackTrace();
+    }
+
+    /**
+     * 将已签名的区块写入账本,区块须按组装顺序写入
+     *
+     * @param block
+     * @throws LedgerException
+     */
+    public void appendBlock(Common.Block block) throws LedgerException {
+        synchronized (commitLock) {
+            support.getLedgerResources().getReadWriteBase().append(block);
+            lastBlock = block;
         }
     }
 
 
-    public  void addBlockSignature(Common.Block block) {
+    public Common.Block addBlockSignature(Common.Block block) {
 
         try {
             Common.SignatureHeader signatureHeader = Common.SignatureHeader.parseFrom(Utils.marshalOrPanic(CommonUtils.newSignatureHeaderOrPanic(support.getLocalSigner())));
@@ -166,16 +204,16 @@ public class BlockWriter {
                     .setValue(ByteString.copyFrom(blockSignatureValue)).build();
             Common.Block.Builder updateBlockBuilder = Common.Block.newBuilder(block);
             updateBlockBuilder.getMetadataBuilder().setMetadata(Common.BlockMetadataIndex.SIGNATURES_VALUE, ByteString.copyFrom(metadata.toByteArray()));
-            Common.Block updateBlock = updateBlockBuilder.build();
             //ProtoUtils.printMessageJson(block1);
-            lastBlock = updateBlock;
+            return updateBlockBuilder.build();
         } catch (InvalidProtocolBufferException e) {
             e.printStackTrace();
+            return block;
         }
 
     }
 
-     private void addLastConfigSignature(Common.Block block) {
+    private Common.Block addLastConfigSignature(Common.Block block) {
         long configSeq = support.getSequence();
         if (configSeq > lastConfigSeq) {
             log.debug(String.format("[group: %s] Detected lastConfigSeq transitioning from %d to %d, setting lastConfigBlockNum from %d to %d",
@@ -194,9 +232,10 @@ public class BlockWriter {
                     .setValue(ByteString.copyFrom(lastConfigValue)).build();
             Common.Block.Builder updateblock = Common.Block.newBuilder(block);
             updateblock.getMetadataBuilder().setMetadata(Common.BlockMetadataIndex.LAST_CONFIG_VALUE, ByteString.copyFrom(metadata.toByteArray()));
-            lastBlock = updateblock.build();
+            return updateblock.build();
         } catch (InvalidProtocolBufferException e) {
             e.printStackTrace();
+            return block;
         }
     }
 
@@ -241,7 +280,29 @@ public class BlockWriter {
         return lastBlock;
     }
 
+    /**
+     * 以账本中的最后一个区块重置最近组装的区块头
+     * 区块签名或写入失败后调用,丢弃已组装但未写入账本的区块
+     *
+     * @throws LedgerException
+     */
+    public void resetFromLedger() throws LedgerException {
+        ReadWriteBase readWriteBase = support.getLedgerResources().getReadWriteBase();
+        Common.Block block = Util.getBlock(readWriteBase, readWriteBase.height() - 1);
+        if (block == null) {
+            throw new LedgerException("Can not get the last block from ledger of group " + support.getGroupId());
+        }
+        synchronized (this) {
+            log.warn(String.format("[group: %s] Reset the last created block header from %d to %d",
+                    support.getGroupId(), lastCreatedHeader.getNumber(), block.getHeader().getNumber()));
+            setLastBlock(block);
+        }
+    }
+
     public void setLastBlock(Common.Block lastBlock) {
-        this.lastBlock = lastBlock;
+        synchronized (this) {
+            this.lastBlock = lastBlock;
+            this.lastCreatedHeader = lastBlock.getHeader();
+        }
     }
 }
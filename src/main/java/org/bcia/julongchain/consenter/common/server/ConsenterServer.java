@@ -20,6 +20,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import io.grpc.*;
 import io.grpc.netty.NettyServerBuilder;
 import io.grpc.stub.StreamObserver;
+import org.bcia.julongchain.common.deliver.DeliverHandlerSupport;
 import org.bcia.julongchain.common.deliver.DeliverServer;
 import org.bcia.julongchain.common.deliver.IDeliverHandler;
 import org.bcia.julongchain.common.exception.ConsenterException;
@@ -28,6 +29,8 @@ import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.consenter.Consenter;
+import org.bcia.julongchain.consenter.common.localconfig.ConsenterConfig;
+import org.bcia.julongchain.consenter.common.localconfig.ConsenterConfigFactory;
 import org.bcia.julongchain.consenter.common.multigroup.Registrar;
 import org.bcia.julongchain.consenter.util.RequestHeadersInterceptor;
 import org.bcia.julongchain.gossip.GossipService;
@@ -38,6 +41,11 @@ import org.bcia.julongchain.protos.consenter.AtomicBroadcastGrpc;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 
@@ -55,6 +63,14 @@ public class ConsenterServer {
     private static JulongChainLog log = JulongChainLogFactory.getLog(ConsenterServer.class);
     private static IBroadcastHandler broadcastHandler;
     private static IDeliverHandler deliverHandler;
+    private GossipService gossipService;
+    private static final AtomicInteger DELIVER_THREAD_INDEX = new AtomicInteger();
+    private static final int DEFAULT_DELIVER_MAX_THREADS = 64;
+    private static final int DEFAULT_DELIVER_QUEUE_SIZE = 256;
+    /**
+     * 所有Deliver流共用的有界线程池
+     */
+    private static ExecutorService deliverExecutor;
 
     public ConsenterServer(int port) {
         this.port = port;
@@ -71,13 +87,22 @@ public class ConsenterServer {
     }
 
 
+    public void bindGossipService(GossipService gossipService) {
+        this.gossipService = gossipService;
+    }
+
+
     public void start() throws IOException {
+        if (gossipService == null) {
+            gossipService = new GossipService();
+        }
+        deliverExecutor = newDeliverExecutor();
         List<ServerInterceptor> allInterceptors = ImmutableList.<ServerInterceptor>builder()
                 .add(RequestHeadersInterceptor.recordServerCallInterceptor(serverCallCapture)).build();
         //server = ServerBuilder.forPort(port)
         server = NettyServerBuilder.forPort(port)
                 .addService(ServerInterceptors.intercept(new ConsenterServerImpl(), allInterceptors))
-                .addService(new GossipService())
+                .addService(gossipService)
                 .build()
                 .start();
         log.info("consenter service start, port:" + port);
@@ -98,6 +123,43 @@ public class ConsenterServer {
         if (server != null) {
             server.shutdown();
         }
+        if (deliverExecutor != null) {
+            deliverExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 创建Deliver线程池, 线程数和等待队列长度由consenter.yaml的general.deliver配置
+     *
+     * @return
+     */
+    private static ExecutorService newDeliverExecutor() {
+        int maxThreads = DEFAULT_DELIVER_MAX_THREADS;
+        int queueSize = DEFAULT_DELIVER_QUEUE_SIZE;
+        ConsenterConfig consenterConfig = ConsenterConfigFactory.getConsenterConfig();
+        Map<String, Integer> deliverConfig = consenterConfig == null || consenterConfig.getGeneral() == null ? null
+                : consenterConfig.getGeneral().getDeliver();
+        if (deliverConfig != null) {
+            if (deliverConfig.get("maxThreads") != null && deliverConfig.get("maxThreads") > 0) {
+                maxThreads = deliverConfig.get("maxThreads");
+            }
+            if (deliverConfig.get("queueSize") != null && deliverConfig.get("queueSize") > 0) {
+                queueSize = deliverConfig.get("queueSize");
+            }
+        }
+        log.info("Create deliver pool, maxThreads: " + maxThreads + ", queueSize: " + queueSize);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "deliver-" + DELIVER_THREAD_INDEX.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     // block 一直到退出程序
@@ -136,26 +198,85 @@ public class ConsenterServer {
 
         @Override
         public StreamObserver<Common.Envelope> deliver(StreamObserver<Ab.DeliverResponse> responseObserver) {
-            return new StreamObserver<Common.Envelope>() {
-                @Override
-                public void onNext(Common.Envelope envelope) {
-                    DeliverServer deliverServer = new DeliverServer(responseObserver, envelope);
-                    try {
-                        deliverHandler.handle(deliverServer);
-                    } catch (ConsenterException e) {
+            //每条流一个DeliverServer, 需在返回前创建以注册流控和取消回调
+            return new DeliverRequestObserver(new DeliverServer(responseObserver), deliverExecutor);
+        }
+    }
+
+    /**
+     * 一条Deliver流的请求处理
+     * 区块发送可能长时间阻塞(等待新区块或接收方), 不能占用gRPC回调线程, 因此交给共用的有界线程池处理;
+     * 同一条流内的请求按顺序处理, 任一时刻最多占用一个线程. 流被取消时DeliverServer关闭游标, 释放线程
+     */
+    private static class DeliverRequestObserver implements StreamObserver<Common.Envelope> {
+        private final DeliverServer deliverServer;
+        private final ExecutorService executor;
+        private final Queue<Common.Envelope> requests = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final Runnable drainTask = new Runnable() {
+            @Override
+            public void run() {
+                do {
+                    Common.Envelope envelope;
+                    while ((envelope = requests.poll()) != null) {
+                        if (deliverServer.isCancelled()) {
+                            requests.clear();
+                            break;
+                        }
+                        handle(envelope);
                     }
-                }
+                    scheduled.set(false);
+                } while (!requests.isEmpty() && scheduled.compareAndSet(false, true));
+            }
+        };
 
-                @Override
-                public void onError(Throwable throwable) {
-                    log.error(throwable.getMessage());
+        DeliverRequestObserver(DeliverServer deliverServer, ExecutorService executor) {
+            this.deliverServer = deliverServer;
+            this.executor = executor;
+        }
+
+        @Override
+        public void onNext(Common.Envelope envelope) {
+            requests.add(envelope);
+            if (!scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                executor.execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                requests.clear();
+                log.warn("Deliver pool is busy, reject deliver request");
+                try {
+                    deliverServer.send(new DeliverHandlerSupport().createStatusReply(Common.Status
+                            .SERVICE_UNAVAILABLE));
+                } catch (ConsenterException | RuntimeException ex) {
+                    log.error(ex.getMessage(), ex);
                 }
+            }
+        }
 
-                @Override
-                public void onCompleted() {
+        private void handle(Common.Envelope envelope) {
+            deliverServer.setEnvelope(envelope);
+            try {
+                deliverHandler.handle(deliverServer);
+            } catch (ConsenterException e) {
+                log.error(e.getMessage(), e);
+            } catch (RuntimeException e) {
+                //流已被取消时发送会抛出运行时异常
+                log.error(e.getMessage(), e);
+            }
+        }
 
-                }
-            };
+        @Override
+        public void onError(Throwable throwable) {
+            log.error(throwable.getMessage());
+            deliverServer.cancel();
+        }
+
+        @Override
+        public void onCompleted() {
+            //客户端不再发送请求, 已收到的请求处理完后线程自然释放
         }
     }
 
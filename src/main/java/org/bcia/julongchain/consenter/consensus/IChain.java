@@ -30,15 +30,17 @@ public interface IChain {
      * 普通消息排序
      * @param env
      * @param configSeq
+     * @return 消息是否已被接受, 返回false时应答SERVICE_UNAVAILABLE
      */
-    void order(Common.Envelope env, long configSeq);
+    boolean order(Common.Envelope env, long configSeq);
 
     /**
      * 配置消息排序
      * @param config
      * @param configSeq
+     * @return 消息是否已被接受, 返回false时应答SERVICE_UNAVAILABLE
      */
-    void configure(Common.Envelope config, long configSeq);
+    boolean configure(Common.Envelope config, long configSeq);
 
     /**
      * 排序前准备
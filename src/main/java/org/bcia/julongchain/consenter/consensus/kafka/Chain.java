@@ -15,7 +15,7 @@
  */
 package org.bcia.julongchain.consenter.consensus.kafka;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.errors.WakeupException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.consenter.common.blockcutter.BlockCutter;
@@ -30,10 +30,9 @@ import org.bcia.julongchain.protos.consenter.Kafka;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 /**
  * @author yangdong
@@ -45,10 +44,10 @@ public class Chain implements IChain {
     private static JulongChainLog log = JulongChainLogFactory.getLog(Node1.class);
     //TODO 使用自动注入报错，暂时new方式
     private DataMessageHandle dataMessageHandle=new DataMessageHandle();
-    @Autowired
-    private KafkaProduce kafkaProduce;
     //TODO 使用自动注入报错，暂时new方式
-    private KafkaSimpleConsumer kafkaSimpleConsumer=new KafkaSimpleConsumer();
+    private KafkaProduce kafkaProduce=new KafkaProduce();
+    private volatile KafkaMessageConsumer kafkaMessageConsumer;
+    private volatile boolean halted;
     @Autowired
     private YamlLoader yamlLoader =new YamlLoader();
     //TODO 不知如何获取
@@ -57,13 +56,13 @@ public class Chain implements IChain {
     BlockCutter blockCutter=new BlockCutter();
 
     @Override
-    public void order(Common.Envelope env, long configSeq) {
-        this.orderHandle(env,configSeq,(long)0);
+    public boolean order(Common.Envelope env, long configSeq) {
+        return this.orderHandle(env,configSeq,(long)0);
     }
 
     @Override
-    public void configure(Common.Envelope config, long configSeq) {
-       this.configureHandle(config,configSeq,(long)0);
+    public boolean configure(Common.Envelope config, long configSeq) {
+       return this.configureHandle(config,configSeq,(long)0);
     }
 
     @Override
@@ -84,12 +83,18 @@ public class Chain implements IChain {
     //Halt释放被分配给这个Chain的资源
     @Override
     public void halt() {
-
+        halted=true;
+        KafkaMessageConsumer consumer=kafkaMessageConsumer;
+        if(consumer!=null){
+            //中断消费线程中的poll, 消费者由消费线程关闭
+            consumer.wakeup();
+        }
+        closeKafkaObjects();
     }
 
     //调用kafka的客户端，实现kafka生产者
     //enqueue接受信息并返回真或假otheriwse验收
-    public void enqueue(Kafka.KafkaMessage kafkaMessage){
+    public boolean enqueue(Kafka.KafkaMessage kafkaMessage){
         log.debug("[channel: %s] Enqueueing envelope...", chain.getChainID());
         String topic = (String)((HashMap)map.get(ConsenterConstants.COMSUMER)).get(ConsenterConstants.TOPIC);
         int partitionID = (int)((HashMap)map.get(ConsenterConstants.COMSUMER)).get(ConsenterConstants.PARTITION_ID);
@@ -97,32 +102,41 @@ public class Chain implements IChain {
         KafkaTopicPartitionInfo kafkaInfo=new KafkaTopicPartitionInfo(topic,partitionID);
         //创建生产者消息
         ProducerMessage message=dataMessageHandle.newProducerMessage(kafkaInfo,kafkaMessage.toByteArray());
-        //调用生产者发送消息
-        kafkaProduce.send(message);
-
-
+        //调用生产者异步发送消息, 由生产者按linger.ms/batch.size组成批次;
+        //等待服务端确认, 不同broadcast流的消息仍在生产者中组成同一批次
+        try {
+            kafkaProduce.send(message).get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn(String.format("[channel: %s] Interrupted while enqueueing envelope", chain.getChainID()));
+            return false;
+        } catch (ExecutionException e) {
+            log.error(String.format("[channel: %s] Cannot enqueue envelope: %s", chain.getChainID(),
+                    e.getCause().getMessage()), e.getCause());
+            return false;
+        }
     }
    //实现kafka消费者，start调用该方法
     public void processMessagesToBlocks(byte[] message,Long offset) throws IOException {
 
-        //解析数据，分类处理
-        String json=new String(message);
-        ObjectMapper mapper = new ObjectMapper();
-        //1.转换ProducerMessage
-        ProducerMessage producerMessage = mapper.readValue(json, ProducerMessage.class);
-        //2.转换kafkaMessageByte字节数组
-        byte[] kafkaMessageByte=producerMessage.getValue();
-        //3.转换Kafka.KafkaMessage
-        Kafka.KafkaMessage kafkaMessage=Kafka.KafkaMessage.parseFrom(kafkaMessageByte);
-
-        //解压消费消息所携带的数据的类型，进入不同分支，处理消息
+        //消息体即Kafka.KafkaMessage的字节数组
+        processMessage(Kafka.KafkaMessage.parseFrom(message),offset);
+    }
+
+    //解压消费消息所携带的数据的类型，进入不同分支，处理消息
+    public void processMessage(Kafka.KafkaMessage kafkaMessage,long offset){
         switch(kafkaMessage.getTypeCase()){
             case REGULAR:        //orderer的正常消息
                 processRegular(kafkaMessage.getRegular(),offset);
+                break;
             case CONNECT:        //KAFKA与Orderer的连接消息
                 processConnect(chain.getChainID());
+                break;
             case TIME_TO_CUT:   //orderer的生产块事件消息
                 processTimeToCut(kafkaMessage.getTimeToCut(),offset);
+                break;
+            default:
                 log.debug("[channel: %s] Consenter for channel exiting", chain.getChainID());
         }
     }
@@ -224,6 +238,7 @@ public class Chain implements IChain {
 
             //TODO orderer提供方法(WriteBlock写块)
             //chain.WriteBlock(block, metadata)
+            offsetPersisted(offset);
             int lastCutBlockNumber= chain.getLastCutBlockNumber();
             lastCutBlockNumber++;
             log.debug("[channel: %s] Batch filled, just cut block %d - last persisted offset is now %d", chain.getChainID(), chain.getLastCutBlockNumber(), offset);
@@ -240,6 +255,7 @@ public class Chain implements IChain {
 
                 //TODO orderer提供方法(WriteBlock写块)
                 //chain.WriteBlock(block, metadata)
+                offsetPersisted(offset);
                  lastCutBlockNumber= chain.getLastCutBlockNumber();
                 lastCutBlockNumber++;
                 log.debug("[channel: %s] Batch filled, just cut block %d - last persisted offset is now %d", chain.getChainID(), chain.getLastCutBlockNumber(), offset);
@@ -266,6 +282,7 @@ public class Chain implements IChain {
 
             //TODO orderer提供方法(WriteBlock写块)
             //chain.WriteBlock(block, metadata)
+            offsetPersisted(newOffset);
             int lastCutBlockNumber= chain.getLastCutBlockNumber();
             lastCutBlockNumber++;
         }
@@ -281,6 +298,7 @@ public class Chain implements IChain {
 
         //TODO orderer提供方法(WriteBlock写块)
         //chain.WriteBlock(block, metadata)
+        offsetPersisted(newOffset);
         int lastCutBlockNumber= chain.getLastCutBlockNumber();
         lastCutBlockNumber++;
         chain.setTimer(null);
@@ -324,6 +342,7 @@ public class Chain implements IChain {
 
            //TODO orderer提供方法(WriteBlock写块)
            //chain.WriteBlock(block, metadata)
+           offsetPersisted(receivedOffset);
            int lastCutBlockNumber= chain.getLastCutBlockNumber();
            lastCutBlockNumber++;
             log.debug("[channel: %s] Proper time-to-cut received, just cut block %d", chain.getChainID(), chain.getLastCutBlockNumber());
@@ -336,48 +355,56 @@ public class Chain implements IChain {
     //1.创建生产者，消费者，分区消费者，父类消费者，2.调用消费者方法，调用方法
     //start方法调用该方法
     public void startThread(){
-        int maxReads =(int) ((HashMap)map.get(ConsenterConstants.COMSUMER)).get(ConsenterConstants.MAX_READS);
         String topic = (String)((HashMap)map.get(ConsenterConstants.COMSUMER)).get(ConsenterConstants.TOPIC);
         int partitionID = (int)((HashMap)map.get(ConsenterConstants.COMSUMER)).get(ConsenterConstants.PARTITION_ID);
 
         KafkaTopicPartitionInfo topicPartitionInfo = new KafkaTopicPartitionInfo(topic, partitionID);
-        List<KafkaBrokerInfo> seeds = new ArrayList<KafkaBrokerInfo>();
-        Map serversMap= (HashMap)map.get(ConsenterConstants.SERVER);
-        for(int i=1;i<=serversMap.size();i++){
-            String index="brokerHost"+i;
-            String host=(String)serversMap.get(index);
-            String[] hostArray=host.split(":");
-            KafkaBrokerInfo kafkaInfo=new KafkaBrokerInfo(hostArray[0],Integer.parseInt(hostArray[1]));
-            seeds.add(kafkaInfo);
-        }
+        KafkaMessageConsumer consumer=new KafkaMessageConsumer(topicPartitionInfo);
+        kafkaMessageConsumer=consumer;
+        KafkaMessageConsumer.IMessageHandler handler=new KafkaMessageConsumer.IMessageHandler() {
+            @Override
+            public void handle(Kafka.KafkaMessage message, long offset) {
+                processMessage(message,offset);
+            }
+        };
         try {
-            kafkaSimpleConsumer.run((long)maxReads, topicPartitionInfo, seeds);
-        } catch (Exception e) {
-            e.printStackTrace();
+            while (!halted){
+                consumer.poll(1000,handler);
+            }
+        } catch (WakeupException e) {
+            log.debug("[channel: %s] Consumer woken up by halt", chain.getChainID());
+        } finally {
+            consumer.close();
         }
+    }
 
+    //区块写入后向kafka提交已持久化的偏移量, 重启后从下一条消息继续读取
+    private void offsetPersisted(long offset){
+        KafkaMessageConsumer consumer=kafkaMessageConsumer;
+        if(consumer!=null){
+            consumer.commit(offset);
+        }
     }
 
    //关掉生产者，消费者
     //halt方法调用该方法
     public void closeKafkaObjects(){
-
+        kafkaProduce.close();
     }
 
     //order具体操作
-    public void orderHandle(Common.Envelope env, Long configSeq,Long originalOffset) {
+    public boolean orderHandle(Common.Envelope env, Long configSeq,Long originalOffset) {
         //转换Kafka数据类型
         Kafka.KafkaMessage kafkaMessage=dataMessageHandle.newNormalMessage(env.toByteArray(),configSeq,originalOffset);
         //调用enqueue()方法
-        enqueue(kafkaMessage);
-
+        return enqueue(kafkaMessage);
     }
     //configure具体操作
-    public void configureHandle(Common.Envelope config, long configSeq,Long originalOffset) {
+    public boolean configureHandle(Common.Envelope config, long configSeq,Long originalOffset) {
         //转换Kafka数据类型
         Kafka.KafkaMessage kafkaMessage=dataMessageHandle.newConfigMessage(config.toByteArray(),configSeq,originalOffset);
         //调用enqueue()方法
-        enqueue(kafkaMessage);
+        return enqueue(kafkaMessage);
     }
 
     public static void main(String[] args) {
@@ -17,7 +17,6 @@ package org.bcia.julongchain.consenter.consensus.kafka;
 
 import com.google.protobuf.ByteString;
 import org.bcia.julongchain.protos.consenter.Kafka;
-import org.springframework.beans.factory.annotation.Autowired;
 
 /**
  * 类描述
@@ -29,9 +28,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 public class DataMessageHandle {
 
-    @Autowired
-    private ProducerMessage producerMessage;
-
     //转换kafka连接消息
     public Kafka.KafkaMessage newConnectMessage(){
         Kafka.KafkaMessageConnect.Builder kafkaConectMessage= Kafka.KafkaMessageConnect.newBuilder();
@@ -84,6 +80,7 @@ public class DataMessageHandle {
 
     //生产者消息转换
     public ProducerMessage newProducerMessage(KafkaTopicPartitionInfo kafkaInfo,byte [] pld){
+        ProducerMessage producerMessage=new ProducerMessage();
         producerMessage.setTopic(kafkaInfo.topic);
         producerMessage.setKey(kafkaInfo.partitionID);
         producerMessage.setValue(pld);
@@ -0,0 +1,155 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.consensus.kafka;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.consenter.util.ConsenterConstants;
+import org.bcia.julongchain.consenter.util.YamlLoader;
+import org.bcia.julongchain.protos.consenter.Kafka;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Kafka消费者
+ * 读取一个分区中的字节数组消息, 直接解析为Kafka.KafkaMessage后交给处理者
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class KafkaMessageConsumer {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(KafkaMessageConsumer.class);
+
+    /**
+     * 消息处理者
+     */
+    public interface IMessageHandler {
+        /**
+         * 处理一条消息
+         *
+         * @param message 解析后的消息
+         * @param offset  消息在分区中的偏移量
+         */
+        void handle(Kafka.KafkaMessage message, long offset);
+    }
+
+    private final KafkaConsumer<byte[], byte[]> consumer;
+    private final TopicPartition topicPartition;
+
+    public KafkaMessageConsumer(KafkaTopicPartitionInfo topicPartitionInfo) {
+        this(consumerProperties((Map<?, ?>) YamlLoader.readYamlFile(ConsenterConstants.ORDERER_CONFIG)
+                .get(ConsenterConstants.KAFKA)), topicPartitionInfo);
+    }
+
+    public KafkaMessageConsumer(Properties props, KafkaTopicPartitionInfo topicPartitionInfo) {
+        Properties consumerProps = new Properties();
+        consumerProps.putAll(props);
+        if (consumerProps.get(ConsumerConfig.GROUP_ID_CONFIG) == null) {
+            //每个分区使用独立的消费组记录已提交的偏移量
+            consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG,
+                    "client_" + topicPartitionInfo.topic + "_" + topicPartitionInfo.partitionID);
+        }
+        topicPartition = new TopicPartition(topicPartitionInfo.topic, topicPartitionInfo.partitionID);
+        consumer = new KafkaConsumer<byte[], byte[]>(consumerProps, new ByteArrayDeserializer(),
+                new ByteArrayDeserializer());
+        //分配分区后从消费组已提交的偏移量开始读取
+        consumer.assign(Collections.singletonList(topicPartition));
+    }
+
+    /**
+     * 根据配置文件的kafka部分生成消费者配置
+     *
+     * @param kafkaConfig
+     * @return
+     */
+    public static Properties consumerProperties(Map<?, ?> kafkaConfig) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG,
+                KafkaProduce.producerProperties(kafkaConfig).get(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG));
+        //偏移量在区块写入后由commit提交, 不自动提交; 没有已提交的偏移量时从分区最早的消息开始读取
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        Map<?, ?> consumerMap = (Map<?, ?>) kafkaConfig.get(ConsenterConstants.COMSUMER);
+        if (consumerMap != null && consumerMap.get(ConsenterConstants.MAX_POLL_RECORDS) != null) {
+            props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG,
+                    String.valueOf(consumerMap.get(ConsenterConstants.MAX_POLL_RECORDS)));
+        }
+        return props;
+    }
+
+    /**
+     * 从指定偏移量开始读取
+     *
+     * @param topicPartitionInfo
+     * @param offset
+     */
+    public void seek(KafkaTopicPartitionInfo topicPartitionInfo, long offset) {
+        consumer.seek(new TopicPartition(topicPartitionInfo.topic, topicPartitionInfo.partitionID), offset);
+    }
+
+    /**
+     * 同步提交已持久化到区块的偏移量, 重启后从下一条消息开始读取
+     *
+     * @param lastOffsetPersisted 最后一条已写入区块的消息偏移量
+     */
+    public void commit(long lastOffsetPersisted) {
+        consumer.commitSync(Collections.singletonMap(topicPartition, new OffsetAndMetadata(lastOffsetPersisted + 1)));
+    }
+
+    /**
+     * 读取一批消息并逐条处理, 无法解析的消息记录日志后跳过
+     *
+     * @param timeoutMillis 没有消息时的最长等待时间
+     * @param handler
+     * @return 读取的消息数
+     */
+    public int poll(long timeoutMillis, IMessageHandler handler) {
+        ConsumerRecords<byte[], byte[]> records = consumer.poll(timeoutMillis);
+        for (ConsumerRecord<byte[], byte[]> record : records) {
+            Kafka.KafkaMessage message;
+            try {
+                message = Kafka.KafkaMessage.parseFrom(record.value());
+            } catch (InvalidProtocolBufferException e) {
+                log.error("Unable to unmarshal message at offset " + record.offset() + ": " + e.getMessage());
+                continue;
+            }
+            handler.handle(message, record.offset());
+        }
+        return records.count();
+    }
+
+    /**
+     * 中断其他线程中正在等待的poll
+     */
+    public void wakeup() {
+        consumer.wakeup();
+    }
+
+    public void close() {
+        consumer.close();
+    }
+}
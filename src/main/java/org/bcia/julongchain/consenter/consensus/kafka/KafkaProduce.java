@@ -15,19 +15,26 @@
  */
 package org.bcia.julongchain.consenter.consensus.kafka;
 
-import kafka.javaapi.producer.Producer;
-import kafka.producer.KeyedMessage;
-import kafka.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.consenter.util.ConsenterConstants;
 import org.bcia.julongchain.consenter.util.YamlLoader;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Future;
 
 
 /**
- * 类描述
+ * Kafka生产者
+ * 消息以字节数组发送, 由KafkaProducer异步发送并按分区组成批次(linger.ms/batch.size).
+ * 发送结果通过返回的Future获取; 开启重试时每个连接只允许一个在途请求, 保证重试不打乱消息顺序
  *
  * @author yangdong
  * @date 2018/3/19
@@ -35,87 +42,104 @@ import java.util.Properties;
  */
 
 public class KafkaProduce {
-    private final Producer<String, String> producer;
-   // public final static String TOPIC = "test2";
-
-
-
-    Map map=(HashMap) YamlLoader.readYamlFile(ConsenterConstants.ORDERER_CONFIG).get(ConsenterConstants.KAFKA);
-
-
+    private static JulongChainLog log = JulongChainLogFactory.getLog(KafkaProduce.class);
+
+    private final KafkaProducer<byte[], byte[]> producer;
+
+    /**
+     * 发送失败时记录日志, 未指定回调的消息使用
+     */
+    private static final Callback LOG_FAILURE = new Callback() {
+        @Override
+        public void onCompletion(RecordMetadata metadata, Exception exception) {
+            if (exception != null) {
+                log.error("Send message to kafka failed: " + exception.getMessage(), exception);
+            }
+        }
+    };
 
-    private KafkaProduce(){
-        StringBuffer sbBrokerHost=new StringBuffer();
-        StringBuffer sbZookeeperHost=new StringBuffer();
+    public KafkaProduce() {
+        this(producerProperties((Map<?, ?>) YamlLoader.readYamlFile(ConsenterConstants.ORDERER_CONFIG)
+                .get(ConsenterConstants.KAFKA)));
+    }
 
-        Map serversMap= (HashMap)map.get(ConsenterConstants.SERVER);
-        for(int i=1;i<=serversMap.size();i++){
-            String index="brokerHost"+i;
-            StringBuffer host=new StringBuffer((String)serversMap.get(index));
-            sbBrokerHost=sbBrokerHost.append(host);
-        }
+    public KafkaProduce(Properties props) {
+        producer = new KafkaProducer<byte[], byte[]>(props, new ByteArraySerializer(), new ByteArraySerializer());
+    }
 
-        Map zookeeperMap= (HashMap)map.get(ConsenterConstants.ZOOKEEPER);
-        for(int i=1;i<=zookeeperMap.size();i++){
-            String index="ZKHost"+i;
-            StringBuffer host=new StringBuffer((String)zookeeperMap.get(index));
-            sbZookeeperHost=sbZookeeperHost.append(host);
+    /**
+     * 根据配置文件的kafka部分生成生产者配置
+     *
+     * @param kafkaConfig
+     * @return
+     */
+    public static Properties producerProperties(Map<?, ?> kafkaConfig) {
+        StringBuilder brokers = new StringBuilder();
+        Map<?, ?> serversMap = (Map<?, ?>) kafkaConfig.get(ConsenterConstants.SERVER);
+        for (int i = 1; i <= serversMap.size(); i++) {
+            if (brokers.length() > 0) {
+                brokers.append(",");
+            }
+            brokers.append((String) serversMap.get("brokerHost" + i));
         }
 
         Properties props = new Properties();
-
-        // 此处配置的是kafka的broker地址:端口列表
-        // props.put("metadata.broker.list", "192.168.128.129:9092");
-        props.put("zookeeper.connect", sbZookeeperHost.toString());//声明zk
-        props.put("metadata.broker.list",sbBrokerHost.toString());// 声明kafka broker
-        //配置value的序列化类
-        props.put("serializer.class", "kafka.serializer.StringEncoder");
-        //配置key的序列化类
-        props.put("key.serializer.class", "kafka.serializer.StringEncoder");
-
-        //request.required.acks
-        //0, which means that the producer never waits for an acknowledgement from the broker (the same behavior as 0.7). This option provides the lowest latency but the weakest durability guarantees (some data will be lost when a server fails).
-        //1, which means that the producer gets an acknowledgement after the leader replica has received the data. This option provides better durability as the client waits until the server acknowledges the request as successful (only messages that were written to the now-dead leader but not yet replicated will be lost).
-        //-1, which means that the producer gets an acknowledgement after all in-sync replicas have received the data. This option provides the best durability, we guarantee that no messages will be lost as long as at least one in sync replica remains.
-        props.put("request.required.acks","-1");
-
-        producer = new Producer<String, String>(new ProducerConfig(props));
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers.toString());
+        //all: 所有同步副本收到后才确认, 与原request.required.acks=-1相同
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        Map<?, ?> producerMap = (Map<?, ?>) kafkaConfig.get(ConsenterConstants.PRODUCER);
+        if (producerMap != null) {
+            putIfPresent(props, ProducerConfig.ACKS_CONFIG, producerMap.get(ConsenterConstants.ACKS));
+            putIfPresent(props, ProducerConfig.LINGER_MS_CONFIG, producerMap.get(ConsenterConstants.LINGER_MS));
+            putIfPresent(props, ProducerConfig.BATCH_SIZE_CONFIG, producerMap.get(ConsenterConstants.BATCH_SIZE));
+            putIfPresent(props, ProducerConfig.COMPRESSION_TYPE_CONFIG,
+                    producerMap.get(ConsenterConstants.COMPRESSION_TYPE));
+            putIfPresent(props, ProducerConfig.RETRIES_CONFIG, producerMap.get(ConsenterConstants.RETRIES));
+        }
+        //重试时多个在途请求可能乱序写入分区
+        Object retries = props.get(ProducerConfig.RETRIES_CONFIG);
+        if (retries != null && Integer.parseInt((String) retries) > 0) {
+            props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, "1");
+        }
+        return props;
     }
 
-
-    //发送消息到kafka服务端
-    public void send(ProducerMessage message){
-        String key = String.valueOf(message.getKey());
-        String dataStr=new String(message.getValue());
-        producer.send(new KeyedMessage<String, String>(message.getTopic(),key ,dataStr));
+    private static void putIfPresent(Properties props, String key, Object value) {
+        if (value != null) {
+            props.put(key, String.valueOf(value));
+        }
     }
 
+    /**
+     * 异步发送消息到kafka服务端, 发送失败时记录日志
+     *
+     * @param message
+     * @return 服务端确认时完成, 发送失败时get()抛出ExecutionException
+     */
+    public Future<RecordMetadata> send(ProducerMessage message) {
+        return send(message, LOG_FAILURE);
+    }
 
+    /**
+     * 异步发送消息到kafka服务端
+     *
+     * @param message  消息, key为分区号
+     * @param callback 服务端确认或发送失败时回调
+     * @return 服务端确认时完成, 发送失败时get()抛出ExecutionException
+     */
+    public Future<RecordMetadata> send(ProducerMessage message, Callback callback) {
+        return producer.send(new ProducerRecord<byte[], byte[]>(message.getTopic(), message.getKey(), null,
+                message.getValue()), callback);
+    }
 
+    /**
+     * 立即发送所有未发送的批次, 并等待发送完成
+     */
+    public void flush() {
+        producer.flush();
+    }
 
-    /*public void produce() {
-        int messageNo = 1;
-        final int COUNT = 101;
-
-        int messageCount = 0;
-        while (messageNo < COUNT) {
-            String key = String.valueOf(messageNo);
-            String data = "Hello kafka message luis :" + key;
-            producer.send(new KeyedMessage<String, String>(TOPIC, key ,data));
-
-            System.out.println(data);
-            messageNo ++;
-            messageCount++;
-        }
-
-        System.out.println("Producer端一共产生了" + messageCount + "条消息！");
-    }*/
-
-  /*  public static void main( String[] args )
-    {
-        new KafkaProduce().produce();
-    }*/
-  public static void main(String[] args) {
-      KafkaProduce kk=new KafkaProduce();
-  }
+    public void close() {
+        producer.close();
+    }
 }
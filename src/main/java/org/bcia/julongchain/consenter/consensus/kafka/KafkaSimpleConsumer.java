@@ -166,7 +166,6 @@ public class KafkaSimpleConsumer {
 
                     byte[] bytes = new byte[payload.limit()];
                     payload.get(bytes);
-                    System.out.println("value:"+currentOffset + ": " + new String(bytes, "UTF-8"));
                     //传给业务处理
                     chain.processMessagesToBlocks(bytes,currentOffset);
                     numRead++;
@@ -0,0 +1,265 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.consensus.singleton;
+
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
+import org.bcia.julongchain.protos.common.Common;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 区块流水线
+ * 排序线程切出的批次依次经过组装、签名、写入账本三个阶段,每个阶段一个线程,阶段之间以有界队列相连,
+ * 队列满时上游阶段阻塞。各阶段均为单线程,区块按切出的顺序写入账本.
+ * 某个区块组装、签名或写入失败后,丢弃其后已组装的区块(它们链接在失败的区块之上),
+ * 待这些区块全部丢弃后以账本中的最后一个区块重置区块头,再继续组装后续批次
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class BlockPipeline {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(BlockPipeline.class);
+
+    /**
+     * 默认每个阶段队列的容量
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 16;
+
+    private final ChainSupport support;
+    private final BlockingQueue<Common.Envelope[]> batchQueue;
+    private final BlockingQueue<Common.Block> assembledQueue;
+    private final BlockingQueue<Common.Block> signedQueue;
+    private final Stage<Common.Envelope[], Common.Block> assembleStage;
+    private final Stage<Common.Block, Common.Block> signStage;
+    private final Stage<Common.Block, Void> appendStage;
+
+    /**
+     * 已提交及已处理完成(写入账本、失败或被丢弃)的批次数,以及是否有区块处理失败,由monitor保护
+     */
+    private final Object monitor = new Object();
+    private long submitted;
+    private long finished;
+    private boolean failed;
+
+    /**
+     * 组装阶段已取出的批次数,仅在组装线程中访问
+     */
+    private long assembled;
+
+    public BlockPipeline(ChainSupport support) {
+        this(support, DEFAULT_QUEUE_SIZE);
+    }
+
+    public BlockPipeline(ChainSupport support, int queueSize) {
+        this.support = support;
+        this.batchQueue = new ArrayBlockingQueue<>(queueSize);
+        this.assembledQueue = new ArrayBlockingQueue<>(queueSize);
+        this.signedQueue = new ArrayBlockingQueue<>(queueSize);
+
+        String groupId = support.getGroupId();
+        this.assembleStage = new Stage<Common.Envelope[], Common.Block>("block-assemble-" + groupId, batchQueue,
+                assembledQueue) {
+            @Override
+            boolean prepare() throws InterruptedException {
+                return recover(++assembled);
+            }
+
+            @Override
+            Common.Block process(Common.Envelope[] batch) throws Exception {
+                return BlockPipeline.this.support.createNextBlock(batch);
+            }
+        };
+        this.signStage = new Stage<Common.Block, Common.Block>("block-sign-" + groupId, assembledQueue, signedQueue) {
+            @Override
+            Common.Block process(Common.Block block) throws Exception {
+                return BlockPipeline.this.support.getBlockWriter().signBlock(block, null);
+            }
+        };
+        this.appendStage = new Stage<Common.Block, Void>("block-append-" + groupId, signedQueue, null) {
+            @Override
+            Void process(Common.Block block) throws Exception {
+                BlockPipeline.this.support.getBlockWriter().appendBlock(block);
+                log.info(String.format("[group: %s] Write the Block %d finished", BlockPipeline.this.support.getGroupId(),
+                        block.getHeader().getNumber()));
+                return null;
+            }
+        };
+    }
+
+    public void start() {
+        assembleStage.start();
+        signStage.start();
+        appendStage.start();
+    }
+
+    /**
+     * 提交一个批次,第一阶段队列满时阻塞
+     *
+     * @param batch
+     * @throws InterruptedException
+     */
+    public void submit(Common.Envelope[] batch) throws InterruptedException {
+        synchronized (monitor) {
+            submitted++;
+        }
+        batchQueue.put(batch);
+    }
+
+    /**
+     * 等待已提交的批次全部处理完成,有区块失败时重置区块头
+     * 配置区块需在之前的区块全部写入账本后才能写入
+     *
+     * @throws InterruptedException
+     * @throws LedgerException 重置区块头失败
+     */
+    public void awaitFinished() throws InterruptedException, LedgerException {
+        synchronized (monitor) {
+            while (finished < submitted) {
+                monitor.wait();
+            }
+            if (failed) {
+                reset();
+            }
+        }
+    }
+
+    public void halt() {
+        assembleStage.interrupt();
+        signStage.interrupt();
+        appendStage.interrupt();
+    }
+
+    /**
+     * 有区块失败时,等待之前的批次全部处理完成,再以账本中的最后一个区块重置区块头
+     *
+     * @param index 组装阶段即将处理的批次序号,从1开始
+     * @return 是否可以组装该批次
+     * @throws InterruptedException
+     */
+    private boolean recover(long index) throws InterruptedException {
+        synchronized (monitor) {
+            if (!failed) {
+                return true;
+            }
+            while (finished < index - 1) {
+                monitor.wait();
+            }
+            if (!failed) {
+                //awaitFinished已重置
+                return true;
+            }
+            try {
+                reset();
+                return true;
+            } catch (LedgerException e) {
+                log.error(String.format("[group: %s] Reset block writer failed, discard the batch: %s",
+                        support.getGroupId(), e.getMessage()), e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 以账本中的最后一个区块重置区块头,须持有monitor且之前的批次已全部处理完成
+     */
+    private void reset() throws LedgerException {
+        support.getBlockWriter().resetFromLedger();
+        failed = false;
+    }
+
+    private boolean isFailed() {
+        synchronized (monitor) {
+            return failed;
+        }
+    }
+
+    private void markFailed() {
+        synchronized (monitor) {
+            failed = true;
+        }
+    }
+
+    private void finishOne() {
+        synchronized (monitor) {
+            finished++;
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * 流水线的一个阶段,从输入队列取出数据,处理后放入输出队列
+     *
+     * @param <I>
+     * @param <O>
+     */
+    private abstract class Stage<I, O> extends Thread {
+        private final BlockingQueue<I> in;
+        private final BlockingQueue<O> out;
+
+        Stage(String name, BlockingQueue<I> in, BlockingQueue<O> out) {
+            super(name);
+            setDaemon(true);
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!isInterrupted()) {
+                    I item = in.take();
+                    O result = null;
+                    if (prepare()) {
+                        try {
+                            result = process(item);
+                        } catch (Exception e) {
+                            log.error(String.format("[%s] Process failed: %s", getName(), e.getMessage()), e);
+                            markFailed();
+                        }
+                    }
+                    if (out != null && result != null) {
+                        out.put(result);
+                    } else {
+                        //最后一个阶段完成,或中途失败、被丢弃时不再往下传递
+                        finishOne();
+                    }
+                }
+            } catch (InterruptedException e) {
+                log.info(String.format("[%s] Stage is halted", getName()));
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 处理前检查,返回false时丢弃该项
+         * 默认在有区块失败后丢弃,这些区块链接在失败的区块之上
+         */
+        boolean prepare() throws InterruptedException {
+            if (isFailed()) {
+                log.warn(String.format("[%s] Discard the item after a failed block", getName()));
+                return false;
+            }
+            return true;
+        }
+
+        abstract O process(I item) throws Exception;
+    }
+}
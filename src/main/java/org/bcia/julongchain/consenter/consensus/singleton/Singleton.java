@@ -16,10 +16,8 @@
 package org.bcia.julongchain.consenter.consensus.singleton;
 
 import com.google.protobuf.InvalidProtocolBufferException;
-import org.apache.activemq.thread.SchedulerTimerTask;
 import org.bcia.julongchain.common.exception.ConsenterException;
 import org.bcia.julongchain.common.exception.LedgerException;
-import org.bcia.julongchain.common.exception.PolicyException;
 import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
@@ -30,17 +28,17 @@ import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
 import org.bcia.julongchain.consenter.consensus.IChain;
 import org.bcia.julongchain.consenter.consensus.IConsensusPlugin;
 import org.bcia.julongchain.consenter.entity.BatchesMes;
+import org.bcia.julongchain.consenter.entity.ConfigMessage;
 import org.bcia.julongchain.consenter.entity.Message;
 import org.bcia.julongchain.consenter.entity.NormalMessage;
 import org.bcia.julongchain.protos.common.Common;
 
-import java.sql.Time;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.*;
 
 /**
  * 简单排序插件
+ * 排序及切块在消费者线程中完成,区块的组装、签名及写入账本交给BlockPipeline的后续阶段;
+ * 批次超时由每条链独立的定时线程触发,超时后向队列投递超时消息,切块仍在消费者线程中进行
  *
  * @author zhangmingyang
  * @Date: 2018/3/7
@@ -52,27 +50,46 @@ public class Singleton implements IChain, IConsensusPlugin {
     private Producer<Message> producer;
     private Consumer<Message> consumer;
     private static Singleton instance;
-    private static ChainSupport support;
-    private volatile boolean needDelay;
-    private static Timer timer = new Timer();
+    private ChainSupport support;
+    private BlockPipeline pipeline;
+    private ScheduledExecutorService timerExecutor;
+    /**
+     * 当前的批次定时器及其编号,仅在消费者线程中访问
+     */
+    private ScheduledFuture<?> batchTimer;
+    private long batchTimerId;
 
+    /**
+     * 获取链对应的排序实例,未指定链时返回最近创建的实例
+     *
+     * @param consenterSupport
+     * @return
+     */
     public static Singleton getInstance(ChainSupport consenterSupport) {
         synchronized (Singleton.class) {
-            if (consenterSupport == null) {
-                return instance;
-            } else {
-                support = consenterSupport;
+            if (consenterSupport != null && consenterSupport.getChain() instanceof Singleton) {
+                return (Singleton) consenterSupport.getChain();
             }
             return instance;
         }
     }
 
     @Override
-    public void order(Common.Envelope env, long configSeq) {
+    public boolean order(Common.Envelope env, long configSeq) {
+        if (!producer.produce(new NormalMessage(configSeq, env))) {
+            log.warn(String.format("[group: %s] Failed to enqueue normal message", support.getGroupId()));
+            return false;
+        }
+        return true;
     }
 
     @Override
-    public void configure(Common.Envelope config, long configSeq) {
+    public boolean configure(Common.Envelope config, long configSeq) {
+        if (!producer.produce(new ConfigMessage(configSeq, config))) {
+            log.warn(String.format("[group: %s] Failed to enqueue config message", support.getGroupId()));
+            return false;
+        }
+        return true;
     }
 
     @Override
@@ -82,11 +99,18 @@ public class Singleton implements IChain, IConsensusPlugin {
 
     @Override
     public void start() {
+        pipeline.start();
         consumer.start();
     }
 
     @Override
     public void halt() {
+        if (consumer == null) {
+            return;
+        }
+        consumer.interrupt();
+        timerExecutor.shutdownNow();
+        pipeline.halt();
     }
 
     @Override
@@ -101,7 +125,9 @@ public class Singleton implements IChain, IConsensusPlugin {
 
     public Singleton(ChainSupport consenterSupport) {
         support = consenterSupport;
-        instance = this;
+        synchronized (Singleton.class) {
+            instance = this;
+        }
         blockingQueue = new LinkedBlockingQueue<>();
         producer = new Producer<Message>(blockingQueue);
         consumer = new Consumer<Message>(blockingQueue) {
@@ -115,6 +141,16 @@ public class Singleton implements IChain, IConsensusPlugin {
                 return true;
             }
         };
+        pipeline = new BlockPipeline(consenterSupport);
+        final String timerName = "batch-timer-" + consenterSupport.getGroupId();
+        timerExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, timerName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
 
     /**
@@ -124,6 +160,21 @@ public class Singleton implements IChain, IConsensusPlugin {
      * @throws ConsenterException
      */
     public void doProcess(Message message) throws ConsenterException {
+        if (message instanceof BatchTimeoutMessage) {
+            if (batchTimer == null || ((BatchTimeoutMessage) message).getTimerId() != batchTimerId) {
+                //定时器已被取消,批次已切出
+                return;
+            }
+            batchTimer = null;
+            Common.Envelope[] batch = support.getCutter().cut();
+            if (null == batch || batch.length == 0) {
+                log.warn("Batch timer expired with no pending requests, this might indicate a bug");
+                return;
+            }
+            log.debug("Batch timer expired, creating block");
+            submitBatch(batch);
+            return;
+        }
 
         long seq = support.getSequence();
 
@@ -138,44 +189,19 @@ public class Singleton implements IChain, IConsensusPlugin {
             }
             BatchesMes batchesMes = support.getCutter().ordered(message.getMessage());
             Common.Envelope[][] batches = batchesMes.getMessageBatches();
-            if (batches == null && !needDelay) {
-                needDelay = true;
-
-                timer.schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-
-                        if (needDelay) {
-                            needDelay = false;
-                            Common.Envelope[] batch = support.getCutter().cut();
-                            if (null == batch || batch.length == 0) {
-                                log.warn("Batch timer expired with no pending requests, this might indicate a bug");
-                                return;
-                            }
-                            log.debug("Batch timer expired, creating block");
-                            Common.Block block = support.createNextBlock(batch);
-                            support.writeBlock(block, null);
-                            return;
-                        }
-                    }
-                }, support.getLedgerResources().getMutableResources().getGroupConfig().getConsenterConfig().getBatchTimeout());
-
-            }
-            if (batches == null||batches.length==0) {
-
+            if (batches == null || batches.length == 0) {
+                if (batchTimer == null) {
+                    startBatchTimer();
+                }
             } else {
                 for (Common.Envelope[] env : batches) {
                     log.info("Ready to cut the batches....");
-                    if(null==env||env.length==0){
+                    if (null == env || env.length == 0) {
                         return;
                     }
-                    Common.Block block = support.createNextBlock(env);
-                    support.writeBlock(block, null);
-                    log.info("Write the Block finished");
-                }
-                if (batches.length > 0) {
-                    needDelay = false;
+                    submitBatch(env);
                 }
+                cancelBatchTimer();
             }
 
         } else {
@@ -190,17 +216,54 @@ public class Singleton implements IChain, IConsensusPlugin {
             }
             Common.Envelope[] batch = support.getCutter().cut();
             if (batch.length != 0) {
-                Common.Block block = support.createNextBlock(batch);
-                support.writeBlock(block, null);
-            } else {
-                Common.Block block = support.createNextBlock(new Common.Envelope[]{message.getMessage()});
-                support.writeConfigBlock(block, null);
+                submitBatch(batch);
+            }
+            cancelBatchTimer();
+            //配置区块会更新链的配置,须等待之前的区块全部写入账本后在当前线程中写入
+            try {
+                pipeline.awaitFinished();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConsenterException(e);
+            } catch (LedgerException e) {
+                throw new ConsenterException(e);
             }
-            needDelay = false;
+            Common.Block block = support.createNextBlock(new Common.Envelope[]{message.getMessage()});
+            support.writeConfigBlock(block, null);
         }
 
     }
 
+    private void submitBatch(Common.Envelope[] batch) throws ConsenterException {
+        try {
+            pipeline.submit(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConsenterException(e);
+        }
+    }
+
+    private void startBatchTimer() {
+        final long timerId = ++batchTimerId;
+        long batchTimeout = support.getLedgerResources().getMutableResources().getGroupConfig().getConsenterConfig()
+                .getBatchTimeout();
+        batchTimer = timerExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!producer.produce(new BatchTimeoutMessage(timerId))) {
+                    log.warn("Failed to enqueue the batch timeout message");
+                }
+            }
+        }, batchTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelBatchTimer() {
+        if (batchTimer != null) {
+            batchTimer.cancel(false);
+            batchTimer = null;
+        }
+    }
+
     /**
      * 消息放入队列
      *
@@ -212,4 +275,20 @@ public class Singleton implements IChain, IConsensusPlugin {
         ValidateUtils.isNotNull(message, "message can not be null");
         return producer.produce(message);
     }
+
+    /**
+     * 批次超时消息,由定时线程投递
+     */
+    private static class BatchTimeoutMessage extends Message {
+        private final long timerId;
+
+        BatchTimeoutMessage(long timerId) {
+            super(0, null);
+            this.timerId = timerId;
+        }
+
+        long getTimerId() {
+            return timerId;
+        }
+    }
 }
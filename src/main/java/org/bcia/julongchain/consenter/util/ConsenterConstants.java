@@ -38,6 +38,13 @@ public class ConsenterConstants {
     public static final String MAX_RETRY_TIMES = "maxRetryTimes";
     public static final String RETRY_INTERVAL_MILLIS = "retryIntervalMillis";
     public static final String ZOOKEEPER = "zookeeper";
+    public static final String PRODUCER = "producer";
+    public static final String ACKS = "acks";
+    public static final String LINGER_MS = "lingerMs";
+    public static final String BATCH_SIZE = "batchSize";
+    public static final String COMPRESSION_TYPE = "compressionType";
+    public static final String RETRIES = "retries";
+    public static final String MAX_POLL_RECORDS = "maxPollRecords";
 
     public static final int MSGVERSION = 0;
     public static final int EPOCH = 0;
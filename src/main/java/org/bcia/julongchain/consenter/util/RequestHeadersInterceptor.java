@@ -15,11 +15,15 @@
  */
 package org.bcia.julongchain.consenter.util;
 
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Grpc;
 import io.grpc.Metadata;
 import io.grpc.ServerCall;
 import io.grpc.ServerCallHandler;
 import io.grpc.ServerInterceptor;
 
+import java.net.SocketAddress;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -29,6 +33,11 @@ import java.util.concurrent.atomic.AtomicReference;
  * @company Dingxuan
  */
 public class RequestHeadersInterceptor {
+    /**
+     * 当前请求的客户端地址, 在该请求的回调中有效
+     */
+    public static final Context.Key<SocketAddress> REMOTE_ADDR = Context.key("remoteAddr");
+
     /**
      * Capture the request attributes. Useful for testing ServerCalls.
      * {@link ServerCall#getAttributes()}
@@ -42,7 +51,10 @@ public class RequestHeadersInterceptor {
                     Metadata requestHeaders,
                     ServerCallHandler<ReqT, RespT> next) {
                 serverCallCapture.set(call);
-                return next.startCall(call, requestHeaders);
+                //serverCallCapture只记录最后一个请求, 并发的流需从各自的Context中获取地址
+                Context context = Context.current().withValue(REMOTE_ADDR,
+                        call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR));
+                return Contexts.interceptCall(context, call, requestHeaders, next);
             }
         };
     }
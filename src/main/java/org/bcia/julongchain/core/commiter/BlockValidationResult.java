@@ -16,6 +16,7 @@
 package org.bcia.julongchain.core.commiter;
 
 import org.bcia.julongchain.core.common.sysscprovider.SmartContractInstance;
+import org.bcia.julongchain.protos.common.Configtx;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 
 /**
@@ -31,6 +32,10 @@ public class BlockValidationResult {
     private SmartContractInstance smartContractInstance;
     private SmartContractInstance smartContractUpdateInstance;
     private String txId;
+    /**
+     * 校验通过的配置交易，待全部交易校验完成后按序应用
+     */
+    private Configtx.ConfigEnvelope configEnvelope;
 
     public int getTxIndex() {
         return txIndex;
@@ -71,4 +76,12 @@ public class BlockValidationResult {
     public void setTxId(String txId) {
         this.txId = txId;
     }
+
+    public Configtx.ConfigEnvelope getConfigEnvelope() {
+        return configEnvelope;
+    }
+
+    public void setConfigEnvelope(Configtx.ConfigEnvelope configEnvelope) {
+        this.configEnvelope = configEnvelope;
+    }
 }
@@ -15,8 +15,8 @@
  */
 package org.bcia.julongchain.core.commiter;
 
-import com.google.protobuf.InvalidProtocolBufferException;
 import org.bcia.julongchain.common.exception.CommitterException;
+import org.bcia.julongchain.common.exception.EventException;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.log.JulongChainLog;
@@ -25,6 +25,9 @@ import org.bcia.julongchain.common.util.ValidateUtils;
 import org.bcia.julongchain.core.commiter.util.CommitterUtils;
 import org.bcia.julongchain.core.ledger.BlockAndPvtData;
 import org.bcia.julongchain.core.ledger.INodeLedger;
+import org.bcia.julongchain.core.ledger.util.ParsedBlock;
+import org.bcia.julongchain.events.producer.BlockEvents;
+import org.bcia.julongchain.events.producer.EventHelper;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.common.Ledger;
 
@@ -58,6 +61,10 @@ public class Committer implements ICommitter {
      * 节点账本
      */
     private INodeLedger nodeLedger;
+    /**
+     * 区块校验器，为null时不校验直接提交
+     */
+    private ICommitterValidator committerValidator;
     /**
      * 配置区块更新监听
      */
@@ -79,25 +86,35 @@ public class Committer implements ICommitter {
      * @param configBlockListener
      */
     public Committer(INodeLedger nodeLedger, IConfigBlockListener configBlockListener) {
+        this(nodeLedger, null, configBlockListener);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param nodeLedger
+     * @param committerValidator 提交前校验区块中的交易
+     * @param configBlockListener
+     */
+    public Committer(INodeLedger nodeLedger, ICommitterValidator committerValidator,
+                     IConfigBlockListener configBlockListener) {
         this.nodeLedger = nodeLedger;
+        this.committerValidator = committerValidator;
         this.configBlockListener = configBlockListener;
     }
 
     /**
      * 提交区块之前操作
      *
-     * @param block
+     * @param parsedBlock
      * @throws CommitterException
-     * @throws InvalidProtocolBufferException
-     * @throws ValidateException
      */
-    private void preCommit(Common.Block block) throws CommitterException, InvalidProtocolBufferException,
-            ValidateException {
-        if (CommitterUtils.isConfigBlock(block)) {
+    private void preCommit(ParsedBlock parsedBlock) throws CommitterException {
+        if (CommitterUtils.isConfigBlock(parsedBlock)) {
             log.info("Get a config block");
 
             if (configBlockListener != null) {
-                configBlockListener.onConfigBlockChanged(block);
+                configBlockListener.onConfigBlockChanged(parsedBlock.getBlock());
             }
         }
     }
@@ -108,18 +125,20 @@ public class Committer implements ICommitter {
         ValidateUtils.isNotNull(blockAndPvtData, "BlockAndPvtData can not be null");
         ValidateUtils.isNotNull(blockAndPvtData.getBlock(), "BlockAndPvtData.getBlock can not be null");
 
+        if (committerValidator != null) {
+            //校验交易并写入交易过滤器
+            blockAndPvtData.setBlock(committerValidator.validate(blockAndPvtData.getBlock()));
+        }
+
         try {
-            //提交前处理
-            preCommit(blockAndPvtData.getBlock());
+            //提交前处理, 区块只解析一次, 账本提交时继续使用
+            preCommit(blockAndPvtData.getParsedBlock());
 
             //正式提交账本
             nodeLedger.commitWithPvtData(blockAndPvtData);
 
-            //提交后处理
-            postCommit(blockAndPvtData.getBlock());
-        } catch (InvalidProtocolBufferException e) {
-            log.error(e.getMessage(), e);
-            throw new CommitterException(e);
+            //提交后处理, 使用账本提交后的区块(含最终的交易过滤器)
+            postCommit(blockAndPvtData.getParsedBlock());
         } catch (LedgerException e) {
             log.error(e.getMessage(), e);
             throw new CommitterException(e);
@@ -127,13 +146,27 @@ public class Committer implements ICommitter {
     }
 
     /**
-     * 提交区块之后操作
+     * 提交区块之后操作，发送区块事件
      *
-     * @param block
-     * @throws CommitterException
+     * @param parsedBlock
      */
-    private void postCommit(Common.Block block) throws CommitterException {
-        //TODO：暂无要处理的事件
+    private void postCommit(ParsedBlock parsedBlock) {
+        long blockNumber = parsedBlock.getBlock().getHeader().getNumber();
+        BlockEvents events = null;
+        try {
+            events = EventHelper.createBlockEvents(parsedBlock);
+        } catch (Exception e) {
+            log.error(String.format("Error processing block events for block number [%d]: %s", blockNumber,
+                    e.getMessage()));
+            return;
+        }
+
+        try {
+            EventHelper.send(events);
+        } catch (EventException e) {
+            log.error(String.format("Error sending block event for block number [%d]: %s", blockNumber,
+                    e.getMessage()));
+        }
     }
 
     @Override
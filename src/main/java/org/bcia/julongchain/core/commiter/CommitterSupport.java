@@ -17,6 +17,7 @@ package org.bcia.julongchain.core.commiter;
 
 import org.bcia.julongchain.common.exception.CommitterException;
 import org.bcia.julongchain.common.groupconfig.capability.IApplicationCapabilities;
+import org.bcia.julongchain.common.groupconfig.config.IApplicationConfig;
 import org.bcia.julongchain.common.resourceconfig.ISmartContractDefinition;
 import org.bcia.julongchain.core.ledger.INodeLedger;
 import org.bcia.julongchain.core.node.INodeSupport;
@@ -72,7 +73,8 @@ public class CommitterSupport implements ICommitterSupport {
 
     @Override
     public IApplicationCapabilities getCapabilities() {
-        return null;
+        IApplicationConfig applicationConfig = group.getApplicationConfig();
+        return applicationConfig != null ? applicationConfig.getCapabilities() : null;
     }
 
     @Override
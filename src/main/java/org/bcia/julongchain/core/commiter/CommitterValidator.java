@@ -19,6 +19,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import org.bcia.julongchain.common.exception.CommitterException;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.exception.ValidateException;
+import org.bcia.julongchain.common.groupconfig.capability.IApplicationCapabilities;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.common.protos.ConfigEnvelopeVO;
@@ -29,6 +30,7 @@ import org.bcia.julongchain.common.util.ValidateUtils;
 import org.bcia.julongchain.common.util.proto.BlockUtils;
 import org.bcia.julongchain.core.common.sysscprovider.SmartContractInstance;
 import org.bcia.julongchain.core.common.validation.MsgValidation;
+import org.bcia.julongchain.core.ledger.util.ParsedBlock;
 import org.bcia.julongchain.core.ledger.util.TxValidationFlags;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.node.ProposalPackage;
@@ -37,6 +39,7 @@ import org.bcia.julongchain.protos.node.SmartContractPackage;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Committer节点校验器
@@ -50,11 +53,24 @@ public class CommitterValidator implements ICommitterValidator {
 
     private ICommitterSupport committerSupport;
     private IVsscValidator vsscValidator;
+    /**
+     * 交易校验线程池，为null时在当前线程串行校验
+     */
+    private ExecutorService validatorExecutor;
 
     public CommitterValidator(ICommitterSupport committerSupport) {
-        this.committerSupport = committerSupport;
+        this(committerSupport, TxValidatorPool.getExecutor());
+    }
 
-        this.vsscValidator = new VsscValidator(committerSupport);
+    public CommitterValidator(ICommitterSupport committerSupport, ExecutorService validatorExecutor) {
+        this(committerSupport, new VsscValidator(committerSupport), validatorExecutor);
+    }
+
+    public CommitterValidator(ICommitterSupport committerSupport, IVsscValidator vsscValidator,
+                              ExecutorService validatorExecutor) {
+        this.committerSupport = committerSupport;
+        this.vsscValidator = vsscValidator;
+        this.validatorExecutor = validatorExecutor;
     }
 
     @Override
@@ -79,13 +95,19 @@ public class CommitterValidator implements ICommitterValidator {
         Map<Integer, SmartContractInstance> txInvokedSCInstances = new HashMap<>();
         Map<Integer, SmartContractInstance> txUpgradedSCInstances = new HashMap<>();
 
-        BlockValidationResult result = new BlockValidationResult();
+        //并发校验各交易，再按交易序号汇总，保证结果与串行校验一致
+        BlockValidationResult[] results = new BlockValidationResult[txCount];
+        int fromIndex = 0;
+        while (fromIndex < txCount) {
+            validateTxs(block, fromIndex, results);
+            //配置交易会修改群组配置，在汇总后按交易序号应用，其后的交易基于新配置重新校验
+            fromIndex = applyFirstConfigTx(results, fromIndex);
+        }
+
         for (int i = 0; i < txCount; i++) {
-            BlockValidationRequest request = new BlockValidationRequest(block, block.getData().getData(i)
-                    .toByteArray(), i, this);
-            validateTx(request, result);
+            BlockValidationResult result = results[i];
 
-            if (result.getTxValidationCode().equals(TransactionPackage.TxValidationCode.VALID)) {
+            if (TransactionPackage.TxValidationCode.VALID.equals(result.getTxValidationCode())) {
                 txIdArray[i] = result.getTxId();
 
                 if (result.getSmartContractInstance() != null) {
@@ -98,7 +120,8 @@ public class CommitterValidator implements ICommitterValidator {
             }
         }
 
-        if (committerSupport.getCapabilities().isForbidDuplicateTxId()) {
+        IApplicationCapabilities capabilities = committerSupport.getCapabilities();
+        if (capabilities != null && capabilities.isForbidDuplicateTxId()) {
             markTxIdDuplicates(txIdArray, txValidationFlags);
         }
 
@@ -171,6 +194,33 @@ public class CommitterValidator implements ICommitterValidator {
         return txValidationFlags;
     }
 
+    /**
+     * 从fromIndex开始按交易序号应用校验通过的配置交易，应用失败的交易标记为无效
+     * 应用成功时，其后的交易是在旧配置下校验的，需要重新校验
+     *
+     * @param results
+     * @param fromIndex
+     * @return 需要重新校验的第一笔交易序号，不需要时返回交易总数
+     */
+    private int applyFirstConfigTx(BlockValidationResult[] results, int fromIndex) {
+        for (int i = fromIndex; i < results.length; i++) {
+            BlockValidationResult result = results[i];
+            if (result.getConfigEnvelope() == null
+                    || !TransactionPackage.TxValidationCode.VALID.equals(result.getTxValidationCode())) {
+                continue;
+            }
+
+            try {
+                committerSupport.apply(result.getConfigEnvelope());
+                return i + 1;
+            } catch (CommitterException e) {
+                log.error(e.getMessage(), e);
+                result.setTxValidationCode(TransactionPackage.TxValidationCode.INVALID_OTHER_REASON);
+            }
+        }
+        return results.length;
+    }
+
     private String generateSCKey(String smartContractName, String groupId) {
         return smartContractName + CommConstant.PATH_SEPARATOR + groupId;
     }
@@ -194,9 +244,79 @@ public class CommitterValidator implements ICommitterValidator {
         }
     }
 
-    private void validateTx(BlockValidationRequest request, BlockValidationResult result) {
+    /**
+     * 校验区块中从fromIndex开始的交易，校验结果按交易序号写入results
+     *
+     * @param block
+     * @param fromIndex
+     * @param results
+     * @throws ValidateException
+     */
+    private void validateTxs(Common.Block block, int fromIndex, BlockValidationResult[] results)
+            throws ValidateException {
+        int txCount = results.length;
+
+        //先批量验证各交易的创建者签名
+        final BitSet signatureChecked = txCount - fromIndex > 1 ? MsgValidation.checkCreatorSignatures(
+                new ParsedBlock(block)) : new BitSet();
+
+        if (validatorExecutor == null || txCount - fromIndex == 1) {
+            for (int i = fromIndex; i < txCount; i++) {
+                results[i] = validateTx(block, i, signatureChecked.get(i));
+            }
+            return;
+        }
+
+        List<Future<BlockValidationResult>> futureList = new ArrayList<>(txCount - fromIndex);
+        try {
+            for (int i = fromIndex; i < txCount; i++) {
+                final int txIndex = i;
+                futureList.add(validatorExecutor.submit(new Callable<BlockValidationResult>() {
+                    @Override
+                    public BlockValidationResult call() throws Exception {
+                        return validateTx(block, txIndex, signatureChecked.get(txIndex));
+                    }
+                }));
+            }
+
+            for (int i = fromIndex; i < txCount; i++) {
+                try {
+                    results[i] = futureList.get(i - fromIndex).get();
+                } catch (ExecutionException e) {
+                    log.error(e.getMessage(), e);
+                    BlockValidationResult result = new BlockValidationResult();
+                    result.setTxIndex(i);
+                    result.setTxValidationCode(TransactionPackage.TxValidationCode.INVALID_OTHER_REASON);
+                    results[i] = result;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValidateException("Interrupted while validating block");
+        } catch (RejectedExecutionException e) {
+            log.error(e.getMessage(), e);
+            throw new ValidateException("Transaction validator pool is not available");
+        } finally {
+            for (Future<BlockValidationResult> future : futureList) {
+                if (!future.isDone()) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
+    private BlockValidationResult validateTx(Common.Block block, int txIndex, boolean signatureChecked) {
+        BlockValidationRequest request = new BlockValidationRequest(block, block.getData().getData(txIndex)
+                .toByteArray(), txIndex, this);
+        BlockValidationResult result = new BlockValidationResult();
+        validateTx(request, result, signatureChecked);
+        return result;
+    }
+
+    private void validateTx(BlockValidationRequest request, BlockValidationResult result, boolean signatureChecked) {
         if (request.getData() == null) {
             result.setTxIndex(request.getTxIndex());
+            result.setTxValidationCode(TransactionPackage.TxValidationCode.NIL_ENVELOPE);
             return;
         }
 
@@ -210,7 +330,7 @@ public class CommitterValidator implements ICommitterValidator {
             return;
         }
 
-        Object[] validateTxObjs = MsgValidation.validateTransaction(envelope, committerSupport.getCapabilities());
+        Object[] validateTxObjs = validateMessage(envelope, signatureChecked);
         if (!validateTxObjs[0].equals(TransactionPackage.TxValidationCode.VALID)) {
             result.setTxIndex(request.getTxIndex());
             result.setTxValidationCode((TransactionPackage.TxValidationCode) validateTxObjs[0]);
@@ -279,16 +399,9 @@ public class CommitterValidator implements ICommitterValidator {
                     return;
                 }
 
+                //此处只解析，由applyFirstConfigTx在交易校验完成后按序应用
                 ConfigEnvelopeVO configEnvelopeVO = (ConfigEnvelopeVO) payloadVO.getDataVO();
-                try {
-                    committerSupport.apply(configEnvelopeVO.toProto());
-                } catch (CommitterException e) {
-                    log.error(e.getMessage(), e);
-                    result.setTxIndex(request.getTxIndex());
-                    result.setTxValidationCode(TransactionPackage.TxValidationCode.INVALID_OTHER_REASON);
-                    return;
-                }
-
+                result.setConfigEnvelope(configEnvelopeVO.toProto());
                 break;
             case Common.HeaderType.NODE_RESOURCE_UPDATE_VALUE:
                 break;
@@ -305,6 +418,17 @@ public class CommitterValidator implements ICommitterValidator {
         result.setTxId(groupHeader.getTxId());
     }
 
+    /**
+     * 校验交易消息本身(头部、创建者签名、提案哈希等)，不涉及账本和背书策略
+     *
+     * @param envelope
+     * @param signatureChecked 创建者签名已批量验证通过
+     * @return 同MsgValidation.validateTransaction
+     */
+    Object[] validateMessage(Common.Envelope envelope, boolean signatureChecked) {
+        return MsgValidation.validateTransaction(envelope, committerSupport.getCapabilities(), signatureChecked);
+    }
+
     private SmartContractInstance[] getTxScInstance(Common.Payload payload) throws InvalidProtocolBufferException,
             ValidateException {
         PayloadVO payloadVO = new PayloadVO();
@@ -0,0 +1,99 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.commiter;
+
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.core.node.NodeConfig;
+import org.bcia.julongchain.core.node.NodeConfigFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 交易校验线程池
+ * 同一节点上所有群组的CommitterValidator共享该线程池，队列有界，队列满时由提交线程自行校验
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class TxValidatorPool {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(TxValidatorPool.class);
+
+    /**
+     * 默认的等待队列长度
+     */
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    private static volatile ExecutorService executor;
+
+    private TxValidatorPool() {
+    }
+
+    public static ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (TxValidatorPool.class) {
+                if (executor == null) {
+                    int poolSize = 0;
+                    int queueSize = 0;
+
+                    NodeConfig nodeConfig = NodeConfigFactory.getNodeConfig();
+                    if (nodeConfig != null && nodeConfig.getNode() != null && nodeConfig.getNode().getValidator()
+                            != null) {
+                        poolSize = nodeConfig.getNode().getValidator().getPoolSize();
+                        queueSize = nodeConfig.getNode().getValidator().getQueueSize();
+                    }
+
+                    executor = newExecutor(poolSize, queueSize);
+                }
+            }
+        }
+
+        return executor;
+    }
+
+    /**
+     * 创建交易校验线程池
+     *
+     * @param poolSize  线程数，小于等于0时取CPU核数
+     * @param queueSize 等待队列长度，小于等于0时取默认值
+     * @return
+     */
+    public static ExecutorService newExecutor(int poolSize, int queueSize) {
+        if (poolSize <= 0) {
+            poolSize = Runtime.getRuntime().availableProcessors();
+        }
+        if (queueSize <= 0) {
+            queueSize = DEFAULT_QUEUE_SIZE;
+        }
+
+        log.info("Create transaction validator pool, poolSize: " + poolSize + ", queueSize: " + queueSize);
+
+        final AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "tx-validator-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
@@ -22,6 +22,7 @@ import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.common.policycheck.cauthdsl.CAuthDslBuilder;
+import org.bcia.julongchain.common.policycheck.policies.PolicyCache;
 import org.bcia.julongchain.common.util.CommConstant;
 import org.bcia.julongchain.common.util.ValidateUtils;
 import org.bcia.julongchain.core.common.smartcontractprovider.SmartContractContext;
@@ -34,6 +35,8 @@ import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.CollHashedRwSe
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.NsRwSet;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.TxRwSet;
 import org.bcia.julongchain.core.smartcontract.SmartContractExecutor;
+import org.bcia.julongchain.core.smartcontract.shim.ISmartContract;
+import org.bcia.julongchain.core.ssc.vssc.VSSC;
 import org.bcia.julongchain.node.common.helper.SpecHelper;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.node.*;
@@ -52,6 +55,11 @@ import java.util.UUID;
 public class VsscValidator implements IVsscValidator {
     private static JulongChainLog log = JulongChainLogFactory.getLog(VsscValidator.class);
 
+    /**
+     * 进程内的默认验证系统智能合约, 直接调用而不经过智能合约消息机制
+     */
+    private static volatile VSSC localVssc;
+
     private ICommitterSupport committerSupport;
     private ISystemSmartContractProvider sysSmartContractProvider;
 
@@ -163,7 +171,7 @@ public class VsscValidator implements IVsscValidator {
 
                 try {
                     vsscValidateTxForSC(envelopeBytes, groupHeader.getTxId(), groupHeader.getGroupId(), vsscInstance
-                            .getSmartContractName(), vsscInstance.getSmartContractVersion(), policy);
+                            .getSmartContractName(), vsscInstance.getSmartContractVersion(), policy, false);
                 } catch (SmartContractException e) {
                     log.warn("VSSC validate fail");
                     return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
@@ -186,13 +194,19 @@ public class VsscValidator implements IVsscValidator {
             SmartContractInstance vsscInstance = (SmartContractInstance) infos[1];
             byte[] policy = (byte[]) infos[2];
 
+            boolean lsscInvocation = CommConstant.LSSC.equals(scName);
             try {
                 vsscValidateTxForSC(envelopeBytes, groupHeader.getTxId(), groupHeader.getGroupId(), vsscInstance
-                        .getSmartContractName(), vsscInstance.getSmartContractVersion(), policy);
+                        .getSmartContractName(), vsscInstance.getSmartContractVersion(), policy, lsscInvocation);
             } catch (SmartContractException e) {
                 log.warn("VSSC validate fail");
                 return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
             }
+
+            if (lsscInvocation) {
+                //智能合约部署或升级后背书策略可能变化
+                PolicyCache.invalidate(groupHeader.getGroupId());
+            }
         }
 
         return TransactionPackage.TxValidationCode.VALID;
@@ -252,12 +266,25 @@ public class VsscValidator implements IVsscValidator {
         return scData;
     }
 
+    private static VSSC getLocalVssc() {
+        if (localVssc == null) {
+            synchronized (VsscValidator.class) {
+                if (localVssc == null) {
+                    VSSC vssc = new VSSC();
+                    vssc.init(null);
+                    localVssc = vssc;
+                }
+            }
+        }
+        return localVssc;
+    }
+
     private boolean txWritesToNamespace(NsRwSet nsRwSet) {
         if (nsRwSet.getKvRwSet() != null && nsRwSet.getKvRwSet().getWritesCount() > 0) {
             return true;
         }
 
-        if (!committerSupport.getCapabilities().isPrivateGroupData()) {
+        if (committerSupport.getCapabilities() == null || !committerSupport.getCapabilities().isPrivateGroupData()) {
             return false;
         }
 
@@ -272,8 +299,26 @@ public class VsscValidator implements IVsscValidator {
     }
 
     private ProposalResponsePackage.Response vsscValidateTxForSC(byte[] envelopeBytes, String txId, String groupId,
-                                                                 String vsscName, String vsscVersion, byte[] policy)
+                                                                 String vsscName, String vsscVersion, byte[] policy,
+                                                                 boolean lsscInvocation)
             throws SmartContractException {
+        //LSSC交易的校验需要智能合约stub, 仍通过智能合约消息机制执行
+        if (CommConstant.VSSC.equals(vsscName) && !lsscInvocation) {
+            ISmartContract.SmartContractResponse scResponse = null;
+            try {
+                scResponse = getLocalVssc().validate(null, envelopeBytes, policy);
+            } catch (RuntimeException e) {
+                log.error(e.getMessage(), e);
+                throw new SmartContractException("VSSC validate error: " + e.getMessage());
+            }
+            if (scResponse.getStatus().getCode() >= ISmartContract.SmartContractResponse.Status
+                    .INTERNAL_SERVER_ERROR.getCode()) {
+                throw new SmartContractException(scResponse.getMessage());
+            }
+            return ProposalResponsePackage.Response.newBuilder().setStatus(scResponse.getStatus().getCode())
+                    .setMessage(scResponse.getMessage() == null ? "" : scResponse.getMessage()).build();
+        }
+
         String vsscTxId = UUID.randomUUID().toString();
 
         // args[0] - 暂未使用（预留作为函数名）
@@ -16,8 +16,10 @@
 package org.bcia.julongchain.core.commiter.util;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.util.proto.BlockUtils;
+import org.bcia.julongchain.core.ledger.util.ParsedBlock;
 import org.bcia.julongchain.protos.common.Common;
 
 /**
@@ -62,4 +64,25 @@ public class CommitterUtils {
         //当且仅当头部类型为CONFIG时为配置区块
         return groupHeader.getType() == Common.HeaderType.CONFIG_VALUE;
     }
+
+    /**
+     * 是否为配置区块, 使用提交过程中共用的解析结果
+     *
+     * @param parsedBlock
+     * @return
+     */
+    public static boolean isConfigBlock(ParsedBlock parsedBlock) {
+        if (parsedBlock.getTxCount() == 0) {
+            return false;
+        }
+
+        Common.GroupHeader groupHeader;
+        try {
+            groupHeader = parsedBlock.getTx(0).getGroupHeader();
+        } catch (LedgerException e) {
+            return false;
+        }
+
+        return groupHeader.getType() == Common.HeaderType.CONFIG_VALUE;
+    }
 }
@@ -27,9 +27,11 @@ import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.common.util.ValidateUtils;
 import org.bcia.julongchain.common.util.proto.ProposalUtils;
 import org.bcia.julongchain.csp.factory.CspManager;
+import org.bcia.julongchain.core.ledger.util.ParsedBlock;
 import org.bcia.julongchain.csp.intfs.ICsp;
 import org.bcia.julongchain.msp.IIdentity;
 import org.bcia.julongchain.msp.IIdentityDeserializer;
+import org.bcia.julongchain.msp.mgmt.BatchVerifier;
 import org.bcia.julongchain.msp.mgmt.GlobalMspManagement;
 import org.bcia.julongchain.msp.mgmt.MspMgmtMgr;
 import org.bcia.julongchain.protos.common.Common;
@@ -38,6 +40,10 @@ import org.bcia.julongchain.protos.node.ProposalResponsePackage;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 import org.bouncycastle.util.Arrays;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
 /**
  * 校验消息
  *
@@ -183,6 +189,53 @@ public class MsgValidation {
         identity.verify(message, signature);
     }
 
+    /**
+     * 批量检查区块中各交易的创建者签名
+     * 返回创建者身份有效且签名正确的交易序号, 未通过的交易由validateTransaction逐个检查得到具体的错误码
+     *
+     * @param parsedBlock
+     * @return
+     */
+    public static BitSet checkCreatorSignatures(ParsedBlock parsedBlock) {
+        List<Integer> txIndexes = new ArrayList<>();
+        List<IIdentity> identities = new ArrayList<>();
+        List<byte[]> messages = new ArrayList<>();
+        List<byte[]> signatures = new ArrayList<>();
+        for (int i = 0; i < parsedBlock.getTxCount(); i++) {
+            try {
+                ParsedBlock.ParsedTx tx = parsedBlock.getTx(i);
+                Common.Envelope envelope = tx.getEnvelope();
+                Common.SignatureHeader signatureHeader = Common.SignatureHeader.parseFrom(tx.getPayload().getHeader()
+                        .getSignatureHeader());
+                byte[] signature = envelope.getSignature().toByteArray();
+                byte[] message = envelope.getPayload().toByteArray();
+                byte[] creator = signatureHeader.getCreator().toByteArray();
+                if (ArrayUtils.isEmpty(signature) || ArrayUtils.isEmpty(message) || ArrayUtils.isEmpty(creator)) {
+                    continue;
+                }
+
+                IIdentityDeserializer identityDeserializer = MspMgmtMgr.getIdentityDeserializer(tx.getGroupHeader()
+                        .getGroupId());
+                IIdentity identity = identityDeserializer.deserializeIdentity(creator);
+                identity.validate();
+
+                txIndexes.add(i);
+                identities.add(identity);
+                messages.add(message);
+                signatures.add(signature);
+            } catch (Exception e) {
+                log.debug("Tx " + i + " is left to single validation: " + e.getMessage());
+            }
+        }
+
+        BitSet verified = BatchVerifier.verify(identities, messages, signatures);
+        BitSet result = new BitSet(parsedBlock.getTxCount());
+        for (int i = verified.nextSetBit(0); i >= 0; i = verified.nextSetBit(i + 1)) {
+            result.set(txIndexes.get(i));
+        }
+        return result;
+    }
+
     /**
      * 检查提案中的交易id
      *
@@ -207,6 +260,19 @@ public class MsgValidation {
 
     public static Object[] validateTransaction(Common.Envelope envelope, IApplicationCapabilities
             applicationCapabilities) {
+        return validateTransaction(envelope, applicationCapabilities, false);
+    }
+
+    /**
+     * 校验交易
+     *
+     * @param envelope
+     * @param applicationCapabilities
+     * @param creatorSignatureChecked 创建者签名已由checkCreatorSignatures验证通过
+     * @return
+     */
+    public static Object[] validateTransaction(Common.Envelope envelope, IApplicationCapabilities
+            applicationCapabilities, boolean creatorSignatureChecked) {
         if (envelope == null || envelope.getPayload() == null) {
             log.warn("Envelope is null");
             return new Object[]{TransactionPackage.TxValidationCode.NIL_ENVELOPE};
@@ -234,12 +300,14 @@ public class MsgValidation {
                 commonHeaderObjs[2];
 
         //校验签名(验签)
-        try {
-            MsgValidation.checkSignature(envelope.getSignature().toByteArray(), envelope.getPayload().toByteArray(),
-                    signatureHeader.getCreator().toByteArray(), groupHeader.getGroupId());
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            return new Object[]{TransactionPackage.TxValidationCode.BAD_CREATOR_SIGNATURE};
+        if (!creatorSignatureChecked) {
+            try {
+                MsgValidation.checkSignature(envelope.getSignature().toByteArray(), envelope.getPayload()
+                        .toByteArray(), signatureHeader.getCreator().toByteArray(), groupHeader.getGroupId());
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                return new Object[]{TransactionPackage.TxValidationCode.BAD_CREATOR_SIGNATURE};
+            }
         }
 
         ProposalResponsePackage.ProposalResponsePayload proposalResponsePayload = null;
@@ -15,6 +15,7 @@
  */
 package org.bcia.julongchain.core.ledger;
 
+import org.bcia.julongchain.core.ledger.util.ParsedBlock;
 import org.bcia.julongchain.protos.common.Common;
 
 import java.util.HashMap;
@@ -31,14 +32,16 @@ public class BlockAndPvtData {
     private Common.Block block;
     private Map<Long, TxPvtData> blockPvtData = new HashMap<>();
     private MissingPrivateData missing;
+    /**
+     * 提交过程中共用的解析结果
+     */
+    private ParsedBlock parsedBlock;
 
     public BlockAndPvtData(){}
 
     public BlockAndPvtData(Common.Block block, Map<Long, TxPvtData> blockPvtData, MissingPrivateData missing){
         this.block = block;
-	    if (blockPvtData == null) {
-		    this.blockPvtData = new HashMap<>();
-	    }
+	    setBlockPvtData(blockPvtData);
 	    this.missing = missing;
     }
 
@@ -48,6 +51,19 @@ public class BlockAndPvtData {
 
     public void setBlock(Common.Block block) {
         this.block = block;
+        if (parsedBlock != null) {
+            parsedBlock = block == null ? null : parsedBlock.withBlock(block);
+        }
+    }
+
+    /**
+     * 获取解析后的区块, 第一次调用时创建
+     */
+    public ParsedBlock getParsedBlock() {
+        if (parsedBlock == null && block != null) {
+            parsedBlock = new ParsedBlock(block);
+        }
+        return parsedBlock;
     }
 
     public Map<Long, TxPvtData> getBlockPvtData() {
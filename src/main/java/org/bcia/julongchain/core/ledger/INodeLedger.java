@@ -23,6 +23,7 @@ import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 结点账本
@@ -77,6 +78,12 @@ public interface INodeLedger extends ILedger {
 
     List<TxPvtData> getPvtDataByNum(long blockNum, PvtNsCollFilter filter) throws LedgerException;
 
+    /**
+     * 一次获取多个区块的私有数据, 供私有数据协调时批量读取
+     */
+    Map<Long, List<TxPvtData>> getPvtDataByBlockRange(long startBlockNum, long endBlockNum, PvtNsCollFilter filter)
+            throws LedgerException;
+
     void purgePrivateData(long maxBlockNumToRetain) throws LedgerException;
 
     long privateDataMinBlockNum() throws LedgerException;
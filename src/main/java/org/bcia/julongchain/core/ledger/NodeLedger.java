@@ -24,6 +24,7 @@ import org.bcia.julongchain.protos.common.Ledger;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 类描述
@@ -84,6 +85,12 @@ public class NodeLedger implements INodeLedger {
         return null;
     }
 
+    @Override
+    public Map<Long, List<TxPvtData>> getPvtDataByBlockRange(long startBlockNum, long endBlockNum,
+                                                             PvtNsCollFilter filter) throws LedgerException {
+        return null;
+    }
+
     @Override
     public void purgePrivateData(long maxBlockNumToRetain) throws LedgerException {
 
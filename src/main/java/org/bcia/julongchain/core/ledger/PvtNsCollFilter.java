@@ -42,7 +42,8 @@ public class PvtNsCollFilter {
     public void add(String ns, String coll) {
         PvtCollFilter collFilter = filters.get(ns);
         if(collFilter == null){
-            filters.put(ns, new PvtCollFilter());
+            collFilter = new PvtCollFilter();
+            filters.put(ns, collFilter);
         }
         collFilter.getFileters().put(coll, true);
     }
@@ -55,6 +56,6 @@ public class PvtNsCollFilter {
         if(collFilter == null){
             return false;
         }
-        return collFilter.getFileters().get(coll);
+        return Boolean.TRUE.equals(collFilter.getFileters().get(coll));
     }
 }
@@ -264,7 +264,7 @@ public class CouchDB {
      * @param newEdits
      * @return
      */
-    public List BatchUpdateDocuments(CouchDbClient db, List<Object> list, boolean newEdits){
+    public List<Response> BatchUpdateDocuments(CouchDbClient db, List<Object> list, boolean newEdits){
         List<Response> responses = db.bulk(list, newEdits);
         return responses;
     }
@@ -0,0 +1,107 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger;
+
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.IPrunePolicy;
+import org.bcia.julongchain.common.ledger.blkstorage.IBlockStore;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 区块文件修剪器
+ * 按配置的修剪策略, 每pruneInterval个区块在后台线程中归档或删除保留窗口之前的区块文件.
+ * 只修剪已写满的区块文件, 不需要持有提交锁
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class BlockPruner {
+	private static JulongChainLog log = JulongChainLogFactory.getLog(BlockPruner.class);
+
+	private final String ledgerID;
+	private final IBlockStore blockStore;
+	private final IPrunePolicy policy;
+	private final int pruneInterval;
+	private final ExecutorService executor;
+	private final AtomicBoolean pruneScheduled = new AtomicBoolean(false);
+	private volatile boolean closed;
+
+	public BlockPruner(final String ledgerID, IBlockStore blockStore, IPrunePolicy policy, int pruneInterval) {
+		this.ledgerID = ledgerID;
+		this.blockStore = blockStore;
+		this.policy = policy;
+		this.pruneInterval = Math.max(pruneInterval, 1);
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "block-pruner-" + ledgerID);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * 区块提交后调用, 每pruneInterval个区块在后台修剪一次
+	 */
+	public void blockCommitted(long blockNum) {
+		if (closed || blockNum % pruneInterval != 0 || !pruneScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					prune();
+				} catch (Throwable e) {
+					log.error(String.format("Group %s: Prune block files failed: %s", ledgerID, e.getMessage()), e);
+				} finally {
+					pruneScheduled.set(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 立即修剪
+	 * @return 被修剪的区块文件数
+	 */
+	public int prune() throws LedgerException {
+		if (closed) {
+			return 0;
+		}
+		return blockStore.prune(policy);
+	}
+
+	/**
+	 * 是否有已调度或正在进行的后台修剪
+	 */
+	boolean isPruneScheduled() {
+		return pruneScheduled.get();
+	}
+
+	public void shutdown() {
+		closed = true;
+		executor.shutdownNow();
+	}
+}
@@ -25,6 +25,7 @@ import org.bcia.julongchain.core.ledger.*;
 import org.bcia.julongchain.core.ledger.kvledger.history.IHistoryQueryExecutor;
 import org.bcia.julongchain.core.ledger.kvledger.history.historydb.IHistoryDB;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.privacyenabledstate.IDB;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.txmgr.ITxManager;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.txmgr.lockbasedtxmgr.LockBasedTxManager;
 import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
@@ -52,6 +53,24 @@ public class KvLedger implements INodeLedger {
 	private IBlockStore blockStore;
 	private ITxManager txtmgmt;
 	private IHistoryDB historyDB;
+	/**
+	 * 已完整提交(区块、状态、历史)的区块链信息快照
+	 * 读操作只看到该快照对应高度内的数据, 不需要等待正在进行的提交
+	 */
+	private volatile Ledger.BlockchainInfo committedInfo;
+	/**
+	 * 发布新的已提交高度时通知等待中的区块迭代器
+	 */
+	private final Object committedInfoLock = new Object();
+	private volatile boolean closed;
+	/**
+	 * 按存活区块数清除私有数据, 与提交互斥时使用本账本对象作为锁
+	 */
+	private PvtDataPurger pvtDataPurger;
+	/**
+	 * 按配置的保留窗口修剪区块文件, 未配置时为空
+	 */
+	private BlockPruner blockPruner;
 
 	/**
 	 * 创建新KvLedger
@@ -77,6 +96,17 @@ public class KvLedger implements INodeLedger {
 			ScEventManager.getMgr().register(ledgerID, scEventListener);
 		}
 
+		if (blockStore instanceof Store) {
+			this.pvtDataPurger = new PvtDataPurger(ledgerID, this, ((Store) blockStore).getPvtdataStore(),
+					versionedDB, LedgerConfig.getPvtDataPurgeInterval(), LedgerConfig.getPvtDataPurgeBatchSize());
+		}
+
+		IPrunePolicy prunePolicy = LedgerConfig.getBlockPrunePolicy();
+		if (prunePolicy != null) {
+			this.blockPruner = new BlockPruner(ledgerID, blockStore, prunePolicy, LedgerConfig.getBlockPruneInterval());
+		}
+
+		this.committedInfo = blockStore.getBlockchainInfo();
 		recoverDBs();
 	}
 
@@ -136,7 +166,7 @@ public class KvLedger implements INodeLedger {
 	 * 根据交易ID获取交易
 	 */
 	@Override
-	public synchronized TransactionPackage.ProcessedTransaction getTransactionByID(String txID) throws LedgerException {
+	public TransactionPackage.ProcessedTransaction getTransactionByID(String txID) throws LedgerException {
 		Common.Envelope tranEvn = null;
 		TransactionPackage.TxValidationCode txVResult = null;
 		if (txID == null) {
@@ -144,9 +174,17 @@ public class KvLedger implements INodeLedger {
 			log.error(errMsg);
 			throw new LedgerException(errMsg);
 		}
+		long committedHeight = getCommittedHeight();
 		tranEvn = blockStore.retrieveTxByID(txID);
 		txVResult = blockStore.retrieveTxValidationCodeByTxID(txID);
-		if(tranEvn == null || txVResult == null){
+		if (tranEvn == null && txVResult != null && blockStore.isTxPruned(txID)) {
+			//交易所在区块已被删除, 只返回交易验证码, 重复的交易ID仍然被拒绝
+			log.debug(String.format("Block of transaction [%s] has been pruned", txID));
+			return TransactionPackage.ProcessedTransaction.newBuilder()
+					.setValidationCode(txVResult.getNumber())
+					.build();
+		}
+		if(tranEvn == null || txVResult == null || !isTxCommitted(txID, committedHeight)){
 			log.info(String.format("Transaction not found, using id = [%s]", txID));
 			return null;
 		}
@@ -160,8 +198,8 @@ public class KvLedger implements INodeLedger {
 	 * 获取当前区块链状态
 	 */
 	@Override
-	public synchronized Ledger.BlockchainInfo getBlockchainInfo() throws LedgerException {
-		Ledger.BlockchainInfo bcInfo = blockStore.getBlockchainInfo();
+	public Ledger.BlockchainInfo getBlockchainInfo() throws LedgerException {
+		Ledger.BlockchainInfo bcInfo = committedInfo;
 		if (bcInfo == null) {
 			log.info("Blockchain info not found");
 		}
@@ -172,7 +210,17 @@ public class KvLedger implements INodeLedger {
 	 * 根据区块号获取区块
 	 */
 	@Override
-	public synchronized Common.Block getBlockByNumber(long blockNumber) throws LedgerException {
+	public Common.Block getBlockByNumber(long blockNumber) throws LedgerException {
+		long height = getCommittedHeight();
+		if (blockNumber == Long.MAX_VALUE) {
+			//最新区块以已提交高度为准
+			blockNumber = height - 1;
+		}
+		if (blockNumber < 0 || blockNumber >= height) {
+			log.info(String.format("block not found, using block num = [%d], committed height = [%d]",
+					blockNumber, height));
+			return null;
+		}
 		Common.Block block = blockStore.retrieveBlockByNumber(blockNumber);
 		if (block == null) {
 			log.info(String.format("block not found, using block num = [%d]", blockNumber));
@@ -188,21 +236,22 @@ public class KvLedger implements INodeLedger {
 		IResultsIterator itr = blockStore.retrieveBlocks(startBlockNumber);
 		if (itr == null) {
 			log.info(String.format("Blocks iterator not found, using start block num = [%d]", startBlockNumber));
+			return null;
 		}
-		return itr;
+		return new CommittedBlocksItr(itr);
 	}
 
 	/**
 	 * 根据区块Hash(headerHash)获取区块
 	 */
 	@Override
-	public synchronized Common.Block getBlockByHash(byte[] blockHash) throws LedgerException {
+	public Common.Block getBlockByHash(byte[] blockHash) throws LedgerException {
 		if (blockHash == null) {
 			String errMsg = "BlockHash cannot be null";
 			log.error(errMsg);
 			throw new LedgerException(errMsg);
 		}
-		Common.Block block = blockStore.retrieveBlockByHash(blockHash);
+		Common.Block block = filterUncommitted(blockStore.retrieveBlockByHash(blockHash));
 		if (block == null) {
 			log.info("Block not found");
 		}
@@ -213,13 +262,13 @@ public class KvLedger implements INodeLedger {
 	 * 根据交易ID获取区块
 	 */
 	@Override
-	public synchronized Common.Block getBlockByTxID(String txID) throws LedgerException {
+	public Common.Block getBlockByTxID(String txID) throws LedgerException {
 		if (txID == null) {
 			String errMsg = "TxID cannot be null";
 			log.error(errMsg);
 			throw new LedgerException(errMsg);
 		}
-		Common.Block block = blockStore.retrieveBlockByTxID(txID);
+		Common.Block block = filterUncommitted(blockStore.retrieveBlockByTxID(txID));
 		if (block == null) {
 			log.info(String.format("Block not found, using txid = [%s]", txID));
 		}
@@ -230,13 +279,17 @@ public class KvLedger implements INodeLedger {
 	 * 通过交易Id获取交易可行性代码
 	 */
 	@Override
-	public synchronized TransactionPackage.TxValidationCode getTxValidationCodeByTxID(String txID) throws LedgerException {
+	public TransactionPackage.TxValidationCode getTxValidationCodeByTxID(String txID) throws LedgerException {
 		if (txID == null) {
 			String errMsg = "TxID cannot be null";
 			log.error(errMsg);
 			throw new LedgerException(errMsg);
 		}
+		long committedHeight = getCommittedHeight();
 		TransactionPackage.TxValidationCode txValidationCode = blockStore.retrieveTxValidationCodeByTxID(txID);
+		if (txValidationCode != null && !isTxCommitted(txID, committedHeight)) {
+			txValidationCode = null;
+		}
 		if (txValidationCode == null) {
 			log.info(String.format("Tx validation code not found, using txid = [%s]", txID));
 		}
@@ -252,12 +305,16 @@ public class KvLedger implements INodeLedger {
 	}
 
 	/**
-	 * TODO
-	 * 修剪策略
+	 * 按策略修剪区块文件
+	 * 保留窗口之前的已写满区块文件被压缩归档(仍可较慢地读取)或连同索引一起删除
 	 */
 	@Override
 	public void prune(IPrunePolicy prunePolicy) throws LedgerException {
-		throw new LedgerException("Not yet implement");
+		if (prunePolicy == null) {
+			throw new LedgerException("Prune policy can not be null");
+		}
+		int pruned = blockStore.prune(prunePolicy);
+		log.info(String.format("Group %s: Pruned %d block files", ledgerID, pruned));
 	}
 
 	/**
@@ -280,7 +337,8 @@ public class KvLedger implements INodeLedger {
 	 * 根据区块号获取pvtdata和区块
 	 */
 	@Override
-	public synchronized BlockAndPvtData getPvtDataAndBlockByNum(long blockNum, PvtNsCollFilter filter) throws LedgerException {
+	public BlockAndPvtData getPvtDataAndBlockByNum(long blockNum, PvtNsCollFilter filter) throws LedgerException {
+		checkCommitted(blockNum);
 		return ((Store) blockStore).getPvtDataAndBlockByNum(blockNum, filter);
 	}
 
@@ -288,21 +346,43 @@ public class KvLedger implements INodeLedger {
 	 * 根据区块号获取pvtdata
 	 */
 	@Override
-	public synchronized List<TxPvtData> getPvtDataByNum(long blockNum, PvtNsCollFilter filter) throws LedgerException {
+	public List<TxPvtData> getPvtDataByNum(long blockNum, PvtNsCollFilter filter) throws LedgerException {
+		checkCommitted(blockNum);
 		return  ((Store) blockStore).getPvtDataByNum(blockNum, filter);
 	}
 
+	/**
+	 * 根据区块号范围获取pvtdata
+	 */
+	@Override
+	public Map<Long, List<TxPvtData>> getPvtDataByBlockRange(long startBlockNum, long endBlockNum,
+															 PvtNsCollFilter filter) throws LedgerException {
+		checkCommitted(endBlockNum);
+		return ((Store) blockStore).getPvtDataByBlockRange(startBlockNum, endBlockNum, filter);
+	}
+
 	/**
 	 * 修剪pvtdata策略
 	 */
 	@Override
 	public void purgePrivateData(long maxBlockNumToRetain) throws LedgerException {
-		throw new LedgerException("Not yet implement");
+		if (pvtDataPurger == null) {
+			throw new LedgerException("Private data store is not available");
+		}
+		int purged = pvtDataPurger.purgeBlocksBelow(maxBlockNumToRetain);
+		log.info(String.format("Group %s: Purged %d private data write sets below block %d", ledgerID, purged,
+				maxBlockNumToRetain));
 	}
 
+	/**
+	 * 保留的私有数据中最小的区块号
+	 */
 	@Override
 	public long privateDataMinBlockNum() throws LedgerException {
-		throw new LedgerException("Not yet implement");
+		if (!(blockStore instanceof Store)) {
+			throw new LedgerException("Private data store is not available");
+		}
+		return ((Store) blockStore).getPvtdataStore().getMinBlockNum();
 	}
 
 	/**
@@ -318,6 +398,16 @@ public class KvLedger implements INodeLedger {
 	 */
 	@Override
 	public void close() {
+		closed = true;
+		synchronized (committedInfoLock) {
+			committedInfoLock.notifyAll();
+		}
+		if (pvtDataPurger != null) {
+			pvtDataPurger.shutdown();
+		}
+		if (blockPruner != null) {
+			blockPruner.shutdown();
+		}
 		blockStore.shutdown();
 		try {
 			txtmgmt.shutdown();
@@ -345,7 +435,114 @@ public class KvLedger implements INodeLedger {
 		//在HistoryDB允许的情况下提交历史信息
 		if(LedgerConfig.isHistoryDBEnabled()){
 			log.debug(String.format("Group %s: Committing block %d transaction to history db", ledgerID, blockNo));
-			historyDB.commit(blockAndPvtData.getBlock());
+			historyDB.commit(blockAndPvtData.getParsedBlock());
+		}
+		//全部提交完成后再发布新的高度, 读操作自此可以看到该区块
+		committedInfo = blockStore.getBlockchainInfo();
+		synchronized (committedInfoLock) {
+			committedInfoLock.notifyAll();
+		}
+		//后台清除到期的私有数据
+		if (pvtDataPurger != null) {
+			pvtDataPurger.blockCommitted(blockNo);
+		}
+		if (blockPruner != null) {
+			blockPruner.blockCommitted(blockNo);
+		}
+	}
+
+	/**
+	 * 获取已提交的区块高度
+	 */
+	private long getCommittedHeight() {
+		Ledger.BlockchainInfo bcInfo = committedInfo;
+		return bcInfo == null ? 0 : bcInfo.getHeight();
+	}
+
+	/**
+	 * 检查交易所在区块是否在已提交高度内
+	 * 区块存储的高度没有超过committedHeight时不存在正在提交的区块, 否则需要读取交易所在区块确认区块号
+	 *
+	 * @param committedHeight 查询交易之前读取的已提交高度
+	 */
+	private boolean isTxCommitted(String txID, long committedHeight) throws LedgerException {
+		if (blockStore.getBlockchainInfo().getHeight() <= committedHeight) {
+			return true;
+		}
+		//被删除的区块早已提交
+		if (blockStore.isTxPruned(txID)) {
+			return true;
+		}
+		return filterUncommitted(blockStore.retrieveBlockByTxID(txID), committedHeight) != null;
+	}
+
+	/**
+	 * 过滤尚未完成提交的区块
+	 */
+	private Common.Block filterUncommitted(Common.Block block) {
+		return filterUncommitted(block, getCommittedHeight());
+	}
+
+	private Common.Block filterUncommitted(Common.Block block, long committedHeight) {
+		if (block != null && block.getHeader().getNumber() >= committedHeight) {
+			return null;
+		}
+		return block;
+	}
+
+	/**
+	 * 只返回已完成提交的区块的迭代器
+	 * 区块存储中已写入但状态数据库尚未提交的区块, 等到发布新的已提交高度后再返回
+	 */
+	private class CommittedBlocksItr implements IResultsIterator {
+		private final IResultsIterator itr;
+		private volatile boolean itrClosed;
+
+		CommittedBlocksItr(IResultsIterator itr) {
+			this.itr = itr;
+		}
+
+		@Override
+		public QueryResult next() throws LedgerException {
+			QueryResult result = itr.next();
+			if (result == null || !(result.getObj() instanceof Common.Block)) {
+				return result;
+			}
+			long blockNum = ((Common.Block) result.getObj()).getHeader().getNumber();
+			synchronized (committedInfoLock) {
+				while (blockNum >= getCommittedHeight()) {
+					if (itrClosed || closed) {
+						return null;
+					}
+					try {
+						committedInfoLock.wait();
+					} catch (InterruptedException e) {
+						log.error(e.getMessage(), e);
+						throw new LedgerException(e);
+					}
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public void close() throws LedgerException {
+			itrClosed = true;
+			synchronized (committedInfoLock) {
+				committedInfoLock.notifyAll();
+			}
+			itr.close();
+		}
+	}
+
+	/**
+	 * 检查区块是否已完成提交
+	 */
+	private void checkCommitted(long blockNum) throws LedgerException {
+		long height = getCommittedHeight();
+		if (blockNum >= height) {
+			throw new LedgerException(String.format("Block %d is not committed yet, committed height is %d",
+					blockNum, height));
 		}
 	}
 
@@ -0,0 +1,158 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger;
+
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.core.ledger.TxPvtData;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.privacyenabledstate.IDB;
+import org.bcia.julongchain.core.ledger.pvtdatastorage.ExpiryEntry;
+import org.bcia.julongchain.core.ledger.pvtdatastorage.IPvtDataStore;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 私有数据清除器
+ * 根据pvtdata存储中的到期索引, 在后台线程中清除到期的私有写集合以及状态数据库中对应的私有数据.
+ * 存活区块数来自节点本地配置, 各节点可能不同, 因此不清除参与交易校验的哈希状态.
+ * 每批最多处理batchSize条到期索引, 只在处理一批时持有提交锁, 不会长时间阻塞区块提交
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class PvtDataPurger {
+	private static JulongChainLog log = JulongChainLogFactory.getLog(PvtDataPurger.class);
+
+	private final String ledgerID;
+	private final Object commitLock;
+	private final IPvtDataStore pvtDataStore;
+	private final int purgeInterval;
+	private final int batchSize;
+	private final IPvtDataStore.IPurgeListener stateDBPurger;
+	private final ExecutorService executor;
+	private final AtomicBoolean purgeScheduled = new AtomicBoolean(false);
+	private volatile boolean closed;
+
+	public PvtDataPurger(String ledgerID, Object commitLock, IPvtDataStore pvtDataStore, final IDB stateDB,
+						 int purgeInterval, int batchSize) {
+		this.ledgerID = ledgerID;
+		this.commitLock = commitLock;
+		this.pvtDataStore = pvtDataStore;
+		this.purgeInterval = Math.max(purgeInterval, 1);
+		this.batchSize = Math.max(batchSize, 1);
+		this.stateDBPurger = new IPvtDataStore.IPurgeListener() {
+			@Override
+			public void beforePurge(long blockNum, List<TxPvtData> purgedData) throws LedgerException {
+				if (stateDB != null) {
+					stateDB.purgePrivateData(blockNum, purgedData);
+				}
+			}
+		};
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "pvtdata-purger-" + ledgerID);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * 区块提交后调用, 每purgeInterval个区块在后台清除一次到期数据
+	 */
+	public void blockCommitted(final long blockNum) {
+		if (closed || blockNum % purgeInterval != 0 || !purgeScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					int purged = purgeExpired(blockNum);
+					if (purged > 0) {
+						log.info(String.format("Group %s: Purged %d expired private data write sets at block %d",
+								ledgerID, purged, blockNum));
+					}
+				} catch (Throwable e) {
+					log.error(String.format("Group %s: Purge expired private data failed: %s", ledgerID,
+							e.getMessage()), e);
+				} finally {
+					purgeScheduled.set(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 清除到期区块号不大于committedBlock的私有数据
+	 * @return 被清除的交易写集合数
+	 */
+	public int purgeExpired(long committedBlock) throws LedgerException {
+		int purged = 0;
+		while (!closed) {
+			List<ExpiryEntry> entries;
+			synchronized (commitLock) {
+				entries = pvtDataStore.getExpiryEntries(committedBlock, batchSize);
+				for (ExpiryEntry entry : entries) {
+					purged += pvtDataStore.purge(entry.getCommittingBlk(), entry.getExpiryData().toFilter(),
+							entry.getKey(), stateDBPurger);
+				}
+			}
+			if (entries.size() < batchSize) {
+				break;
+			}
+		}
+		return purged;
+	}
+
+	/**
+	 * 清除maxBlockNumToRetain之前所有区块的私有数据
+	 * maxBlockNumToRetain超过已提交高度时只清除到已提交高度
+	 * @return 被清除的交易写集合数
+	 */
+	public int purgeBlocksBelow(long maxBlockNumToRetain) throws LedgerException {
+		int purged = 0;
+		long lastBlockNum = -1;
+		while (!closed) {
+			long maxBlockNum = Math.min(maxBlockNumToRetain, pvtDataStore.lastCommitedBlockHeight());
+			long blockNum = pvtDataStore.getMinBlockNum();
+			//没有可清除的数据或上一批没有进展
+			if (blockNum >= maxBlockNum || blockNum <= lastBlockNum) {
+				break;
+			}
+			lastBlockNum = blockNum;
+			long endBlockNum = Math.min(maxBlockNum, blockNum + batchSize);
+			synchronized (commitLock) {
+				for (; blockNum < endBlockNum; blockNum++) {
+					purged += pvtDataStore.purge(blockNum, null, null, stateDBPurger);
+				}
+			}
+		}
+		return purged;
+	}
+
+	public void shutdown() {
+		closed = true;
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+		 http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger.history.historydb;
+
+import com.google.protobuf.Timestamp;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.TxRwSet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 最近解析过的交易(LRU)
+ * 同一交易写入的多个key的历史查询只需读取并解析一次交易
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class DecodedTxCache {
+    public static final int DEFAULT_SIZE = 256;
+
+    private final Map<String, DecodedTx> cache;
+
+    public DecodedTxCache(final int size) {
+        this.cache = new LinkedHashMap<String, DecodedTx>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DecodedTx> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    public synchronized DecodedTx get(long blockNum, long tranNum) {
+        return cache.get(key(blockNum, tranNum));
+    }
+
+    public synchronized void put(long blockNum, long tranNum, DecodedTx decodedTx) {
+        cache.put(key(blockNum, tranNum), decodedTx);
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    private static String key(long blockNum, long tranNum) {
+        return blockNum + ":" + tranNum;
+    }
+
+    /**
+     * 交易中历史查询用到的部分
+     */
+    public static class DecodedTx {
+        private final String txID;
+        private final Timestamp timestamp;
+        private final TxRwSet txRwSet;
+
+        public DecodedTx(String txID, Timestamp timestamp, TxRwSet txRwSet) {
+            this.txID = txID;
+            this.timestamp = timestamp;
+            this.txRwSet = txRwSet;
+        }
+
+        public String getTxID() {
+            return txID;
+        }
+
+        public Timestamp getTimestamp() {
+            return timestamp;
+        }
+
+        public TxRwSet getTxRwSet() {
+            return txRwSet;
+        }
+    }
+}
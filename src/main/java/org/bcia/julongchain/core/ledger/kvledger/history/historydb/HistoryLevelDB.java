@@ -25,8 +25,8 @@ import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.core.ledger.BlockAndPvtData;
 import org.bcia.julongchain.core.ledger.kvledger.history.IHistoryQueryExecutor;
 import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
+import org.bcia.julongchain.core.ledger.util.ParsedBlock;
 import org.bcia.julongchain.core.ledger.util.TxValidationFlags;
-import org.bcia.julongchain.core.ledger.util.Util;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.NsRwSet;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.TxRwSet;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
@@ -34,7 +34,6 @@ import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
 import org.bcia.julongchain.protos.node.ProposalPackage;
 
-import java.util.List;
 import java.util.Objects;
 
 /**
@@ -48,6 +47,7 @@ public class HistoryLevelDB implements IHistoryDB {
     private static JulongChainLog log = JulongChainLogFactory.getLog(HistoryLevelDB.class);
     private IDBProvider provider;
     private String dbName;
+    private final DecodedTxCache txCache = new DecodedTxCache(DecodedTxCache.DEFAULT_SIZE);
 
     private static final byte[] EMPTY_VALUE = {};
     private static final byte[] SAVE_POINT_KEY = {0x00};
@@ -64,6 +64,12 @@ public class HistoryLevelDB implements IHistoryDB {
 
     @Override
     public void commit(Common.Block block) throws LedgerException {
+        commit(new ParsedBlock(block));
+    }
+
+    @Override
+    public void commit(ParsedBlock parsedBlock) throws LedgerException {
+        Common.Block block = parsedBlock.getBlock();
         long blockNo = block.getHeader().getNumber();
         int tranNo = 0;
         UpdateBatch dbBatch = new UpdateBatch();
@@ -82,31 +88,29 @@ public class HistoryLevelDB implements IHistoryDB {
 		}
 		txsFilter = TxValidationFlags.fromByteString(block.getMetadata().getMetadata(Common.BlockMetadataIndex.TRANSACTIONS_FILTER.getNumber()));
         //将每个交易的写集写入HistoryDB
-	    List<ByteString> list = block.getData().getDataList();
-        for (; tranNo < list.size(); tranNo++) {
-            ByteString evnByte = list.get(tranNo);
+        int txCount = parsedBlock.getTxCount();
+        for (; tranNo < txCount; tranNo++) {
             if(txsFilter.isInValid(tranNo)){
                 log.debug(String.format("Group [%s]: Skipping write into historyDB for invalid transaction number %d."
                         , dbName, tranNo));
                 continue;
             }
-            Common.Envelope env = Util.getEnvelopFromBlock(evnByte);
-            Common.Payload payload = Util.getPayload(env);
+            ParsedBlock.ParsedTx parsedTx = parsedBlock.getTx(tranNo);
             Common.GroupHeader header = null;
-            if (payload != null) {
-                header = Util.getGroupHeader(payload.getHeader().getGroupHeader());
+            try {
+                header = parsedTx.getGroupHeader();
+            } catch (LedgerException e) {
+                log.error("Got error when getting GroupHeader");
             }
             //经过背书的交易写入HistoryDB
             if (header != null) {
                 if(Common.HeaderType.ENDORSER_TRANSACTION.getNumber() == header.getType()){
-                    ProposalPackage.SmartContractAction respPayload;
-                    TxRwSet txRWSet = new TxRwSet();
-                    respPayload = Util.getActionFromEnvelope(evnByte);
+                    ProposalPackage.SmartContractAction respPayload = parsedTx.getAction();
                     if(respPayload == null || !respPayload.hasResponse()){
                         log.debug("Got null respPayload from env");
                         continue;
                     }
-                    txRWSet.fromProtoBytes(respPayload.getResults());
+                    TxRwSet txRWSet = parsedTx.getTxRwSet();
                     for(NsRwSet nsRwSet : txRWSet.getNsRwSets()){
                         String ns = nsRwSet.getNameSpace();
                         for(KvRwset.KVWrite kvWrite : nsRwSet.getKvRwSet().getWritesList()){
@@ -177,6 +181,10 @@ public class HistoryLevelDB implements IHistoryDB {
 				Objects.equals(dbName, that.dbName);
 	}
 
+	public DecodedTxCache getTxCache() {
+		return txCache;
+	}
+
 	public IDBProvider getProvider() {
         return provider;
     }
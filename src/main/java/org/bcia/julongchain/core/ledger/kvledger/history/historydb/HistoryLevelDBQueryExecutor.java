@@ -55,7 +55,8 @@ public class HistoryLevelDBQueryExecutor implements IHistoryQueryExecutor {
         byte[] compositeStartKey = HistoryDBHelper.constructPartialCompositeHistoryKey(namespace, key, false);
         DBIterator iterator = (DBIterator) historyDB.getProvider().getIterator((compositeStartKey));
 
-	    return new HistoryScanner(compositeStartKey, namespace, key, iterator, blockStore, ledgerID);
+	    return new HistoryScanner(compositeStartKey, namespace, key, iterator, blockStore, ledgerID,
+				historyDB.getTxCache());
     }
     private byte[] constructHistoryKey(byte[] key){
     	byte[] sep = new byte[]{0x00};
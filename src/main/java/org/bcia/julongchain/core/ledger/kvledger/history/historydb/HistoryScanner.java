@@ -15,7 +15,6 @@ limitations under the License.
  */
 package org.bcia.julongchain.core.ledger.kvledger.history.historydb;
 
-import com.google.protobuf.Timestamp;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.ledger.IResultsIterator;
 import org.bcia.julongchain.common.ledger.blkstorage.IBlockStore;
@@ -57,6 +56,7 @@ public class HistoryScanner implements IResultsIterator {
     private long blockNum;
     private long tranNum;
     private String ledgerID;
+    private DecodedTxCache txCache;
 
     public HistoryScanner(byte[] compositePartialKey,
                           String nameSpace,
@@ -64,12 +64,23 @@ public class HistoryScanner implements IResultsIterator {
                           DBIterator dbItr,
                           IBlockStore blockStore,
                           String ledgerID){
+        this(compositePartialKey, nameSpace, key, dbItr, blockStore, ledgerID, null);
+    }
+
+    public HistoryScanner(byte[] compositePartialKey,
+                          String nameSpace,
+                          String key,
+                          DBIterator dbItr,
+                          IBlockStore blockStore,
+                          String ledgerID,
+                          DecodedTxCache txCache){
         this.compositePartialKey = compositePartialKey;
         this.nameSpace = nameSpace;
         this.key = key;
         this.dbItr = dbItr;
         this.blockStore = blockStore;
         this.ledgerID = ledgerID;
+        this.txCache = txCache;
     }
 
     @Override
@@ -90,7 +101,16 @@ public class HistoryScanner implements IResultsIterator {
         log.debug("Found history record for namespace: [" + nameSpace + "]" +
 				", key: [" + key + "]. BlockNum: [" + blockNum + "], TranNum: [" + tranNum + "].");
 
-		return getKvVersion(blockNum, tranNum);
+		//按区块号、交易号定位交易, 只读取该交易
+		DecodedTxCache.DecodedTx decodedTx = txCache == null ? null : txCache.get(blockNum, tranNum);
+		if (decodedTx == null) {
+			Common.Envelope envelope = blockStore.retrieveTxByBlockNumTranNum(blockNum, tranNum);
+			decodedTx = decodeTx(envelope);
+			if (txCache != null) {
+				txCache.put(blockNum, tranNum, decodedTx);
+			}
+		}
+		return getKeyModificationFromTran(decodedTx, nameSpace, key);
     }
 
     @Override
@@ -110,44 +130,47 @@ public class HistoryScanner implements IResultsIterator {
     	return key.equals(historyKey.substring(nameSpace.length() + 1, nameSpace.length() + key.length() + 1));
 	}
 
-    private QueryResult getKvVersion(long blockNum, long tranNum){
-	    KvRwset.Version version = KvRwset.Version.newBuilder()
-			    .setBlockNum(blockNum)
-			    .setTxNum(tranNum)
-			    .build();
-	    return new QueryResult(version);
+    private QueryResult getKeyModificationFromTran(DecodedTxCache.DecodedTx decodedTx, String ns, String key)
+            throws LedgerException {
+        log.debug("Entering getKeyModificationFromTran() with namespace=[{}], key=[{}]", ns, key);
+        for (NsRwSet nsRwSet : decodedTx.getTxRwSet().getNsRwSets()) {
+            if(ns.equals(nsRwSet.getNameSpace())){
+                for (KvRwset.KVWrite kvWrite : nsRwSet.getKvRwSet().getWritesList()) {
+                    if (key.equals(kvWrite.getKey())) {
+                        KvQueryResult.KeyModification.Builder builder = KvQueryResult.KeyModification.newBuilder()
+                                .setTxId(decodedTx.getTxID())
+                                .setValue(kvWrite.getValue())
+                                .setIsDelete(kvWrite.getIsDelete());
+                        if (decodedTx.getTimestamp() != null) {
+                            builder.setTimestamp(decodedTx.getTimestamp());
+                        }
+                        return new QueryResult(builder.build());
+                    }
+                }
+                throw new LedgerException("Key not found in namespace's writeSet");
+            }
+        }
+        throw new LedgerException("Namespace not found in transaction's RWSets");
     }
 
-    private QueryResult getKeyModificationFromTran(Common.Envelope envelope, String ns, String key) throws LedgerException {
+    /**
+     * 解析交易的txID、时间戳和读写集
+     */
+    private static DecodedTxCache.DecodedTx decodeTx(Common.Envelope envelope) throws LedgerException {
         try {
-            log.debug("Entering getKeyModificationFromTran() with namespace=[{}], key=[{}]", ns, key);
             Common.Payload payload = ProtoUtils.getPayload(envelope);
             TransactionPackage.Transaction tx = ProtoUtils.getTransaction(payload.getData());
             ProposalPackage.SmartContractAction respPayload = ProtoUtils.getSCAction(tx.getActions(0));
             Common.GroupHeader chdr = ProtoUtils.unMarshalGroupHeader(payload.getHeader().getGroupHeader());
-            String txID = chdr.getTxId();
-            Timestamp timestamp = chdr.getTimestamp();
 
             TxRwSet txRwSet = new TxRwSet();
             if (respPayload != null) {
                 txRwSet.fromProtoBytes(respPayload.getResults());
             }
-            for (NsRwSet nsRwSet : txRwSet.getNsRwSets()) {
-                if(nameSpace.equals(nsRwSet.getNameSpace())){
-                    for (KvRwset.KVWrite kvWrite : nsRwSet.getKvRwSet().getWritesList()) {
-                        if (key.equals(kvWrite.getKey())) {
-                            return new QueryResult(KvQueryResult.KeyModification.newBuilder()
-                                    .setTxId(txID)
-                                    .setValue(kvWrite.getValue())
-                                    .setTimestamp(timestamp)
-                                    .setIsDelete(kvWrite.getIsDelete())
-                                    .build());
-                        }
-                    }
-                    throw new LedgerException("Key not found in namespace's writeSet");
-                }
-            }
-            throw new LedgerException("Namespace not found in transaction's RWSets");
+            return new DecodedTxCache.DecodedTx(chdr.getTxId(), chdr.hasTimestamp() ? chdr.getTimestamp() : null,
+                    txRwSet);
+        } catch (LedgerException e) {
+            throw e;
         } catch (Throwable e) {
             log.error(e.getMessage(), e);
             throw new LedgerException(e);
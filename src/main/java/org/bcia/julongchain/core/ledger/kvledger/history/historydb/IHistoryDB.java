@@ -21,6 +21,7 @@ import org.bcia.julongchain.core.ledger.BlockAndPvtData;
 import org.bcia.julongchain.core.ledger.kvledger.IRecoverable;
 import org.bcia.julongchain.core.ledger.kvledger.history.IHistoryQueryExecutor;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
+import org.bcia.julongchain.core.ledger.util.ParsedBlock;
 import org.bcia.julongchain.protos.common.Common;
 
 /**
@@ -42,6 +43,11 @@ public interface IHistoryDB extends IRecoverable {
      */
     void commit(Common.Block block) throws LedgerException;
 
+    /**
+     * 使用提交过程中已解析的区块完成HistoryDB更新
+     */
+    void commit(ParsedBlock parsedBlock) throws LedgerException;
+
     /**
      * 获取最新存储点
      */
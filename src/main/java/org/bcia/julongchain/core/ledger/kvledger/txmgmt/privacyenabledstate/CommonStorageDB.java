@@ -15,14 +15,18 @@ limitations under the License.
  */
 package org.bcia.julongchain.core.ledger.kvledger.txmgmt.privacyenabledstate;
 
+import com.google.protobuf.InvalidProtocolBufferException;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.ledger.IResultsIterator;
+import org.bcia.julongchain.core.ledger.TxPvtData;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.*;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.stateleveldb.CompositeKey;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.stateleveldb.VersionedValue;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
 import org.bcia.julongchain.core.ledger.sceventmgmt.ISmartContractLifecycleEventListener;
 import org.bcia.julongchain.core.ledger.util.Util;
+import org.bcia.julongchain.protos.ledger.rwset.Rwset;
+import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
 
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -150,6 +154,46 @@ public class CommonStorageDB implements IDB {
         vdb.applyUpdates(updates.getPubUpdateBatch().getBatch(), height);
     }
 
+    @Override
+    public void purgePrivateData(long blockNum, List<TxPvtData> purgedData) throws LedgerException {
+        LedgerHeight savePoint = vdb.getLatestSavePoint();
+        if (savePoint == null) {
+            return;
+        }
+        org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.stateleveldb.UpdateBatch batch =
+                new org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.stateleveldb.UpdateBatch();
+        for (TxPvtData txPvtData : purgedData) {
+            if (txPvtData.getWriteSet() == null) {
+                continue;
+            }
+            LedgerHeight txHeight = new LedgerHeight(blockNum, txPvtData.getSeqInBlock());
+            for (Rwset.NsPvtReadWriteSet ns : txPvtData.getWriteSet().getNsPvtRwsetList()) {
+                for (Rwset.CollectionPvtReadWriteSet coll : ns.getCollectionPvtRwsetList()) {
+                    KvRwset.KVRWSet kvRwSet;
+                    try {
+                        kvRwSet = KvRwset.KVRWSet.parseFrom(coll.getRwset());
+                    } catch (InvalidProtocolBufferException e) {
+                        throw new LedgerException(e);
+                    }
+                    String pvtNs = derivePvtDataNs(ns.getNamespace(), coll.getCollectionName());
+                    for (KvRwset.KVWrite kvWrite : kvRwSet.getWritesList()) {
+                        if (kvWrite.getIsDelete()) {
+                            continue;
+                        }
+                        //之后的交易再次写入的键不删除
+                        String key = kvWrite.getKey();
+                        if (LedgerHeight.areSame(vdb.getHeight(pvtNs, key), txHeight)) {
+                            batch.update(pvtNs, key, null);
+                        }
+                    }
+                }
+            }
+        }
+        if (!batch.getUpdatedNamespaces().isEmpty()) {
+            vdb.applyUpdates(batch, savePoint);
+        }
+    }
+
     private String derivePvtDataNs(String ns, String coll){
         return ns + NS_JOINER + PVT_DATA_PREFIX + coll;
     }
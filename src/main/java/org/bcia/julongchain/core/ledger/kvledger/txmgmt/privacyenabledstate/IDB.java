@@ -17,6 +17,7 @@ package org.bcia.julongchain.core.ledger.kvledger.txmgmt.privacyenabledstate;
 
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.ledger.IResultsIterator;
+import org.bcia.julongchain.core.ledger.TxPvtData;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.*;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.stateleveldb.CompositeKey;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.stateleveldb.VersionedValue;
@@ -57,4 +58,10 @@ public interface IDB extends IVersionedDB {
     IResultsIterator executeQueryOnPrivateData(String ns, String coll, String query) throws LedgerException;
 
     void applyPrivacyAwareUpdates(UpdateBatch updates, LedgerHeight height) throws LedgerException;
+
+    /**
+     * 清除已过期的私有数据, 只删除仍为blockNum中写入版本的键.
+     * 哈希状态参与交易校验, 由本地配置决定的清除不能删除, 否则各节点校验结果不一致
+     */
+    void purgePrivateData(long blockNum, List<TxPvtData> purgedData) throws LedgerException;
 }
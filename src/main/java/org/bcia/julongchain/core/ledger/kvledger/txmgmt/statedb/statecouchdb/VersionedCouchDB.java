@@ -33,12 +33,19 @@ import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
 import org.bcia.julongchain.core.ledger.sceventmgmt.ISmartContractLifecycleEventListener;
 import org.bcia.julongchain.core.ledger.sceventmgmt.SmartContractDefinition;
 import org.bcia.julongchain.core.ledger.util.Util;
+import org.bouncycastle.util.encoders.Base64;
 import org.bouncycastle.util.encoders.Hex;
 import org.lightcouch.CouchDbClient;
-import scala.reflect.internal.Trees;
+import org.lightcouch.CouchDbProperties;
+import org.lightcouch.NoDocumentException;
+import org.lightcouch.Response;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -65,6 +72,8 @@ public class VersionedCouchDB implements IVersionedDB, ISmartContractLifecycleEv
     private static final String EXPECTED_DBNAME_PATTERN = "[a-z][a-z0-9.$_()-]*";
 	private static final String RETURN_VALUE_INDEX = "returnValueIndex";
 	private static final String RETURN_VERSION_INDEX = "returnVersionIndex";
+	private static final String SAVEPOINT_DOC_ID = "statedb_savepoint";
+	private static final String VERSION_SEPARATOR = ":";
 
 	private static Map<String, Boolean> dbArtifactsDirFilter = new HashMap<>();
 	private static String[] reservedFields = new String[]{
@@ -76,26 +85,55 @@ public class VersionedCouchDB implements IVersionedDB, ISmartContractLifecycleEv
 
     private String groupName;
     private CouchDB couchDB;
-	private CouchDbClient dbInstance;
+	/**
+	 * couchdb连接参数, 每个数据库使用单独的CouchDbClient
+	 */
+	private CouchDbProperties properties;
 	/**
 	 * Every group has their own metadataDB to store metadata such as savepoint
 	 */
     private CouchDbClient metadataDB;
     private Map<String, CouchDbClient> namespaceDBs;
+	/**
+	 * 当前区块读集合中key的已提交版本及couchdb修订号, 区块提交后清空
+	 */
     private CommittedVersions committedDataCache;
+	private String savepointRev;
 
 
-    public VersionedCouchDB(CouchDbClient dbInstance, String dbName) throws LedgerException {
+    public VersionedCouchDB(CouchDbProperties properties, String dbName) throws LedgerException {
 		this.couchDB = new CouchDB();
 		this.groupName = dbName;
-		dbName = constructMetadataName(dbName);
-		couchDB.createDatabaseIfNotExist(dbInstance, dbName);
-		this.metadataDB = dbInstance;
-		this.dbInstance = dbInstance;
+		this.properties = properties;
+		this.metadataDB = createDBClient(constructMetadataName(dbName));
 		this.namespaceDBs = new HashMap<>(32);
 		this.committedDataCache = new CommittedVersions();
 	}
 
+	/**
+	 * 创建连接到指定数据库的CouchDbClient, 数据库不存在时创建
+	 */
+	private CouchDbClient createDBClient(String dbName) throws LedgerException {
+		CouchDbProperties dbProperties = new CouchDbProperties()
+				.setDbName(dbName)
+				.setCreateDbIfNotExist(true)
+				.setProtocol(properties.getProtocol())
+				.setHost(properties.getHost())
+				.setPort(properties.getPort())
+				.setPath(properties.getPath())
+				.setUsername(properties.getUsername())
+				.setPassword(properties.getPassword())
+				.setConnectionTimeout(properties.getConnectionTimeout())
+				.setSocketTimeout(properties.getSocketTimeout())
+				.setMaxConnections(properties.getMaxConnections());
+		try {
+			return new CouchDbClient(dbProperties);
+		} catch (Exception e) {
+			log.error("Can not connect to couchdb database " + dbName, e);
+			throw new LedgerException(e);
+		}
+	}
+
 	/**
 	 * final dbName:dbName	50chars
 	 * 				"("		1char
@@ -181,15 +219,11 @@ public class VersionedCouchDB implements IVersionedDB, ISmartContractLifecycleEv
 	}
 
 	private synchronized CouchDbClient getNamespaceDBHandle(String namespace) throws LedgerException {
-		if (namespaceDBs.containsKey(namespace)) {
-			return namespaceDBs.get(namespace);
-		}
-		namespace = constructNamespaceName(groupName, namespace);
 		CouchDbClient db = namespaceDBs.get(namespace);
 		if (db == null) {
-			couchDB.createDatabaseIfNotExist(dbInstance, namespace);
+			db = createDBClient(constructNamespaceName(groupName, namespace));
+			namespaceDBs.put(namespace, db);
 		}
-		namespaceDBs.put(namespace, db);
 		return db;
 	}
 
@@ -197,22 +231,35 @@ public class VersionedCouchDB implements IVersionedDB, ISmartContractLifecycleEv
     public VersionedValue getState(String namespace, String key) throws LedgerException {
 		log.debug("GetState : ns = " + namespace + " key = " + key);
 		CouchDbClient db = getNamespaceDBHandle(namespace);
-		JSONObject doc = couchDB.readDoc(db, key);
+		JSONObject doc = readDoc(db, key);
 		if (doc == null) {
 			return null;
 		}
-
-		return null;
+		return new VersionedValue(decodeVersion(doc.getString(VERSION_FIELD)), getValueFromDoc(doc));
     }
 
+	/**
+	 * 优先使用区块校验前批量加载的版本, 未加载的key再单独读取
+	 */
     @Override
     public LedgerHeight getHeight(String namespace, String key) throws LedgerException {
-        return null;
+		CompositeKey compositeKey = new CompositeKey(namespace, key);
+		synchronized (committedDataCache) {
+			if (committedDataCache.getCommittedVersions().containsKey(compositeKey)) {
+				return committedDataCache.getCommittedVersions().get(compositeKey);
+			}
+		}
+		VersionedValue vv = getState(namespace, key);
+		return vv == null ? null : vv.getHeight();
     }
 
     @Override
     public List<VersionedValue> getStateMultipleKeys(String namespace, List<String> keys) throws LedgerException {
-        return null;
+		List<VersionedValue> values = new ArrayList<>();
+		for (String key : keys) {
+			values.add(getState(namespace, key));
+		}
+		return values;
     }
 
     @Override
@@ -227,75 +274,71 @@ public class VersionedCouchDB implements IVersionedDB, ISmartContractLifecycleEv
 
 	/**
 	 * 执行修改世界状态
+	 * 每个namespace的更新通过_bulk_docs批量提交, 修订号未知的key提交前一次性读取
 	 */
     @Override
     public synchronized void applyUpdates(UpdateBatch batch, LedgerHeight height) throws LedgerException {
     	//更新包中包含的namespace(scID)
 		List<String> namespaces = batch.getUpdatedNamespaces();
-		//将要执行的更新包
-		UpdateBatch processBatch = new UpdateBatch();
-		//不存在的key
-		List<CompositeKey> missingKeys = new ArrayList<>();
+		//最大的更新包大小
+		int maxBatchSize = LedgerConfig.getMaxBatchSize();
 		//错误
-		List<Exception> errResponse = new ArrayList<>();
+		List<String> errResponse = new ArrayList<>();
 		for (String namespace : namespaces) {
-			//最大的更新包大小
-			int maxBatchSize = LedgerConfig.getMaxBatchSize();
-			//更新包计数器
-			int batchSizeCounter = 0;
 			//对每一个namespace的更新包
 			Map<String, VersionedValue> nsUpdates = batch.getUpdates(namespace);
-			for (Map.Entry<String, VersionedValue> entry : nsUpdates.entrySet()) {
-				String k = entry.getKey();
-				VersionedValue vv = entry.getValue();
-				//计数器+1
-				batchSizeCounter++;
-				CompositeKey compositeKey = new CompositeKey(namespace, k);
-				//判断是否存在key
-				if (committedDataCache.getRevisionNumbers().containsKey(compositeKey)) {
-					missingKeys.add(compositeKey);
+			//未加载修订号的key
+			List<CompositeKey> missingKeys = new ArrayList<>();
+			synchronized (committedDataCache) {
+				for (String k : nsUpdates.keySet()) {
+					CompositeKey compositeKey = new CompositeKey(namespace, k);
+					if (!committedDataCache.getCommittedVersions().containsKey(compositeKey)) {
+						missingKeys.add(compositeKey);
+					}
 				}
-				//是否为删除操作
-				if (vv.getValue() == null) {
-					processBatch.delete(namespace, k, vv.getHeight());
-				} else {
-					processBatch.put(namespace, k, vv.getValue(), vv.getHeight());
+			}
+			if (missingKeys.size() > 0) {
+				log.debug("Retrieving keys with unknown revision numbers, keys size = " + missingKeys.size());
+				loadCommittedVersions(missingKeys);
+			}
+
+			CouchDbClient db = getNamespaceDBHandle(namespace);
+			List<Object> docs = new ArrayList<>();
+			for (Map.Entry<String, VersionedValue> entry : nsUpdates.entrySet()) {
+				Map<String, Object> doc = createCouchDoc(namespace, entry.getKey(), entry.getValue());
+				if (doc == null) {
+					continue;
 				}
+				docs.add(doc);
 				//当超过最大更新包大小时，执行一次更新
-				if (batchSizeCounter >= maxBatchSize) {
-					try {
-						processUpdateBatch(processBatch, missingKeys);
-					} catch (Exception e) {
-						log.error(e.getMessage(), e);
-						errResponse.add(e);
-						continue;
-					}
+				if (docs.size() >= maxBatchSize) {
+					processUpdateBatch(db, namespace, docs, errResponse);
+					docs = new ArrayList<>();
 				}
 			}
-		}
-		//执行剩余的更新
-		try {
-			processUpdateBatch(processBatch, missingKeys);
-		} catch (Exception e) {
-			log.error(e.getMessage(), e);
-			errResponse.add(e);
+			//执行剩余的更新
+			if (docs.size() > 0) {
+				processUpdateBatch(db, namespace, docs, errResponse);
+			}
 		}
 		//存在错误时，执行错误处理
 		if (errResponse.size() > 0) {
-			StringBuilder errMsg = new StringBuilder("");
-			errMsg.append("Got ");
-			errMsg.append(errResponse.size());
-			errMsg.append(" errors, when apply updates");
-			log.error(errMsg.toString());
-			throw new LedgerException(errMsg.toString());
+			String errMsg = "Got " + errResponse.size() + " errors, when apply updates: " + errResponse;
+			log.error(errMsg);
+			throw new LedgerException(errMsg);
 		}
 
-		recordSavepoint(height, namespaces);
+		recordSavepoint(height);
 	}
 
     @Override
     public LedgerHeight getLatestSavePoint() throws LedgerException {
-        return null;
+		JSONObject doc = readDoc(metadataDB, SAVEPOINT_DOC_ID);
+		if (doc == null) {
+			return null;
+		}
+		savepointRev = doc.getString(REV_FIELD);
+		return decodeVersion(doc.getString(VERSION_FIELD));
     }
 
     @Override
@@ -309,8 +352,12 @@ public class VersionedCouchDB implements IVersionedDB, ISmartContractLifecycleEv
     }
 
     @Override
-    public void close() throws LedgerException {
-		//nothing to do
+    public synchronized void close() throws LedgerException {
+		for (CouchDbClient db : namespaceDBs.values()) {
+			db.shutdown();
+		}
+		namespaceDBs.clear();
+		metadataDB.shutdown();
     }
 
     @Override
@@ -335,36 +382,224 @@ public class VersionedCouchDB implements IVersionedDB, ISmartContractLifecycleEv
 		}
 	}
 
-	private void processUpdateBatch(UpdateBatch updateBatch, List<CompositeKey> missingKeys) throws Exception {
-		if (missingKeys.size() > 0) {
-			log.debug("Retrieving keys with unknown revision numbers\nkeys=" + JSON.toJSONString(missingKeys));
-			loadCommittedVersions(missingKeys);
+	/**
+	 * 通过_bulk_docs提交一批文档, 成功后更新缓存中的版本和修订号
+	 */
+	private void processUpdateBatch(CouchDbClient db, String namespace, List<Object> docs, List<String> errResponse) {
+		List<Response> responses;
+		try {
+			responses = couchDB.BatchUpdateDocuments(db, docs, true);
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+			errResponse.add(e.getMessage());
+			return;
+		}
+		Map<String, String> versions = new HashMap<>(docs.size());
+		for (Object doc : docs) {
+			Map<?, ?> docMap = (Map<?, ?>) doc;
+			versions.put((String) docMap.get(ID_FIELD), (String) docMap.get(VERSION_FIELD));
+		}
+		synchronized (committedDataCache) {
+			for (Response response : responses) {
+				CompositeKey compositeKey = new CompositeKey(namespace, response.getId());
+				if (response.getError() != null) {
+					errResponse.add(response.getId() + ": " + response.getError() + " " + response.getReason());
+					//修订号不再可信, 下次提交时重新读取
+					committedDataCache.getCommittedVersions().remove(compositeKey);
+					committedDataCache.getRevisionNumbers().remove(compositeKey);
+					continue;
+				}
+				committedDataCache.getCommittedVersions().put(compositeKey, decodeVersion(versions.get(response.getId())));
+				committedDataCache.getRevisionNumbers().put(compositeKey, response.getRev());
+			}
 		}
+	}
 
-//		Map<String, >
+	/**
+	 * 将更新转换为couchdb文档
+	 * 值为JSON对象时直接作为文档字段, 否则以base64保存在valueBytes字段中
+	 */
+	private Map<String, Object> createCouchDoc(String namespace, String key, VersionedValue vv) {
+		String rev;
+		synchronized (committedDataCache) {
+			rev = committedDataCache.getRevisionNumbers().get(new CompositeKey(namespace, key));
+		}
+		Map<String, Object> doc = new LinkedHashMap<>();
+		doc.put(ID_FIELD, key);
+		if (rev != null) {
+			doc.put(REV_FIELD, rev);
+		}
+		doc.put(VERSION_FIELD, encodeVersion(vv.getHeight()));
+		if (vv.getValue() == null) {
+			//删除不存在的文档
+			if (rev == null) {
+				return null;
+			}
+			doc.put(DELETED_FIELD, true);
+			return doc;
+		}
+		JSONObject json = parseJsonValue(vv.getValue());
+		if (json != null) {
+			for (Map.Entry<String, Object> field : json.entrySet()) {
+				doc.put(field.getKey(), field.getValue());
+			}
+		} else {
+			doc.put(BINARY_WRAPPER, Base64.toBase64String(vv.getValue()));
+		}
+		return doc;
 	}
 
-	private void recordSavepoint(LedgerHeight height, List<String> namespaces) throws LedgerException {
+	private JSONObject parseJsonValue(byte[] value) {
+		String str = new String(value, StandardCharsets.UTF_8);
+		if (!str.trim().startsWith("{")) {
+			return null;
+		}
+		try {
+			JSONObject json = JSON.parseObject(str);
+			for (String fieldName : reservedFields) {
+				if (json.containsKey(fieldName)) {
+					return null;
+				}
+			}
+			return json;
+		} catch (Exception e) {
+			return null;
+		}
+	}
 
+	private byte[] getValueFromDoc(JSONObject doc) {
+		if (doc.containsKey(BINARY_WRAPPER)) {
+			return Base64.decode(doc.getString(BINARY_WRAPPER));
+		}
+		JSONObject value = new JSONObject(new LinkedHashMap<String, Object>());
+		for (Map.Entry<String, Object> field : doc.entrySet()) {
+			if (!ID_FIELD.equals(field.getKey()) && !REV_FIELD.equals(field.getKey())
+					&& !VERSION_FIELD.equals(field.getKey())) {
+				value.put(field.getKey(), field.getValue());
+			}
+		}
+		return value.toJSONString().getBytes(StandardCharsets.UTF_8);
 	}
 
-	private Map<String, byte[]> getValueAndVersionFromDoc(byte[] persistedValue) {
-		return null;
+	private void recordSavepoint(LedgerHeight height) throws LedgerException {
+		if (savepointRev == null) {
+			getLatestSavePoint();
+		}
+		Map<String, Object> doc = new LinkedHashMap<>();
+		doc.put(ID_FIELD, SAVEPOINT_DOC_ID);
+		if (savepointRev != null) {
+			doc.put(REV_FIELD, savepointRev);
+		}
+		doc.put(VERSION_FIELD, encodeVersion(height));
+		List<Object> docs = new ArrayList<>();
+		docs.add(doc);
+		List<Response> responses = couchDB.BatchUpdateDocuments(metadataDB, docs, true);
+		Response response = responses.get(0);
+		if (response.getError() != null) {
+			String errMsg = "Got error when recording savepoint: " + response.getError() + " " + response.getReason();
+			log.error(errMsg);
+			throw new LedgerException(errMsg);
+		}
+		savepointRev = response.getRev();
 	}
 
+	private JSONObject readDoc(CouchDbClient db, String id) throws LedgerException {
+		InputStream inputStream = null;
+		try {
+			inputStream = db.find(id);
+			return couchDB.inputToJson(inputStream);
+		} catch (NoDocumentException e) {
+			return null;
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+			throw new LedgerException(e);
+		} finally {
+			if (inputStream != null) {
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+					log.error(e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+	private static String encodeVersion(LedgerHeight height) {
+		return height.getBlockNum() + VERSION_SEPARATOR + height.getTxNum();
+	}
+
+	private static LedgerHeight decodeVersion(String version) {
+		if (version == null) {
+			return null;
+		}
+		String[] nums = version.split(VERSION_SEPARATOR);
+		return new LedgerHeight(Long.parseLong(nums[0]), Long.parseLong(nums[1]));
+	}
+
+	/**
+	 * 通过一次_all_docs请求(每个namespace一次)加载key的已提交版本及修订号
+	 * 不存在的key缓存为null, 校验时不再访问couchdb
+	 */
 	@Override
 	public void loadCommittedVersions(List<CompositeKey> keys) throws LedgerException{
-
+		Map<String, List<String>> nsKeys = new LinkedHashMap<>();
+		synchronized (committedDataCache) {
+			for (CompositeKey key : keys) {
+				if (committedDataCache.getCommittedVersions().containsKey(key)) {
+					continue;
+				}
+				List<String> ids = nsKeys.get(key.getNamespace());
+				if (ids == null) {
+					ids = new ArrayList<>();
+					nsKeys.put(key.getNamespace(), ids);
+				}
+				ids.add(key.getKey());
+			}
+		}
+		for (Map.Entry<String, List<String>> entry : nsKeys.entrySet()) {
+			String namespace = entry.getKey();
+			List<?> docs;
+			try {
+				docs = couchDB.BatchRetrieveDocumentMetadata(getNamespaceDBHandle(namespace), entry.getValue());
+			} catch (LedgerException e) {
+				throw e;
+			} catch (Exception e) {
+				log.error(e.getMessage(), e);
+				throw new LedgerException(e);
+			}
+			synchronized (committedDataCache) {
+				for (String key : entry.getValue()) {
+					CompositeKey compositeKey = new CompositeKey(namespace, key);
+					committedDataCache.getCommittedVersions().put(compositeKey, null);
+					committedDataCache.getRevisionNumbers().remove(compositeKey);
+				}
+				for (Object doc : docs) {
+					if (!(doc instanceof Map)) {
+						continue;
+					}
+					Map<?, ?> docMap = (Map<?, ?>) doc;
+					CompositeKey compositeKey = new CompositeKey(namespace, (String) docMap.get(ID_FIELD));
+					committedDataCache.getCommittedVersions().put(compositeKey,
+							decodeVersion((String) docMap.get(VERSION_FIELD)));
+					committedDataCache.getRevisionNumbers().put(compositeKey, (String) docMap.get(REV_FIELD));
+				}
+			}
+		}
 	}
 
 	@Override
 	public LedgerHeight getCachedVersion(String ns, String key) {
-		return null;
+		synchronized (committedDataCache) {
+			return committedDataCache.getCommittedVersions().get(new CompositeKey(ns, key));
+		}
 	}
 
 	@Override
 	public void clearCachedVersions() {
-
+		synchronized (committedDataCache) {
+			committedDataCache.getCommittedVersions().clear();
+			committedDataCache.getRevisionNumbers().clear();
+		}
 	}
 
 	public static String getBinaryWrapper() {
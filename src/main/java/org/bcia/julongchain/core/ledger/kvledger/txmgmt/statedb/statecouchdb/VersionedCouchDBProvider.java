@@ -38,27 +38,23 @@ import java.util.Map;
 public class VersionedCouchDBProvider implements IVersionedDBProvider {
     private static JulongChainLog log = JulongChainLogFactory.getLog(VersionedCouchDBProvider.class);
 
-	private CouchDbClient dbInstance;
-	private Map<String, IVersionedDB> databases;
+	private CouchDbProperties properties;
+	private Map<String, VersionedCouchDB> databases;
 
 
     public VersionedCouchDBProvider(){
         log.debug("Constructing CouchDB VersionedDBProvider");
 		CouchDBDefinition couchDBDefinition = new CouchDBDefinition();
-		CouchDbProperties properties = new CouchDbProperties(
-				couchDBDefinition.getUserName(),
-				true,
-				"http",
-				couchDBDefinition.getHost(),
-				couchDBDefinition.getPort(),
-				couchDBDefinition.getUserName(),
-				couchDBDefinition.getPassword()
-
-		)
+		//各群组及namespace的数据库由VersionedCouchDB按需创建
+		this.properties = new CouchDbProperties()
+				.setProtocol("http")
+				.setHost(couchDBDefinition.getHost())
+				.setPort(couchDBDefinition.getPort())
+				.setUsername(couchDBDefinition.getUserName())
+				.setPassword(couchDBDefinition.getPassword())
 				.setConnectionTimeout(couchDBDefinition.getRequestTimeOut())
 				.setMaxConnections(couchDBDefinition.getMaxRetriesOnStartUp());
 		this.databases = new HashMap<>();
-		this.dbInstance = new CouchDbClient(properties);
 	}
 
     @Override
@@ -66,14 +62,21 @@ public class VersionedCouchDBProvider implements IVersionedDBProvider {
 		if(databases.containsKey(dbName)){
 			return databases.get(dbName);
 		} else {
-			VersionedCouchDB vdb = new VersionedCouchDB(this.dbInstance, dbName);
+			VersionedCouchDB vdb = new VersionedCouchDB(this.properties, dbName);
 			databases.put(dbName, vdb);
 			return vdb;
 		}
     }
 
     @Override
-    public void close() {
-    	//nothing to do
+    public synchronized void close() {
+		for (VersionedCouchDB vdb : databases.values()) {
+			try {
+				vdb.close();
+			} catch (LedgerException e) {
+				log.error(e.getMessage(), e);
+			}
+		}
+		databases.clear();
     }
 }
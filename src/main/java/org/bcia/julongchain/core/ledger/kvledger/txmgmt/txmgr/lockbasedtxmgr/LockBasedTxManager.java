@@ -72,7 +72,7 @@ public class LockBasedTxManager implements ITxManager {
 	 * @param txid 交易id
 	 */
     @Override
-    public synchronized IQueryExecutor newQueryExecutor(String txid) throws LedgerException {
+    public IQueryExecutor newQueryExecutor(String txid) throws LedgerException {
         return new LockBasedQueryExecutor(this, txid);
     }
 
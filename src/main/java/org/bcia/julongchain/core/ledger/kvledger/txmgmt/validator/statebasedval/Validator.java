@@ -33,6 +33,7 @@ import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valinternal.In
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valinternal.PubAndHashUpdates;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valinternal.Transaction;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
+import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
 import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 
@@ -41,9 +42,18 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * statedb验证器
+ * 各交易读集合与已提交世界状态的版本比较互不依赖, 分段并行执行;
+ * 交易与同一区块中前面有效交易写集合的冲突及范围查询仍按区块顺序校验, 结果与逐个校验相同
  *
  * @author sunzongyu
  * @date 2018/04/19
@@ -52,10 +62,46 @@ import java.util.Map;
 public class Validator implements InternalValidator {
     private static JulongChainLog log = JulongChainLogFactory.getLog(Validator.class);
 
+    /**
+     * 每个并行任务校验的交易数
+     */
+    private static final int TXS_PER_TASK = 16;
+
+    private static volatile ExecutorService sharedExecutor;
+
     private IDB db;
+    /**
+     * 查询已提交版本的线程池, 为null时在提交线程中查询
+     */
+    private ExecutorService executor;
 
     public Validator(IDB db) {
+        this(db, getSharedExecutor());
+    }
+
+    public Validator(IDB db, ExecutorService executor) {
         this.db = db;
+        this.executor = executor;
+    }
+
+    private static ExecutorService getSharedExecutor() {
+        if (sharedExecutor == null) {
+            synchronized (Validator.class) {
+                if (sharedExecutor == null) {
+                    final AtomicInteger threadIndex = new AtomicInteger();
+                    sharedExecutor = Executors.newFixedThreadPool(LedgerConfig.getStateValidatorPoolSize(),
+                            new ThreadFactory() {
+                                @Override
+                                public Thread newThread(Runnable r) {
+                                    Thread thread = new Thread(r, "mvcc-validator-" + threadIndex.incrementAndGet());
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            });
+                }
+            }
+        }
+        return sharedExecutor;
     }
 
     public void preLoadCommittedVersionOfRSet(Block block) throws LedgerException{
@@ -97,9 +143,13 @@ public class Validator implements InternalValidator {
         if(db.isBulkOptimizable()){
             preLoadCommittedVersionOfRSet(block);
         }
+        List<Transaction> txs = block.getTxs();
+        boolean[] committedVersionsMatched = doMVCCValidation ? checkCommittedVersions(txs) : null;
         PubAndHashUpdates updates = new PubAndHashUpdates();
-        for(Transaction tx : block.getTxs()){
-            TransactionPackage.TxValidationCode validationCode = validateEndorserTX(tx.getRwSet(), doMVCCValidation, updates);
+        for(int i = 0; i < txs.size(); i++){
+            Transaction tx = txs.get(i);
+            TransactionPackage.TxValidationCode validationCode = validateEndorserTX(tx.getRwSet(), doMVCCValidation,
+                    committedVersionsMatched != null && committedVersionsMatched[i], updates);
             tx.setValidationCode(validationCode);
             if(TransactionPackage.TxValidationCode.VALID.equals(validationCode)){
                 log.debug(String.format("Block [%d] Transaction index [%d] txID [%s] marked as valid by state validator", block.getNum(), tx.getIndexInBlock(), tx.getId()));
@@ -112,48 +162,114 @@ public class Validator implements InternalValidator {
         return updates;
     }
 
-    private TransactionPackage.TxValidationCode validateEndorserTX(TxRwSet txRwSet, boolean doMVCCValidation, PubAndHashUpdates updates) throws LedgerException{
+    /**
+     * 并行比较各交易读集合(含私有数据哈希读集合)的版本与已提交世界状态中的版本
+     *
+     * @param txs
+     * @return 第i个交易的读集合版本是否全部与世界状态相同
+     * @throws LedgerException
+     */
+    private boolean[] checkCommittedVersions(final List<Transaction> txs) throws LedgerException {
+        final boolean[] matched = new boolean[txs.size()];
+        List<Future<?>> futures = new ArrayList<>();
+        if (executor != null) {
+            //第一段在当前线程中执行
+            for (int from = TXS_PER_TASK; from < txs.size(); from += TXS_PER_TASK) {
+                final int start = from;
+                final int end = Math.min(from + TXS_PER_TASK, txs.size());
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws LedgerException {
+                        checkCommittedVersions(txs, start, end, matched);
+                        return null;
+                    }
+                }));
+            }
+        }
+        checkCommittedVersions(txs, 0, futures.isEmpty() ? txs.size() : TXS_PER_TASK, matched);
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LedgerException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof LedgerException) {
+                    throw (LedgerException) e.getCause();
+                }
+                throw new LedgerException(e.getCause());
+            }
+        }
+        return matched;
+    }
+
+    private void checkCommittedVersions(List<Transaction> txs, int start, int end, boolean[] matched)
+            throws LedgerException {
+        for (int i = start; i < end; i++) {
+            matched[i] = readsCommittedVersions(txs.get(i).getRwSet());
+        }
+    }
+
+    private boolean readsCommittedVersions(TxRwSet txRwSet) throws LedgerException {
+        for(NsRwSet nsRwSet : txRwSet.getNsRwSets()){
+            String ns = nsRwSet.getNameSpace();
+            for(KvRwset.KVRead kvRead : nsRwSet.getKvRwSet().getReadsList()){
+                if(!readsCommittedVersion(ns, kvRead)){
+                    return false;
+                }
+            }
+            for(CollHashedRwSet col : nsRwSet.getCollHashedRwSets()){
+                for(KvRwset.KVReadHash kvReadHash : col.getHashedRwSet().getHashedReadsList()){
+                    if(!readsCommittedVersion(ns, col.getCollectionName(), kvReadHash)){
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private TransactionPackage.TxValidationCode validateEndorserTX(TxRwSet txRwSet, boolean doMVCCValidation, boolean committedVersionsMatched, PubAndHashUpdates updates) throws LedgerException{
         TransactionPackage.TxValidationCode txValidationCode = TransactionPackage.TxValidationCode.VALID;
         if(doMVCCValidation){
-            txValidationCode = validateTx(txRwSet, updates);
+            txValidationCode = validateTx(txRwSet, committedVersionsMatched, updates);
         }
         return txValidationCode;
     }
 
-    private TransactionPackage.TxValidationCode validateTx(TxRwSet txRwSet, PubAndHashUpdates updates) throws LedgerException {
+    /**
+     * 已提交版本已比较过, 这里只校验与区块中前面有效交易的冲突及范围查询
+     */
+    private TransactionPackage.TxValidationCode validateTx(TxRwSet txRwSet, boolean committedVersionsMatched, PubAndHashUpdates updates) throws LedgerException {
+        if(!committedVersionsMatched){
+            return TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT;
+        }
         for(NsRwSet nsRwSet : txRwSet.getNsRwSets()){
             String ns = nsRwSet.getNameSpace();
-            if(!validateReadSet(ns, nsRwSet.getKvRwSet().getReadsList(), updates.getPubUpdates())){
-                return TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT;
+            for(KvRwset.KVRead kvRead : nsRwSet.getKvRwSet().getReadsList()){
+                if(updates.getPubUpdates().getBatch().exists(ns, kvRead.getKey())){
+                    return TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT;
+                }
             }
             if(!validateRangeQueries(ns, nsRwSet.getKvRwSet().getRangeQueriesInfoList(), updates.getPubUpdates())){
                 return TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT;
             }
-            if(!validateNsHashedReadSets(ns, nsRwSet.getCollHashedRwSets(), updates.getHashedUpdates())){
-                return TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT;
+            for(CollHashedRwSet col : nsRwSet.getCollHashedRwSets()){
+                for(KvRwset.KVReadHash kvReadHash : col.getHashedRwSet().getHashedReadsList()){
+                    if(updates.getHashedUpdates().contains(ns, col.getCollectionName(), kvReadHash.toByteArray())){
+                        return TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT;
+                    }
+                }
             }
         }
         return TransactionPackage.TxValidationCode.VALID;
     }
 
-    private boolean validateReadSet(String ns, List<KvRwset.KVRead> kvReads, PubUpdateBatch updates) throws LedgerException {
-        for(KvRwset.KVRead kvRead : kvReads){
-            if(!validateKVRead(ns, kvRead, updates)){
-                return false;
-            }
-        }
-        return true;
-    }
-
 	/**
-	 * 读集合有效性验证
-	 * 存在重复读集合无效
 	 * 读集合版本(区块号＋交易号)与当前世界状态不符无效
+	 * 被区块中前面的有效交易写过的读集合在validateTx中判为无效
 	 */
-    private boolean validateKVRead(String ns, KvRwset.KVRead kvRead, PubUpdateBatch updates) throws LedgerException {
-        if(updates.getBatch().exists(ns, kvRead.getKey())){
-            return false;
-        }
+    private boolean readsCommittedVersion(String ns, KvRwset.KVRead kvRead) throws LedgerException {
         LedgerHeight committedVersion = db.getHeight(ns, kvRead.getKey());
         log.debug("Comparing versions for keys " + kvRead.getKey());
 		if(!LedgerHeight.areSame(committedVersion, RwSetUtil.newVersion(kvRead.getVersion()))){
@@ -193,15 +309,6 @@ public class Validator implements InternalValidator {
 	    }
     }
 
-    private boolean validateNsHashedReadSets(String ns, List<CollHashedRwSet> collHashedRwSets, HashedUpdateBatch updates) throws LedgerException {
-        for(CollHashedRwSet col : collHashedRwSets){
-            if(!validateCollHashedReadSet(ns, col.getCollectionName(), col.getHashedRwSet().getHashedReadsList(), updates)){
-                return false;
-            }
-        }
-        return true;
-    }
-
     public boolean validateCollHashedReadSet(String ns, String collectionName, List<KvRwset.KVReadHash> kvReadHashes, HashedUpdateBatch updates) throws LedgerException {
         for(KvRwset.KVReadHash kvReadHash : kvReadHashes){
             if(!validateKVReadHash(ns, collectionName, kvReadHash, updates)){
@@ -215,6 +322,10 @@ public class Validator implements InternalValidator {
         if(updates.contains(ns, collectionName, kvReadHash.toByteArray())){
             return false;
         }
+        return readsCommittedVersion(ns, collectionName, kvReadHash);
+    }
+
+    private boolean readsCommittedVersion(String ns, String collectionName, KvRwset.KVReadHash kvReadHash) throws LedgerException {
         LedgerHeight committedVersion = db.getKeyHashVersion(ns, collectionName, kvReadHash.getKeyHash().toByteArray());
         if(!LedgerHeight.areSame(committedVersion, RwSetUtil.newVersion(kvReadHash.getVersion()))){
             log.debug(String.format("Version mismatch for key[%s:%s]", ns, collectionName));
@@ -54,7 +54,8 @@ public class DefaultValidator implements IValidator {
         Common.Block.Builder builder = block.toBuilder();
         log.debug("validateAndPrepareBatch() for block No." + block.getHeader().getNumber());
         log.debug("preprocessing block");
-        Block internalBlock = Helper.preprocessProtoBlock(txMgr, builder, doMVCCValidation);
+        Block internalBlock = Helper.preprocessProtoBlock(txMgr, builder, blockAndPvtData.getParsedBlock(),
+                doMVCCValidation);
         PubAndHashUpdates pubAndHashUpdates = val.validateAndPrepareBatch(internalBlock, doMVCCValidation);
         log.debug("validating rwset...");
         PvtUpdateBatch pvtUpdates = Helper.validateAndPreparePvtBatch(internalBlock, blockAndPvtData.getBlockPvtData());
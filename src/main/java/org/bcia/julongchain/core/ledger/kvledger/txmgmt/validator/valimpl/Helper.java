@@ -20,7 +20,6 @@ import org.bcia.julongchain.common.exception.InvalidTxException;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
-import org.bcia.julongchain.common.util.proto.ProtoUtils;
 import org.bcia.julongchain.core.ledger.ITxSimulator;
 import org.bcia.julongchain.core.ledger.TxPvtData;
 import org.bcia.julongchain.core.ledger.TxSimulationResults;
@@ -32,12 +31,12 @@ import org.bcia.julongchain.core.ledger.kvledger.txmgmt.txmgr.ITxManager;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valinternal.Block;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valinternal.Transaction;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
+import org.bcia.julongchain.core.ledger.util.ParsedBlock;
 import org.bcia.julongchain.core.ledger.util.TxValidationFlags;
 import org.bcia.julongchain.core.ledger.util.Util;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.ledger.rwset.Rwset;
 import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
-import org.bcia.julongchain.protos.node.ProposalPackage;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 
 import java.util.Map;
@@ -95,6 +94,13 @@ public class Helper {
     }
 
     public static Block preprocessProtoBlock(ITxManager txMgr, Common.Block.Builder blockBuilder, boolean doMVCCValidation) throws LedgerException {
+        return preprocessProtoBlock(txMgr, blockBuilder, new ParsedBlock(blockBuilder.build()), doMVCCValidation);
+    }
+
+    /**
+     * 预处理区块, 交易从parsedBlock中读取, 解析结果留给之后的提交步骤使用
+     */
+    public static Block preprocessProtoBlock(ITxManager txMgr, Common.Block.Builder blockBuilder, ParsedBlock parsedBlock, boolean doMVCCValidation) throws LedgerException {
         Common.Block block = blockBuilder.build();
         Block b = new Block(block.getHeader().getNumber());
 		ByteString metadata = block.getMetadata().getMetadata(Common.BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE);
@@ -110,14 +116,12 @@ public class Helper {
         txsFilter = TxValidationFlags.fromByteString(block.getMetadata().getMetadata(Common.BlockMetadataIndex.TRANSACTIONS_FILTER.getNumber()));
         int txIndex = 0;
         for (; txIndex < block.getData().getDataList().size(); txIndex++) {
-            byte[] envBytes = block.getData().getDataList().get(txIndex).toByteArray();
+            ParsedBlock.ParsedTx parsedTx = parsedBlock.getTx(txIndex);
             Common.Envelope env;
             Common.GroupHeader gh;
-            Common.Payload payload;
             try {
-                env = ProtoUtils.getEnvelopeFromBlock(envBytes);
-                payload = ProtoUtils.getPayload(env);
-                gh = ProtoUtils.unMarshalGroupHeader(payload.getHeader().getGroupHeader());
+                env = parsedTx.getEnvelope();
+                gh = parsedTx.getGroupHeader();
             } catch (Exception e) {
                 throw new LedgerException(e);
             }
@@ -135,18 +139,14 @@ public class Helper {
             Common.HeaderType txType = Common.HeaderType.forNumber(gh.getType());
             log.debug("txType " + txType);
             if(Common.HeaderType.ENDORSER_TRANSACTION.equals(txType)){
-                ProposalPackage.SmartContractAction respPayload;
                 try {
-                    respPayload = Util.getActionFromEnvelope(ByteString.copyFrom(envBytes));
+                    parsedTx.getAction();
                 } catch (Exception e) {
                     txsFilter.setFlag(txIndex, TransactionPackage.TxValidationCode.NIL_TXACTION);
                     continue;
                 }
-                txRwSet = new TxRwSet();
                 try {
-	                if (respPayload != null) {
-		                txRwSet.fromProtoBytes(respPayload.getResults());
-	                }
+                    txRwSet = parsedTx.getTxRwSet();
                 } catch (Exception e) {
                     txsFilter.setFlag(txIndex, TransactionPackage.TxValidationCode.INVALID_OTHER_REASON);
                     continue;
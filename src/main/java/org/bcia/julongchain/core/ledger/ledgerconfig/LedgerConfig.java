@@ -16,9 +16,14 @@ limitations under the License.
 package org.bcia.julongchain.core.ledger.ledgerconfig;
 
 
+import org.bcia.julongchain.common.ledger.IPrunePolicy;
+import org.bcia.julongchain.common.ledger.blkstorage.BlockRetentionPolicy;
+import org.bcia.julongchain.core.node.NodeConfig;
 import org.bcia.julongchain.core.node.NodeConfigFactory;
 
 import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 账本配置
@@ -46,6 +51,8 @@ public class LedgerConfig {
     private static String ROOT_DIR = DEFAULT_ROOT_DIR;
     private static final int DEFAULT_MAX_BLOCKFILE_SIZE = 64 * 1024 * 1024;
     private static int MAX_BLOCKFILE_SIZE;
+    private static final String PRUNE_MODE_ARCHIVE = "archive";
+    private static final String PRUNE_MODE_DROP = "drop";
     private static final int MAX_BATCH_SIZE = Integer.valueOf(NodeConfigFactory.getNodeConfig().getLedger().getState().getCouchDBConfig().get("maxBatchUpdateSize"));
 
     public static boolean isCouchDBEnable(){
@@ -56,6 +63,89 @@ public class LedgerConfig {
 	    return NodeConfigFactory.getNodeConfig().getLedger().getHistory().get("enableHistoryDatabase");
     }
 
+    public static boolean isBlockFileMmapEnabled(){
+        NodeConfig.Blockchain blockchain = NodeConfigFactory.getNodeConfig().getLedger().getBlockchain();
+        return blockchain != null && blockchain.isMmapCompletedBlockFiles();
+    }
+
+    /**
+     * 添加区块时是否将区块文件刷盘, 未配置时由操作系统刷盘
+     */
+    public static boolean isBlockFileSyncEnabled(){
+        NodeConfig.Blockchain blockchain = NodeConfigFactory.getNodeConfig().getLedger().getBlockchain();
+        return blockchain != null && blockchain.isSyncBlocks();
+    }
+
+    /**
+     * 区块文件修剪策略, 修剪模式不是archive或drop时返回null(不修剪)
+     */
+    public static IPrunePolicy getBlockPrunePolicy(){
+        NodeConfig.Blockchain blockchain = NodeConfigFactory.getNodeConfig().getLedger().getBlockchain();
+        if (blockchain == null || blockchain.getPruneMode() == null) {
+            return null;
+        }
+        String mode = blockchain.getPruneMode().toLowerCase();
+        if (!PRUNE_MODE_ARCHIVE.equals(mode) && !PRUNE_MODE_DROP.equals(mode)) {
+            return null;
+        }
+        long keepMillis = TimeUnit.DAYS.toMillis(Math.max(blockchain.getPruneKeepDays(), 0));
+        if (blockchain.getPruneKeepBlocks() <= 0 && keepMillis <= 0) {
+            return null;
+        }
+        return new BlockRetentionPolicy(blockchain.getPruneKeepBlocks(), keepMillis, PRUNE_MODE_ARCHIVE.equals(mode));
+    }
+
+    /**
+     * 每提交多少个区块检查一次可修剪的区块文件, 未配置时为1000
+     */
+    public static int getBlockPruneInterval(){
+        NodeConfig.Blockchain blockchain = NodeConfigFactory.getNodeConfig().getLedger().getBlockchain();
+        return blockchain == null || blockchain.getPruneInterval() <= 0 ? 1000 : blockchain.getPruneInterval();
+    }
+
+    /**
+     * MVCC校验时查询已提交版本的线程数, 未配置时取CPU核数
+     */
+    public static int getStateValidatorPoolSize(){
+        NodeConfig.State state = NodeConfigFactory.getNodeConfig().getLedger().getState();
+        int poolSize = state == null ? 0 : state.getValidatorPoolSize();
+        return poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 私有数据的存活区块数, 优先取collection的配置, 0表示永久保存
+     */
+    public static long getPvtDataBlockToLive(String ns, String coll){
+        NodeConfig.PvtData pvtData = NodeConfigFactory.getNodeConfig().getLedger().getPvtData();
+        if (pvtData == null) {
+            return 0;
+        }
+        Map<String, Integer> collectionBlockToLive = pvtData.getCollectionBlockToLive();
+        if (collectionBlockToLive != null) {
+            Integer btl = collectionBlockToLive.get(ns + "/" + coll);
+            if (btl != null) {
+                return Math.max(btl, 0);
+            }
+        }
+        return Math.max(pvtData.getBlockToLive(), 0);
+    }
+
+    /**
+     * 每提交多少个区块检查一次到期的私有数据, 未配置时为100
+     */
+    public static int getPvtDataPurgeInterval(){
+        NodeConfig.PvtData pvtData = NodeConfigFactory.getNodeConfig().getLedger().getPvtData();
+        return pvtData == null || pvtData.getPurgeInterval() <= 0 ? 100 : pvtData.getPurgeInterval();
+    }
+
+    /**
+     * 持有提交锁时最多清除的到期索引数, 未配置时为100
+     */
+    public static int getPvtDataPurgeBatchSize(){
+        NodeConfig.PvtData pvtData = NodeConfigFactory.getNodeConfig().getLedger().getPvtData();
+        return pvtData == null || pvtData.getPurgeBatchSize() <= 0 ? 100 : pvtData.getPurgeBatchSize();
+    }
+
     public static String getRootPath(){
         return ROOT_DIR;
     }
@@ -48,8 +48,10 @@ public class Provider {
         };
         IndexConfig indexConfig = new IndexConfig(attrsToIndex);
         //文件系统初始化参数
-		this.blkStoreProvider =
-				new FsBlockStoreProvider(new Config(LedgerConfig.getBlockStorePath(), LedgerConfig.getMaxBlockfileSize()), indexConfig);
+		Config config = new Config(LedgerConfig.getBlockStorePath(), LedgerConfig.getMaxBlockfileSize(),
+				LedgerConfig.isBlockFileMmapEnabled());
+		config.setSyncBlocks(LedgerConfig.isBlockFileSyncEnabled());
+		this.blkStoreProvider = new FsBlockStoreProvider(config, indexConfig);
         //pvtdata初始化
         this.pvtDataProvider = new PvtDataProvider();
     }
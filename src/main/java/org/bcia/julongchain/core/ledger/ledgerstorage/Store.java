@@ -16,6 +16,7 @@ limitations under the License.
 package org.bcia.julongchain.core.ledger.ledgerstorage;
 
 import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.IPrunePolicy;
 import org.bcia.julongchain.common.ledger.IResultsIterator;
 import org.bcia.julongchain.common.ledger.blkstorage.IBlockStore;
 import org.bcia.julongchain.core.ledger.BlockAndPvtData;
@@ -87,6 +88,21 @@ public class Store implements IBlockStore {
         return blkStorage.retrieveTxValidationCodeByTxID(txID);
     }
 
+    @Override
+    public int prune(IPrunePolicy policy) throws LedgerException {
+        return blkStorage.prune(policy);
+    }
+
+    @Override
+    public boolean isTxPruned(String txID) throws LedgerException {
+        return blkStorage.isTxPruned(txID);
+    }
+
+    @Override
+    public long getFirstUnarchivedBlockNum() throws LedgerException {
+        return blkStorage.getFirstUnarchivedBlockNum();
+    }
+
     @Override
     public void shutdown() {
 
@@ -112,7 +128,7 @@ public class Store implements IBlockStore {
         pvtdataStore.commit();
     }
 
-    public synchronized BlockAndPvtData getPvtDataAndBlockByNum(long blockNum, PvtNsCollFilter filter) throws LedgerException {
+    public BlockAndPvtData getPvtDataAndBlockByNum(long blockNum, PvtNsCollFilter filter) throws LedgerException {
         Common.Block block = retrieveBlockByNumber(blockNum);
         List<TxPvtData> pvtData = getPvtDataByNumWithoutLock(blockNum, filter);
         BlockAndPvtData bapd = new BlockAndPvtData();
@@ -121,10 +137,15 @@ public class Store implements IBlockStore {
         return bapd;
     }
 
-    public synchronized List<TxPvtData> getPvtDataByNum(long blockNum, PvtNsCollFilter filter) throws LedgerException{
+    public List<TxPvtData> getPvtDataByNum(long blockNum, PvtNsCollFilter filter) throws LedgerException{
         return getPvtDataByNumWithoutLock(blockNum, filter);
     }
 
+    public Map<Long, List<TxPvtData>> getPvtDataByBlockRange(long startBlockNum, long endBlockNum,
+                                                             PvtNsCollFilter filter) throws LedgerException {
+        return pvtdataStore.getPvtDataByBlockRange(startBlockNum, endBlockNum, filter);
+    }
+
     private List<TxPvtData> getPvtDataByNumWithoutLock(long blockNum, PvtNsCollFilter filter) throws LedgerException {
         return pvtdataStore.getPvtDataByBlockNum(blockNum, filter);
     }
@@ -117,7 +117,7 @@ public class LevelDBUtil {
 	 * 向level db批量写入数据
 	 *
 	 * @param db - 要写入的level db数据库
-	 * @param map - 要批量写入的数据
+	 * @param map - 要批量写入的数据, value为null表示删除
 	 */
 	public static void add(DB db, Map<byte[], byte[]> map, boolean sync) throws LevelDBException {
 		WriteBatch writeBatch = db.createWriteBatch();
@@ -129,9 +129,16 @@ public class LevelDBUtil {
 					} else {
 						writeBatch.delete(k);
 					}
-					db.write(writeBatch, writeOptions);
 				});
-		closeWriteBatch(writeBatch);
+		try {
+			//整个批次只写入一次
+			db.write(writeBatch, writeOptions);
+		} catch (Exception e) {
+			log.error(e.getMessage());
+			throw new LevelDBException(e);
+		} finally {
+			closeWriteBatch(writeBatch);
+		}
 	}
 
 	/**
@@ -0,0 +1,47 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+		 http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.pvtdatapolicy;
+
+import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
+
+/**
+ * 从节点配置ledger.pvtData读取存活区块数
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class ConfigBTLPolicy implements IBTLPolicy {
+	@Override
+	public long getBTL(String ns, String coll) {
+		return LedgerConfig.getPvtDataBlockToLive(ns, coll);
+	}
+
+	@Override
+	public long getExpiringBlock(String ns, String coll, long committingBlock) {
+		return computeExpiringBlock(getBTL(ns, coll), committingBlock);
+	}
+
+	/**
+	 * 在committingBlock中提交的数据可存活到committingBlock + btl, 之后的区块提交时到期
+	 */
+	public static long computeExpiringBlock(long btl, long committingBlock) {
+		if (btl <= 0 || btl >= Long.MAX_VALUE - committingBlock - 1) {
+			return Long.MAX_VALUE;
+		}
+		return committingBlock + btl + 1;
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+		 http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.pvtdatapolicy;
+
+/**
+ * 私有数据存活区块数(block-to-live)策略
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public interface IBTLPolicy {
+	/**
+	 * 获取collection的存活区块数, 0表示永久保存
+	 */
+	long getBTL(String ns, String coll);
+
+	/**
+	 * 获取在committingBlock中提交的私有数据到期的区块号, 提交该区块后数据可被清除
+	 * @return 永久保存时返回Long.MAX_VALUE
+	 */
+	long getExpiringBlock(String ns, String coll, long committingBlock);
+}
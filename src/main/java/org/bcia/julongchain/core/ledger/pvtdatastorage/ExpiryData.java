@@ -0,0 +1,105 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+		 http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.pvtdatastorage;
+
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.core.ledger.PvtNsCollFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 到期索引的值
+ * 记录一个区块中在同一区块到期的namespace和collection
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class ExpiryData {
+	private Map<String, Set<String>> nsColls = new TreeMap<>();
+
+	public void add(String ns, String coll) {
+		Set<String> colls = nsColls.get(ns);
+		if (colls == null) {
+			colls = new TreeSet<>();
+			nsColls.put(ns, colls);
+		}
+		colls.add(coll);
+	}
+
+	public boolean isEmpty() {
+		return nsColls.isEmpty();
+	}
+
+	public Map<String, Set<String>> getNsColls() {
+		return nsColls;
+	}
+
+	/**
+	 * 转换为只包含到期collection的过滤器
+	 */
+	public PvtNsCollFilter toFilter() {
+		PvtNsCollFilter filter = new PvtNsCollFilter();
+		for (Map.Entry<String, Set<String>> entry : nsColls.entrySet()) {
+			for (String coll : entry.getValue()) {
+				filter.add(entry.getKey(), coll);
+			}
+		}
+		return filter;
+	}
+
+	public byte[] toBytes() throws LedgerException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(nsColls.size());
+			for (Map.Entry<String, Set<String>> entry : nsColls.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeInt(entry.getValue().size());
+				for (String coll : entry.getValue()) {
+					out.writeUTF(coll);
+				}
+			}
+		} catch (IOException e) {
+			throw new LedgerException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	public static ExpiryData fromBytes(byte[] bytes) throws LedgerException {
+		ExpiryData expiryData = new ExpiryData();
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			int nsCount = in.readInt();
+			for (int i = 0; i < nsCount; i++) {
+				String ns = in.readUTF();
+				int collCount = in.readInt();
+				for (int j = 0; j < collCount; j++) {
+					expiryData.add(ns, in.readUTF());
+				}
+			}
+		} catch (IOException e) {
+			throw new LedgerException(e);
+		}
+		return expiryData;
+	}
+}
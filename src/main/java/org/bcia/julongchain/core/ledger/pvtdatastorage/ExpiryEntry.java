@@ -0,0 +1,53 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+		 http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.pvtdatastorage;
+
+/**
+ * 到期索引条目
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class ExpiryEntry {
+	private byte[] key;
+	private long expiringBlk;
+	private long committingBlk;
+	private ExpiryData expiryData;
+
+	public ExpiryEntry(byte[] key, long expiringBlk, long committingBlk, ExpiryData expiryData) {
+		this.key = key;
+		this.expiringBlk = expiringBlk;
+		this.committingBlk = committingBlk;
+		this.expiryData = expiryData;
+	}
+
+	public byte[] getKey() {
+		return key;
+	}
+
+	public long getExpiringBlk() {
+		return expiringBlk;
+	}
+
+	public long getCommittingBlk() {
+		return committingBlk;
+	}
+
+	public ExpiryData getExpiryData() {
+		return expiryData;
+	}
+}
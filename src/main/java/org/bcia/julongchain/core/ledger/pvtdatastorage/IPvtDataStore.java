@@ -20,6 +20,7 @@ import org.bcia.julongchain.core.ledger.PvtNsCollFilter;
 import org.bcia.julongchain.core.ledger.TxPvtData;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * pvt接口
@@ -29,6 +30,13 @@ import java.util.List;
  * @company Dingxuan
  */
 public interface IPvtDataStore {
+	/**
+	 * 清除私有数据前的回调, 用于同时清除状态数据库中对应的私有数据
+	 */
+	interface IPurgeListener {
+		void beforePurge(long blockNum, List<TxPvtData> purgedData) throws LedgerException;
+	}
+
 	/**
 	 * 在pvtDataStore中设置最后提交的blockNum
 	 */
@@ -39,6 +47,13 @@ public interface IPvtDataStore {
 	 */
     List<TxPvtData> getPvtDataByBlockNum(long blockNum, PvtNsCollFilter filter) throws LedgerException;
 
+	/**
+	 * 一次遍历获取[startBlockNum, endBlockNum]范围内区块的pvtData
+	 * @return 以区块号为键, 按区块号升序排列, 没有pvtData的区块不包含在内
+	 */
+	Map<Long, List<TxPvtData>> getPvtDataByBlockRange(long startBlockNum, long endBlockNum, PvtNsCollFilter filter)
+			throws LedgerException;
+
 	/**
 	 * 向pvtDataStore中提交数据并进入预备状态（batchPending）
 	 * @param blockNum 区块编号
@@ -78,6 +93,25 @@ public interface IPvtDataStore {
 	 */
 	boolean hasPendingBatch() throws LedgerException ;
 
+	/**
+	 * 获取到期区块号不大于maxExpiringBlock的到期索引, 按到期区块号排序, 最多limit条
+	 */
+	List<ExpiryEntry> getExpiryEntries(long maxExpiringBlock, int limit) throws LedgerException;
+
+	/**
+	 * 清除一个区块中filter包含的collection写集合, filter为null时清除该区块的全部私有数据
+	 * @param expiryKey 同一批次中删除的到期索引键, 可以为null
+	 * @param listener 写入前回调, 可以为null
+	 * @return 被清除的交易写集合数
+	 */
+	int purge(long blockNum, PvtNsCollFilter filter, byte[] expiryKey, IPurgeListener listener)
+			throws LedgerException;
+
+	/**
+	 * 保留的私有数据中最小的区块号, 没有私有数据时返回当前高度
+	 */
+	long getMinBlockNum() throws LedgerException;
+
 	/**
 	 * 关闭
 	 * 暂时不需要进行操作
@@ -33,6 +33,7 @@ public class KvEncoding  {
     public static final byte[] LAST_COMMITTED_BLK_KEY = {1};
     public static final byte[] PVT_DATA_KEY_PREFIX = {2};
     public static final byte[] EMPTY_VALUE = {3};
+    public static final byte[] EXPIRY_KEY_PREFIX = {4};
 
     public static byte[] encodePK(long blockNum, long tranNum) {
         return  ArrayUtils.addAll(PVT_DATA_KEY_PREFIX, new LedgerHeight(blockNum, tranNum).toBytes());
@@ -60,6 +61,25 @@ public class KvEncoding  {
         return encodePK(blockNum, Long.MAX_VALUE);
     }
 
+    /**
+     * 到期索引键: 前缀 + 到期区块号 + 提交区块号, 按到期区块号排序
+     */
+    public static byte[] encodeExpiryKey(long expiringBlk, long committingBlk) {
+        return ArrayUtils.addAll(EXPIRY_KEY_PREFIX, new LedgerHeight(expiringBlk, committingBlk).toBytes());
+    }
+
+    public static long decodeExpiryKeyToExpiringBlk(byte[] key) {
+        return decodePKToBlockNum(key);
+    }
+
+    public static long decodeExpiryKeyToCommittingBlk(byte[] key) {
+        return decodePKToTranNum(key);
+    }
+
+    public static byte[] getEndKeyForExpiryScan(long maxExpiringBlk) {
+        return encodeExpiryKey(maxExpiringBlk, Long.MAX_VALUE);
+    }
+
     public static byte[] encodeBlockNum(long blockNum){
         return Util.longToBytes(blockNum, BlockFileManager.PEEK_BYTES_LEN);
     }
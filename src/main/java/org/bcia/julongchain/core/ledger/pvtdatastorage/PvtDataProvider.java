@@ -21,6 +21,7 @@ import org.bcia.julongchain.common.ledger.util.leveldbhelper.LevelDBProvider;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
+import org.bcia.julongchain.core.ledger.pvtdatapolicy.ConfigBTLPolicy;
 
 /**
  * pvtdata操作类
@@ -47,7 +48,7 @@ public class PvtDataProvider {
      * 根据id打开对应pvtdata
      */
     public IPvtDataStore openStore(String ledgerID) throws LedgerException{
-        return new PvtDataStoreImpl(db, ledgerID).initState();
+        return new PvtDataStoreImpl(db, ledgerID, new ConfigBTLPolicy()).initState();
     }
 
     /**
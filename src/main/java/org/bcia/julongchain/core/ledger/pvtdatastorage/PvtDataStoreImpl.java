@@ -15,7 +15,9 @@ limitations under the License.
  */
 package org.bcia.julongchain.core.ledger.pvtdatastorage;
 
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.ledger.util.IDBProvider;
 import org.bcia.julongchain.common.ledger.util.leveldbhelper.UpdateBatch;
@@ -24,9 +26,13 @@ import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.common.util.BytesHexStrTranslate;
 import org.bcia.julongchain.core.ledger.PvtNsCollFilter;
 import org.bcia.julongchain.core.ledger.TxPvtData;
+import org.bcia.julongchain.core.ledger.pvtdatapolicy.IBTLPolicy;
 import org.bcia.julongchain.protos.ledger.rwset.Rwset;
+import org.bouncycastle.util.Arrays;
 import org.bouncycastle.util.encoders.Hex;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -40,17 +46,35 @@ import java.util.*;
 public class PvtDataStoreImpl implements IPvtDataStore {
     private static JulongChainLog log = JulongChainLogFactory.getLog(PvtDataStoreImpl.class);
 
+    private static final int DATA_MODEL_TAG = makeTag(
+            Rwset.TxPvtReadWriteSet.DATA_MODEL_FIELD_NUMBER, WireFormat.WIRETYPE_VARINT);
+    private static final int NS_PVT_RWSET_TAG = makeTag(
+            Rwset.TxPvtReadWriteSet.NS_PVT_RWSET_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int NAMESPACE_TAG = makeTag(
+            Rwset.NsPvtReadWriteSet.NAMESPACE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int COLLECTION_PVT_RWSET_TAG = makeTag(
+            Rwset.NsPvtReadWriteSet.COLLECTION_PVT_RWSET_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int COLLECTION_NAME_TAG = makeTag(
+            Rwset.CollectionPvtReadWriteSet.COLLECTION_NAME_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+
     private IDBProvider db;
     private String ledgerID;
     private boolean isEmpty;
     private long lastCommittedBlock;
     private boolean batchPending;
+    private IBTLPolicy btlPolicy;
 
     public PvtDataStoreImpl(IDBProvider db, String ledgerID) {
         this.db = db;
         this.ledgerID = ledgerID;
     }
 
+    public PvtDataStoreImpl(IDBProvider db, String ledgerID, IBTLPolicy btlPolicy) {
+        this.db = db;
+        this.ledgerID = ledgerID;
+        this.btlPolicy = btlPolicy;
+    }
+
     public PvtDataStoreImpl initState() throws LedgerException {
         lastCommittedBlock = getLastCommittedBlockNum();
         isEmpty = lastCommittedBlock == 0;
@@ -80,34 +104,59 @@ public class PvtDataStoreImpl implements IPvtDataStore {
     @Override
     public List<TxPvtData> getPvtDataByBlockNum(long blockNum, PvtNsCollFilter filter) throws LedgerException {
         log.debug("Getting private data for block " + blockNum);
+        List<TxPvtData> pvtData = getPvtDataByBlockRange(blockNum, blockNum, filter).get(blockNum);
+        return pvtData != null ? pvtData : new ArrayList<>();
+    }
+
+    /**
+     * 一次遍历获取多个区块的pvtdata
+     * 遍历在endBlockNum的结束键处停止, 只解码filter中包含的collection
+     */
+    @Override
+    public Map<Long, List<TxPvtData>> getPvtDataByBlockRange(long startBlockNum, long endBlockNum,
+                                                             PvtNsCollFilter filter) throws LedgerException {
         if (isEmpty){
             throw new LedgerException("Thr store is empty");
         }
+        if (startBlockNum > endBlockNum) {
+            throw new LedgerException("Start block " + startBlockNum + " is greater than end block " + endBlockNum);
+        }
         //对于提供的blockid不正确情况抛出异常
-        if(blockNum > lastCommittedBlock){
-            throw new LedgerException("Last committed block " + lastCommittedBlock + " block reuqested " + blockNum);
+        if(endBlockNum > lastCommittedBlock){
+            throw new LedgerException("Last committed block " + lastCommittedBlock + " block reuqested " + endBlockNum);
         }
-        byte[] startKey = KvEncoding.getStartKeyForRangeScanByBlockNum(blockNum);
-        log.debug(String.format("Querying private data for write sets using startKey %s", Hex.toHexString(startKey)));
+        return scanPvtData(startBlockNum, endBlockNum, filter);
+    }
+
+    private Map<Long, List<TxPvtData>> scanPvtData(long startBlockNum, long endBlockNum, PvtNsCollFilter filter)
+            throws LedgerException {
+        byte[] startKey = KvEncoding.getStartKeyForRangeScanByBlockNum(startBlockNum);
+        byte[] endKey = KvEncoding.getEndKeyForRangeScanByBlockNum(endBlockNum);
+        log.debug(String.format("Querying private data for write sets using startKey %s, endKey %s",
+                Hex.toHexString(startKey), Hex.toHexString(endKey)));
+        Map<Long, List<TxPvtData>> pvtData = new LinkedHashMap<>();
         Iterator<Map.Entry<byte[], byte[]>> itr = db.getIterator(startKey);
-        List<TxPvtData> pvtData = new ArrayList<>();
-        while(itr.hasNext()){
-            Map.Entry<byte[], byte[]> entry = itr.next();
-            byte[] key = entry.getKey();
-            byte[] value = entry.getValue();
-            long bNum = KvEncoding.decodePKToBlockNum(key);
-            long tNum = KvEncoding.decodePKToTranNum(key);
-            Rwset.TxPvtReadWriteSet pvtRWSet = null;
-            try {
-                pvtRWSet = Rwset.TxPvtReadWriteSet.parseFrom(value);
-            } catch (InvalidProtocolBufferException e) {
-                throw new LedgerException(e);
+        try {
+            while(itr.hasNext()){
+                Map.Entry<byte[], byte[]> entry = itr.next();
+                byte[] key = entry.getKey();
+                if (Arrays.compareUnsigned(key, endKey) > 0) {
+                    break;
+                }
+                long bNum = KvEncoding.decodePKToBlockNum(key);
+                long tNum = KvEncoding.decodePKToTranNum(key);
+                log.debug(String.format("Retrieved private data write set for block %d, tran %d", bNum, tNum));
+                //过滤无效的rwset
+                Rwset.TxPvtReadWriteSet fileteredWSet = decodePvtWSet(entry.getValue(), filter);
+                List<TxPvtData> blockPvtData = pvtData.get(bNum);
+                if (blockPvtData == null) {
+                    blockPvtData = new ArrayList<>();
+                    pvtData.put(bNum, blockPvtData);
+                }
+                blockPvtData.add(new TxPvtData(tNum, fileteredWSet));
             }
-            log.debug(String.format("Retrieved private data write set for block %d, tran %d", bNum, tNum));
-            //过滤无效的rwset
-            Rwset.TxPvtReadWriteSet fileteredWSet = trimPvtWSet(pvtRWSet, filter);
-            TxPvtData data = new TxPvtData(tNum, fileteredWSet);
-            pvtData.add(data);
+        } finally {
+            closeIterator(itr);
         }
         return pvtData;
     }
@@ -132,6 +181,10 @@ public class PvtDataStoreImpl implements IPvtDataStore {
             byte[] value = txPvtData.getWriteSet().toByteArray();
             batch.put(key, value);
         }
+        //写入到期索引
+        for (Map.Entry<Long, ExpiryData> entry : buildExpiryData(blockNum, pvtData).entrySet()) {
+            batch.put(KvEncoding.encodeExpiryKey(entry.getKey(), blockNum), entry.getValue().toBytes());
+        }
         //设置pending_commit_key(为commit或rollback准备)
         batch.put(KvEncoding.getPendingCommitKey(ledgerID), KvEncoding.EMPTY_VALUE);
         //执行写入
@@ -178,6 +231,13 @@ public class PvtDataStoreImpl implements IPvtDataStore {
         for(byte[] key : pendingBatchKeys){
             batch.delete(key);
         }
+        List<TxPvtData> pendingPvtData = scanPvtData(rollingbackBlockNum, rollingbackBlockNum, null)
+                .get(rollingbackBlockNum);
+        if (pendingPvtData != null) {
+            for (Long expiringBlk : buildExpiryData(rollingbackBlockNum, pendingPvtData).keySet()) {
+                batch.delete(KvEncoding.encodeExpiryKey(expiringBlk, rollingbackBlockNum));
+            }
+        }
         batch.delete(KvEncoding.getPendingCommitKey(ledgerID));
         db.writeBatch(batch, true);
         batchPending = false;
@@ -202,59 +262,250 @@ public class PvtDataStoreImpl implements IPvtDataStore {
         return batchPending;
     }
 
+    @Override
+    public List<ExpiryEntry> getExpiryEntries(long maxExpiringBlock, int limit) throws LedgerException {
+        byte[] endKey = KvEncoding.getEndKeyForExpiryScan(maxExpiringBlock);
+        List<ExpiryEntry> entries = new ArrayList<>();
+        Iterator<Map.Entry<byte[], byte[]>> itr = db.getIterator(KvEncoding.encodeExpiryKey(0, 0));
+        try {
+            while (itr.hasNext() && entries.size() < limit) {
+                Map.Entry<byte[], byte[]> entry = itr.next();
+                byte[] key = entry.getKey();
+                if (Arrays.compareUnsigned(key, endKey) > 0) {
+                    break;
+                }
+                entries.add(new ExpiryEntry(key, KvEncoding.decodeExpiryKeyToExpiringBlk(key),
+                        KvEncoding.decodeExpiryKeyToCommittingBlk(key), ExpiryData.fromBytes(entry.getValue())));
+            }
+        } finally {
+            closeIterator(itr);
+        }
+        return entries;
+    }
+
+    @Override
+    public int purge(long blockNum, PvtNsCollFilter filter, byte[] expiryKey, IPurgeListener listener)
+            throws LedgerException {
+        byte[] endKey = KvEncoding.getEndKeyForRangeScanByBlockNum(blockNum);
+        UpdateBatch batch = new UpdateBatch();
+        List<TxPvtData> purgedData = new ArrayList<>();
+        Iterator<Map.Entry<byte[], byte[]>> itr = db.getIterator(KvEncoding.getStartKeyForRangeScanByBlockNum(blockNum));
+        try {
+            while (itr.hasNext()) {
+                Map.Entry<byte[], byte[]> entry = itr.next();
+                byte[] key = entry.getKey();
+                if (Arrays.compareUnsigned(key, endKey) > 0) {
+                    break;
+                }
+                Rwset.TxPvtReadWriteSet wSet = decodePvtWSet(entry.getValue(), null);
+                long tNum = KvEncoding.decodePKToTranNum(key);
+                if (filter == null) {
+                    batch.delete(key);
+                    purgedData.add(new TxPvtData(tNum, wSet));
+                    continue;
+                }
+                Rwset.TxPvtReadWriteSet.Builder keptBuilder = Rwset.TxPvtReadWriteSet.newBuilder()
+                        .setDataModel(wSet.getDataModel());
+                Rwset.TxPvtReadWriteSet.Builder purgedBuilder = Rwset.TxPvtReadWriteSet.newBuilder()
+                        .setDataModel(wSet.getDataModel());
+                splitPvtWSet(wSet, filter, keptBuilder, purgedBuilder);
+                if (purgedBuilder.getNsPvtRwsetCount() == 0) {
+                    continue;
+                }
+                if (keptBuilder.getNsPvtRwsetCount() == 0) {
+                    batch.delete(key);
+                } else {
+                    batch.put(key, keptBuilder.build().toByteArray());
+                }
+                purgedData.add(new TxPvtData(tNum, purgedBuilder.build()));
+            }
+        } finally {
+            closeIterator(itr);
+        }
+
+        if (expiryKey != null) {
+            batch.delete(expiryKey);
+        }
+        //先清除状态数据库, 中途失败时到期索引仍然保留, 之后会重新清除
+        if (listener != null && !purgedData.isEmpty()) {
+            listener.beforePurge(blockNum, purgedData);
+        }
+        if (batch.size() > 0) {
+            db.writeBatch(batch, true);
+        }
+        log.debug(String.format("Purged %d private data write sets of block %d", purgedData.size(), blockNum));
+        return purgedData.size();
+    }
+
+    @Override
+    public long getMinBlockNum() throws LedgerException {
+        Iterator<Map.Entry<byte[], byte[]>> itr = db.getIterator(KvEncoding.encodePK(0, 0));
+        try {
+            if (itr.hasNext()) {
+                byte[] key = itr.next().getKey();
+                if (key.length > 0 && key[0] == KvEncoding.PVT_DATA_KEY_PREFIX[0]) {
+                    return KvEncoding.decodePKToBlockNum(key);
+                }
+            }
+        } finally {
+            closeIterator(itr);
+        }
+        return lastCommitedBlockHeight();
+    }
+
     @Override
     public void shutdown() {
         //do nothing
     }
 
     /**
-     * 过滤屌filter中不包含的namespace
+     * 按到期区块号汇总区块中各collection的到期信息, 永久保存的collection不记录
      */
-    private Rwset.TxPvtReadWriteSet trimPvtWSet(Rwset.TxPvtReadWriteSet pvtWSet, PvtNsCollFilter filter){
-        if(filter == null){
-            return pvtWSet;
+    private Map<Long, ExpiryData> buildExpiryData(long blockNum, List<TxPvtData> pvtData) {
+        Map<Long, ExpiryData> expiryDataMap = new TreeMap<>();
+        if (btlPolicy == null) {
+            return expiryDataMap;
         }
-        List<Rwset.NsPvtReadWriteSet> filteredNsRwSet = new ArrayList<>();
-        for(Rwset.NsPvtReadWriteSet ns : pvtWSet.getNsPvtRwsetList()){
-            List<Rwset.CollectionPvtReadWriteSet> filterdCollRWSet = new ArrayList<>();
-            for(Rwset.CollectionPvtReadWriteSet coll : ns.getCollectionPvtRwsetList()){
-                if(filter.has(ns.getNamespace(), coll.getCollectionName())){
-                    filterdCollRWSet.add(coll);
-                }
+        for (TxPvtData txPvtData : pvtData) {
+            if (txPvtData.getWriteSet() == null) {
+                continue;
             }
-            if(filterdCollRWSet.size() != 0){
-                filteredNsRwSet.add(setCollectionPvtRwset(Rwset.NsPvtReadWriteSet.newBuilder(), filterdCollRWSet)
-                        .setNamespace(ns.getNamespace())
-                        .build());
+            for (Rwset.NsPvtReadWriteSet ns : txPvtData.getWriteSet().getNsPvtRwsetList()) {
+                for (Rwset.CollectionPvtReadWriteSet coll : ns.getCollectionPvtRwsetList()) {
+                    long expiringBlk = btlPolicy.getExpiringBlock(ns.getNamespace(), coll.getCollectionName(),
+                            blockNum);
+                    if (expiringBlk == Long.MAX_VALUE) {
+                        continue;
+                    }
+                    ExpiryData expiryData = expiryDataMap.get(expiringBlk);
+                    if (expiryData == null) {
+                        expiryData = new ExpiryData();
+                        expiryDataMap.put(expiringBlk, expiryData);
+                    }
+                    expiryData.add(ns.getNamespace(), coll.getCollectionName());
+                }
             }
         }
-        Rwset.TxPvtReadWriteSet filteredTxPvtRwSet = null;
-        if(filteredNsRwSet.size() != 0){
-            filteredTxPvtRwSet = setNsPvtRwset(Rwset.TxPvtReadWriteSet.newBuilder(), filteredNsRwSet)
-                    .setDataModel(pvtWSet.getDataModel())
-                    .build();
+        return expiryDataMap;
+    }
+
+    /**
+     * 将写集合按filter拆分为保留和清除两部分
+     */
+    private static void splitPvtWSet(Rwset.TxPvtReadWriteSet wSet, PvtNsCollFilter filter,
+                                     Rwset.TxPvtReadWriteSet.Builder keptBuilder,
+                                     Rwset.TxPvtReadWriteSet.Builder purgedBuilder) {
+        for (Rwset.NsPvtReadWriteSet ns : wSet.getNsPvtRwsetList()) {
+            Rwset.NsPvtReadWriteSet.Builder keptNs = Rwset.NsPvtReadWriteSet.newBuilder().setNamespace(ns.getNamespace());
+            Rwset.NsPvtReadWriteSet.Builder purgedNs = Rwset.NsPvtReadWriteSet.newBuilder().setNamespace(ns.getNamespace());
+            for (Rwset.CollectionPvtReadWriteSet coll : ns.getCollectionPvtRwsetList()) {
+                if (filter.has(ns.getNamespace(), coll.getCollectionName())) {
+                    purgedNs.addCollectionPvtRwset(coll);
+                } else {
+                    keptNs.addCollectionPvtRwset(coll);
+                }
+            }
+            if (keptNs.getCollectionPvtRwsetCount() > 0) {
+                keptBuilder.addNsPvtRwset(keptNs);
+            }
+            if (purgedNs.getCollectionPvtRwsetCount() > 0) {
+                purgedBuilder.addNsPvtRwset(purgedNs);
+            }
         }
-        return filteredTxPvtRwSet;
     }
 
     /**
-     * grpc中list数据插入只能一个一个cha如:)
+     * 解码pvt写集合, 过滤掉filter中不包含的namespace和collection
+     * 先只读取namespace和collection名称, 被过滤的collection不解码
      */
-    private Rwset.NsPvtReadWriteSet.Builder setCollectionPvtRwset(Rwset.NsPvtReadWriteSet.Builder builder, List<Rwset.CollectionPvtReadWriteSet> list){
-        for (int i = 0; i < list.size(); i++) {
-            builder.addCollectionPvtRwset(i, list.get(i));
+    private static Rwset.TxPvtReadWriteSet decodePvtWSet(byte[] value, PvtNsCollFilter filter) throws LedgerException {
+        try {
+            if (filter == null) {
+                return Rwset.TxPvtReadWriteSet.parseFrom(value);
+            }
+            Rwset.TxPvtReadWriteSet.Builder builder = Rwset.TxPvtReadWriteSet.newBuilder();
+            CodedInputStream input = CodedInputStream.newInstance(value);
+            input.enableAliasing(true);
+            boolean hasNs = false;
+            int tag;
+            while ((tag = input.readTag()) != 0) {
+                if (tag == DATA_MODEL_TAG) {
+                    builder.setDataModelValue(input.readEnum());
+                } else if (tag == NS_PVT_RWSET_TAG) {
+                    Rwset.NsPvtReadWriteSet ns = decodeNsPvtWSet(input.readBytes(), filter);
+                    if (ns != null) {
+                        builder.addNsPvtRwset(ns);
+                        hasNs = true;
+                    }
+                } else {
+                    input.skipField(tag);
+                }
+            }
+            return hasNs ? builder.build() : null;
+        } catch (IOException e) {
+            throw new LedgerException(e);
         }
-        return builder;
     }
 
     /**
-     * grpc中list数据插入只能一个一个cha如:)
+     * 解码一个namespace中filter包含的collection, 没有时返回null
      */
-    private Rwset.TxPvtReadWriteSet.Builder setNsPvtRwset(Rwset.TxPvtReadWriteSet.Builder builder, List<Rwset.NsPvtReadWriteSet> list){
-        for (int i = 0; i < list.size(); i++) {
-            builder.addNsPvtRwset(i, list.get(i));
+    private static Rwset.NsPvtReadWriteSet decodeNsPvtWSet(ByteString nsBytes, PvtNsCollFilter filter)
+            throws IOException {
+        CodedInputStream input = nsBytes.newCodedInput();
+        input.enableAliasing(true);
+        String namespace = "";
+        List<ByteString> collBytesList = new ArrayList<>();
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == NAMESPACE_TAG) {
+                namespace = input.readStringRequireUtf8();
+                if (!filter.getFilters().containsKey(namespace)) {
+                    return null;
+                }
+            } else if (tag == COLLECTION_PVT_RWSET_TAG) {
+                collBytesList.add(input.readBytes());
+            } else {
+                input.skipField(tag);
+            }
+        }
+
+        Rwset.NsPvtReadWriteSet.Builder builder = null;
+        for (ByteString collBytes : collBytesList) {
+            if (filter.has(namespace, readCollectionName(collBytes))) {
+                if (builder == null) {
+                    builder = Rwset.NsPvtReadWriteSet.newBuilder().setNamespace(namespace);
+                }
+                builder.addCollectionPvtRwset(Rwset.CollectionPvtReadWriteSet.parseFrom(collBytes));
+            }
+        }
+        return builder != null ? builder.build() : null;
+    }
+
+    private static String readCollectionName(ByteString collBytes) throws IOException {
+        CodedInputStream input = collBytes.newCodedInput();
+        int tag;
+        while ((tag = input.readTag()) != 0) {
+            if (tag == COLLECTION_NAME_TAG) {
+                return input.readStringRequireUtf8();
+            }
+            input.skipField(tag);
+        }
+        return "";
+    }
+
+    private static int makeTag(int fieldNumber, int wireType) {
+        return (fieldNumber << 3) | wireType;
+    }
+
+    private static void closeIterator(Iterator<Map.Entry<byte[], byte[]>> itr) {
+        if (itr instanceof Closeable) {
+            try {
+                ((Closeable) itr).close();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            }
         }
-        return builder;
     }
 
     /**
@@ -262,7 +513,7 @@ public class PvtDataStoreImpl implements IPvtDataStore {
      */
     private boolean hasPendingCommit() throws LedgerException{
         byte[] v = db.get(KvEncoding.getPendingCommitKey(ledgerID));
-        return Arrays.equals(v, KvEncoding.EMPTY_VALUE);
+        return Arrays.areEqual(v, KvEncoding.EMPTY_VALUE);
     }
 
     /**
@@ -289,14 +540,31 @@ public class PvtDataStoreImpl implements IPvtDataStore {
 	 */
 	private List<byte[]> retrievePendingBatchKeys() throws LedgerException{
         List<byte[]> pendingBatchKeys = new ArrayList<>();
-        Iterator<Map.Entry<byte[], byte[]>> itr = db.getIterator(KvEncoding.encodePK(nextBlockNum(), 0));
-        while(itr.hasNext()){
-            pendingBatchKeys.add(itr.next().getKey());
+        byte[] endKey = KvEncoding.getEndKeyForRangeScanByBlockNum(nextBlockNum());
+        Iterator<Map.Entry<byte[], byte[]>> itr = db.getIterator(KvEncoding.getStartKeyForRangeScanByBlockNum(nextBlockNum()));
+        try {
+            while(itr.hasNext()){
+                byte[] key = itr.next().getKey();
+                if (Arrays.compareUnsigned(key, endKey) > 0) {
+                    break;
+                }
+                pendingBatchKeys.add(key);
+            }
+        } finally {
+            closeIterator(itr);
         }
         return pendingBatchKeys;
     }
 
 
+    public IBTLPolicy getBtlPolicy() {
+        return btlPolicy;
+    }
+
+    public void setBtlPolicy(IBTLPolicy btlPolicy) {
+        this.btlPolicy = btlPolicy;
+    }
+
     public IDBProvider getDb() {
         return db;
     }
@@ -0,0 +1,175 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+		 http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.util;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.TxRwSet;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.node.ProposalPackage;
+import org.bcia.julongchain.protos.node.TransactionPackage;
+
+/**
+ * 解析后的区块
+ * 提交区块时校验、写状态、写历史和生成事件共用同一个对象, 每个交易的Envelope、Payload、GroupHeader、
+ * SmartContractAction和读写集在第一次使用时解析, 之后直接返回
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class ParsedBlock {
+    private final Common.Block block;
+    private final ParsedTx[] txs;
+
+    public ParsedBlock(Common.Block block) {
+        this(block, new ParsedTx[block.getData().getDataCount()]);
+    }
+
+    private ParsedBlock(Common.Block block, ParsedTx[] txs) {
+        this.block = block;
+        this.txs = txs;
+    }
+
+    /**
+     * 替换区块(仅metadata变化时), 已解析的交易继续使用
+     *
+     * @param newBlock 交易数据与当前区块相同的区块
+     * @return
+     */
+    public ParsedBlock withBlock(Common.Block newBlock) {
+        if (newBlock == block) {
+            return this;
+        }
+        if (!newBlock.getData().equals(block.getData())) {
+            return new ParsedBlock(newBlock);
+        }
+        return new ParsedBlock(newBlock, txs);
+    }
+
+    public Common.Block getBlock() {
+        return block;
+    }
+
+    public int getTxCount() {
+        return txs.length;
+    }
+
+    /**
+     * 获取第txIndex个交易
+     */
+    public ParsedTx getTx(int txIndex) {
+        synchronized (txs) {
+            ParsedTx tx = txs[txIndex];
+            if (tx == null) {
+                tx = new ParsedTx(block.getData().getData(txIndex));
+                txs[txIndex] = tx;
+            }
+            return tx;
+        }
+    }
+
+    /**
+     * 区块中的一个交易, 各部分最多解析一次
+     */
+    public static class ParsedTx {
+        private final ByteString envelopeBytes;
+        private Common.Envelope envelope;
+        private Common.Payload payload;
+        private Common.GroupHeader groupHeader;
+        private boolean actionDecoded;
+        private ProposalPackage.SmartContractAction action;
+        private TxRwSet txRwSet;
+
+        ParsedTx(ByteString envelopeBytes) {
+            this.envelopeBytes = envelopeBytes;
+        }
+
+        public ByteString getEnvelopeBytes() {
+            return envelopeBytes;
+        }
+
+        public synchronized Common.Envelope getEnvelope() throws LedgerException {
+            if (envelope == null) {
+                try {
+                    envelope = Common.Envelope.parseFrom(envelopeBytes);
+                } catch (InvalidProtocolBufferException e) {
+                    throw new LedgerException("Got error when getting Envelope: " + e.getMessage());
+                }
+            }
+            return envelope;
+        }
+
+        public synchronized Common.Payload getPayload() throws LedgerException {
+            if (payload == null) {
+                try {
+                    payload = Common.Payload.parseFrom(getEnvelope().getPayload());
+                } catch (InvalidProtocolBufferException e) {
+                    throw new LedgerException("Got error when getting Payload: " + e.getMessage());
+                }
+            }
+            return payload;
+        }
+
+        public synchronized Common.GroupHeader getGroupHeader() throws LedgerException {
+            if (groupHeader == null) {
+                try {
+                    groupHeader = Common.GroupHeader.parseFrom(getPayload().getHeader().getGroupHeader());
+                } catch (InvalidProtocolBufferException e) {
+                    throw new LedgerException("Got error when getting GroupHeader: " + e.getMessage());
+                }
+            }
+            return groupHeader;
+        }
+
+        /**
+         * 获取背书交易第一个action中的SmartContractAction, 与Util.getActionFromEnvelope一致
+         *
+         * @return 交易没有action或action不完整时返回null
+         * @throws LedgerException Transaction无法解析
+         */
+        public synchronized ProposalPackage.SmartContractAction getAction() throws LedgerException {
+            if (!actionDecoded) {
+                TransactionPackage.Transaction tx;
+                try {
+                    tx = TransactionPackage.Transaction.parseFrom(getPayload().getData());
+                } catch (InvalidProtocolBufferException e) {
+                    throw new LedgerException("Got error when getting Transaction: " + e.getMessage());
+                }
+                action = tx.getActionsCount() == 0 ? null : Util.getPayloads(tx.getActions(0));
+                actionDecoded = true;
+            }
+            return action;
+        }
+
+        /**
+         * 获取背书交易的读写集, 没有action时返回空读写集
+         * 返回的对象由各使用方共享, 不应修改
+         */
+        public synchronized TxRwSet getTxRwSet() throws LedgerException {
+            if (txRwSet == null) {
+                ProposalPackage.SmartContractAction respPayload = getAction();
+                TxRwSet rwSet = new TxRwSet();
+                if (respPayload != null) {
+                    rwSet.fromProtoBytes(respPayload.getResults());
+                }
+                txRwSet = rwSet;
+            }
+            return txRwSet;
+        }
+    }
+}
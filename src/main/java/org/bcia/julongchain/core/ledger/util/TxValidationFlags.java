@@ -36,7 +36,7 @@ public class TxValidationFlags {
         byte[] bytes = bs.toByteArray();
         TxValidationFlags flags = new TxValidationFlags(bytes.length);
         for (int i = 0; i < bytes.length; i++) {
-            flags.setFlag(i, TransactionPackage.TxValidationCode.forNumber((int) bytes[i]));
+            flags.setFlag(i, TransactionPackage.TxValidationCode.forNumber(bytes[i] & 0xFF));
         }
         return flags;
     }
@@ -44,6 +44,7 @@ public class NodeConfig {
         private String smartContractListenAddress;
         private KeepAlive keepalive;
         private Gossip gossip;
+        private Validator validator;
         private Events events;
         private Tls tls;
         private String fileSystemPath;
@@ -104,6 +105,14 @@ public class NodeConfig {
             this.gossip = gossip;
         }
 
+        public Validator getValidator() {
+            return validator;
+        }
+
+        public void setValidator(Validator validator) {
+            this.validator = validator;
+        }
+
         public Events getEvents() {
             return events;
         }
@@ -152,6 +161,7 @@ public class NodeConfig {
         private String coreNodeAddressPort;
         private String executetimeout;
         private String keepalive;
+        private int queryPageSize;
         private Map<String, String> system;
         private Map<String, String> systemPlugins;
         private Map<String, String> logging;
@@ -180,6 +190,14 @@ public class NodeConfig {
             this.keepalive = keepalive;
         }
 
+        public int getQueryPageSize() {
+            return queryPageSize;
+        }
+
+        public void setQueryPageSize(int queryPageSize) {
+            this.queryPageSize = queryPageSize;
+        }
+
         public Map<String, String> getSystem() {
             return system;
         }
@@ -240,6 +258,8 @@ public class NodeConfig {
     public static class Ledger {
         private State state;
         private Map<String, Boolean> history;
+        private Blockchain blockchain;
+        private PvtData pvtData;
 
         public State getState() {
             return state;
@@ -256,6 +276,22 @@ public class NodeConfig {
         public void setHistory(Map<String, Boolean> history) {
             this.history = history;
         }
+
+        public Blockchain getBlockchain() {
+            return blockchain;
+        }
+
+        public void setBlockchain(Blockchain blockchain) {
+            this.blockchain = blockchain;
+        }
+
+        public PvtData getPvtData() {
+            return pvtData;
+        }
+
+        public void setPvtData(PvtData pvtData) {
+            this.pvtData = pvtData;
+        }
     }
 
     public static class KeepAlive {
@@ -309,6 +345,9 @@ public class NodeConfig {
     public static class Gossip {
         private String commiterAddress;
         private String consenterAddress;
+        private int stateBatchSize;
+        private int stateWindowSize;
+        private long stateRequestTimeout;
 
         public String getCommiterAddress() {
             return commiterAddress;
@@ -325,6 +364,51 @@ public class NodeConfig {
         public void setConsenterAddress(String consenterAddress) {
             this.consenterAddress = consenterAddress;
         }
+
+        public int getStateBatchSize() {
+            return stateBatchSize;
+        }
+
+        public void setStateBatchSize(int stateBatchSize) {
+            this.stateBatchSize = stateBatchSize;
+        }
+
+        public int getStateWindowSize() {
+            return stateWindowSize;
+        }
+
+        public void setStateWindowSize(int stateWindowSize) {
+            this.stateWindowSize = stateWindowSize;
+        }
+
+        public long getStateRequestTimeout() {
+            return stateRequestTimeout;
+        }
+
+        public void setStateRequestTimeout(long stateRequestTimeout) {
+            this.stateRequestTimeout = stateRequestTimeout;
+        }
+    }
+
+    public static class Validator {
+        private int poolSize;
+        private int queueSize;
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
     }
 
     public static class Events {
@@ -332,6 +416,7 @@ public class NodeConfig {
         private int buffersize;
         private int timeout;
         private int timewindow;
+        private String overflowPolicy;
 
         public String getAddress() {
             return address;
@@ -364,6 +449,14 @@ public class NodeConfig {
         public void setTimewindow(int timewindow) {
             this.timewindow = timewindow;
         }
+
+        public String getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(String overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
     }
 
     public static class Tls {
@@ -473,9 +566,106 @@ public class NodeConfig {
         this.ledger = ledger;
     }
 
+    public static class Blockchain {
+        private boolean mmapCompletedBlockFiles;
+        private boolean syncBlocks;
+        private String pruneMode;
+        private long pruneKeepBlocks;
+        private int pruneKeepDays;
+        private int pruneInterval;
+
+        public boolean isMmapCompletedBlockFiles() {
+            return mmapCompletedBlockFiles;
+        }
+
+        public void setMmapCompletedBlockFiles(boolean mmapCompletedBlockFiles) {
+            this.mmapCompletedBlockFiles = mmapCompletedBlockFiles;
+        }
+
+        public boolean isSyncBlocks() {
+            return syncBlocks;
+        }
+
+        public void setSyncBlocks(boolean syncBlocks) {
+            this.syncBlocks = syncBlocks;
+        }
+
+        public String getPruneMode() {
+            return pruneMode;
+        }
+
+        public void setPruneMode(String pruneMode) {
+            this.pruneMode = pruneMode;
+        }
+
+        public long getPruneKeepBlocks() {
+            return pruneKeepBlocks;
+        }
+
+        public void setPruneKeepBlocks(long pruneKeepBlocks) {
+            this.pruneKeepBlocks = pruneKeepBlocks;
+        }
+
+        public int getPruneKeepDays() {
+            return pruneKeepDays;
+        }
+
+        public void setPruneKeepDays(int pruneKeepDays) {
+            this.pruneKeepDays = pruneKeepDays;
+        }
+
+        public int getPruneInterval() {
+            return pruneInterval;
+        }
+
+        public void setPruneInterval(int pruneInterval) {
+            this.pruneInterval = pruneInterval;
+        }
+    }
+
+    public static class PvtData {
+        private int blockToLive;
+        private Map<String, Integer> collectionBlockToLive;
+        private int purgeInterval;
+        private int purgeBatchSize;
+
+        public int getBlockToLive() {
+            return blockToLive;
+        }
+
+        public void setBlockToLive(int blockToLive) {
+            this.blockToLive = blockToLive;
+        }
+
+        public Map<String, Integer> getCollectionBlockToLive() {
+            return collectionBlockToLive;
+        }
+
+        public void setCollectionBlockToLive(Map<String, Integer> collectionBlockToLive) {
+            this.collectionBlockToLive = collectionBlockToLive;
+        }
+
+        public int getPurgeInterval() {
+            return purgeInterval;
+        }
+
+        public void setPurgeInterval(int purgeInterval) {
+            this.purgeInterval = purgeInterval;
+        }
+
+        public int getPurgeBatchSize() {
+            return purgeBatchSize;
+        }
+
+        public void setPurgeBatchSize(int purgeBatchSize) {
+            this.purgeBatchSize = purgeBatchSize;
+        }
+    }
+
     public static class State {
         private String stateDatabase;
         private Map<String, String> couchDBConfig;
+        private int validatorPoolSize;
 
         public String getStateDatabase() {
             return stateDatabase;
@@ -492,5 +682,13 @@ public class NodeConfig {
         public void setCouchDBConfig(Map<String, String> couchDBConfig) {
             this.couchDBConfig = couchDBConfig;
         }
+
+        public int getValidatorPoolSize() {
+            return validatorPoolSize;
+        }
+
+        public void setValidatorPoolSize(int validatorPoolSize) {
+            this.validatorPoolSize = validatorPoolSize;
+        }
     }
 }
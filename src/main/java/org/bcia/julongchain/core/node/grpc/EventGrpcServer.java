@@ -116,12 +116,21 @@ public class EventGrpcServer {
 
                 @Override
                 public void onError(Throwable t) {
-
+                    log.warn("Event stream closed by client: " + t.getMessage());
+                    //停止该流上订阅者的发送线程
+                    if (eventHubServer != null) {
+                        eventHubServer.streamClosed(responseObserver);
+                    }
                 }
 
                 @Override
                 public void onCompleted() {
-
+                    if (eventHubServer != null) {
+                        eventHubServer.streamClosed(responseObserver);
+                    }
+                    synchronized (responseObserver) {
+                        responseObserver.onCompleted();
+                    }
                 }
             };
         }
@@ -42,8 +42,10 @@ import javax.naming.Context;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.bcia.julongchain.core.smartcontract.shim.fsm.CallbackType.AFTER_EVENT;
 import static org.bcia.julongchain.core.smartcontract.shim.fsm.CallbackType.BEFORE_EVENT;
@@ -79,6 +81,21 @@ public class Handler {
 
     private static JulongChainLog log = JulongChainLogFactory.getLog(Handler.class);
 
+    /**
+     * 处理智能合约消息的线程数
+     */
+    private static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    /**
+     * 处理智能合约消息的等待队列长度, 队列满时由接收消息的线程自行处理
+     */
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    /**
+     * 待发送消息的队列长度, 队列满时提交消息的线程等待, 以保持发送顺序
+     */
+    private static final int DEFAULT_SEND_QUEUE_SIZE = 1000;
+
+    private static final AtomicInteger HANDLER_INDEX = new AtomicInteger();
+
     private ISmartContractStream chatStream;
     private FSM fsm;
     private SmartContractPackage.SmartContractID smartContractID;
@@ -89,17 +106,32 @@ public class Handler {
     private Map<String, TransactionContext> txCtxs;
     private Map<String, Boolean> txidMap;
     private Channel<NextStateInfo> nextState;
+    /**
+     * 处理账本请求的线程池
+     */
+    private final ExecutorService executor;
+    /**
+     * 单线程发送, 保证同一通道中消息的发送顺序
+     */
+    private final ExecutorService sendExecutor;
+    private final Object sendLock = new Object();
+    private final String handlerName = "sc-handler-" + HANDLER_INDEX.incrementAndGet();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
 
     public Handler(){
-
+        this.executor = newExecutor(handlerName, DEFAULT_POOL_SIZE, DEFAULT_QUEUE_SIZE,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.sendExecutor = newExecutor(handlerName + "-send", 1, DEFAULT_SEND_QUEUE_SIZE,
+                new WaitForSpacePolicy());
     }
 
     private Handler(SmartContractSupport chaincodeSupport, ISmartContractStream peerChatStream){
+        this();
         this.chatStream  = peerChatStream;
         this.smartContractSupport = chaincodeSupport;
         this.registered = Boolean.FALSE;
-        this.txCtxs = new HashMap<>();
-        this.txidMap = new HashMap<>();
+        this.txCtxs = new ConcurrentHashMap<>();
+        this.txidMap = new ConcurrentHashMap<>();
         this.nextState = new Channel<>();
         this.fsm = new FSM(CREATED_STATE);
 
@@ -295,12 +327,64 @@ public class Handler {
         return smartContractInstance.getSmartContractName();
     }
 
+    /**
+     * 创建Handler使用的线程池
+     * 线程空闲时退出, 队列满时按rejectedHandler处理
+     *
+     * @param name            线程名前缀
+     * @param poolSize        线程数
+     * @param queueSize       等待队列长度
+     * @param rejectedHandler 队列满时的处理策略
+     * @return
+     */
+    private static ExecutorService newExecutor(String name, int poolSize, int queueSize,
+                                               RejectedExecutionHandler rejectedHandler) {
+        final AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory, rejectedHandler);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 队列满时提交任务的线程等待队列有空位, 不能由提交线程自行执行, 否则会打乱发送顺序
+     */
+    private static class WaitForSpacePolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Executor is shutdown");
+            }
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for send queue");
+            }
+            //放入队列期间线程可能已空闲退出
+            if (executor.getPoolSize() == 0) {
+                executor.prestartCoreThread();
+            }
+        }
+    }
+
     /**
      * 通过gRPC通道同步的“chatStream”发送智能合约信息
+     * 只在写入通道时加锁, 不阻塞同一Handler中其他交易的处理
      */
-    public synchronized void serialSend(SmartContractShim.SmartContractMessage msg) {
+    public void serialSend(SmartContractShim.SmartContractMessage msg) {
         try {
-            chatStream.send(msg);
+            synchronized (sendLock) {
+                chatStream.send(msg);
+            }
             log.info(String.format("[%s]Serialsend %s", msg.getTxid() ,msg.getPayload().toStringUtf8()));
         } catch (Exception e) {
             log.error(String.format("[%s]Got error when serial send %s", msg.getTxid(), msg.getPayload()));
@@ -309,11 +393,42 @@ public class Handler {
 
     /**
      * 通过gRPC通道异步的“chatStream”发送智能合约信息
+     * 由单线程按提交顺序发送
      */
     public void serialSendAsync(SmartContractShim.SmartContractMessage msg) {
-        new Thread(() -> {
-            serialSend(msg);
-        }).start();
+        try {
+            sendExecutor.execute(() -> serialSend(msg));
+        } catch (RejectedExecutionException e) {
+            log.error(String.format("[%s]Handler is closed or interrupted, drop message %s", shorttxid(msg.getTxid()),
+                    msg.getType()));
+        }
+    }
+
+    /**
+     * 在线程池中处理智能合约消息
+     */
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.error("Handler is closed, can not handle message any more");
+        }
+    }
+
+    /**
+     * 结束该流: 关闭Handler的线程池(已提交的消息继续处理), 并结束NextState线程
+     * 流结束的每条路径(接收结束、接收出错、注销)都会调用, 只执行一次
+     */
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        log.info(String.format("Closing %s", handlerName));
+        executor.shutdown();
+        sendExecutor.shutdown();
+        if (nextState != null) {
+            nextState.close();
+        }
     }
 
     /**
@@ -337,17 +452,15 @@ public class Handler {
         }
 
         String txCtxID = getTxCtxId(chainID, txid);
-        //if transaction context which's id is txCtxID is exist
-        if(txCtxs.get(txCtxID) != null){
-            log.error("Cannot create transaction because current transaction context is already exist");
-            return null;
-        }
-
         TransactionContext txctx = new TransactionContext();
         txctx.setChainID(chainID);
         txctx.setSignedProp(signedProp);
         txctx.setProposal(prop);
-        txCtxs.put(txCtxID, txctx);
+        //if transaction context which's id is txCtxID is exist
+        if(txCtxID != null && txCtxs.putIfAbsent(txCtxID, txctx) != null){
+            log.error("Cannot create transaction because current transaction context is already exist");
+            return null;
+        }
         if (smartContractSupport != null) {
             txctx.setTxSimulator(smartContractSupport.getTxSimulator(ctxt));
             txctx.setHistoryQueryExecutor(smartContractSupport.getHistoryQueryExecutor(ctxt));
@@ -359,15 +472,15 @@ public class Handler {
     /**
      * 用“chainid + txid”提取交易背景id
      */
-    public synchronized TransactionContext getTxContext(String groupId, String txId) {
+    public TransactionContext getTxContext(String groupId, String txId) {
         String txCtxID = getTxCtxId(groupId, txId);
-        return txCtxs.get(txCtxID);
+        return txCtxID == null ? null : txCtxs.get(txCtxID);
     }
 
     /**
      * 通过交易id"chainID + txid"来删除交易背景
      */
-    public synchronized void deleteTxContext(String chainID, String txid) {
+    public void deleteTxContext(String chainID, String txid) {
         String txCtxID = getTxCtxId(chainID, txid);
         if(txCtxID != null) {
             log.info(String.format("Remove transaction id %s", txCtxID));
@@ -380,7 +493,7 @@ public class Handler {
     /**
      * 将当前的txContext放进queryIteratorMap中
      */
-    public synchronized void initializeQueryContext(TransactionContext txContext, String queryID,
+    public void initializeQueryContext(TransactionContext txContext, String queryID,
                                        IResultsIterator queryIterator) {
         if(txContext.getQueryIteratorMap() != null && queryID != null){
             log.info(String.format("Put queryID: %s", queryID));
@@ -395,7 +508,7 @@ public class Handler {
     /**
      * 在cxContext中的queryIteratorMap用query id来提取一个交易背景
      */
-    public synchronized IResultsIterator getQueryIterator(TransactionContext txContext, String queryID) {
+    public IResultsIterator getQueryIterator(TransactionContext txContext, String queryID) {
         if(txContext.getQueryIteratorMap() != null && queryID != null){
             return txContext.getQueryIteratorMap().get(queryID);
         } else {
@@ -406,11 +519,11 @@ public class Handler {
     /**
      * 用"queryID"关闭和移除当前的ResultIterator
      */
-    public synchronized void cleanupQueryContext(TransactionContext txContext, String queryID){
+    public void cleanupQueryContext(TransactionContext txContext, String queryID){
         try {
-            txContext.getQueryIteratorMap().get(queryID).close();
-            txContext.getQueryIteratorMap().remove(queryID);
+            IResultsIterator iterator = txContext.getQueryIteratorMap().remove(queryID);
             txContext.getPendingQueryResults().remove(queryID);
+            iterator.close();
         } catch (NullPointerException | LedgerException e) {
             log.error("Got error when clean up query context");
         }
@@ -429,9 +542,7 @@ public class Handler {
      * 注销注册过的handler
      */
     public void deregister() {
-        if(this.registered){
-
-        }
+        close();
     }
 
     public void triggerNextState(SmartContractShim.SmartContractMessage msg, Boolean send) {
@@ -439,7 +550,7 @@ public class Handler {
         nsInfo.setMsg(msg);
         nsInfo.setSendToCC(send);
         nsInfo.setSendSync(Boolean.FALSE);
-        nextState.add(nsInfo);
+        addNextState(nsInfo);
     }
 
     public void triggerNextStateSync(SmartContractShim.SmartContractMessage msg) {
@@ -447,7 +558,22 @@ public class Handler {
         nsInfo.setMsg(msg);
         nsInfo.setSendToCC(Boolean.TRUE);
         nsInfo.setSendSync(Boolean.TRUE);
-        nextState.add(nsInfo);
+        addNextState(nsInfo);
+    }
+
+    /**
+     * 流已结束时nextState已关闭, 丢弃消息
+     */
+    private void addNextState(NextStateInfo nsInfo) {
+        if (closed.get()) {
+            log.warn(String.format("%s is closed, drop message %s", handlerName, nsInfo.getMsg().getType()));
+            return;
+        }
+        try {
+            nextState.add(nsInfo);
+        } catch (IllegalStateException e) {
+            log.warn(String.format("%s is closed, drop message %s", handlerName, nsInfo.getMsg().getType()));
+        }
     }
 
     /**
@@ -472,12 +598,19 @@ public class Handler {
                 try{
                     //接受容器侧传递的SmartContractMessage
                     SmartContractShim.SmartContractMessage in = null;
-                    if (chatStream != null) {
-                        //阻塞方法
-                        in = chatStream.recv();
+                    try {
+                        if (chatStream != null) {
+                            //阻塞方法
+                            in = chatStream.recv();
+                        }
+                    } catch (Exception e) {
+                        log.error("Error receiving message, ending chaincode support stream", e);
+                        deregister();
+                        return;
                     }
                     if(in == null){
                         log.error("Received null message, ending chaincode support stream");
+                        deregister();
                         return;
                     }
                     log.info(String.format("[%s]Received message %s from shim", shorttxid(in.getTxid()), in.getType()));
@@ -493,12 +626,10 @@ public class Handler {
                     //处理消息
                     handleMessage(in);
                 } catch(Exception e){
-                    log.error("Error handling message, ending stream");
-                } finally {
-                    deregister();
+                    log.error("Error handling message", e);
                 }
             }
-        }).start();
+        }, handlerName + "-recv").start();
 
         //NextState 频道
         new Thread(() -> {
@@ -535,15 +666,15 @@ public class Handler {
                         }
                     }
                 } catch (InterruptedException e) {
-                    log.error("next state error message, ending chaincode support stream");
+                    //流结束时close()关闭nextState, 唤醒并结束该线程
+                    log.info("next state channel closed, ending chaincode support stream");
+                    deregister();
                     return;
                 } catch(RuntimeException e) {
-                    log.error("Error handling message, ending stream");
-                } finally {
-                    deregister();
+                    log.error("Error handling message", e);
                 }
             }
-        }).start();
+        }, handlerName + "-next-state").start();
 
         //Keepalive 频道
 //        new Thread(() -> {
@@ -563,7 +694,7 @@ public class Handler {
     /**
      *  将 txCtxID 放入 txidMap
      */
-    public synchronized Boolean createTXIDEntry(String groupId, String txid) {
+    public Boolean createTXIDEntry(String groupId, String txid) {
         if(txidMap == null){
             return Boolean.FALSE;
         }
@@ -572,16 +703,16 @@ public class Handler {
             log.info(String.format("[%s]Transcation context id is null", shorttxid(txid)));
             return Boolean.FALSE;
         }
-        txidMap.putIfAbsent(txCtxID, Boolean.TRUE);
-        return txidMap.get(txCtxID);
+        Boolean entry = txidMap.putIfAbsent(txCtxID, Boolean.TRUE);
+        return entry == null ? Boolean.TRUE : entry;
     }
 
     /**
      * 从 txidMap 中移除 teCtxID
      */
-    public synchronized void deleteTXIDEntry(String groupId, String txid) {
+    public void deleteTXIDEntry(String groupId, String txid) {
         String txCtxID = getTxCtxId(groupId, txid);
-        if(txidMap != null){
+        if(txidMap != null && txCtxID != null){
             txidMap.remove(txCtxID);
         } else {
             log.error(String.format("TXID %s is not found", txCtxID));
@@ -604,9 +735,7 @@ public class Handler {
                     SmartContractShim.SmartContractMessage ccMsg = SmartContractShim.SmartContractMessage.newBuilder()
                             .setType(READY)
                             .build();
-                    new Thread(() -> {
-                        triggerNextState(ccMsg, Boolean.TRUE);
-                    }).start();
+                    triggerNextState(ccMsg, Boolean.TRUE);
                 } else {
                     log.error("Error during startup .. not sending READY");
                 }
@@ -645,10 +774,9 @@ public class Handler {
     /**
      * 通知 msg
      */
-    public synchronized void notify(SmartContractShim.SmartContractMessage msg) {
-        String txCtxId = getTxCtxId(msg.getGroupId(), msg.getTxid());
+    public void notify(SmartContractShim.SmartContractMessage msg) {
         //获取交易
-        TransactionContext tctx = txCtxs.get(txCtxId);
+        TransactionContext tctx = getTxContext(msg.getGroupId(), msg.getTxid());
         if (tctx == null) {
             log.info(String.format("Notifier Tid: %s, GroupId: %s does not exist", msg.getTxid(), msg.getGroupId()));
         } else {
@@ -696,7 +824,7 @@ public class Handler {
     /** 处理账本中的请求
      */
     public void handleGetState(SmartContractShim.SmartContractMessage msg) {
-        new Thread(() -> {
+        execute(() -> {
             TransactionContext txContext = null;
             SmartContractShim.GetState getState = null;
             String smartContractId = null;
@@ -766,7 +894,7 @@ public class Handler {
                 log.error(errStr);
                 errorReturn(msg, ByteString.copyFromUtf8(errStr));
             }
-        }).start();
+        });
     }
 
     /** afterGetStateByRange 处理链码中 GET_STATE_BY_RANGE 请求
@@ -783,7 +911,7 @@ public class Handler {
     /** 根据范围来处理账本中的请求
      */
     public void handleGetStateByRange(SmartContractShim.SmartContractMessage msg) {
-        new Thread(() -> {
+        execute(() -> {
             SmartContractShim.GetStateByRange getStateByRange = null;
             IResultsIterator rangeIter = null;
             String smartContractID = null;
@@ -883,7 +1011,7 @@ public class Handler {
             //转换成功并发送RESPONSE消息
             log.info(String.format("[%s]Got keys and values. Sending %s", shorttxid(msg.getTxid()), RESPONSE.toString()));
             successReturn(msg, payloadBytes, RESPONSE);
-        }).start();
+        });
     }
 
 
@@ -971,7 +1099,7 @@ public class Handler {
     /** 处理账本下个请求状态
      */
     public void handleQueryStateNext(SmartContractShim.SmartContractMessage msg) {
-        new Thread(() -> {
+        execute(() -> {
             SmartContractShim.QueryStateNext queryStateNext = null;
             TransactionContext txContext = null;
             IResultsIterator queryIter = null;
@@ -1032,7 +1160,7 @@ public class Handler {
             //成功并返回RESPONSE消息
             log.info(String.format("Got key and values. Sending %s", RESPONSE));
             successReturn(msg, payloadBytes, RESPONSE);
-        }).start();
+        });
     }
 
     /** afterQueryStateClose 处理来自链码的 QUERY_STATE_CLOSE 请求
@@ -1049,7 +1177,7 @@ public class Handler {
     /** 处理状态迭代器的关闭
      */
     public void handleQueryStateClose(SmartContractShim.SmartContractMessage msg) {
-        new Thread(() -> {
+        execute(() -> {
             SmartContractShim.QueryStateClose queryStateClose = null;
             TransactionContext txContext = null;
             IResultsIterator iter = null;
@@ -1102,7 +1230,7 @@ public class Handler {
             //成功并发送RESPONSE
             log.info(String.format("[%s]Closed. Sending %s", shorttxid(msg.getTxid()), RESPONSE.toString()));
             successReturn(msg, payloadBytes, RESPONSE);
-        }).start();
+        });
     }
 
     /** afterGetQueryResult 处理来自链码的 GET_QUERY_RESULT 请求
@@ -1119,7 +1247,7 @@ public class Handler {
     /** 处理账本中的请求结果
      */
     public void handleGetQueryResult(SmartContractShim.SmartContractMessage msg) {
-        new Thread(() -> {
+        execute(() -> {
             TransactionContext txContext = null;
             String iterID = null;
             SmartContractShim.GetQueryResult getQueryResult = null;
@@ -1207,7 +1335,7 @@ public class Handler {
             log.info(String.format("[%s]HandleGetQueryResult. Got keys and values. Send %s"
                     , shorttxid(msg.getTxid()), RESPONSE.toString()));
             successReturn(msg, payloadBytes, RESPONSE);
-        }).start();
+        });
     }
 
     /** afterGetHistoryForKey 处理来自链码的 GET_HISTORY_FOR_KEY 请求
@@ -1223,7 +1351,7 @@ public class Handler {
     /** 处理查询账本历史的请求
      */
     public void handleGetHistoryForKey(SmartContractShim.SmartContractMessage msg) {
-        new Thread(() -> {
+        execute(() -> {
             TransactionContext txContext = null;
             SmartContractShim.GetHistoryForKey getHistoryForKey = null;
             String iterID = null;
@@ -1306,7 +1434,7 @@ public class Handler {
             log.info(String.format("[%s]HandleGetHistoryForKey. Got keys and values. Sending %s"
                     , shorttxid(msg.getTxid()), RESPONSE.toString()));
             successReturn(msg, payloadByte, RESPONSE);
-        }).start();
+        });
     }
 
     public static Boolean isCollectionSet(String collection) {
@@ -1371,7 +1499,7 @@ public class Handler {
     /** 处理账本进入繁忙状态的请求
      */
     public void enterBusyState(Event event, String state) {
-        new Thread(() -> {
+        execute(() -> {
             SmartContractShim.SmartContractMessage msg = extractMessageFromEvent(event);
             log.info(String.format("[%s]state i %s", shorttxid(msg.getTxid()), state));
 
@@ -1587,7 +1715,7 @@ public class Handler {
                 .setGroupId(msg.getGroupId())
                 .setTxid(msg.getTxid())
                 .build();
-        }).start();
+        });
     }
 
     public void enterEstablishedState(Event e, String state) {
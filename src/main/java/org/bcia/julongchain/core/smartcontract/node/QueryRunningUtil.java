@@ -0,0 +1,229 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ * <p>
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.smartcontract.node;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.IResultsIterator;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
+import org.bcia.julongchain.core.node.NodeConfig;
+import org.bcia.julongchain.core.node.NodeConfigFactory;
+import org.bcia.julongchain.protos.node.SmartContractShim;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 保存交易中未读完的查询迭代器, 按页返回查询结果
+ * 智能合约发起范围查询、富查询或历史查询时返回第一页及查询编号, 之后通过QUERY_STATE_NEXT按编号继续读取,
+ * QUERY_STATE_CLOSE或交易结束时关闭迭代器
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class QueryRunningUtil {
+    private static JulongChainLog logger = JulongChainLogFactory.getLog(QueryRunningUtil.class);
+
+    /**
+     * 默认每页结果数
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * 将查询结果编码为QueryResultBytes
+     */
+    public interface ResultEncoder {
+        ByteString encode(QueryResult queryResult);
+    }
+
+    /**
+     * 以交易号为key, 保存该交易未读完的查询
+     */
+    private static Map<String, Map<String, PendingQuery>> txIdAndQueriesMap =
+            new ConcurrentHashMap<String, Map<String, PendingQuery>>();
+
+    private static volatile int pageSize;
+
+    /**
+     * 开始一个查询, 返回第一页结果。结果未读完时保存迭代器
+     *
+     * @param txId     交易号
+     * @param iterator 查询迭代器
+     * @param encoder  结果编码
+     * @return
+     * @throws LedgerException
+     */
+    public static SmartContractShim.QueryResponse newQuery(String txId, IResultsIterator iterator,
+                                                           ResultEncoder encoder) throws LedgerException {
+        PendingQuery query = new PendingQuery(UUID.randomUUID().toString(), iterator, encoder);
+        SmartContractShim.QueryResponse queryResponse;
+        try {
+            queryResponse = query.nextPage(getPageSize());
+        } catch (LedgerException | RuntimeException e) {
+            query.close();
+            throw e;
+        }
+        if (queryResponse.getHasMore()) {
+            Map<String, PendingQuery> queries = txIdAndQueriesMap.get(txId);
+            if (queries == null) {
+                queries = new ConcurrentHashMap<String, PendingQuery>();
+                Map<String, PendingQuery> existing = txIdAndQueriesMap.putIfAbsent(txId, queries);
+                if (existing != null) {
+                    queries = existing;
+                }
+            }
+            queries.put(query.id, query);
+        } else {
+            query.close();
+        }
+        return queryResponse;
+    }
+
+    /**
+     * 读取下一页, 读完后关闭迭代器
+     *
+     * @param txId    交易号
+     * @param queryId 查询编号
+     * @return
+     * @throws LedgerException 查询不存在或读取失败
+     */
+    public static SmartContractShim.QueryResponse nextPage(String txId, String queryId) throws LedgerException {
+        Map<String, PendingQuery> queries = txIdAndQueriesMap.get(txId);
+        PendingQuery query = queries == null ? null : queries.get(queryId);
+        if (query == null) {
+            throw new LedgerException("Query " + queryId + " of tx " + txId + " does not exist");
+        }
+        SmartContractShim.QueryResponse queryResponse;
+        try {
+            //同一查询的请求由智能合约顺序发送
+            synchronized (query) {
+                queryResponse = query.nextPage(getPageSize());
+            }
+        } catch (LedgerException | RuntimeException e) {
+            closeQuery(txId, queryId);
+            throw e;
+        }
+        if (!queryResponse.getHasMore()) {
+            closeQuery(txId, queryId);
+        }
+        return queryResponse;
+    }
+
+    /**
+     * 关闭查询
+     *
+     * @param txId    交易号
+     * @param queryId 查询编号
+     */
+    public static void closeQuery(String txId, String queryId) {
+        Map<String, PendingQuery> queries = txIdAndQueriesMap.get(txId);
+        if (queries == null) {
+            return;
+        }
+        PendingQuery query = queries.remove(queryId);
+        if (query != null) {
+            query.close();
+        }
+        if (queries.isEmpty()) {
+            txIdAndQueriesMap.remove(txId, queries);
+        }
+    }
+
+    /**
+     * 交易结束时关闭该交易的所有查询
+     *
+     * @param txId 交易号
+     */
+    public static void closeQueries(String txId) {
+        if (txId == null) {
+            return;
+        }
+        Map<String, PendingQuery> queries = txIdAndQueriesMap.remove(txId);
+        if (queries == null) {
+            return;
+        }
+        for (PendingQuery query : queries.values()) {
+            query.close();
+        }
+    }
+
+    static int getPendingQueryCount(String txId) {
+        Map<String, PendingQuery> queries = txIdAndQueriesMap.get(txId);
+        return queries == null ? 0 : queries.size();
+    }
+
+    static void setPageSize(int size) {
+        pageSize = size;
+    }
+
+    private static int getPageSize() {
+        if (pageSize <= 0) {
+            int size = 0;
+            try {
+                NodeConfig.SmartContract smartContract = NodeConfigFactory.getNodeConfig().getSmartContract();
+                size = smartContract == null ? 0 : smartContract.getQueryPageSize();
+            } catch (RuntimeException e) {
+                logger.warn("Can not load query page size, use default: " + e.getMessage());
+            }
+            pageSize = size > 0 ? size : DEFAULT_PAGE_SIZE;
+        }
+        return pageSize;
+    }
+
+    private static class PendingQuery {
+        private final String id;
+        private final IResultsIterator iterator;
+        private final ResultEncoder encoder;
+        /**
+         * 预读的下一条结果, 用于判断是否还有下一页
+         */
+        private QueryResult lookahead;
+
+        PendingQuery(String id, IResultsIterator iterator, ResultEncoder encoder) {
+            this.id = id;
+            this.iterator = iterator;
+            this.encoder = encoder;
+        }
+
+        SmartContractShim.QueryResponse nextPage(int size) throws LedgerException {
+            SmartContractShim.QueryResponse.Builder builder = SmartContractShim.QueryResponse.newBuilder().setId(id);
+            QueryResult queryResult = lookahead != null ? lookahead : iterator.next();
+            lookahead = null;
+            int count = 0;
+            while (queryResult != null) {
+                if (count == size) {
+                    lookahead = queryResult;
+                    break;
+                }
+                builder.addResults(SmartContractShim.QueryResultBytes.newBuilder()
+                        .setResultBytes(encoder.encode(queryResult)));
+                count++;
+                queryResult = iterator.next();
+            }
+            return builder.setHasMore(lookahead != null).build();
+        }
+
+        void close() {
+            try {
+                iterator.close();
+            } catch (LedgerException | RuntimeException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -23,24 +23,15 @@ import org.apache.commons.logging.LogFactory;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.exception.SmartContractException;
 import org.bcia.julongchain.common.ledger.IResultsIterator;
-import org.bcia.julongchain.common.ledger.blkstorage.BlockStorage;
-import org.bcia.julongchain.common.ledger.blkstorage.IBlockStore;
-import org.bcia.julongchain.common.ledger.blkstorage.IndexConfig;
-import org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage.Config;
-import org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage.FsBlockStoreProvider;
 import org.bcia.julongchain.core.ledger.INodeLedger;
 import org.bcia.julongchain.core.ledger.ITxSimulator;
 import org.bcia.julongchain.core.ledger.kvledger.history.IHistoryQueryExecutor;
-import org.bcia.julongchain.core.ledger.kvledger.history.historydb.HistoryLevelDBProvider;
-import org.bcia.julongchain.core.ledger.kvledger.history.historydb.IHistoryDB;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.VersionedKV;
-import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
 import org.bcia.julongchain.core.node.util.NodeUtils;
 import org.bcia.julongchain.core.smartcontract.client.SmartContractSupportClient;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.ledger.queryresult.KvQueryResult;
-import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
 import org.bcia.julongchain.protos.node.*;
 
 import java.util.Collections;
@@ -73,6 +64,32 @@ public class SmartContractSupportService
 
     private static Map<String, LinkedBlockingQueue> txIdAndQueueMap = new HashMap<String, LinkedBlockingQueue>();
 
+    /**
+     * 范围查询和富查询结果编码为KV
+     */
+    private static final QueryRunningUtil.ResultEncoder KV_ENCODER = new QueryRunningUtil.ResultEncoder() {
+        @Override
+        public ByteString encode(QueryResult queryResult) {
+            VersionedKV kv = (VersionedKV) queryResult.getObj();
+            return KvQueryResult.KV.newBuilder()
+                    .setKey(kv.getCompositeKey().getKey())
+                    .setNamespace(kv.getCompositeKey().getNamespace())
+                    .setValue(ByteString.copyFrom(kv.getVersionedValue().getValue()))
+                    .build()
+                    .toByteString();
+        }
+    };
+
+    /**
+     * 历史查询结果编码为KeyModification
+     */
+    private static final QueryRunningUtil.ResultEncoder HISTORY_ENCODER = new QueryRunningUtil.ResultEncoder() {
+        @Override
+        public ByteString encode(QueryResult queryResult) {
+            return ((KvQueryResult.KeyModification) queryResult.getObj()).toByteString();
+        }
+    };
+
     /**
      * 处理智能合约register信息（命令）
      *
@@ -158,6 +175,7 @@ public class SmartContractSupportService
                     addTxMessage(smartContractId, txId, message);
                     updateSmartContractStatus(smartContractId, SMART_CONTRACT_STATUS_ERROR);
                     updateTxStatus(smartContractId, txId, TX_STATUS_ERROR);
+                    QueryRunningUtil.closeQueries(txId);
                     handleReceiveCompleteOrErrorMessage(message, txId + "-" + smartContractId);
                     return;
                 }
@@ -173,6 +191,7 @@ public class SmartContractSupportService
                     addTxMessage(smartContractId, txId, message);
                     updateSmartContractStatus(smartContractId, SMART_CONTRACT_STATUS_READY);
                     updateTxStatus(smartContractId, txId, TX_STATUS_COMPLETE);
+                    QueryRunningUtil.closeQueries(txId);
                     handleReceiveCompleteOrErrorMessage(message, txId + "-" + smartContractId);
                     return;
                 }
@@ -194,6 +213,21 @@ public class SmartContractSupportService
                     return;
                 }
 
+                if (message.getType().equals(SmartContractMessage.Type.GET_QUERY_RESULT)) {
+                    handleGetQueryResult(message, txId, groupId, smartContractId, responseObserver);
+                    return;
+                }
+
+                if (message.getType().equals(SmartContractMessage.Type.QUERY_STATE_NEXT)) {
+                    handleQueryStateNext(message, txId, groupId, responseObserver);
+                    return;
+                }
+
+                if (message.getType().equals(SmartContractMessage.Type.QUERY_STATE_CLOSE)) {
+                    handleQueryStateClose(message, txId, groupId, responseObserver);
+                    return;
+                }
+
 
                 // 收到putState信息
                 if (message.getType().equals(SmartContractMessage.Type.PUT_STATE)) {
@@ -307,31 +341,10 @@ public class SmartContractSupportService
         SmartContractShim.QueryResponse queryResponse = SmartContractShim.QueryResponse.newBuilder().build();
         try {
             SmartContractShim.GetHistoryForKey getHistoryForKey = SmartContractShim.GetHistoryForKey.parseFrom(message.getPayload());
-            HistoryLevelDBProvider provider = new HistoryLevelDBProvider();
-            IHistoryDB db = provider.getDBHandle(groupId);
-            String[] attrsToIndex = {
-                    BlockStorage.INDEXABLE_ATTR_BLOCK_HASH,
-                    BlockStorage.INDEXABLE_ATTR_BLOCK_NUM,
-                    BlockStorage.INDEXABLE_ATTR_TX_ID,
-                    BlockStorage.INDEXABLE_ATTR_BLOCK_NUM_TRAN_NUM,
-                    BlockStorage.INDEXABLE_ATTR_BLOCK_TX_ID,
-                    BlockStorage.INDEXABLE_ATTR_TX_VALIDATION_CODE
-            };
-            IndexConfig indexConfig = new IndexConfig(attrsToIndex);
-            FsBlockStoreProvider fsBlockStoreProvider = new FsBlockStoreProvider(new Config(LedgerConfig.getBlockStorePath(), LedgerConfig.getMaxBlockfileSize()), indexConfig);
-            IBlockStore blockStore = fsBlockStoreProvider.openBlockStore(groupId);
-            IHistoryQueryExecutor hqe = db.newHistoryQueryExecutor(blockStore);
+            //使用账本已打开的HistoryDB和区块存储
+            IHistoryQueryExecutor hqe = NodeUtils.getLedger(groupId).newHistoryQueryExecutor();
             IResultsIterator iterator = hqe.getHistoryForKey(smartContractId, getHistoryForKey.getKey());
-            SmartContractShim.QueryResponse.Builder queryResponseBuilder = SmartContractShim.QueryResponse.newBuilder();
-            while (true) {
-                QueryResult queryResult = iterator.next();
-                if (queryResult == null) {
-                    break;
-                }
-                KvRwset.Version version = (KvRwset.Version) queryResult.getObj();
-                queryResponseBuilder.addResults(SmartContractShim.QueryResultBytes.newBuilder().setResultBytes(version.toByteString()).build());
-            }
-            queryResponse = queryResponseBuilder.build();
+            queryResponse = QueryRunningUtil.newQuery(txId, iterator, HISTORY_ENCODER);
             type = SmartContractMessage.Type.RESPONSE;
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
@@ -362,57 +375,100 @@ public class SmartContractSupportService
 
             INodeLedger nodeLedger = NodeUtils.getLedger(groupId);
             ITxSimulator txSimulator = nodeLedger.newTxSimulator(txId);
+            //迭代器已按endKey截止, 只返回第一页
             IResultsIterator iterator = txSimulator.getStateRangeScanIterator(smartContractId, startKey, endKey);
+            SmartContractShim.QueryResponse queryResponse = QueryRunningUtil.newQuery(txId, iterator, KV_ENCODER);
+            return newQueryResponseMessage(message, txId, groupId, queryResponse);
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return newErrorMessage(message, txId, groupId);
+        }
+    }
 
-            SmartContractShim.QueryResponse.Builder queryResponseBuilder = SmartContractShim.QueryResponse.newBuilder();
-
-            while (true) {
-                QueryResult queryResult = iterator.next();
-                if (queryResult == null) {
-                    break;
-                }
-                VersionedKV kv = (VersionedKV) queryResult.getObj();
-                String key = kv.getCompositeKey().getKey();
-                if(key.compareTo(endKey) >= 0){
-                    break;
-                }
-
-                String namespace = kv.getCompositeKey().getNamespace();
-                byte[] value = kv.getVersionedValue().getValue();
-
-                KvQueryResult.KV kvProto = KvQueryResult.KV.newBuilder().setKey(key).setNamespace(namespace).setValue(ByteString.copyFrom(value)).build();
-
-                queryResponseBuilder.addResults(SmartContractShim.QueryResultBytes.newBuilder().setResultBytes(kvProto.toByteString()).build());
-            }
+    private void handleGetQueryResult(SmartContractMessage message, String txId, String groupId, String smartContractId, StreamObserver<SmartContractMessage> responseObserver) {
+        SmartContractMessage smartContractMessage = handleGetQueryResult(message, txId, groupId, smartContractId);
+        responseObserver.onNext(smartContractMessage);
+    }
 
+    /**
+     * 富查询, 按页返回结果
+     */
+    public SmartContractMessage handleGetQueryResult(SmartContractMessage message, String txId, String groupId, String smartContractId) {
+        try {
+            SmartContractShim.GetQueryResult getQueryResult = SmartContractShim.GetQueryResult.parseFrom(message.getPayload());
+            INodeLedger nodeLedger = NodeUtils.getLedger(groupId);
+            ITxSimulator txSimulator = nodeLedger.newTxSimulator(txId);
+            IResultsIterator iterator = txSimulator.executeQuery(smartContractId, getQueryResult.getQuery());
+            SmartContractShim.QueryResponse queryResponse = QueryRunningUtil.newQuery(txId, iterator, KV_ENCODER);
+            return newQueryResponseMessage(message, txId, groupId, queryResponse);
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return newErrorMessage(message, txId, groupId);
+        }
+    }
 
-            SmartContractShim.QueryResponse queryResponse = queryResponseBuilder.build();
+    private void handleQueryStateNext(SmartContractMessage message, String txId, String groupId, StreamObserver<SmartContractMessage> responseObserver) {
+        SmartContractMessage smartContractMessage = handleQueryStateNext(message, txId, groupId);
+        responseObserver.onNext(smartContractMessage);
+    }
 
-            SmartContractMessage responseMessage =
-                    SmartContractMessage.newBuilder()
-                            .mergeFrom(message)
-                            .setType(SmartContractMessage.Type.RESPONSE)
-                            .setPayload(queryResponse.toByteString())
-                            .setTxid(txId)
-                            .setGroupId(groupId)
-                            .build();
+    /**
+     * 读取查询的下一页
+     */
+    public SmartContractMessage handleQueryStateNext(SmartContractMessage message, String txId, String groupId) {
+        try {
+            SmartContractShim.QueryStateNext queryStateNext = SmartContractShim.QueryStateNext.parseFrom(message.getPayload());
+            SmartContractShim.QueryResponse queryResponse = QueryRunningUtil.nextPage(txId, queryStateNext.getId());
+            return newQueryResponseMessage(message, txId, groupId, queryResponse);
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return newErrorMessage(message, txId, groupId);
+        }
+    }
 
-            return responseMessage;
+    private void handleQueryStateClose(SmartContractMessage message, String txId, String groupId, StreamObserver<SmartContractMessage> responseObserver) {
+        SmartContractMessage smartContractMessage = handleQueryStateClose(message, txId, groupId);
+        responseObserver.onNext(smartContractMessage);
+    }
 
+    /**
+     * 关闭查询, 释放迭代器
+     */
+    public SmartContractMessage handleQueryStateClose(SmartContractMessage message, String txId, String groupId) {
+        try {
+            SmartContractShim.QueryStateClose queryStateClose = SmartContractShim.QueryStateClose.parseFrom(message.getPayload());
+            QueryRunningUtil.closeQuery(txId, queryStateClose.getId());
+            SmartContractShim.QueryResponse queryResponse = SmartContractShim.QueryResponse.newBuilder()
+                    .setId(queryStateClose.getId())
+                    .setHasMore(false)
+                    .build();
+            return newQueryResponseMessage(message, txId, groupId, queryResponse);
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
-
-            SmartContractMessage responseMessage =
-                    SmartContractMessage.newBuilder()
-                            .mergeFrom(message)
-                            .setType(SmartContractMessage.Type.ERROR)
-                            .setTxid(txId)
-                            .setGroupId(groupId)
-                            .build();
-            return responseMessage;
+            return newErrorMessage(message, txId, groupId);
         }
     }
 
+    private static SmartContractMessage newQueryResponseMessage(SmartContractMessage message, String txId, String groupId,
+                                                                SmartContractShim.QueryResponse queryResponse) {
+        return SmartContractMessage.newBuilder()
+                .mergeFrom(message)
+                .setType(SmartContractMessage.Type.RESPONSE)
+                .setPayload(queryResponse.toByteString())
+                .setTxid(txId)
+                .setGroupId(groupId)
+                .build();
+    }
+
+    private static SmartContractMessage newErrorMessage(SmartContractMessage message, String txId, String groupId) {
+        return SmartContractMessage.newBuilder()
+                .mergeFrom(message)
+                .setType(SmartContractMessage.Type.ERROR)
+                .setTxid(txId)
+                .setGroupId(groupId)
+                .build();
+    }
+
     private void handleGetState(SmartContractMessage message, String txId, String groupId, String smartContractId, StreamObserver<SmartContractMessage> responseObserver) {
         SmartContractMessage smartContractMessage = handleGetState(message, txId, groupId, smartContractId);
         responseObserver.onNext(smartContractMessage);
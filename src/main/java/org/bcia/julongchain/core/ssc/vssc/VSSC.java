@@ -26,7 +26,7 @@ import org.bcia.julongchain.common.groupconfig.config.IApplicationConfig;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.common.policies.policy.IPolicy;
-import org.bcia.julongchain.common.policycheck.policies.PolicyProvider;
+import org.bcia.julongchain.common.policycheck.policies.PolicyCache;
 import org.bcia.julongchain.common.util.BytesHexStrTranslate;
 import org.bcia.julongchain.common.util.Utils;
 import org.bcia.julongchain.common.util.proto.ProtoUtils;
@@ -111,7 +111,18 @@ public class VSSC extends SystemSmartContractBase {
         if(policyBytes.length==0){
             return newErrorResponse(String.format("No policy supplied"));
         }
+        return validate(stub,blockBytes,policyBytes);
+    }
 
+    /**
+     * 根据背书策略校验交易的背书签名
+     * 节点提交交易时直接调用该方法, 不经过智能合约消息机制; 只有LSSC的交易需要stub
+     * @param stub
+     * @param blockBytes 序列化的Envelope
+     * @param policyBytes 序列化的策略
+     * @return
+     */
+    public SmartContractResponse validate(ISmartContractStub stub,byte[] blockBytes,byte[] policyBytes){
         // get the envelope...
         Common.Envelope envelope=null;
         try {
@@ -139,10 +150,10 @@ public class VSSC extends SystemSmartContractBase {
         IApplicationConfig ac = this.sscProvider.getApplicationConfig(groupHeader.getGroupId());
 
         IMspManager manager= MspMgmtMgr.getManagerForChain(groupHeader.getGroupId());
-        PolicyProvider policyProvider=new PolicyProvider(manager);
         IPolicy policy = null;
         try {
-            policy = policyProvider.makePolicy(policyBytes);
+            //同一群组中相同的策略只编译一次
+            policy = PolicyCache.getPolicy(groupHeader.getGroupId(),manager,policyBytes);
         } catch (PolicyException e) {
             String msg=String.format("VSSC error:make policy failed,err %s",e.getMessage());
             log.error(msg);
@@ -26,9 +26,12 @@ import org.bcia.julongchain.csp.gm.dxct.util.CryptoUtil;
 import org.bcia.julongchain.csp.intfs.ICsp;
 import org.bcia.julongchain.csp.intfs.IHash;
 import org.bcia.julongchain.csp.intfs.IKey;
+import org.bcia.julongchain.csp.intfs.VerifyItem;
 import org.bcia.julongchain.csp.intfs.opts.*;
 import org.bouncycastle.util.encoders.Hex;
 
+import java.util.BitSet;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -181,6 +184,34 @@ public class GmCsp implements ICsp {
         return verify;
     }
 
+    @Override
+    public BitSet verifyBatch(List<VerifyItem> items, ISignerOpts opts) throws CspException {
+        if (!(opts instanceof SM2SignerOpts)) {
+            return ICsp.super.verifyBatch(items, opts);
+        }
+        int count = items.size();
+        byte[][] publicKeys = new byte[count][];
+        byte[][] signatures = new byte[count][];
+        byte[][] plaintexts = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            VerifyItem item = items.get(i);
+            if (item.getKey() == null || item.getKey().getPublicKey() == null) {
+                continue;
+            }
+            publicKeys[i] = item.getKey().getPublicKey().toBytes();
+            signatures[i] = item.getSignature();
+            plaintexts[i] = item.getDigest();
+        }
+        boolean[] verified = sm2.verifyBatch(publicKeys, signatures, plaintexts);
+        BitSet result = new BitSet(count);
+        for (int i = 0; i < count; i++) {
+            if (verified[i]) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
     @Override
     public byte[] encrypt(IKey key, byte[] plaintext, IEncrypterOpts opts) throws CspException {
         if (key == null) {
@@ -24,6 +24,7 @@ import org.bcia.julongchain.common.util.ValidateUtils;
 import org.bouncycastle.asn1.ASN1Integer;
 import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.CipherParameters;
 import org.bouncycastle.crypto.CryptoException;
 import org.bouncycastle.crypto.InvalidCipherTextException;
 import org.bouncycastle.crypto.engines.SM2Engine;
@@ -32,9 +33,21 @@ import org.bouncycastle.crypto.params.*;
 import org.bouncycastle.crypto.signers.SM2Signer;
 import org.bouncycastle.math.ec.ECCurve;
 import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 国密SM2实现
@@ -57,15 +70,43 @@ public class SM2 {
     private static BigInteger SM2_ECC_GY = new BigInteger("BC3736A2F4F6779C59BDCEE36B692153D0A9877CC62A474002DF32E52139F0A0", 16);
 
 
-    private static ECDomainParameters ecc_bc_spec;
-    private static ECCurve.Fp curve;
+    private static final ECDomainParameters ecc_bc_spec;
+    private static final ECCurve.Fp curve;
 
-    public SM2() {
+    static {
+        //所有实例共用同一组曲线参数, 基点G的定点乘预计算结果因此只计算一次
         curve = new ECCurve.Fp(SM2_ECC_P, SM2_ECC_A, SM2_ECC_B);
         ECPoint ecc_point_g = curve.createPoint(SM2_ECC_GX, SM2_ECC_GY);
         ecc_bc_spec = new ECDomainParameters(curve, ecc_point_g, SM2_ECC_N);
     }
 
+    /**
+     * 缓存的公钥数
+     */
+    private static final int PUBLIC_KEY_CACHE_SIZE = 256;
+    /**
+     * 缓存的私钥数
+     */
+    private static final int PRIVATE_KEY_CACHE_SIZE = 16;
+    /**
+     * 批量验签时单个任务最少验证的签名数, 数量太少时并发的开销大于收益
+     */
+    private static final int MIN_VERIFY_PER_TASK = 4;
+    private static final int VERIFY_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static volatile ExecutorService verifyExecutor;
+
+    /**
+     * 解析后的公钥, 验签时公钥点的窗口预计算结果保存在公钥点中, 同一公钥多次验签时复用
+     */
+    private static final Map<ByteBuffer, KeyEntry> publicKeyCache = newKeyCache(PUBLIC_KEY_CACHE_SIZE);
+    /**
+     * 解析后的私钥, 签名时复用私钥对应的公钥点和Z值
+     */
+    private static final Map<ByteBuffer, KeyEntry> privateKeyCache = newKeyCache(PRIVATE_KEY_CACHE_SIZE);
+
+    public SM2() {
+    }
+
     /**
      * sm2密钥对生成
      *
@@ -121,10 +162,8 @@ public class SM2 {
         if (msg.length == 0) {
             throw new CspException("plainText's length is 0");
         }
-        SM2Signer signer = new SM2Signer();
-        BigInteger d = byte2BigInteger(privateKey);
-        ECPrivateKeyParameters privateKeyParameters = new ECPrivateKeyParameters(d, ecc_bc_spec);
-        signer.init(true, privateKeyParameters);
+        SM2Signer signer = getKeyEntry(privateKeyCache, privateKey, true).getSigner();
+        signer.reset();
         signer.update(msg, 0, msg.length);
         byte[] sig = new byte[0];
         try {
@@ -163,13 +202,184 @@ public class SM2 {
         if (msg.length == 0) {
             throw new CspException("plainText's length is 0");
         }
-        SM2Signer signer = new SM2Signer();
-        ECPublicKeyParameters ecPub = new ECPublicKeyParameters(byte2ECpoint(publicKey), ecc_bc_spec);
-        signer.init(false, ecPub);
+        SM2Signer signer = getKeyEntry(publicKeyCache, publicKey, false).getSigner();
+        //上一次验签可能在摘要计算完成前返回, 先重置为只包含Z值的状态
+        signer.reset();
         signer.update(msg, 0, msg.length);
         return signer.verifySignature(signValue);
     }
 
+    /**
+     * 批量验证签名值
+     * 同一公钥的签名共用一次公钥解析和Z值计算, 签名较多时分成多个任务并发验证。
+     * 参数无效或验证失败的项返回false, 不影响其他项
+     *
+     * @param publicKeys
+     * @param signValues
+     * @param msgs
+     * @return 与参数序号对应的验证结果
+     * @throws CspException 验证被中断
+     */
+    public boolean[] verifyBatch(byte[][] publicKeys, byte[][] signValues, byte[][] msgs) throws CspException {
+        int count = publicKeys.length;
+        final boolean[] result = new boolean[count];
+
+        //按公钥分组
+        Map<String, List<Integer>> groups = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0; i < count; i++) {
+            if (isEmpty(publicKeys[i]) || isEmpty(signValues[i]) || isEmpty(msgs[i])) {
+                continue;
+            }
+            String keyId = Hex.toHexString(publicKeys[i]);
+            List<Integer> indexes = groups.get(keyId);
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>();
+                groups.put(keyId, indexes);
+            }
+            indexes.add(i);
+        }
+
+        //每个任务处理同一公钥的一段签名
+        int perTask = Math.max(MIN_VERIFY_PER_TASK, (count + VERIFY_POOL_SIZE - 1) / VERIFY_POOL_SIZE);
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (List<Integer> indexes : groups.values()) {
+            final byte[] publicKey = publicKeys[indexes.get(0)];
+            for (int from = 0; from < indexes.size(); from += perTask) {
+                final List<Integer> part = indexes.subList(from, Math.min(from + perTask, indexes.size()));
+                tasks.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        verifyWithKey(publicKey, part, signValues, msgs, result);
+                    }
+                });
+            }
+        }
+
+        if (tasks.isEmpty()) {
+            return result;
+        }
+        List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size() - 1);
+        try {
+            for (int i = 1; i < tasks.size(); i++) {
+                futures.add(getVerifyExecutor().submit(tasks.get(i)));
+            }
+            //当前线程处理第一个任务
+            tasks.get(0).run();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CspException("Interrupted while verifying signatures");
+        } catch (ExecutionException e) {
+            throw new CspException(e.getCause());
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return result;
+    }
+
+    private void verifyWithKey(byte[] publicKey, List<Integer> indexes, byte[][] signValues, byte[][] msgs,
+                               boolean[] result) {
+        SM2Signer signer;
+        try {
+            signer = getKeyEntry(publicKeyCache, publicKey, false).getSigner();
+        } catch (RuntimeException e) {
+            log.warn("Invalid public key: " + e.getMessage());
+            return;
+        }
+        for (int index : indexes) {
+            signer.reset();
+            signer.update(msgs[index], 0, msgs[index].length);
+            try {
+                result[index] = signer.verifySignature(signValues[index]);
+            } catch (RuntimeException e) {
+                //签名值格式错误
+                result[index] = false;
+            }
+        }
+    }
+
+    private static KeyEntry getKeyEntry(Map<ByteBuffer, KeyEntry> cache, byte[] key, boolean forSigning) {
+        synchronized (cache) {
+            KeyEntry entry = cache.get(ByteBuffer.wrap(key));
+            if (entry != null) {
+                return entry;
+            }
+        }
+        CipherParameters parameters;
+        if (forSigning) {
+            parameters = new ECPrivateKeyParameters(byte2BigInteger(key), ecc_bc_spec);
+        } else {
+            parameters = new ECPublicKeyParameters(byte2ECpoint(key), ecc_bc_spec);
+        }
+        KeyEntry entry = new KeyEntry(parameters, forSigning);
+        synchronized (cache) {
+            cache.put(ByteBuffer.wrap(key.clone()), entry);
+        }
+        return entry;
+    }
+
+    private static Map<ByteBuffer, KeyEntry> newKeyCache(final int size) {
+        return new LinkedHashMap<ByteBuffer, KeyEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, KeyEntry> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * 缓存的密钥, 每个线程持有一个用该密钥初始化过的SM2Signer(SM2Signer不是线程安全的)
+     */
+    private static class KeyEntry {
+        private final CipherParameters parameters;
+        private final boolean forSigning;
+        private final ThreadLocal<SM2Signer> signers = new ThreadLocal<SM2Signer>();
+
+        KeyEntry(CipherParameters parameters, boolean forSigning) {
+            this.parameters = parameters;
+            this.forSigning = forSigning;
+        }
+
+        SM2Signer getSigner() {
+            SM2Signer signer = signers.get();
+            if (signer == null) {
+                signer = new SM2Signer();
+                signer.init(forSigning, parameters);
+                signers.set(signer);
+            }
+            return signer;
+        }
+    }
+
+    private static boolean isEmpty(byte[] bytes) {
+        return bytes == null || bytes.length == 0;
+    }
+
+    private static ExecutorService getVerifyExecutor() {
+        if (verifyExecutor == null) {
+            synchronized (SM2.class) {
+                if (verifyExecutor == null) {
+                    final AtomicInteger index = new AtomicInteger();
+                    verifyExecutor = Executors.newFixedThreadPool(VERIFY_POOL_SIZE, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "sm2-verify-" + index.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return verifyExecutor;
+    }
+
     /**
      * 公钥加密消息
      *
@@ -20,13 +20,10 @@ import org.bcia.julongchain.common.exception.CspException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.csp.gm.dxct.sm2.SM2;
-import org.bcia.julongchain.csp.gm.dxct.util.GmCspConstant;
 import org.bouncycastle.crypto.digests.SM3Digest;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.util.encoders.Hex;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.Security;
 
 /**
@@ -39,6 +36,24 @@ import java.security.Security;
 
 public class SM3 {
     private static JulongChainLog log = JulongChainLogFactory.getLog(SM3.class);
+
+    static {
+        //其他模块通过JCE使用国密算法, 保持注册BouncyCastle
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    /**
+     * 每个线程复用一个摘要对象, 避免每次hash都查找Provider并创建MessageDigest
+     */
+    private static final ThreadLocal<SM3Digest> DIGEST = new ThreadLocal<SM3Digest>() {
+        @Override
+        protected SM3Digest initialValue() {
+            return new SM3Digest();
+        }
+    };
+
     public SM3() {
     }
 
@@ -49,16 +64,11 @@ public class SM3 {
         if(msg.length==0){
             throw new CspException("Input parameter's length is empty");
         }
-        Security.addProvider(new BouncyCastleProvider());
-        MessageDigest messageDigest = null;
-        try {
-            messageDigest = MessageDigest.getInstance(GmCspConstant.SM3);
-        } catch (NoSuchAlgorithmException e) {
-            log.error(e.getMessage());
-          throw new CspException(e);
-        }
-        messageDigest.update(msg);
-        byte[] digest = messageDigest.digest();
+        SM3Digest sm3Digest = DIGEST.get();
+        sm3Digest.reset();
+        sm3Digest.update(msg, 0, msg.length);
+        byte[] digest = new byte[sm3Digest.getDigestSize()];
+        sm3Digest.doFinal(digest, 0);
         return digest;
     }
 }
@@ -21,6 +21,9 @@ import org.bcia.julongchain.common.exception.JulongChainException;
 import org.bcia.julongchain.common.exception.SarException;
 import org.bcia.julongchain.csp.intfs.opts.*;
 
+import java.util.BitSet;
+import java.util.List;
+
 /**
  * @author zhanglin, zhangmingyang
  * @purpose Define the interface, ICsp, and list its elements
@@ -110,6 +113,30 @@ public interface ICsp {
      */
     boolean verify(IKey k, byte[] signature, byte[] digest, ISignerOpts opts) throws CspException;
 
+    /**
+     * 根据ISignerOpts批量验证签名值, 单项验证失败或参数无效不影响其他项
+     * 默认逐项调用verify, 实现可以并发或复用同一公钥的预计算结果
+     *
+     * @param items
+     * @param opts
+     * @return 验证通过的项的序号
+     * @throws CspException
+     */
+    default BitSet verifyBatch(List<VerifyItem> items, ISignerOpts opts) throws CspException {
+        BitSet result = new BitSet(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            VerifyItem item = items.get(i);
+            try {
+                if (verify(item.getKey(), item.getSignature(), item.getDigest(), opts)) {
+                    result.set(i);
+                }
+            } catch (CspException | RuntimeException e) {
+                //该项验证失败
+            }
+        }
+        return result;
+    }
+
     /**
      * 根据IEncrypterOpts,使用密钥k从将明文计算出密文,
      * 选项应包括对称加密算法和适当的分组密码模式
@@ -0,0 +1,48 @@
+package org.bcia.julongchain.csp.intfs;
+
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * 批量验签中的一项: 密钥、签名值、摘要(或原文)
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class VerifyItem {
+    private final IKey key;
+    private final byte[] signature;
+    private final byte[] digest;
+
+    public VerifyItem(IKey key, byte[] signature, byte[] digest) {
+        this.key = key;
+        this.signature = signature;
+        this.digest = digest;
+    }
+
+    public IKey getKey() {
+        return key;
+    }
+
+    public byte[] getSignature() {
+        return signature;
+    }
+
+    public byte[] getDigest() {
+        return digest;
+    }
+}
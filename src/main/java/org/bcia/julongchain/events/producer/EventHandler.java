@@ -29,9 +29,9 @@ import org.bcia.julongchain.msp.mgmt.GlobalMspManagement;
 import org.bcia.julongchain.protos.node.EventsPackage;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.bcia.julongchain.common.util.CommConstant.PATH_SEPARATOR;
 
@@ -52,6 +52,7 @@ public class EventHandler implements IEventHandler {
     private EventsServerConfig eventsServerConfig;
 
     private EventHubServer.Callback callback;
+    private EventSender eventSender;
 
     public EventHandler(IEventProcessor eventProcessor, EventHubServer.Callback callback) {
         this.eventProcessor = eventProcessor;
@@ -59,8 +60,14 @@ public class EventHandler implements IEventHandler {
 
         this.callback = callback;
 
-        this.interestedEvents = new HashMap<>();
+        this.interestedEvents = new ConcurrentHashMap<>();
 
+        this.eventSender = new EventSender(eventsServerConfig, callback, new EventSender.IDisconnectListener() {
+            @Override
+            public void onDisconnect(String reason) {
+                disconnect(reason);
+            }
+        });
     }
 
     @Override
@@ -79,7 +86,7 @@ public class EventHandler implements IEventHandler {
     }
 
     private void register(List<EventsPackage.Interest> eventsList) {
-        if (eventsList == null && eventsList.size() > 0) {
+        if (eventsList != null && eventsList.size() > 0) {
             for (EventsPackage.Interest interest : eventsList) {
                 try {
                     EventsUtils.registerHandler(eventProcessor, interest, this);
@@ -114,7 +121,7 @@ public class EventHandler implements IEventHandler {
     }
 
     private void unregister(List<EventsPackage.Interest> eventsList) {
-        if (eventsList == null && eventsList.size() > 0) {
+        if (eventsList != null && eventsList.size() > 0) {
             for (EventsPackage.Interest interest : eventsList) {
                 try {
                     EventsUtils.deRegisterHandler(eventProcessor, interest, this);
@@ -184,10 +191,82 @@ public class EventHandler implements IEventHandler {
         return sessionEndDate;
     }
 
+    /**
+     * 将事件放入本订阅者的发送队列后立即返回, 由发送线程异步发送
+     *
+     * @param event
+     */
     @Override
     public void sendMessage(EventsPackage.Event event) {
-        if (callback != null) {
-            callback.sendMessage(event);
+        if (callback != null && !eventSender.offer(event)) {
+            disconnect("Subscriber buffer is full");
+        }
+    }
+
+    /**
+     * 断开订阅者: 注销所有已注册的事件, 丢弃未发送的事件并通知客户端
+     *
+     * @param reason
+     */
+    public void disconnect(String reason) {
+        disconnect(reason, true);
+    }
+
+    /**
+     * 客户端流已结束: 注销所有已注册的事件并停止发送线程, 不再通知客户端
+     */
+    public void close() {
+        disconnect("Stream closed", false);
+    }
+
+    private void disconnect(String reason, boolean notifyClient) {
+        //先停止发送线程并等待其退出, 之后通知客户端时不会与发送线程并发调用StreamObserver
+        eventSender.close();
+        synchronized (this) {
+            if (interestedEvents.isEmpty()) {
+                return;
+            }
+
+            log.warn("Disconnect event subscriber: " + reason + ", sent " + eventSender.getSentEvents()
+                    + ", dropped " + eventSender.getDroppedEvents());
+            for (EventsPackage.Interest interest : interestedEvents.values()) {
+                try {
+                    EventsUtils.deRegisterHandler(eventProcessor, interest, this);
+                } catch (ValidateException e) {
+                    log.error(e.getMessage(), e);
+                }
+            }
+            interestedEvents.clear();
         }
+
+        if (notifyClient && callback != null) {
+            callback.disconnect(reason);
+        }
+    }
+
+    /**
+     * 等待发送的事件数
+     *
+     * @return
+     */
+    public int getPendingEvents() {
+        return eventSender.getPendingEvents();
+    }
+
+    /**
+     * 最早的未发送事件已等待的时间(毫秒)
+     *
+     * @return
+     */
+    public long getLagMillis() {
+        return eventSender.getLagMillis();
+    }
+
+    public long getSentEvents() {
+        return eventSender.getSentEvents();
+    }
+
+    public long getDroppedEvents() {
+        return eventSender.getDroppedEvents();
     }
 }
\ No newline at end of file
@@ -19,11 +19,13 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import org.apache.commons.lang3.StringUtils;
 import org.bcia.julongchain.common.exception.EventException;
+import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.common.util.ValidateUtils;
 import org.bcia.julongchain.common.util.proto.ProposalResponseUtils;
+import org.bcia.julongchain.core.ledger.util.ParsedBlock;
 import org.bcia.julongchain.core.ledger.util.TxValidationFlags;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.node.*;
@@ -53,6 +55,20 @@ public class EventHelper {
     public static BlockEvents createBlockEvents(Common.Block block) throws EventException, ValidateException,
             InvalidProtocolBufferException {
         ValidateUtils.isNotNull(block, "block can not be null");
+        return createBlockEvents(new ParsedBlock(block));
+    }
+
+    /**
+     * 使用提交过程中已解析的区块创建区块事件, 交易的Envelope、Payload和GroupHeader不再重复解析
+     *
+     * @param parsedBlock
+     * @return
+     * @throws EventException
+     */
+    public static BlockEvents createBlockEvents(ParsedBlock parsedBlock) throws EventException, ValidateException,
+            InvalidProtocolBufferException {
+        ValidateUtils.isNotNull(parsedBlock, "block can not be null");
+        Common.Block block = parsedBlock.getBlock();
         ValidateUtils.isNotNull(block.getHeader(), "block.header can not be null");
         ValidateUtils.isNotNull(block.getMetadata(), "block.metadata can not be null");
         ValidateUtils.isNotNull(block.getData(), "block.data can not be null");
@@ -71,11 +87,12 @@ public class EventHelper {
         for (int i = 0; i < block.getData().getDataList().size(); i++) {
             Common.Envelope.Builder newEnvelopeBuilder = null;
 
-            Common.Envelope envelope = Common.Envelope.parseFrom(block.getData().getData(i));
+            ParsedBlock.ParsedTx parsedTx = parsedBlock.getTx(i);
+            Common.Envelope envelope = getEnvelope(parsedTx);
             ValidateUtils.isNotNull(envelope, "Block[" + i + "]:envelope can not be null");
             ValidateUtils.isNotNull(envelope.getPayload(), "Block[" + i + "envelope.payload can not be null");
 
-            Common.Payload payload = Common.Payload.parseFrom(envelope.getPayload());
+            Common.Payload payload = getPayload(parsedTx);
             ValidateUtils.isNotNull(payload.getHeader(), "Block[" + i + "envelope.payload.header can not be null");
             ValidateUtils.isNotNull(payload.getHeader().getGroupHeader(), "Block[" + i + "envelope.payload" +
                     ".groupheader can not be null");
@@ -84,7 +101,7 @@ public class EventHelper {
                 continue;
             }
 
-            Common.GroupHeader groupHeader = Common.GroupHeader.parseFrom(payload.getHeader().getGroupHeader());
+            Common.GroupHeader groupHeader = getGroupHeader(parsedTx);
             if (StringUtils.isBlank(groupId) && StringUtils.isNotBlank(groupHeader.getGroupId())) {
                 groupId = groupHeader.getGroupId();
             }
@@ -173,6 +190,31 @@ public class EventHelper {
         return new BlockEvents(blockEvent, filteredBlockEvent, groupId);
     }
 
+    private static Common.Envelope getEnvelope(ParsedBlock.ParsedTx parsedTx) throws InvalidProtocolBufferException {
+        try {
+            return parsedTx.getEnvelope();
+        } catch (LedgerException e) {
+            throw new InvalidProtocolBufferException(e.getMessage());
+        }
+    }
+
+    private static Common.Payload getPayload(ParsedBlock.ParsedTx parsedTx) throws InvalidProtocolBufferException {
+        try {
+            return parsedTx.getPayload();
+        } catch (LedgerException e) {
+            throw new InvalidProtocolBufferException(e.getMessage());
+        }
+    }
+
+    private static Common.GroupHeader getGroupHeader(ParsedBlock.ParsedTx parsedTx)
+            throws InvalidProtocolBufferException {
+        try {
+            return parsedTx.getGroupHeader();
+        } catch (LedgerException e) {
+            throw new InvalidProtocolBufferException(e.getMessage());
+        }
+    }
+
     private static EventsPackage.Event createBlockEvent(Common.Block block) {
         return EventsPackage.Event.newBuilder().setBlock(block).build();
     }
@@ -16,6 +16,7 @@
 package org.bcia.julongchain.events.producer;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import org.bcia.julongchain.common.exception.MspException;
 import org.bcia.julongchain.common.exception.ValidateException;
@@ -24,6 +25,11 @@ import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.protos.node.EventsPackage;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * 事件中心服务
  *
@@ -34,9 +40,21 @@ import org.bcia.julongchain.protos.node.EventsPackage;
 public class EventHubServer implements IEventHubServer {
     private static JulongChainLog log = JulongChainLogFactory.getLog(EventHubServer.class);
     private IEventProcessor eventProcessor;
+    /**
+     * 每个客户端流上的订阅者, 流结束或被断开时一起注销
+     */
+    private final Map<StreamObserver<EventsPackage.Event>, List<EventHandler>> streamHandlers =
+            new ConcurrentHashMap<>();
 
     public interface Callback {
         void sendMessage(EventsPackage.Event event);
+
+        /**
+         * 订阅者被断开(发送队列溢出或发送失败)
+         *
+         * @param reason
+         */
+        void disconnect(String reason);
     }
 
     public EventHubServer(EventsServerConfig config) {
@@ -44,18 +62,46 @@ public class EventHubServer implements IEventHubServer {
     }
 
     @Override
-    public EventsPackage.Event chat(EventsPackage.SignedEvent signedEvent, StreamObserver<EventsPackage.Event>
+    public EventsPackage.Event chat(EventsPackage.SignedEvent signedEvent, final StreamObserver<EventsPackage.Event>
             responseObserver) {
-        IEventHandler eventHandler = new EventHandler(eventProcessor, new Callback() {
+        //StreamObserver不是线程安全的, 各订阅者的发送线程及断开通知均在responseObserver上同步
+        EventHandler eventHandler = new EventHandler(eventProcessor, new Callback() {
             @Override
             public void sendMessage(EventsPackage.Event event) {
                 //往客户端发送一个消息
                 if (responseObserver != null) {
-                    responseObserver.onNext(event);
+                    synchronized (responseObserver) {
+                        if (streamHandlers.containsKey(responseObserver)) {
+                            responseObserver.onNext(event);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void disconnect(String reason) {
+                if (responseObserver != null && closeStream(responseObserver)) {
+                    synchronized (responseObserver) {
+                        responseObserver.onError(Status.RESOURCE_EXHAUSTED.withDescription(reason)
+                                .asRuntimeException());
+                    }
                 }
             }
         });
 
+        List<EventHandler> handlers = null;
+        if (responseObserver != null) {
+            handlers = streamHandlers.get(responseObserver);
+            if (handlers == null) {
+                List<EventHandler> newHandlers = new CopyOnWriteArrayList<>();
+                handlers = streamHandlers.putIfAbsent(responseObserver, newHandlers);
+                if (handlers == null) {
+                    handlers = newHandlers;
+                }
+            }
+            handlers.add(eventHandler);
+        }
+
         try {
             //处理消息，其实是客户端向服务器注册订阅某一类消息
             return eventHandler.handleMessage(signedEvent);
@@ -65,10 +111,33 @@ public class EventHubServer implements IEventHubServer {
             log.error(e.getMessage(), e);
         } catch (VerifyException e) {
             log.error(e.getMessage(), e);
-        } catch (MspException e) {
-            e.printStackTrace();
         }
 
+        if (handlers != null) {
+            handlers.remove(eventHandler);
+        }
         return null;
     }
+
+    @Override
+    public void streamClosed(StreamObserver<EventsPackage.Event> responseObserver) {
+        closeStream(responseObserver);
+    }
+
+    /**
+     * 注销流上的所有订阅者并停止其发送线程
+     *
+     * @param responseObserver
+     * @return 流是否由本次调用关闭
+     */
+    private boolean closeStream(StreamObserver<EventsPackage.Event> responseObserver) {
+        List<EventHandler> handlers = streamHandlers.remove(responseObserver);
+        if (handlers == null) {
+            return false;
+        }
+        for (EventHandler handler : handlers) {
+            handler.close();
+        }
+        return true;
+    }
 }
\ No newline at end of file
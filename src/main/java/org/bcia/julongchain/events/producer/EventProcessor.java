@@ -26,11 +26,13 @@ import org.bcia.julongchain.protos.node.EventsPackage;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * 事件处理器
+ * 提交区块的线程把事件放入有界的发布缓冲区后即返回, 分发线程再把事件放入各订阅者自己的发送队列(见EventSender),
+ * 由各订阅者的发送线程异步发送
  *
  * @author zhouhui
  * @date 2018/05/17
@@ -45,6 +47,7 @@ public class EventProcessor implements IEventProcessor {
     private BlockingQueue<EventsPackage.Event> blockingQueue;
     private Producer<EventsPackage.Event> producer;
     private Consumer<EventsPackage.Event> consumer;
+    private boolean started;
 
     private static EventProcessor instance;
 
@@ -53,6 +56,7 @@ public class EventProcessor implements IEventProcessor {
             synchronized (EventProcessor.class) {
                 if (instance == null) {
                     instance = new EventProcessor(eventsServerConfig);
+                    instance.start();
                 }
             }
         }
@@ -63,6 +67,10 @@ public class EventProcessor implements IEventProcessor {
     private EventProcessor(EventsServerConfig eventsServerConfig) {
         instance = this;
 
+        if (eventsServerConfig == null) {
+            //节点未启动事件服务时使用默认配置
+            eventsServerConfig = new EventsServerConfig(0L, 0L, 0L, null);
+        }
         this.eventsServerConfig = eventsServerConfig;
 
         this.eventConsumers = new HashMap<>();
@@ -73,8 +81,9 @@ public class EventProcessor implements IEventProcessor {
         eventConsumers.put(EventsPackage.EventType.REJECTION_VALUE, new GenericHandlerList());
         eventConsumers.put(EventsPackage.EventType.FILTEREDBLOCK_VALUE, new GenericHandlerList());
 
-        blockingQueue = new LinkedBlockingQueue<>();
-        producer = new Producer<>(blockingQueue);
+        blockingQueue = new ArrayBlockingQueue<>((int) Math.min(eventsServerConfig.getBufferSize(),
+                Integer.MAX_VALUE));
+        producer = new Producer<>(blockingQueue, eventsServerConfig.getTimeout());
         consumer = new Consumer<EventsPackage.Event>(blockingQueue) {
             @Override
             public boolean consume(EventsPackage.Event event) {
@@ -84,6 +93,10 @@ public class EventProcessor implements IEventProcessor {
                 } catch (EventException e) {
                     log.error(e.getMessage(), e);
                     return false;
+                } catch (RuntimeException e) {
+                    //避免分发线程退出
+                    log.error(e.getMessage(), e);
+                    return false;
                 }
             }
         };
@@ -105,6 +118,7 @@ public class EventProcessor implements IEventProcessor {
         handlerList.foreach(event, new IHandlerList.IHandlerAction() {
             @Override
             public void doAction(IEventHandler handler) {
+                //只放入订阅者的发送队列, 不在分发线程中发送
                 if (!EventsUtils.hasSessionExpired(handler.getSessionEndDate())) {
                     handler.sendMessage(event);
                 }
@@ -141,10 +155,12 @@ public class EventProcessor implements IEventProcessor {
         return producer.produce(event);
     }
 
-    public void start() {
-        //
-        consumer.start();
-
+    public synchronized void start() {
+        if (!started) {
+            started = true;
+            consumer.setDaemon(true);
+            consumer.start();
+        }
     }
 
     @Override
@@ -0,0 +1,259 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.events.producer;
+
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.protos.node.EventsPackage;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订阅者事件发送器
+ * 每个订阅者一个有界队列, 由独立的发送线程取出并发送给客户端, 慢速的订阅者不会阻塞事件分发和其他订阅者.
+ * 队列已满时按EventsServerConfig.OverflowPolicy处理
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class EventSender {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(EventSender.class);
+
+    private static final AtomicInteger SENDER_COUNT = new AtomicInteger();
+
+    /**
+     * 关闭时等待发送线程退出的最长时间(毫秒)
+     */
+    private static final long CLOSE_TIMEOUT = 5000L;
+
+    /**
+     * 发送器被断开时的通知
+     */
+    public interface IDisconnectListener {
+        void onDisconnect(String reason);
+    }
+
+    private final BlockingQueue<PendingEvent> queue;
+    private final int bufferSize;
+    private final long timeout;
+    private final EventsServerConfig.OverflowPolicy overflowPolicy;
+    private final EventHubServer.Callback callback;
+    private final IDisconnectListener disconnectListener;
+
+    private final AtomicLong sentEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    /**
+     * 最近一个已发送事件从入队到发送完成的耗时(毫秒)
+     */
+    private volatile long lastDeliveryMillis;
+
+    private volatile boolean closed;
+    private Thread senderThread;
+
+    public EventSender(EventsServerConfig config, EventHubServer.Callback callback,
+                       IDisconnectListener disconnectListener) {
+        this.bufferSize = (int) Math.min(config.getBufferSize(), Integer.MAX_VALUE);
+        this.timeout = config.getTimeout();
+        this.overflowPolicy = config.getOverflowPolicy();
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+        this.callback = callback;
+        this.disconnectListener = disconnectListener;
+    }
+
+    /**
+     * 将事件放入订阅者队列
+     *
+     * @param event
+     * @return 订阅者应被断开时返回false(已关闭, 或队列已满且策略为DISCONNECT)
+     */
+    public boolean offer(EventsPackage.Event event) {
+        if (closed) {
+            return false;
+        }
+
+        PendingEvent pendingEvent = new PendingEvent(event, System.currentTimeMillis());
+        boolean accepted;
+        switch (overflowPolicy) {
+            case DISCONNECT:
+                if (!queue.offer(pendingEvent)) {
+                    return false;
+                }
+                accepted = true;
+                break;
+            case BLOCK:
+                accepted = offerWithTimeout(pendingEvent);
+                break;
+            default:
+                while (!queue.offer(pendingEvent)) {
+                    if (queue.poll() != null) {
+                        onDropped();
+                    }
+                }
+                accepted = true;
+                break;
+        }
+
+        if (accepted) {
+            startIfNecessary();
+        } else {
+            onDropped();
+        }
+        return true;
+    }
+
+    /**
+     * timeout小于0时不等待, 等于0时一直等待, 大于0时最多等待timeout毫秒
+     */
+    private boolean offerWithTimeout(PendingEvent pendingEvent) {
+        try {
+            if (timeout < 0) {
+                return queue.offer(pendingEvent);
+            } else if (timeout == 0) {
+                queue.put(pendingEvent);
+                return true;
+            } else {
+                return queue.offer(pendingEvent, timeout, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void onDropped() {
+        long dropped = droppedEvents.incrementAndGet();
+        if (dropped == 1 || dropped % bufferSize == 0) {
+            log.warn("Subscriber is too slow, " + dropped + " events dropped, " + queue.size() + " pending, lag "
+                    + getLagMillis() + "ms");
+        }
+    }
+
+    private synchronized void startIfNecessary() {
+        if (senderThread != null || closed) {
+            return;
+        }
+
+        senderThread = new Thread("eventSender-" + SENDER_COUNT.incrementAndGet()) {
+            @Override
+            public void run() {
+                while (!closed) {
+                    PendingEvent pendingEvent;
+                    try {
+                        pendingEvent = queue.take();
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+
+                    try {
+                        callback.sendMessage(pendingEvent.event);
+                    } catch (RuntimeException e) {
+                        log.error("Send event failed: " + e.getMessage(), e);
+                        disconnect("Send event failed: " + e.getMessage());
+                        break;
+                    }
+                    sentEvents.incrementAndGet();
+                    lastDeliveryMillis = System.currentTimeMillis() - pendingEvent.enqueueTime;
+                }
+            }
+        };
+        senderThread.setDaemon(true);
+        senderThread.start();
+    }
+
+    private void disconnect(String reason) {
+        if (!closed) {
+            close();
+            if (disconnectListener != null) {
+                disconnectListener.onDisconnect(reason);
+            }
+        }
+    }
+
+    /**
+     * 关闭发送器, 丢弃未发送的事件, 并等待发送线程退出
+     * 返回后发送线程不再调用callback.sendMessage(等待超时除外)
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+            thread = senderThread;
+        }
+        if (thread == null || thread == Thread.currentThread()) {
+            return;
+        }
+        thread.interrupt();
+        try {
+            thread.join(CLOSE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn(thread.getName() + " did not stop in " + CLOSE_TIMEOUT + "ms");
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 等待发送的事件数
+     *
+     * @return
+     */
+    public int getPendingEvents() {
+        return queue.size();
+    }
+
+    /**
+     * 最早的未发送事件已等待的时间(毫秒), 没有积压时为0
+     *
+     * @return
+     */
+    public long getLagMillis() {
+        PendingEvent oldest = queue.peek();
+        return oldest == null ? 0L : Math.max(0L, System.currentTimeMillis() - oldest.enqueueTime);
+    }
+
+    public long getLastDeliveryMillis() {
+        return lastDeliveryMillis;
+    }
+
+    public long getSentEvents() {
+        return sentEvents.get();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    private static class PendingEvent {
+        private final EventsPackage.Event event;
+        private final long enqueueTime;
+
+        PendingEvent(EventsPackage.Event event, long enqueueTime) {
+            this.event = event;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+}
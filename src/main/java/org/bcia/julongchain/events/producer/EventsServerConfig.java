@@ -27,17 +27,70 @@ import com.google.protobuf.Message;
  */
 public class EventsServerConfig {
     private static final long DEFAULT_TIME_WINDOW = 900000;//900秒，15分钟
+    private static final long DEFAULT_BUFFER_SIZE = 100;
 
     public interface IBindingInspector {
         void bind(Message protoMessage);
     }
 
+    /**
+     * 订阅者队列已满时的处理策略
+     */
+    public enum OverflowPolicy {
+        /**
+         * 丢弃队列中最早的事件
+         */
+        DROP_OLDEST("dropOldest"),
+        /**
+         * 断开该订阅者
+         */
+        DISCONNECT("disconnect"),
+        /**
+         * 按timeout阻塞等待, 超时后丢弃新事件
+         */
+        BLOCK("block");
+
+        private String name;
+
+        OverflowPolicy(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 根据配置名称获取策略, 未配置或无法识别时使用DROP_OLDEST
+         *
+         * @param name
+         * @return
+         */
+        public static OverflowPolicy fromName(String name) {
+            for (OverflowPolicy policy : values()) {
+                if (policy.name.equalsIgnoreCase(name) || policy.name().equalsIgnoreCase(name)) {
+                    return policy;
+                }
+            }
+            return DROP_OLDEST;
+        }
+    }
+
     private long bufferSize;
     private long timeout;
     private long timeWindow;
+    private OverflowPolicy overflowPolicy;
     private IBindingInspector bindingInspector;
 
     public EventsServerConfig(long bufferSize, long timeout, long timeWindow, IBindingInspector bindingInspector) {
+        this(bufferSize, timeout, timeWindow, OverflowPolicy.DROP_OLDEST, bindingInspector);
+    }
+
+    public EventsServerConfig(long bufferSize, long timeout, long timeWindow, OverflowPolicy overflowPolicy,
+                              IBindingInspector bindingInspector) {
+        if (bufferSize <= 0L) {
+            bufferSize = DEFAULT_BUFFER_SIZE;
+        }
         this.bufferSize = bufferSize;
         this.timeout = timeout;
 
@@ -46,6 +99,7 @@ public class EventsServerConfig {
         }
         this.timeWindow = timeWindow;
 
+        this.overflowPolicy = overflowPolicy != null ? overflowPolicy : OverflowPolicy.DROP_OLDEST;
         this.bindingInspector = bindingInspector;
     }
 
@@ -61,6 +115,10 @@ public class EventsServerConfig {
         return timeWindow;
     }
 
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
     public IBindingInspector getBindingInspector() {
         return bindingInspector;
     }
@@ -19,7 +19,9 @@ import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.util.ValidateUtils;
 import org.bcia.julongchain.protos.node.EventsPackage;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -65,10 +67,13 @@ public class GenericHandlerList implements IHandlerList {
     @Override
     public void foreach(EventsPackage.Event event, IHandlerAction action) {
         if (event != null && action != null) {
+            //复制后在锁外执行, 处理时可以注册或注销处理器
+            List<IEventHandler> eventHandlers;
             synchronized (this) {
-                for (IEventHandler eventHandler : handlers.keySet()) {
-                    action.doAction(eventHandler);
-                }
+                eventHandlers = new ArrayList<>(handlers.keySet());
+            }
+            for (IEventHandler eventHandler : eventHandlers) {
+                action.doAction(eventHandler);
             }
         }
     }
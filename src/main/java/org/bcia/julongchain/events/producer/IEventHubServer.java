@@ -34,4 +34,11 @@ public interface IEventHubServer {
      */
     EventsPackage.Event chat(EventsPackage.SignedEvent value, StreamObserver<EventsPackage.Event> responseObserver);
 
+    /**
+     * 客户端流已结束(正常结束或出错), 注销该流上的订阅者并停止其发送线程
+     *
+     * @param responseObserver
+     */
+    void streamClosed(StreamObserver<EventsPackage.Event> responseObserver);
+
 }
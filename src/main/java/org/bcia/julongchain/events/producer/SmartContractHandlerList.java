@@ -123,18 +123,20 @@ public class SmartContractHandlerList implements IHandlerList {
         if (event.getSmartContractEvent() != null && action != null) {
             String scId = event.getSmartContractEvent().getSmartContractId();
             String eventName = event.getSmartContractEvent().getEventName();
+            //复制后在锁外执行, 处理时可以注册或注销处理器
+            List<IEventHandler> eventHandlers = new ArrayList<>();
             synchronized (this) {
                 if (StringUtils.isNotBlank(scId) && StringUtils.isNotBlank(eventName) && handlers.containsKey(scId)) {
                     Map<String, List<IEventHandler>> eventHandlerMap = handlers.get(scId);
 
                     if (eventHandlerMap.containsKey(eventName)) {
-                        List<IEventHandler> eventHandlerList = eventHandlerMap.get(eventName);
-                        for (IEventHandler eventHandler : eventHandlerList) {
-                            action.doAction(eventHandler);
-                        }
+                        eventHandlers.addAll(eventHandlerMap.get(eventName));
                     }
                 }
             }
+            for (IEventHandler eventHandler : eventHandlers) {
+                action.doAction(eventHandler);
+            }
         }
     }
 }
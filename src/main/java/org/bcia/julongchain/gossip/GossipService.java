@@ -18,20 +18,20 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import io.grpc.stub.StreamObserver;
 import org.apache.commons.lang3.StringUtils;
 import org.bcia.julongchain.common.exception.LedgerException;
-import org.bcia.julongchain.common.ledger.blockledger.ReadWriteBase;
-import org.bcia.julongchain.common.ledger.blockledger.Util;
+import org.bcia.julongchain.common.ledger.blockledger.IFactory;
 import org.bcia.julongchain.common.ledger.blockledger.file.FileLedgerFactory;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.consenter.common.localconfig.ConsenterConfigFactory;
 import org.bcia.julongchain.core.ledger.BlockAndPvtData;
 import org.bcia.julongchain.core.ledger.ledgermgmt.LedgerManager;
+import org.bcia.julongchain.gossip.state.StateRequestServer;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.gossip.GossipGrpc;
 import org.bcia.julongchain.protos.gossip.Message;
 
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 类描述
@@ -44,30 +44,74 @@ public class GossipService extends GossipGrpc.GossipImplBase {
 
     private static JulongChainLog log = JulongChainLogFactory.getLog(GossipService.class);
 
-    private static Set<StreamObserver<Message.Envelope>> responseObservers = new HashSet<StreamObserver<Message.Envelope>>();
+    /**
+     * 单个区块请求最多返回的区块数
+     */
+    public static final int MAX_BLOCKS_PER_REQUEST = 100;
+
+    private static Set<StreamObserver<Message.Envelope>> responseObservers = ConcurrentHashMap.newKeySet();
+
+    private final IFactory ledgerFactory;
+    private volatile StateRequestServer stateRequestServer;
+
+    public GossipService() {
+        this(null);
+    }
+
+    /**
+     * @param ledgerFactory consenter的账本工厂, 为空时按配置创建
+     */
+    public GossipService(IFactory ledgerFactory) {
+        this.ledgerFactory = ledgerFactory;
+    }
 
     @Override
     public StreamObserver<Message.Envelope> gossipStream(StreamObserver<Message.Envelope> responseObserver) {
+        responseObservers.add(responseObserver);
+        StateRequestServer.Connection connection = getStateRequestServer().newConnection(responseObserver);
         return new StreamObserver<Message.Envelope>() {
             @Override
             public void onNext(Message.Envelope envelope) {
-                responseObservers.add(responseObserver);
-                handPullRequest(envelope, responseObserver);
+                handPullRequest(envelope, connection);
             }
 
             @Override
             public void onError(Throwable throwable) {
                 log.error(throwable.getMessage(), throwable);
+                connection.close();
+                responseObservers.remove(responseObserver);
             }
 
             @Override
             public void onCompleted() {
                 log.info("gossip complete");
+                connection.close();
+                responseObservers.remove(responseObserver);
             }
         };
     }
 
-    private void handPullRequest(Message.Envelope envelope, StreamObserver<Message.Envelope> responseObserver) {
+    private StateRequestServer getStateRequestServer() {
+        if (stateRequestServer == null) {
+            synchronized (this) {
+                if (stateRequestServer == null) {
+                    IFactory factory = ledgerFactory;
+                    if (factory == null) {
+                        String location = ConsenterConfigFactory.loadConsenterConfig().getFileLedger().getLocation();
+                        try {
+                            factory = new FileLedgerFactory(location);
+                        } catch (LedgerException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                    stateRequestServer = new StateRequestServer(factory);
+                }
+            }
+        }
+        return stateRequestServer;
+    }
+
+    private void handPullRequest(Message.Envelope envelope, StateRequestServer.Connection connection) {
         try {
             ByteString payload = envelope.getPayload();
             if (payload == null) {
@@ -77,30 +121,17 @@ public class GossipService extends GossipGrpc.GossipImplBase {
             if (gossipMessage == null) {
                 return;
             }
-            Message.RemoteStateRequest stateRequest = gossipMessage.getStateRequest();
-            if (stateRequest == null) {
+            if (!gossipMessage.hasStateRequest()) {
                 return;
             }
+            Message.RemoteStateRequest stateRequest = gossipMessage.getStateRequest();
             String group = gossipMessage.getGroup().toStringUtf8();
             long startSeqNum = stateRequest.getStartSeqNum();
-            new Thread() {
-                @Override
-                public void run() {
-                    String location = ConsenterConfigFactory.loadConsenterConfig().getFileLedger().getLocation();
-                    FileLedgerFactory fileLedgerFactory = null;
-                    try {
-                        fileLedgerFactory = new FileLedgerFactory(location);
-                        ReadWriteBase readWriteBase = fileLedgerFactory.getOrCreate(group);
-                        log.info("receive pull request:"+ group + " " +startSeqNum);
-                        Common.Block block = Util.getBlock(readWriteBase, startSeqNum);
-                        log.info("get block:" + block.getHeader().getNumber());
-                        Message.Envelope responseEnvelope = newGossipEnvelope(group, block.getHeader().getNumber(), block);
-                        responseObserver.onNext(responseEnvelope);
-                    } catch (LedgerException e) {
-                        log.error(e.getMessage(), e);
-                    }
-                }
-            }.start();
+            //兼容只带startSeqNum的请求, 单个请求最多返回MAX_BLOCKS_PER_REQUEST个区块
+            long endSeqNum = Math.min(Math.max(startSeqNum, stateRequest.getEndSeqNum()),
+                    startSeqNum + MAX_BLOCKS_PER_REQUEST - 1);
+            log.debug("receive pull request:" + group + " " + startSeqNum + "-" + endSeqNum);
+            connection.request(group, startSeqNum, endSeqNum);
         } catch (InvalidProtocolBufferException e) {
             log.error(e.getMessage(), e);
         }
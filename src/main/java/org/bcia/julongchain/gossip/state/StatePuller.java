@@ -0,0 +1,372 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.gossip.state;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.bcia.julongchain.common.exception.CommitterException;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.exception.ValidateException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.core.commiter.ICommitter;
+import org.bcia.julongchain.core.ledger.BlockAndPvtData;
+import org.bcia.julongchain.core.ledger.INodeLedger;
+import org.bcia.julongchain.core.ledger.ledgermgmt.LedgerManager;
+import org.bcia.julongchain.gossip.GossipClientStream;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.gossip.Message;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从consenter按窗口拉取区块
+ * 拉取线程按区间(start..end)发送请求, 保持最多windowSize个区块在途, 收到的区块按序号放入重排缓冲区,
+ * 连续的区块交给提交线程写入账本, 提交与后续区块的拉取同时进行。提交失败时从账本高度重新拉取.
+ * 指定了群组的提交者时, 区块经提交者校验后再写入账本
+ * 请求或回复可能丢失(如consenter处理请求出错), 区间在requestTimeout内未收齐且之后的区块已收到时重发其中缺失的部分;
+ * 之后的区块都未收到时consenter可能还没有生成这些区块, 只在requestTimeout内没有收到任何区块时重发最前面的区间
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class StatePuller {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(StatePuller.class);
+
+    /**
+     * 默认每个请求的区块数
+     */
+    public static final int DEFAULT_BATCH_SIZE = 10;
+    /**
+     * 默认窗口大小, 即已请求但尚未交给提交线程的区块数上限
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+    /**
+     * 默认请求超时时间(毫秒), 超时未收齐的区间重新请求
+     */
+    public static final long DEFAULT_REQUEST_TIMEOUT = 5000L;
+
+    private static final long POLL_TIMEOUT = 1000L;
+    private static final long RETRY_INTERVAL = 5000L;
+
+    private final GossipClientStream gossipClientStream;
+    private final String ledgerID;
+    private final int batchSize;
+    private final int windowSize;
+    private final long requestTimeout;
+    private volatile INodeLedger ledger;
+    /**
+     * 群组的提交者, 为null时直接写入账本
+     */
+    private final ICommitter ledgerCommitter;
+
+    /**
+     * 重排缓冲区, 仅在拉取线程中访问
+     */
+    private final Map<Long, ByteString> reorderBuffer = new HashMap<>();
+    /**
+     * 已发送但尚未收齐的区间, 以起始区块号为key, 仅在拉取线程中访问
+     */
+    private final TreeMap<Long, PendingRequest> pendingRequests = new TreeMap<>();
+    private final BlockingQueue<ByteString> commitQueue;
+    private volatile boolean commitFailed;
+    private volatile boolean running;
+    private Thread puller;
+    private Thread committer;
+
+    /**
+     * 下一个要交给提交线程的区块号, 及下一个要请求的区块号
+     */
+    private long nextToCommit;
+    private long nextToRequest;
+    /**
+     * 已收到的最大区块号及最近一次收到区块的时间, 仅在拉取线程中访问
+     */
+    private long highestReceived;
+    private long lastReceiveTime;
+
+    public StatePuller(GossipClientStream gossipClientStream, String ledgerID, int batchSize, int windowSize,
+                       long requestTimeout) {
+        this(gossipClientStream, ledgerID, null, null, batchSize, windowSize, requestTimeout);
+    }
+
+    public StatePuller(GossipClientStream gossipClientStream, String ledgerID, ICommitter ledgerCommitter,
+                       int batchSize, int windowSize, long requestTimeout) {
+        this(gossipClientStream, ledgerID, null, ledgerCommitter, batchSize, windowSize, requestTimeout);
+    }
+
+    public StatePuller(GossipClientStream gossipClientStream, String ledgerID, INodeLedger ledger, int batchSize,
+                       int windowSize) {
+        this(gossipClientStream, ledgerID, ledger, batchSize, windowSize, 0);
+    }
+
+    public StatePuller(GossipClientStream gossipClientStream, String ledgerID, INodeLedger ledger, int batchSize,
+                       int windowSize, long requestTimeout) {
+        this(gossipClientStream, ledgerID, ledger, null, batchSize, windowSize, requestTimeout);
+    }
+
+    public StatePuller(GossipClientStream gossipClientStream, String ledgerID, INodeLedger ledger,
+                       ICommitter ledgerCommitter, int batchSize, int windowSize, long requestTimeout) {
+        this.gossipClientStream = gossipClientStream;
+        this.ledgerID = ledgerID;
+        this.ledger = ledger;
+        this.ledgerCommitter = ledgerCommitter;
+        this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        this.windowSize = Math.max(windowSize > 0 ? windowSize : DEFAULT_WINDOW_SIZE, this.batchSize);
+        this.requestTimeout = requestTimeout > 0 ? requestTimeout : DEFAULT_REQUEST_TIMEOUT;
+        this.commitQueue = new ArrayBlockingQueue<>(this.windowSize);
+    }
+
+    public void start() {
+        running = true;
+        puller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pullLoop();
+            }
+        }, "state-puller-" + ledgerID);
+        committer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                commitLoop();
+            }
+        }, "state-committer-" + ledgerID);
+        puller.start();
+        committer.start();
+    }
+
+    public void stop() {
+        running = false;
+        if (puller != null) {
+            puller.interrupt();
+        }
+        if (committer != null) {
+            committer.interrupt();
+        }
+    }
+
+    private void pullLoop() {
+        log.info(String.format("[%s] Start pulling blocks from consenter, batch size: %d, window size: %d", ledgerID,
+                batchSize, windowSize));
+        while (running) {
+            try {
+                if (ledger == null) {
+                    ledger = LedgerManager.openLedger(ledgerID);
+                }
+                pull(ledger.getBlockchainInfo().getHeight());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+            if (!running) {
+                return;
+            }
+            try {
+                Thread.sleep(RETRY_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            //丢弃未提交的区块, 从账本高度重新开始
+            reorderBuffer.clear();
+            commitQueue.clear();
+            gossipClientStream.getQueue(ledgerID).clear();
+            commitFailed = false;
+        }
+    }
+
+    /**
+     * 从height开始拉取, 提交失败时返回
+     *
+     * @param height
+     * @throws InterruptedException
+     */
+    void pull(long height) throws InterruptedException {
+        nextToCommit = height;
+        nextToRequest = height;
+        highestReceived = height - 1;
+        lastReceiveTime = System.currentTimeMillis();
+        pendingRequests.clear();
+        BlockingQueue<Message.Envelope> receiveQueue = gossipClientStream.getQueue(ledgerID);
+        while (running && !commitFailed) {
+            //请求填满窗口
+            while (nextToRequest < nextToCommit + windowSize) {
+                long endSeqNum = Math.min(nextToRequest + batchSize, nextToCommit + windowSize) - 1;
+                sendRequest(nextToRequest, endSeqNum);
+                pendingRequests.put(nextToRequest, new PendingRequest(endSeqNum, System.currentTimeMillis()));
+                nextToRequest = endSeqNum + 1;
+            }
+            resendTimedOutRequests();
+
+            Message.Envelope envelope = receiveQueue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+            if (envelope == null) {
+                continue;
+            }
+            Message.Payload payload;
+            try {
+                payload = Message.GossipMessage.parseFrom(envelope.getPayload()).getDataMsg().getPayload();
+            } catch (InvalidProtocolBufferException e) {
+                log.error(e.getMessage(), e);
+                continue;
+            }
+            long seqNum = payload.getSeqNum();
+            if (seqNum < nextToCommit || seqNum >= nextToCommit + windowSize) {
+                //重复或过期的区块
+                log.debug(String.format("[%s] Discard block %d, window [%d, %d)", ledgerID, seqNum, nextToCommit,
+                        nextToCommit + windowSize));
+                continue;
+            }
+            reorderBuffer.put(seqNum, payload.getData());
+            highestReceived = Math.max(highestReceived, seqNum);
+            lastReceiveTime = System.currentTimeMillis();
+
+            //连续的区块交给提交线程, 窗口随之前移
+            ByteString data;
+            while ((data = reorderBuffer.remove(nextToCommit)) != null) {
+                commitQueue.put(data);
+                nextToCommit++;
+            }
+        }
+    }
+
+    /**
+     * 移除已收齐的区间, 超时未收齐的区间从第一个缺失的区块起重新请求
+     * 缺失的区块之后已收到区块时, 缺失的区块已丢失; 否则请求可能在consenter等待新区块,
+     * 只在requestTimeout内没有收到任何区块时重发最前面的一个区间, 避免在consenter堆积重复的请求
+     */
+    private void resendTimedOutRequests() {
+        long now = System.currentTimeMillis();
+        boolean stalled = now - lastReceiveTime >= requestTimeout;
+        boolean probed = false;
+        Iterator<Map.Entry<Long, PendingRequest>> iterator = pendingRequests.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, PendingRequest> entry = iterator.next();
+            PendingRequest request = entry.getValue();
+            if (request.endSeqNum < nextToCommit) {
+                iterator.remove();
+                continue;
+            }
+            long firstMissing = Math.max(entry.getKey(), nextToCommit);
+            while (firstMissing <= request.endSeqNum && reorderBuffer.containsKey(firstMissing)) {
+                firstMissing++;
+            }
+            if (firstMissing > request.endSeqNum) {
+                //已收齐, 等待提交后移除
+                continue;
+            }
+            if (firstMissing > highestReceived) {
+                if (probed) {
+                    continue;
+                }
+                probed = true;
+                if (!stalled) {
+                    continue;
+                }
+            }
+            if (now - request.sentTime < requestTimeout) {
+                continue;
+            }
+            log.warn(String.format("[%s] Request %d-%d timed out, resend %d-%d", ledgerID, entry.getKey(),
+                    request.endSeqNum, firstMissing, request.endSeqNum));
+            sendRequest(firstMissing, request.endSeqNum);
+            request.sentTime = now;
+        }
+    }
+
+    private void sendRequest(long startSeqNum, long endSeqNum) {
+        Message.RemoteStateRequest remoteStateRequest = Message.RemoteStateRequest.newBuilder()
+                .setStartSeqNum(startSeqNum).setEndSeqNum(endSeqNum).build();
+        Message.GossipMessage gossipMessage = Message.GossipMessage.newBuilder()
+                .setGroup(ByteString.copyFromUtf8(ledgerID)).setStateRequest(remoteStateRequest).build();
+        Message.Envelope envelope = Message.Envelope.newBuilder().setPayload(gossipMessage.toByteString()).build();
+        log.debug(String.format("Send pull request: %s %d-%d", ledgerID, startSeqNum, endSeqNum));
+        gossipClientStream.serialSend(envelope);
+    }
+
+    private void commitLoop() {
+        while (running) {
+            ByteString data;
+            try {
+                data = commitQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (commitFailed) {
+                //等待拉取线程重置
+                continue;
+            }
+            try {
+                Common.Block block = Common.Block.parseFrom(data);
+                if (ledgerCommitter != null) {
+                    ledgerCommitter.commitWithPrivateData(new BlockAndPvtData(block, null, null));
+                } else {
+                    ledger.commitWithPvtData(new BlockAndPvtData(block, null, null));
+                }
+                log.info(String.format("[%s] Saved block %d", ledgerID, block.getHeader().getNumber()));
+            } catch (InvalidProtocolBufferException e) {
+                log.error(e.getMessage(), e);
+                commitFailed = true;
+            } catch (CommitterException e) {
+                log.error(e.getMessage(), e);
+                commitFailed = true;
+            } catch (ValidateException e) {
+                log.error(e.getMessage(), e);
+                commitFailed = true;
+            } catch (LedgerException e) {
+                log.error(e.getMessage(), e);
+                commitFailed = true;
+            } catch (RuntimeException e) {
+                log.error(e.getMessage(), e);
+                commitFailed = true;
+            }
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * 已发送的区间请求
+     */
+    private static class PendingRequest {
+        private final long endSeqNum;
+        private long sentTime;
+
+        PendingRequest(long endSeqNum, long sentTime) {
+            this.endSeqNum = endSeqNum;
+            this.sentTime = sentTime;
+        }
+    }
+}
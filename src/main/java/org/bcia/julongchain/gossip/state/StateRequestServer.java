@@ -0,0 +1,408 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.gossip.state;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.blockledger.IFactory;
+import org.bcia.julongchain.common.ledger.blockledger.IIterator;
+import org.bcia.julongchain.common.ledger.blockledger.ReadWriteBase;
+import org.bcia.julongchain.common.ledger.blockledger.file.FileLedger;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
+import org.bcia.julongchain.gossip.GossipService;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Ab;
+import org.bcia.julongchain.protos.gossip.Message;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 区块拉取(state transfer)服务端
+ * 所有gossip流共用一个有界线程池, 每个group的账本句柄只打开一次。
+ * 同一条流上同一group的区间请求按顺序处理, 每次从一个迭代器连续读取区块, 流不可写时暂停, 可写后继续;
+ * 请求的区块尚未生成时不占用线程, 等待新区块写入后再继续。
+ * 请求方超时重发的区间与排队中的区间重叠时只保留未排队的部分, 每个流排队的区间数有上限
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class StateRequestServer {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(StateRequestServer.class);
+
+    /**
+     * 默认线程数
+     */
+    public static final int DEFAULT_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+    /**
+     * 默认等待执行的任务数上限
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+    /**
+     * 单个任务最多发送的区块数, 超出后重新排队, 避免一个流长期占用线程
+     */
+    static final int MAX_BLOCKS_PER_TASK = 50;
+    /**
+     * 一条流上同一group排队的区间数上限, 超出的请求被丢弃, 由请求方超时重发
+     */
+    static final int MAX_RANGES_PER_STREAM = 100;
+
+    private static final long WATCH_INTERVAL = 1000L;
+
+    private final IFactory ledgerFactory;
+    private final Map<String, ReadWriteBase> ledgers = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    /**
+     * 等待新区块(或线程池有空闲)的请求队列
+     */
+    private final Set<GroupStream> waiting = ConcurrentHashMap.newKeySet();
+    private final Thread watcher;
+    private volatile boolean running = true;
+
+    public StateRequestServer(IFactory ledgerFactory) {
+        this(ledgerFactory, DEFAULT_POOL_SIZE, DEFAULT_QUEUE_SIZE);
+    }
+
+    public StateRequestServer(IFactory ledgerFactory, int poolSize, int queueSize) {
+        this.ledgerFactory = ledgerFactory;
+        final AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "state-server-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watchLoop();
+            }
+        }, "state-server-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    /**
+     * 为一条gossip流创建连接, 须在gossipStream方法返回前调用以注册流控回调
+     *
+     * @param responseObserver
+     * @return
+     */
+    public Connection newConnection(StreamObserver<Message.Envelope> responseObserver) {
+        return new Connection(responseObserver);
+    }
+
+    public void shutdown() {
+        running = false;
+        watcher.interrupt();
+        executor.shutdownNow();
+    }
+
+    ReadWriteBase getLedger(String group) throws LedgerException {
+        ReadWriteBase ledger = ledgers.get(group);
+        if (ledger == null) {
+            ledger = ledgerFactory.getOrCreate(group);
+            ReadWriteBase existing = ledgers.putIfAbsent(group, ledger);
+            if (existing != null) {
+                ledger = existing;
+            }
+        }
+        return ledger;
+    }
+
+    /**
+     * 新区块写入(FileLedger.LOCK被通知)或超时后, 重新调度等待中的请求
+     */
+    private void watchLoop() {
+        while (running) {
+            try {
+                synchronized (FileLedger.LOCK) {
+                    FileLedger.LOCK.wait(WATCH_INTERVAL);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (GroupStream groupStream : waiting) {
+                waiting.remove(groupStream);
+                groupStream.schedule();
+            }
+        }
+    }
+
+    /**
+     * 一条gossip流
+     */
+    public class Connection {
+        private final StreamObserver<Message.Envelope> responseObserver;
+        private final ServerCallStreamObserver<Message.Envelope> serverCallObserver;
+        private final Map<String, GroupStream> groupStreams = new ConcurrentHashMap<>();
+        private volatile boolean closed;
+
+        Connection(StreamObserver<Message.Envelope> responseObserver) {
+            this.responseObserver = responseObserver;
+            if (responseObserver instanceof ServerCallStreamObserver) {
+                serverCallObserver = (ServerCallStreamObserver<Message.Envelope>) responseObserver;
+                serverCallObserver.setOnReadyHandler(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (GroupStream groupStream : groupStreams.values()) {
+                            groupStream.schedule();
+                        }
+                    }
+                });
+                serverCallObserver.setOnCancelHandler(new Runnable() {
+                    @Override
+                    public void run() {
+                        close();
+                    }
+                });
+            } else {
+                serverCallObserver = null;
+            }
+        }
+
+        /**
+         * 接收区间请求[startSeqNum, endSeqNum]
+         *
+         * @param group
+         * @param startSeqNum
+         * @param endSeqNum
+         */
+        public void request(String group, long startSeqNum, long endSeqNum) {
+            if (closed) {
+                return;
+            }
+            GroupStream groupStream = groupStreams.get(group);
+            if (groupStream == null) {
+                groupStream = new GroupStream(this, group);
+                GroupStream existing = groupStreams.putIfAbsent(group, groupStream);
+                if (existing != null) {
+                    groupStream = existing;
+                }
+            }
+            groupStream.add(startSeqNum, endSeqNum);
+        }
+
+        public void close() {
+            closed = true;
+            for (GroupStream groupStream : groupStreams.values()) {
+                waiting.remove(groupStream);
+            }
+        }
+
+        boolean isReady() {
+            return serverCallObserver == null || serverCallObserver.isReady();
+        }
+
+        void send(Message.Envelope envelope) {
+            //同一条流上不同group的请求可能同时发送, StreamObserver不是线程安全的
+            synchronized (this) {
+                responseObserver.onNext(envelope);
+            }
+        }
+    }
+
+    private static class Range {
+        /**
+         * 由任务线程更新, 接收请求的线程读取
+         */
+        private volatile long next;
+        private final long end;
+
+        Range(long next, long end) {
+            this.next = next;
+            this.end = end;
+        }
+    }
+
+    /**
+     * 一条流上某个group的请求队列, 同一时刻最多只有一个任务在处理
+     */
+    private class GroupStream implements Runnable {
+        private final Connection connection;
+        private final String group;
+        private final Deque<Range> ranges = new ArrayDeque<>();
+        private boolean scheduled;
+        /**
+         * 上一次任务因流不可写而暂停, 仅在任务线程中访问
+         */
+        private boolean paused;
+
+        GroupStream(Connection connection, String group) {
+            this.connection = connection;
+            this.group = group;
+        }
+
+        void add(long startSeqNum, long endSeqNum) {
+            synchronized (this) {
+                //去掉与排队中的区间重叠的开头部分(重发的请求通常与原请求的剩余部分相同)
+                boolean trimmed = true;
+                while (trimmed && startSeqNum <= endSeqNum) {
+                    trimmed = false;
+                    for (Range range : ranges) {
+                        if (startSeqNum >= range.next && startSeqNum <= range.end) {
+                            startSeqNum = range.end + 1;
+                            trimmed = true;
+                        }
+                    }
+                }
+                if (startSeqNum > endSeqNum) {
+                    log.debug("Ignore duplicate pull request of group " + group);
+                    return;
+                }
+                if (ranges.size() >= MAX_RANGES_PER_STREAM) {
+                    log.warn("Too many pull requests of group " + group + " in the stream, drop "
+                            + startSeqNum + "-" + endSeqNum);
+                    return;
+                }
+                ranges.add(new Range(startSeqNum, endSeqNum));
+            }
+            schedule();
+        }
+
+        void schedule() {
+            synchronized (this) {
+                if (scheduled || ranges.isEmpty() || connection.closed) {
+                    return;
+                }
+                scheduled = true;
+            }
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    scheduled = false;
+                }
+                if (running) {
+                    //线程池已满, 稍后重试
+                    log.debug("State request queue is full, delay request of group " + group);
+                    waiting.add(this);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            boolean again = false;
+            paused = false;
+            try {
+                again = serve();
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                synchronized (this) {
+                    //丢弃出错的请求, 由请求方超时重发
+                    ranges.poll();
+                }
+                again = true;
+            } finally {
+                synchronized (this) {
+                    scheduled = false;
+                }
+            }
+            //暂停期间onReady回调可能已触发
+            if (again || (paused && connection.isReady())) {
+                schedule();
+            }
+        }
+
+        /**
+         * 发送区块直到请求处理完、流不可写、区块尚未生成或达到单个任务的上限
+         *
+         * @return 是否需要立即重新调度
+         * @throws LedgerException
+         */
+        private boolean serve() throws LedgerException {
+            ReadWriteBase ledger = getLedger(group);
+            int budget = MAX_BLOCKS_PER_TASK;
+            while (!connection.closed) {
+                Range range;
+                synchronized (this) {
+                    range = ranges.peek();
+                }
+                if (range == null) {
+                    return false;
+                }
+                long height = ledger.height();
+                if (range.next >= height) {
+                    waiting.add(this);
+                    //加入等待队列前区块可能已写入, 再检查一次
+                    return range.next < ledger.height() && waiting.remove(this);
+                }
+                if (!connection.isReady()) {
+                    //由onReady回调重新调度
+                    paused = true;
+                    return false;
+                }
+                long last = Math.min(Math.min(range.end, height - 1), range.next + budget - 1);
+                log.debug("Serve pull request: " + group + " " + range.next + "-" + last);
+                IIterator iterator = ledger.iterator(Ab.SeekPosition.newBuilder()
+                        .setSpecified(Ab.SeekSpecified.newBuilder().setNumber(range.next)).build());
+                try {
+                    while (range.next <= last) {
+                        Common.Block block = nextBlock(iterator);
+                        if (block == null) {
+                            throw new LedgerException("Can not get block " + range.next + " of group " + group);
+                        }
+                        connection.send(GossipService.newGossipEnvelope(group, range.next, block));
+                        range.next++;
+                        budget--;
+                        if (!connection.isReady()) {
+                            break;
+                        }
+                    }
+                } finally {
+                    iterator.close();
+                }
+                if (range.next > range.end) {
+                    synchronized (this) {
+                        ranges.poll();
+                    }
+                }
+                if (budget <= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Common.Block nextBlock(IIterator iterator) throws LedgerException {
+        QueryResult result = iterator.next();
+        Map.Entry<QueryResult, Common.Status> entry = (Map.Entry<QueryResult, Common.Status>) result.getObj();
+        if (entry == null || !Common.Status.SUCCESS.equals(entry.getValue()) || entry.getKey() == null) {
+            return null;
+        }
+        return (Common.Block) entry.getKey().getObj();
+    }
+}
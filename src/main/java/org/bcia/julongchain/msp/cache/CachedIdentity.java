@@ -0,0 +1,92 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.msp.cache;
+
+import org.bcia.julongchain.common.exception.MspException;
+import org.bcia.julongchain.common.exception.VerifyException;
+import org.bcia.julongchain.msp.IIdentity;
+import org.bcia.julongchain.msp.entity.IdentityIdentifier;
+import org.bcia.julongchain.msp.entity.OUIdentifier;
+import org.bcia.julongchain.protos.common.MspPrincipal;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * CachedMsp反序列化得到的身份
+ * 校验及satisfiesPrincipal经过CachedMsp的缓存, 其余方法直接调用原身份
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class CachedIdentity implements IIdentity {
+    private final IIdentity identity;
+    private final CachedMsp cachedMsp;
+    private volatile byte[] serialized;
+
+    public CachedIdentity(IIdentity identity, CachedMsp cachedMsp) {
+        this.identity = identity;
+        this.cachedMsp = cachedMsp;
+    }
+
+    @Override
+    public Date expireAt() throws MspException {
+        return identity.expireAt();
+    }
+
+    @Override
+    public IdentityIdentifier getIdentifier() {
+        return identity.getIdentifier();
+    }
+
+    @Override
+    public String getMSPIdentifier() {
+        return identity.getMSPIdentifier();
+    }
+
+    @Override
+    public void validate() throws MspException {
+        cachedMsp.validate(this);
+    }
+
+    @Override
+    public OUIdentifier[] getOrganizationalUnits() throws MspException {
+        return identity.getOrganizationalUnits();
+    }
+
+    @Override
+    public void verify(byte[] msg, byte[] sig) throws VerifyException {
+        identity.verify(msg, sig);
+    }
+
+    @Override
+    public byte[] serialize() {
+        if (serialized == null) {
+            serialized = identity.serialize();
+        }
+        return serialized == null ? null : serialized.clone();
+    }
+
+    @Override
+    public void satisfiesPrincipal(MspPrincipal.MSPPrincipal principal) throws MspException, IOException {
+        cachedMsp.satisfiesPrincipal(this, principal);
+    }
+
+    public IIdentity getIdentity() {
+        return identity;
+    }
+}
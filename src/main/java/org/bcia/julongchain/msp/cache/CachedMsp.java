@@ -0,0 +1,250 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.msp.cache;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.exception.MspException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.msp.IIdentity;
+import org.bcia.julongchain.msp.IMsp;
+import org.bcia.julongchain.msp.ISigningIdentity;
+import org.bcia.julongchain.msp.entity.IdentityIdentifier;
+import org.bcia.julongchain.msp.mspconfig.MspConfig;
+import org.bcia.julongchain.msp.mspconfig.MspConfigFactory;
+import org.bcia.julongchain.protos.common.MspPrincipal;
+import org.bcia.julongchain.protos.msp.Identities;
+import org.bcia.julongchain.protos.msp.MspConfigPackage;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * 带缓存的MSP
+ * 以序列化身份为key缓存反序列化得到的身份、身份校验结果及satisfiesPrincipal结果,
+ * 重新setup(如更新根证书、CRL)时清空缓存.
+ * 校验结果与身份证书的过期时间一起缓存, 证书过期后重新校验
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class CachedMsp implements IMsp {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(CachedMsp.class);
+
+    /**
+     * gmcsp.yaml未配置node.cacheSize时的缓存大小
+     */
+    public static final int DEFAULT_CACHE_SIZE = 100;
+
+    private final IMsp msp;
+    private final SyncLRUCache<ByteString, IIdentity> deserializeIdentityCache;
+    /**
+     * 校验通过的身份 -> 证书过期时间(毫秒)
+     */
+    private final SyncLRUCache<ByteString, Long> validateIdentityCache;
+    private final SyncLRUCache<ByteString, PrincipalResult> satisfiesPrincipalCache;
+
+    public CachedMsp(IMsp msp) {
+        this(msp, getConfiguredCacheSize());
+    }
+
+    public CachedMsp(IMsp msp, int cacheSize) {
+        this.msp = msp;
+        this.deserializeIdentityCache = new SyncLRUCache<>(cacheSize);
+        this.validateIdentityCache = new SyncLRUCache<>(cacheSize);
+        this.satisfiesPrincipalCache = new SyncLRUCache<>(cacheSize);
+    }
+
+    /**
+     * 读取gmcsp.yaml中的node.cacheSize, 未配置时使用默认值
+     */
+    private static int getConfiguredCacheSize() {
+        MspConfig mspConfig = MspConfigFactory.getMspConfig();
+        if (mspConfig == null || mspConfig.getNode() == null || mspConfig.getNode().getCacheSize() <= 0) {
+            return DEFAULT_CACHE_SIZE;
+        }
+        return mspConfig.getNode().getCacheSize();
+    }
+
+    @Override
+    public IMsp setup(MspConfigPackage.MSPConfig config) {
+        IMsp setupMsp = msp.setup(config);
+        //配置变化后原有的校验结果不再可信
+        clearCaches();
+        return setupMsp == null ? null : this;
+    }
+
+    @Override
+    public int getVersion() {
+        return msp.getVersion();
+    }
+
+    @Override
+    public int getType() {
+        return msp.getType();
+    }
+
+    @Override
+    public String getIdentifier() {
+        return msp.getIdentifier();
+    }
+
+    @Override
+    public ISigningIdentity getSigningIdentity(IdentityIdentifier identityIdentifier) {
+        return msp.getSigningIdentity(identityIdentifier);
+    }
+
+    @Override
+    public ISigningIdentity getDefaultSigningIdentity() {
+        return msp.getDefaultSigningIdentity();
+    }
+
+    @Override
+    public byte[][] getTLSRootCerts() {
+        return msp.getTLSRootCerts();
+    }
+
+    @Override
+    public byte[][] getTLSIntermediateCerts() {
+        return msp.getTLSIntermediateCerts();
+    }
+
+    @Override
+    public IIdentity deserializeIdentity(byte[] serializedIdentity) throws MspException {
+        ByteString key = ByteString.copyFrom(serializedIdentity);
+        IIdentity identity = deserializeIdentityCache.get(key);
+        if (identity != null) {
+            return identity;
+        }
+        identity = new CachedIdentity(msp.deserializeIdentity(serializedIdentity), this);
+        deserializeIdentityCache.put(key, identity);
+        return identity;
+    }
+
+    @Override
+    public void isWellFormed(Identities.SerializedIdentity identity) throws MspException {
+        msp.isWellFormed(identity);
+    }
+
+    /**
+     * 只缓存校验通过且能取得过期时间的身份, 证书过期后重新校验
+     */
+    @Override
+    public void validate(IIdentity id) throws MspException {
+        ByteString key = ByteString.copyFrom(id.serialize());
+        Long expireAt = validateIdentityCache.get(key);
+        if (expireAt != null && System.currentTimeMillis() < expireAt) {
+            return;
+        }
+        msp.validate(unwrap(id));
+        expireAt = getExpireAt(id);
+        if (expireAt != null) {
+            validateIdentityCache.put(key, expireAt);
+        }
+    }
+
+    /**
+     * 校验通过及不通过的结果都会缓存, 证书过期后重新校验.
+     * 不通过时每次抛出新的异常, 不共享异常对象
+     */
+    @Override
+    public void satisfiesPrincipal(IIdentity id, MspPrincipal.MSPPrincipal principal) throws IOException, MspException {
+        ByteString key = ByteString.copyFrom(id.serialize()).concat(principal.toByteString());
+        PrincipalResult result = satisfiesPrincipalCache.get(key);
+        if (result == null || System.currentTimeMillis() >= result.expireAt) {
+            Long expireAt = getExpireAt(id);
+            try {
+                msp.satisfiesPrincipal(unwrap(id), principal);
+                result = new PrincipalResult(true, null, expireAt);
+            } catch (MspException e) {
+                result = new PrincipalResult(false, e.getMessage(), expireAt);
+            }
+            if (expireAt != null) {
+                satisfiesPrincipalCache.put(key, result);
+            }
+        }
+        if (!result.satisfied) {
+            throw new MspException(result.errorMessage);
+        }
+    }
+
+    /**
+     * 清空所有缓存
+     */
+    public void clearCaches() {
+        log.debug(String.format("Clear caches of msp %s, deserializeIdentity [%s], validate [%s], " +
+                        "satisfiesPrincipal [%s]", msp.getIdentifier(), deserializeIdentityCache, validateIdentityCache,
+                satisfiesPrincipalCache));
+        deserializeIdentityCache.clear();
+        validateIdentityCache.clear();
+        satisfiesPrincipalCache.clear();
+    }
+
+    public IMsp getMsp() {
+        return msp;
+    }
+
+    public SyncLRUCache<ByteString, IIdentity> getDeserializeIdentityCache() {
+        return deserializeIdentityCache;
+    }
+
+    public SyncLRUCache<ByteString, Long> getValidateIdentityCache() {
+        return validateIdentityCache;
+    }
+
+    SyncLRUCache<ByteString, PrincipalResult> getSatisfiesPrincipalCache() {
+        return satisfiesPrincipalCache;
+    }
+
+    /**
+     * 身份证书的过期时间(毫秒), 无法获取时返回null, 此时不缓存结果
+     */
+    private static Long getExpireAt(IIdentity id) {
+        try {
+            Date expireAt = id.expireAt();
+            return expireAt == null ? null : expireAt.getTime();
+        } catch (MspException | RuntimeException e) {
+            log.warn("Can not get expiration of identity: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 被包装的MSP只能识别自己创建的身份
+     */
+    private static IIdentity unwrap(IIdentity id) {
+        if (id instanceof CachedIdentity) {
+            return ((CachedIdentity) id).getIdentity();
+        }
+        return id;
+    }
+
+    /**
+     * 缓存的satisfiesPrincipal结果
+     */
+    static class PrincipalResult {
+        private final boolean satisfied;
+        private final String errorMessage;
+        private final long expireAt;
+
+        PrincipalResult(boolean satisfied, String errorMessage, Long expireAt) {
+            this.satisfied = satisfied;
+            this.errorMessage = errorMessage;
+            this.expireAt = expireAt == null ? 0 : expireAt;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.msp.mgmt;
+
+import org.bcia.julongchain.common.exception.CspException;
+import org.bcia.julongchain.common.exception.VerifyException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.csp.gm.dxct.sm2.SM2SignerOpts;
+import org.bcia.julongchain.csp.intfs.ICsp;
+import org.bcia.julongchain.csp.intfs.VerifyItem;
+import org.bcia.julongchain.msp.IIdentity;
+import org.bcia.julongchain.msp.cache.CachedIdentity;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量验证多个身份的签名
+ * 同一Csp的签名通过ICsp.verifyBatch一次验证, 结果与逐个调用IIdentity.verify一致
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class BatchVerifier {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(BatchVerifier.class);
+
+    /**
+     * 验证identities[i]对msgs[i]的签名sigs[i]
+     *
+     * @param identities
+     * @param msgs
+     * @param sigs
+     * @return 验证通过的序号
+     */
+    public static BitSet verify(List<IIdentity> identities, List<byte[]> msgs, List<byte[]> sigs) {
+        BitSet result = new BitSet(identities.size());
+        Map<ICsp, List<Integer>> indexesByCsp = new IdentityHashMap<>();
+        for (int i = 0; i < identities.size(); i++) {
+            IIdentity identity = identities.get(i);
+            if (identity instanceof CachedIdentity) {
+                identity = ((CachedIdentity) identity).getIdentity();
+            }
+            if (identity instanceof Identity) {
+                ICsp csp = ((Identity) identity).getCsp();
+                List<Integer> indexes = indexesByCsp.get(csp);
+                if (indexes == null) {
+                    indexes = new ArrayList<>();
+                    indexesByCsp.put(csp, indexes);
+                }
+                indexes.add(i);
+            } else if (identity != null) {
+                //无法取得密钥的身份逐个验证
+                try {
+                    identity.verify(msgs.get(i), sigs.get(i));
+                    result.set(i);
+                } catch (VerifyException | RuntimeException e) {
+                    log.debug("Signature " + i + " is invalid: " + e.getMessage());
+                }
+            }
+        }
+
+        for (Map.Entry<ICsp, List<Integer>> entry : indexesByCsp.entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            List<VerifyItem> items = new ArrayList<>(indexes.size());
+            for (int index : indexes) {
+                Identity identity = unwrap(identities.get(index));
+                items.add(identity.newVerifyItem(msgs.get(index), sigs.get(index)));
+            }
+            BitSet verified;
+            try {
+                verified = entry.getKey().verifyBatch(items, new SM2SignerOpts());
+            } catch (CspException e) {
+                log.error(e.getMessage(), e);
+                continue;
+            }
+            for (int i = verified.nextSetBit(0); i >= 0; i = verified.nextSetBit(i + 1)) {
+                result.set(indexes.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static Identity unwrap(IIdentity identity) {
+        if (identity instanceof CachedIdentity) {
+            return (Identity) ((CachedIdentity) identity).getIdentity();
+        }
+        return (Identity) identity;
+    }
+}
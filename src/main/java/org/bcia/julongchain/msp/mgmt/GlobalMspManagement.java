@@ -22,6 +22,7 @@ import org.bcia.julongchain.csp.factory.CspManager;
 import org.bcia.julongchain.csp.factory.CspOptsManager;
 import org.bcia.julongchain.csp.factory.IFactoryOpts;
 import org.bcia.julongchain.msp.*;
+import org.bcia.julongchain.msp.cache.CachedMsp;
 import org.bcia.julongchain.msp.mspconfig.MspConfig;
 import org.bcia.julongchain.msp.mspconfig.MspConfigFactory;
 import org.bcia.julongchain.msp.util.MspConfigBuilder;
@@ -72,7 +73,7 @@ public class GlobalMspManagement {
             throw new MspException(String.format("The %s dir is not find", localmspdir));
         }
         MspConfigPackage.MSPConfig buildMspConfig = MspConfigBuilder.buildMspConfig(localmspdir, mspId);
-        localMsp = new Msp().setup(buildMspConfig);
+        localMsp = new CachedMsp(new Msp()).setup(buildMspConfig);
         return localMsp;
     }
 
@@ -97,7 +98,7 @@ public class GlobalMspManagement {
             MspConfig mspConfig = MspConfigFactory.loadMspConfig();
             MspConfigPackage.MSPConfig buildMspConfig = null;
             buildMspConfig = MspConfigBuilder.buildMspConfig(mspConfig.getNode().getMspConfigPath(), mspConfig.getNode().getLocalMspId());
-            localMsp = new Msp().setup(buildMspConfig);
+            localMsp = new CachedMsp(new Msp()).setup(buildMspConfig);
             return localMsp;
         }
         return localMsp;
@@ -23,7 +23,9 @@ import org.bcia.julongchain.common.exception.VerifyException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.csp.gm.dxct.sm2.SM2SignerOpts;
+import org.bcia.julongchain.csp.intfs.ICsp;
 import org.bcia.julongchain.csp.intfs.IKey;
+import org.bcia.julongchain.csp.intfs.VerifyItem;
 import org.bcia.julongchain.msp.IIdentity;
 import org.bcia.julongchain.msp.entity.IdentityIdentifier;
 import org.bcia.julongchain.msp.entity.OUIdentifier;
@@ -125,6 +127,17 @@ public class Identity implements IIdentity {
         }
     }
 
+    /**
+     * 生成批量验签项, 与verify使用相同的密钥和选项
+     */
+    VerifyItem newVerifyItem(byte[] msg, byte[] sig) {
+        return new VerifyItem(pk, sig, msg);
+    }
+
+    ICsp getCsp() {
+        return msp.getCsp();
+    }
+
     @Override
     public byte[] serialize() {
         byte[] serializedIdentityBytes = null;
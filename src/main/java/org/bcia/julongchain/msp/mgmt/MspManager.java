@@ -85,8 +85,8 @@ public class MspManager implements IMspManager {
     }
 
     @Override
-    public void isWellFormed(Identities.SerializedIdentity identity) {
-        Msp msp = (Msp) mspsByProviders.get(0);
+    public void isWellFormed(Identities.SerializedIdentity identity) throws MspException {
+        IMsp msp = mspsByProviders.get(0);
         msp.isWellFormed(identity);
     }
 
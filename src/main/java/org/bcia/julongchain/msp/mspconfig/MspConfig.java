@@ -42,6 +42,7 @@ public class MspConfig {
         private String mspConfigPath;
         private String localMspId;
         private String localMspType;
+        private int cacheSize;
 
         public Csp getCsp() {
             return csp;
@@ -74,6 +75,14 @@ public class MspConfig {
         public void setLocalMspType(String localMspType) {
             this.localMspType = localMspType;
         }
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
     }
 
     public static class Csp {
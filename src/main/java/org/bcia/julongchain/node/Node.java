@@ -326,7 +326,7 @@ public class Node {
 
         ICommitterValidator committerValidator = new CommitterValidator(new CommitterSupport(group));
 
-        ICommitter committer = new Committer(nodeLedger, new Committer.IConfigBlockListener() {
+        ICommitter committer = new Committer(nodeLedger, committerValidator, new Committer.IConfigBlockListener() {
             @Override
             public void onConfigBlockChanged(Common.Block configBlock) throws CommitterException {
                 try {
@@ -15,7 +15,6 @@
  */
 package org.bcia.julongchain.node.entity;
 
-import com.google.protobuf.ByteString;
 import io.grpc.ManagedChannel;
 import io.grpc.netty.NettyChannelBuilder;
 import org.apache.commons.lang3.StringUtils;
@@ -25,6 +24,7 @@ import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.common.util.*;
 import org.bcia.julongchain.core.admin.AdminServer;
+import org.bcia.julongchain.core.commiter.ICommitter;
 import org.bcia.julongchain.core.endorser.Endorser;
 import org.bcia.julongchain.core.events.DeliverEventsServer;
 import org.bcia.julongchain.core.ledger.ledgermgmt.LedgerManager;
@@ -38,18 +38,16 @@ import org.bcia.julongchain.core.ssc.SystemSmartContractManager;
 import org.bcia.julongchain.events.producer.EventHubServer;
 import org.bcia.julongchain.events.producer.EventsServerConfig;
 import org.bcia.julongchain.gossip.GossipClientStream;
-import org.bcia.julongchain.gossip.GossipService;
+import org.bcia.julongchain.gossip.state.StatePuller;
 import org.bcia.julongchain.node.Node;
 import org.bcia.julongchain.node.common.client.AdminClient;
 import org.bcia.julongchain.node.common.client.IAdminClient;
 import org.bcia.julongchain.node.common.util.NodeConstant;
-import org.bcia.julongchain.protos.gossip.Message;
 
 import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * 节点服务
@@ -163,36 +161,26 @@ public class NodeServer {
     }
 
     public static void startPullFromConsenter(GossipClientStream gossipClientStream, String ledgerID) {
-        new Thread() {
-            @Override
-            public void run() {
-                while (true) {
-                    try {
-                        log.info("Start a pull request.");
-                        long height = LedgerManager.openLedger(ledgerID).getBlockchainInfo().getHeight();
-                        Message.RemoteStateRequest remoteStateRequest = Message.RemoteStateRequest.newBuilder().setStartSeqNum(height).setEndSeqNum(height).build();
-                        Message.GossipMessage gossipMessage = Message.GossipMessage.newBuilder().setGroup(ByteString.copyFromUtf8(ledgerID)).setStateRequest(remoteStateRequest).build();
-                        Message.Envelope envelope = Message.Envelope.newBuilder().setPayload(gossipMessage.toByteString()).build();
-                        log.info("Send pull request:" + ledgerID + " " + height);
-                        gossipClientStream.serialSend(envelope);
-                        if (gossipClientStream.getQueueMap().get(ledgerID) == null) {
-                            gossipClientStream.getQueueMap().put(ledgerID, new LinkedBlockingQueue<Message.Envelope>());
-                        }
-                        log.info("Receive block");
-                        Message.Envelope receiveEnvelope = gossipClientStream.getQueueMap().get(ledgerID).take();
-                        GossipService.saveBlock(receiveEnvelope);
-                        log.info("Saved block");
-                    } catch (Exception e) {
-                        log.error(e.getMessage(), e);
-                        try {
-                            Thread.sleep(5000);
-                        } catch (InterruptedException e1) {
-                            log.error(e1.getMessage(), e1);
-                        }
-                    }
-                }
+        int batchSize = 0;
+        int windowSize = 0;
+        long requestTimeout = 0;
+        NodeConfig nodeConfig = NodeConfigFactory.getNodeConfig();
+        if (nodeConfig != null && nodeConfig.getNode() != null && nodeConfig.getNode().getGossip() != null) {
+            batchSize = nodeConfig.getNode().getGossip().getStateBatchSize();
+            windowSize = nodeConfig.getNode().getGossip().getStateWindowSize();
+            requestTimeout = nodeConfig.getNode().getGossip().getStateRequestTimeout();
+        }
+        //经群组的提交者校验后提交, 群组不存在时直接写入账本
+        ICommitter committer = null;
+        try {
+            Group group = Node.getInstance().getGroupMap().get(ledgerID);
+            if (group != null) {
+                committer = group.getCommiter();
             }
-        }.start();
+        } catch (NodeException e) {
+            log.error(e.getMessage(), e);
+        }
+        new StatePuller(gossipClientStream, ledgerID, committer, batchSize, windowSize, requestTimeout).start();
     }
 
     private void initSysSmartContracts() {
@@ -293,7 +281,8 @@ public class NodeServer {
         EventGrpcServer eventGrpcServer = new EventGrpcServer(address.getPort());
 
         EventsServerConfig serverConfig = new EventsServerConfig(eventsConfig.getBuffersize(), eventsConfig
-                .getTimeout(), eventsConfig.getTimewindow(), null);
+                .getTimeout(), eventsConfig.getTimewindow(), EventsServerConfig.OverflowPolicy.fromName(eventsConfig
+                .getOverflowPolicy()), null);
         //绑定事件服务
         eventGrpcServer.bindEventHubServer(new EventHubServer(serverConfig));
 
@@ -0,0 +1,139 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage;
+
+import com.google.protobuf.Timestamp;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.common.Ledger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * 区块保留策略测试类
+ * 共100个区块, 区块n的时间戳为(100 - n)分钟之前, 编号小于prunedBlocks的区块已被删除
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class BlockRetentionPolicyTest {
+    private static final long HEIGHT = 100;
+
+    private IBlockStore blockStore;
+    private long now;
+    private long prunedBlocks;
+
+    @Before
+    public void setUp() throws Exception {
+        now = System.currentTimeMillis();
+        blockStore = mock(IBlockStore.class);
+        when(blockStore.getBlockchainInfo()).thenReturn(Ledger.BlockchainInfo.newBuilder().setHeight(HEIGHT).build());
+        when(blockStore.retrieveBlockByNumber(anyLong())).thenAnswer(new Answer<Common.Block>() {
+            @Override
+            public Common.Block answer(InvocationOnMock invocation) {
+                long number = invocation.getArgument(0);
+                if (number < prunedBlocks) {
+                    return null;
+                }
+                return constructBlock(number, now - TimeUnit.MINUTES.toMillis(HEIGHT - number));
+            }
+        });
+    }
+
+    @Test
+    public void keepBlocks() throws Exception {
+        assertEquals(HEIGHT - 10, new BlockRetentionPolicy(10, 0, false).getMinBlockNumToRetain(blockStore));
+        assertEquals(0, new BlockRetentionPolicy(HEIGHT + 1, 0, false).getMinBlockNumToRetain(blockStore));
+        //不配置保留窗口时不修剪
+        assertEquals(0, new BlockRetentionPolicy(0, 0, false).getMinBlockNumToRetain(blockStore));
+        verify(blockStore, never()).retrieveBlockByNumber(anyLong());
+    }
+
+    @Test
+    public void keepMillis() throws Exception {
+        //30分钟内的区块为70-99
+        BlockRetentionPolicy policy = new BlockRetentionPolicy(0, TimeUnit.SECONDS.toMillis(30 * 60 + 30), false);
+        assertEquals(70, policy.getMinBlockNumToRetain(blockStore));
+        //二分查找只读取少量区块
+        verify(blockStore, atMost(8)).retrieveBlockByNumber(anyLong());
+
+        assertEquals(0, new BlockRetentionPolicy(0, TimeUnit.DAYS.toMillis(1), false)
+                .getMinBlockNumToRetain(blockStore));
+        assertEquals(HEIGHT, new BlockRetentionPolicy(0, TimeUnit.SECONDS.toMillis(30), false)
+                .getMinBlockNumToRetain(blockStore));
+    }
+
+    @Test
+    public void keepMillisAfterPruned() throws Exception {
+        //已被删除的区块视为早于保留窗口
+        prunedBlocks = 20;
+        assertEquals(70, new BlockRetentionPolicy(0, TimeUnit.SECONDS.toMillis(30 * 60 + 30), false)
+                .getMinBlockNumToRetain(blockStore));
+        assertEquals(20, new BlockRetentionPolicy(0, TimeUnit.DAYS.toMillis(1), false)
+                .getMinBlockNumToRetain(blockStore));
+    }
+
+    @Test
+    public void keepMillisArchived() throws Exception {
+        //归档模式下不读取已归档的区块
+        when(blockStore.getFirstUnarchivedBlockNum()).thenReturn(50L);
+        BlockRetentionPolicy policy = new BlockRetentionPolicy(0, TimeUnit.SECONDS.toMillis(30 * 60 + 30), true);
+        assertEquals(70, policy.getMinBlockNumToRetain(blockStore));
+        verify(blockStore, never()).retrieveBlockByNumber(longThat(new ArgumentMatcher<Long>() {
+            @Override
+            public boolean matches(Long number) {
+                return number < 50;
+            }
+        }));
+
+        //保留窗口内的区块已归档时不再向前查找
+        when(blockStore.getFirstUnarchivedBlockNum()).thenReturn(80L);
+        assertEquals(80, policy.getMinBlockNumToRetain(blockStore));
+        when(blockStore.getFirstUnarchivedBlockNum()).thenReturn(HEIGHT);
+        assertEquals(HEIGHT, policy.getMinBlockNumToRetain(blockStore));
+    }
+
+    @Test
+    public void keepLargerWindow() throws Exception {
+        long keepMillis = TimeUnit.SECONDS.toMillis(30 * 60 + 30);
+        assertEquals(60, new BlockRetentionPolicy(40, keepMillis, false).getMinBlockNumToRetain(blockStore));
+        assertEquals(70, new BlockRetentionPolicy(10, keepMillis, false).getMinBlockNumToRetain(blockStore));
+    }
+
+    private static Common.Block constructBlock(long number, long timeMillis) {
+        Common.GroupHeader groupHeader = Common.GroupHeader.newBuilder()
+                .setTimestamp(Timestamp.newBuilder().setSeconds(timeMillis / 1000))
+                .build();
+        Common.Payload payload = Common.Payload.newBuilder()
+                .setHeader(Common.Header.newBuilder().setGroupHeader(groupHeader.toByteString()))
+                .build();
+        Common.Envelope envelope = Common.Envelope.newBuilder().setPayload(payload.toByteString()).build();
+        return Common.Block.newBuilder()
+                .setHeader(Common.BlockHeader.newBuilder().setNumber(number))
+                .setData(Common.BlockData.newBuilder().addData(envelope.toByteString()))
+                .build();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import static org.bcia.julongchain.common.ledger.util.Utils.rmrf;
+import static org.junit.Assert.*;
+
+/**
+ * 归档区块文件读取测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class ArchivedBlockFileReaderTest {
+    private String rootDir;
+
+    @Before
+    public void setUp() throws Exception {
+        rootDir = Files.createTempDirectory("archive").toString();
+        new File(rootDir, "archive").mkdirs();
+        writeArchive(0, new byte[]{0, 1, 2, 3, 4, 5, 6, 7});
+        writeArchive(1, new byte[]{10, 11, 12, 13});
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        rmrf(rootDir);
+    }
+
+    @Test
+    public void readAfterClose() throws Exception {
+        ArchivedBlockFileReader reader = new ArchivedBlockFileReader(BlockFileManager.deriveArchivePath(rootDir, 0));
+        assertFalse(reader.isMapped());
+        assertArrayEquals(new byte[]{2, 3, 4}, reader.read(2, 3));
+        assertEquals(8, reader.size());
+        assertTrue(reader.isMapped());
+
+        //关闭后释放内存, 再次读取时重新解压
+        reader.close();
+        assertFalse(reader.isMapped());
+        assertArrayEquals(new byte[]{6, 7}, reader.read(6, 2));
+    }
+
+    @Test(expected = LedgerException.class)
+    public void readOutOfFile() throws Exception {
+        new ArchivedBlockFileReader(BlockFileManager.deriveArchivePath(rootDir, 0)).read(6, 3);
+    }
+
+    @Test
+    public void evictOtherArchivedReader() throws Exception {
+        BlockFileReaderCache cache = new BlockFileReaderCache(rootDir, true);
+        BlockFileReader first = cache.getReader(0, true);
+        assertTrue(first instanceof ArchivedBlockFileReader);
+        assertArrayEquals(new byte[]{0, 1}, first.read(0, 2));
+
+        //同时只有一个归档文件解压在内存中
+        BlockFileReader second = cache.getReader(1, true);
+        assertArrayEquals(new byte[]{12, 13}, second.read(2, 2));
+        assertFalse(first.isMapped());
+        assertTrue(second.isMapped());
+
+        assertSame(first, cache.getReader(0, true));
+        assertArrayEquals(new byte[]{4, 5}, first.read(4, 2));
+        assertFalse(second.isMapped());
+        cache.close();
+    }
+
+    private void writeArchive(int fileNum, byte[] content) throws IOException {
+        try (GZIPOutputStream out = new GZIPOutputStream(
+                new FileOutputStream(BlockFileManager.deriveArchivePath(rootDir, fileNum)))) {
+            out.write(content);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Timestamp;
+import org.bcia.julongchain.common.ledger.IResultsIterator;
+import org.bcia.julongchain.common.ledger.blkstorage.BlockRetentionPolicy;
+import org.bcia.julongchain.common.ledger.blkstorage.BlockStorage;
+import org.bcia.julongchain.common.ledger.blkstorage.IBlockStore;
+import org.bcia.julongchain.common.ledger.blkstorage.IndexConfig;
+import org.bcia.julongchain.core.ledger.util.Util;
+import org.bcia.julongchain.protos.common.Common;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.bcia.julongchain.common.ledger.util.Utils.rmrf;
+import static org.junit.Assert.*;
+
+/**
+ * BlockFileManager刷盘、宕机恢复及区块文件修剪测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class BlockFileManagerTest {
+	private static final String LEDGER_ID = "myGroup";
+
+	private String rootDir;
+	private FsBlockStoreProvider provider;
+	private IBlockStore store;
+	private int maxBlockFileSize = -1;
+	/**
+	 * 区块元数据中记录的最新配置区块号
+	 */
+	private long lastConfigBlockNum = 9;
+
+	@Before
+	public void setUp() throws Exception {
+		rootDir = Files.createTempDirectory("blkstorage").toString();
+		open();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		close();
+		rmrf(rootDir);
+	}
+
+	@Test
+	public void syncBlocks() throws Exception {
+		addBlocks(0, 5);
+		close();
+		open();
+		assertEquals(5, store.getBlockchainInfo().getHeight());
+		assertEquals(4, store.retrieveBlockByNumber(4).getHeader().getNumber());
+		assertNotNull(store.retrieveTxByID("tx4-0"));
+	}
+
+	@Test
+	public void truncateIncompleteBlock() throws Exception {
+		addBlocks(0, 3);
+		close();
+		//模拟写入区块时宕机, 文件末尾只有区块长度和部分区块数据
+		try (RandomAccessFile file = new RandomAccessFile(blockFile(), "rw")) {
+			long length = file.length();
+			file.seek(length);
+			file.write(Util.longToBytes(100, BlockFileManager.PEEK_BYTES_LEN));
+			file.write(new byte[10]);
+		}
+		open();
+		assertEquals(3, store.getBlockchainInfo().getHeight());
+		addBlocks(3, 1);
+		assertEquals(constructBlock(3), store.retrieveBlockByNumber(3));
+	}
+
+	@Test
+	public void recoverFromLostBlocks() throws Exception {
+		addBlocks(0, 2);
+		long lengthOfTwoBlocks = blockFile().length();
+		addBlocks(2, 2);
+		close();
+		//模拟未刷盘的区块在宕机时丢失, 检查点和索引中仍有这些区块
+		try (RandomAccessFile file = new RandomAccessFile(blockFile(), "rw")) {
+			file.setLength(lengthOfTwoBlocks);
+		}
+		open();
+		assertEquals(2, store.getBlockchainInfo().getHeight());
+		//丢失区块的索引已删除, 其中的交易不会被判为重复交易
+		assertNull(store.retrieveTxByID("tx3-0"));
+		assertNull(store.retrieveBlockByNumber(3));
+		assertNotNull(store.retrieveTxByID("tx1-0"));
+		assertEquals(1, ((FsBlockStore) store).getBlockFileManager().getIndex().getLastBlockIndexed());
+		addBlocks(2, 2);
+		assertEquals(4, store.getBlockchainInfo().getHeight());
+		assertEquals(constructBlock(3), store.retrieveBlockByNumber(3));
+	}
+
+	@Test
+	public void archiveBlockFiles() throws Exception {
+		reopenWithSmallFiles();
+		addBlocks(0, 10);
+		assertEquals(0, store.getFirstUnarchivedBlockNum());
+		int pruned = store.prune(new BlockRetentionPolicy(3, 0, true));
+		assertTrue(pruned > 0);
+		assertFalse(blockFile(0).exists());
+		assertTrue(new File(BlockFileManager.deriveArchivePath(ledgerDir(), 0)).exists());
+		//最近的区块所在文件不归档
+		assertTrue(blockFile(fileNumOf(7)).exists());
+		//第一个未归档的区块是第一个未归档文件的第一个区块
+		long firstUnarchived = store.getFirstUnarchivedBlockNum();
+		assertTrue(firstUnarchived > 0 && firstUnarchived <= 7);
+		assertTrue(blockFile(fileNumOf(firstUnarchived)).exists());
+		assertFalse(blockFile(fileNumOf(firstUnarchived - 1)).exists());
+
+		checkAllBlocksReadable();
+		close();
+		open();
+		checkAllBlocksReadable();
+		//已归档的文件不重复归档
+		assertEquals(0, store.prune(new BlockRetentionPolicy(3, 0, true)));
+	}
+
+	@Test
+	public void dropBlockFiles() throws Exception {
+		reopenWithSmallFiles();
+		addBlocks(0, 10);
+		int firstRetainedFile = fileNumOf(7);
+		assertEquals(firstRetainedFile, store.prune(new BlockRetentionPolicy(3, 0, false)));
+		assertFalse(blockFile(0).exists());
+		assertNull(store.retrieveBlockByNumber(0));
+		assertNull(store.retrieveTxByID("tx0-0"));
+		assertNull(store.retrieveBlockByTxID("tx0-0"));
+		assertEquals(constructBlock(9), store.retrieveBlockByNumber(9));
+		assertNotNull(store.retrieveTxByID("tx7-1"));
+		//交易ID和交易验证码仍保留, 用于重复交易检查
+		assertNotNull(store.retrieveTxValidationCodeByTxID("tx0-0"));
+		assertTrue(store.isTxPruned("tx0-0"));
+		assertFalse(store.isTxPruned("tx7-1"));
+
+		close();
+		open();
+		assertEquals(10, store.getBlockchainInfo().getHeight());
+		assertTrue(store.isTxPruned("tx0-0"));
+		addBlocks(10, 1);
+		assertEquals(constructBlock(10), store.retrieveBlockByNumber(10));
+	}
+
+	@Test
+	public void dropKeepsLastConfigBlock() throws Exception {
+		reopenWithSmallFiles();
+		lastConfigBlockNum = 2;
+		addBlocks(0, 10);
+		assertEquals(fileNumOf(2), store.prune(new BlockRetentionPolicy(3, 0, false)));
+		assertEquals(constructBlock(2), store.retrieveBlockByNumber(2));
+		//归档的区块仍可读取, 不受最新配置区块限制
+		assertTrue(store.prune(new BlockRetentionPolicy(3, 0, true)) > 0);
+		assertEquals(constructBlock(2), store.retrieveBlockByNumber(2));
+	}
+
+	@Test
+	public void iterateWhileArchiving() throws Exception {
+		reopenWithSmallFiles();
+		addBlocks(0, 10);
+		IResultsIterator itr = store.retrieveBlocks(0);
+		try {
+			assertEquals(constructBlock(0), itr.next().getObj());
+			//迭代器正在读取的文件被归档后继续从归档文件读取
+			assertTrue(store.prune(new BlockRetentionPolicy(3, 0, true)) > 0);
+			for (long i = 1; i < 10; i++) {
+				assertEquals(constructBlock(i), itr.next().getObj());
+			}
+		} finally {
+			itr.close();
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void readWhilePruning() throws Exception {
+		reopenWithSmallFiles();
+		addBlocks(0, 10);
+		final int firstRetainedBlock = 7;
+		final AtomicBoolean pruning = new AtomicBoolean(true);
+		final List<Throwable> errors = new CopyOnWriteArrayList<>();
+		Thread[] readers = new Thread[4];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (pruning.get()) {
+							for (long num = 0; num < 10; num++) {
+								Common.Block block = store.retrieveBlockByNumber(num);
+								//被删除的区块返回null, 其余区块完整可读
+								if (block != null || num >= firstRetainedBlock) {
+									assertEquals(constructBlock(num), block);
+								}
+								store.retrieveTxByID("tx" + num + "-0");
+							}
+						}
+					} catch (Throwable e) {
+						errors.add(e);
+					}
+				}
+			};
+			readers[i].start();
+		}
+		try {
+			assertTrue(store.prune(new BlockRetentionPolicy(3, 0, true)) > 0);
+			assertTrue(store.prune(new BlockRetentionPolicy(3, 0, false)) > 0);
+		} finally {
+			pruning.set(false);
+			for (Thread reader : readers) {
+				reader.join();
+			}
+		}
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertNull(store.retrieveBlockByNumber(0));
+		assertEquals(constructBlock(firstRetainedBlock), store.retrieveBlockByNumber(firstRetainedBlock));
+	}
+
+	@Test
+	public void dropArchivedBlockFiles() throws Exception {
+		reopenWithSmallFiles();
+		addBlocks(0, 10);
+		store.prune(new BlockRetentionPolicy(3, 0, true));
+		store.prune(new BlockRetentionPolicy(3, 0, false));
+		assertFalse(new File(BlockFileManager.deriveArchivePath(ledgerDir(), 0)).exists());
+		assertNull(store.retrieveTxByID("tx0-0"));
+		assertEquals(constructBlock(9), store.retrieveBlockByNumber(9));
+	}
+
+	@Test
+	public void pruneByAge() throws Exception {
+		reopenWithSmallFiles();
+		long now = System.currentTimeMillis();
+		for (long i = 0; i < 10; i++) {
+			//区块0-5为10天前的区块
+			long time = i < 6 ? now - TimeUnit.DAYS.toMillis(10) : now;
+			store.addBlock(constructBlock(i, time));
+		}
+		BlockRetentionPolicy policy = new BlockRetentionPolicy(0, TimeUnit.DAYS.toMillis(1), true);
+		assertEquals(6, policy.getMinBlockNumToRetain(store));
+		assertEquals(fileNumOf(6), store.prune(policy));
+		//归档后只在未归档的区块中查找
+		assertEquals(6, policy.getMinBlockNumToRetain(store));
+		//同时配置区块数时保留较多的区块
+		assertEquals(2, new BlockRetentionPolicy(8, TimeUnit.DAYS.toMillis(1), true).getMinBlockNumToRetain(store));
+	}
+
+	private void checkAllBlocksReadable() throws Exception {
+		for (long i = 0; i < 10; i++) {
+			assertEquals(constructBlock(i), store.retrieveBlockByNumber(i));
+		}
+		assertNotNull(store.retrieveTxByID("tx0-1"));
+		IResultsIterator itr = store.retrieveBlocks(0);
+		try {
+			for (long i = 0; i < 10; i++) {
+				assertEquals(constructBlock(i), itr.next().getObj());
+			}
+		} finally {
+			itr.close();
+		}
+	}
+
+	/**
+	 * 每个区块文件只能容纳少量区块
+	 */
+	private void reopenWithSmallFiles() throws Exception {
+		close();
+		maxBlockFileSize = 300;
+		open();
+	}
+
+	private int fileNumOf(long blockNum) throws Exception {
+		return ((FsBlockStore) store).getBlockFileManager().getIndex().getBlockLocByBlockNum(blockNum).getFileSuffixNum();
+	}
+
+	private void open() throws Exception {
+		Config config = new Config(rootDir, maxBlockFileSize);
+		config.setSyncBlocks(true);
+		IndexConfig indexConfig = new IndexConfig(new String[]{
+				BlockStorage.INDEXABLE_ATTR_BLOCK_HASH,
+				BlockStorage.INDEXABLE_ATTR_BLOCK_NUM,
+				BlockStorage.INDEXABLE_ATTR_TX_ID,
+				BlockStorage.INDEXABLE_ATTR_BLOCK_NUM_TRAN_NUM,
+				BlockStorage.INDEXABLE_ATTR_BLOCK_TX_ID,
+				BlockStorage.INDEXABLE_ATTR_TX_VALIDATION_CODE
+		});
+		provider = new FsBlockStoreProvider(config, indexConfig);
+		store = provider.openBlockStore(LEDGER_ID);
+	}
+
+	/**
+	 * 只关闭区块文件, leveldb由LevelDBUtil按路径缓存, 重新打开时复用
+	 */
+	private void close() throws Exception {
+		if (store != null) {
+			store.shutdown();
+			store = null;
+		}
+	}
+
+	private File blockFile() {
+		return blockFile(0);
+	}
+
+	private File blockFile(int fileNum) {
+		return new File(BlockFileManager.deriveBlockfilePath(ledgerDir(), fileNum));
+	}
+
+	private String ledgerDir() {
+		return new Config(rootDir, -1).getLedgerBlockDir(LEDGER_ID);
+	}
+
+	private void addBlocks(long startNum, int count) throws Exception {
+		for (long i = startNum; i < startNum + count; i++) {
+			store.addBlock(constructBlock(i));
+		}
+	}
+
+	private Common.Block constructBlock(long number) throws Exception {
+		return constructBlock(number, -1);
+	}
+
+	private Common.Block constructBlock(long number, long timeMillis) throws Exception {
+		Common.BlockData.Builder dataBuilder = Common.BlockData.newBuilder();
+		for (int i = 0; i < 2; i++) {
+			Common.GroupHeader.Builder groupHeaderBuilder = Common.GroupHeader.newBuilder()
+					.setTxId("tx" + number + "-" + i)
+					.setGroupId(LEDGER_ID);
+			if (timeMillis >= 0) {
+				groupHeaderBuilder.setTimestamp(Timestamp.newBuilder().setSeconds(timeMillis / 1000));
+			}
+			Common.GroupHeader groupHeader = groupHeaderBuilder.build();
+			Common.Payload payload = Common.Payload.newBuilder()
+					.setHeader(Common.Header.newBuilder().setGroupHeader(groupHeader.toByteString()))
+					.build();
+			dataBuilder.addData(Common.Envelope.newBuilder().setPayload(payload.toByteString()).build().toByteString());
+		}
+		Common.BlockData data = dataBuilder.build();
+		return Common.Block.newBuilder()
+				.setHeader(Common.BlockHeader.newBuilder()
+						.setNumber(number)
+						.setDataHash(ByteString.copyFrom(Util.getHashBytes(data.toByteArray()))))
+				.setData(data)
+				.setMetadata(Common.BlockMetadata.newBuilder()
+						.addMetadata(ByteString.EMPTY)
+						.addMetadata(Common.Metadata.newBuilder()
+								.setValue(Common.LastConfig.newBuilder()
+										.setIndex(Math.min(number, lastConfigBlockNum))
+										.build().toByteString())
+								.build().toByteString())
+						.addMetadata(ByteString.copyFrom(new byte[2]))
+						.addMetadata(ByteString.EMPTY))
+				.build();
+	}
+}
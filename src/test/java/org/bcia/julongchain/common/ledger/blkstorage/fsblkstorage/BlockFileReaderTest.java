@@ -0,0 +1,125 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.core.ledger.util.Util;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.bcia.julongchain.common.ledger.util.Utils.rmrf;
+import static org.junit.Assert.*;
+
+/**
+ * BlockFileReader测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class BlockFileReaderTest {
+	private String rootDir;
+
+	@Before
+	public void setUp() throws Exception {
+		rootDir = Files.createTempDirectory("blockfile").toString();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		rmrf(rootDir);
+	}
+
+	@Test
+	public void readByChannel() throws Exception {
+		byte[] content = writeBlocks(0, 3);
+		BlockFileReader reader = new BlockFileReader(BlockFileManager.deriveBlockfilePath(rootDir, 0));
+		assertArrayEquals(Arrays.copyOfRange(content, 5, 25), reader.read(5, 20));
+		assertEquals(content.length, reader.size());
+
+		//追加的内容可以通过已打开的channel读取
+		byte[] appended = writeBlocks(0, 1);
+		assertEquals(content.length + appended.length, reader.size());
+		assertArrayEquals(appended, reader.read(content.length, appended.length));
+		reader.close();
+	}
+
+	@Test
+	public void readByMappedBuffer() throws Exception {
+		byte[] content = writeBlocks(0, 3);
+		BlockFileReaderCache cache = new BlockFileReaderCache(rootDir, true);
+		BlockFileReader reader = cache.getReader(0, true);
+		assertTrue(reader.isMapped());
+		assertArrayEquals(Arrays.copyOfRange(content, 8, content.length), reader.read(8, content.length - 8));
+		//同一文件只保留一个reader
+		assertSame(reader, cache.getReader(0, true));
+		cache.close();
+	}
+
+	@Test
+	public void currentFileIsNotMapped() throws Exception {
+		writeBlocks(0, 1);
+		BlockFileReaderCache cache = new BlockFileReaderCache(rootDir, true);
+		assertFalse(cache.getReader(0, false).isMapped());
+		cache.close();
+	}
+
+	@Test
+	public void streamOverSharedReader() throws Exception {
+		writeBlocks(0, 2);
+		BlockFileReaderCache cache = new BlockFileReaderCache(rootDir, false);
+		BlockFileReader reader = cache.getReader(0, true);
+
+		BlockFileStream stream = new BlockFileStream(reader, 0, 0);
+		assertEquals(16, stream.nextBlockBytes().length);
+		assertEquals(17, stream.nextBlockBytes().length);
+		assertNull(stream.nextBlockBytes());
+		stream.close();
+
+		//关闭流不影响共享的reader
+		assertEquals(16, new BlockFileStream(reader, 0, 0).nextBlockBytes().length);
+		cache.close();
+	}
+
+	@Test(expected = LedgerException.class)
+	public void closedCache() throws Exception {
+		BlockFileReaderCache cache = new BlockFileReaderCache(rootDir, false);
+		cache.close();
+		cache.getReader(0, false);
+	}
+
+	/**
+	 * 按区块文件格式(8字节长度 + 内容)追加count个区块, 第i个区块长度为16 + i
+	 */
+	private byte[] writeBlocks(int fileNum, int count) throws Exception {
+		BlockFileWriter writer = new BlockFileWriter(BlockFileManager.deriveBlockfilePath(rootDir, fileNum));
+		long before = new File(writer.getFilePath()).length();
+		for (int i = 0; i < count; i++) {
+			byte[] blockBytes = new byte[16 + i];
+			Arrays.fill(blockBytes, (byte) (i + 1));
+			writer.append(Util.longToBytes(blockBytes.length, BlockFileManager.PEEK_BYTES_LEN), false);
+			writer.append(blockBytes, true);
+		}
+		writer.close();
+		byte[] all = Files.readAllBytes(new File(writer.getFilePath()).toPath());
+		return Arrays.copyOfRange(all, (int) before, all.length);
+	}
+}
@@ -14,6 +14,7 @@ import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
 import org.bcia.julongchain.core.ledger.ledgermgmt.LedgerManager;
 import org.bcia.julongchain.core.ledger.util.Util;
 import org.bcia.julongchain.core.node.util.NodeUtils;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.common.Ledger;
 import org.bcia.julongchain.protos.node.TransactionPackage;
@@ -70,7 +71,7 @@ public class FsBlockStoreTest {
 	@Test
 	public void addBlock() throws Exception {
 		long height = store.getBlockchainInfo().getHeight();
-		block = Utils.constructDefaultBlock1(l, l.getBlockByNumber(height - 1), groupID, ns);
+		block = Utils.constructDefaultBlock1(l, store.retrieveBlockByNumber(height - 1), groupID, ns);
 		store.addBlock(block);
 		assertSame(height + 1, store.getBlockchainInfo().getHeight());
 		//区块号错误的区块无法添加
@@ -84,7 +85,7 @@ public class FsBlockStoreTest {
 	public void getBlockchainInfo() throws Exception {
 		Ledger.BlockchainInfo bcInfo = store.getBlockchainInfo();
 		long height = bcInfo.getHeight();
-		block = Utils.constructDefaultBlock1(l, l.getBlockByNumber(height - 1), groupID, ns);
+		block = Utils.constructDefaultBlock1(l, store.retrieveBlockByNumber(height - 1), groupID, ns);
 		store.addBlock(block);
 		bcInfo = store.getBlockchainInfo();
 		assertSame(block.getHeader().getNumber(), bcInfo.getHeight() - 1);
@@ -100,6 +101,33 @@ public class FsBlockStoreTest {
 		assertSame(1L, block.getHeader().getNumber());
 	}
 
+	@Test
+	public void closeWakesWaitingIterator() throws Exception {
+		long height = store.getBlockchainInfo().getHeight();
+		final IResultsIterator itr = store.retrieveBlocks(height);
+		final QueryResult[] result = new QueryResult[]{new QueryResult(null)};
+		Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					//区块尚未写入, 阻塞等待
+					result[0] = itr.next();
+				} catch (LedgerException e) {
+					fail(e.getMessage());
+				}
+			}
+		});
+		reader.start();
+		Thread.sleep(200);
+		assertTrue(reader.isAlive());
+
+		//其他线程关闭迭代器应唤醒等待的读线程
+		itr.close();
+		reader.join(5000);
+		assertFalse(reader.isAlive());
+		assertNull(result[0]);
+	}
+
 	@Test
 	public void retrieveBlockByHash() throws Exception {
 		Common.Block block = l.getBlockByNumber(1L);
@@ -114,7 +142,7 @@ public class FsBlockStoreTest {
 	@Test
 	public void retrieveBlockByNumber() throws Exception {
 		long height = store.getBlockchainInfo().getHeight();
-		block = Utils.constructDefaultBlock(l, l.getBlockByNumber(height - 1), groupID, ns);
+		block = Utils.constructDefaultBlock(l, store.retrieveBlockByNumber(height - 1), groupID, ns);
 		store.addBlock(block);
 		assertEquals(block, store.retrieveBlockByNumber(height));
 		block = store.retrieveBlockByNumber(-1);
@@ -207,6 +207,24 @@ public class LevelDBProviderTest {
 		provider.writeBatch(updateBatch, true);
 	}
 
+	@Test
+	public void writeBatchWithSameKeys() throws Exception {
+		UpdateBatch updateBatch = new UpdateBatch();
+		updateBatch.put("e".getBytes(), "e1".getBytes());
+		updateBatch.put("e".getBytes(), "e2".getBytes());
+		updateBatch.put("f".getBytes(), "f".getBytes());
+		updateBatch.delete("f".getBytes());
+		//内容相同的key只保留最后一次操作
+		assertEquals(2, updateBatch.size());
+		assertArrayEquals("e2".getBytes(), updateBatch.get("e".getBytes()));
+		assertTrue(updateBatch.contains("f".getBytes()));
+		assertNull(updateBatch.get("f".getBytes()));
+
+		provider.writeBatch(updateBatch, true);
+		assertArrayEquals("e2".getBytes(), provider.get("e".getBytes()));
+		assertNull(provider.get("f".getBytes()));
+	}
+
 	@Test
 	public void getIterator() throws Exception {
 		Iterator<Map.Entry<byte[], byte[]>> iterator;
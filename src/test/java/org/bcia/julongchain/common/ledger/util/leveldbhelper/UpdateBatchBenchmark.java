@@ -0,0 +1,113 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.util.leveldbhelper;
+
+import org.bcia.julongchain.core.ledger.leveldb.LevelDB;
+import org.bcia.julongchain.core.ledger.leveldb.LevelDBUtil;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.bcia.julongchain.common.ledger.util.Utils.rmrf;
+
+/**
+ * UpdateBatch基准测试
+ * 模拟一次区块提交: 每个区块写入keysPerBlock次, 其中一半是对同一key的重复写入, 再整批写入leveldb。
+ * legacy为改造前的实现(以byte[]为key的HashMap, 每加入一个key写一次WriteBatch), 作为对比。
+ * 使用 -prof gc 查看每次提交的内存分配(gc.alloc.rate.norm)
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateBatchBenchmark {
+    @Param({"100", "1000"})
+    private int keysPerBlock;
+
+    private File dbDir;
+    private LevelDB db;
+    private byte[][] keys;
+    private byte[] value;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dbDir = Files.createTempDirectory("updateBatchBenchmark").toFile();
+        db = LevelDBUtil.getDB(dbDir.getAbsolutePath());
+        keys = new byte[keysPerBlock][];
+        for (int i = 0; i < keysPerBlock; i++) {
+            //一半的key与前一半内容相同, 但是不同的数组
+            keys[i] = ("mycc\u0000key" + (i % (keysPerBlock / 2))).getBytes(StandardCharsets.UTF_8);
+        }
+        value = new byte[128];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        LevelDBUtil.closeDB(db);
+        LevelDBUtil.removeDb(db);
+        rmrf(dbDir.getAbsolutePath());
+    }
+
+    @Benchmark
+    public int updateBatch() throws Exception {
+        UpdateBatch batch = new UpdateBatch();
+        for (byte[] key : keys) {
+            batch.put(key, value);
+        }
+        LevelDBUtil.add(db, batch.getKvs(), false);
+        return batch.size();
+    }
+
+    @Benchmark
+    public int legacy() throws Exception {
+        Map<byte[], byte[]> kvs = new HashMap<>();
+        for (byte[] key : keys) {
+            kvs.put(key, value);
+        }
+        WriteBatch writeBatch = db.createWriteBatch();
+        WriteOptions writeOptions = new WriteOptions().sync(false);
+        for (Map.Entry<byte[], byte[]> entry : kvs.entrySet()) {
+            writeBatch.put(entry.getKey(), entry.getValue());
+            db.write(writeBatch, writeOptions);
+        }
+        writeBatch.close();
+        return kvs.size();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(UpdateBatchBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
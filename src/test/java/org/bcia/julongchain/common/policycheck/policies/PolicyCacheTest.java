@@ -0,0 +1,72 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.policycheck.policies;
+
+import org.bcia.julongchain.common.policies.policy.IPolicy;
+import org.bcia.julongchain.common.policycheck.cauthdsl.CAuthDslBuilder;
+import org.bcia.julongchain.msp.IIdentityDeserializer;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 类描述
+ * 编译后策略缓存的测试类
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class PolicyCacheTest {
+    private static final String GROUP_ID = "myGroup";
+
+    private IIdentityDeserializer deserializer = mock(IIdentityDeserializer.class);
+    private byte[] adminPolicy = CAuthDslBuilder.signedByAnyAdmin(new String[]{"Org1MSP"}).toByteArray();
+    private byte[] memberPolicy = CAuthDslBuilder.signedByAnyMember(new String[]{"Org1MSP"}).toByteArray();
+
+    @After
+    public void tearDown() {
+        PolicyCache.invalidate(GROUP_ID);
+    }
+
+    @Test
+    public void compileOnce() throws Exception {
+        IPolicy policy = PolicyCache.getPolicy(GROUP_ID, deserializer, adminPolicy);
+        assertNotNull(policy);
+        assertSame(policy, PolicyCache.getPolicy(GROUP_ID, deserializer, adminPolicy.clone()));
+        assertNotSame(policy, PolicyCache.getPolicy(GROUP_ID, deserializer, memberPolicy));
+        //不同群组各自缓存
+        assertNotSame(policy, PolicyCache.getPolicy("otherGroup", deserializer, adminPolicy));
+        PolicyCache.invalidate("otherGroup");
+    }
+
+    @Test
+    public void invalidate() throws Exception {
+        IPolicy policy = PolicyCache.getPolicy(GROUP_ID, deserializer, adminPolicy);
+        PolicyCache.invalidate(GROUP_ID);
+        assertNotSame(policy, PolicyCache.getPolicy(GROUP_ID, deserializer, adminPolicy));
+    }
+
+    @Test
+    public void deserializerChanged() throws Exception {
+        IPolicy policy = PolicyCache.getPolicy(GROUP_ID, deserializer, adminPolicy);
+        IIdentityDeserializer newDeserializer = mock(IIdentityDeserializer.class);
+        IPolicy newPolicy = PolicyCache.getPolicy(GROUP_ID, newDeserializer, adminPolicy);
+        assertNotSame(policy, newPolicy);
+        assertSame(newPolicy, PolicyCache.getPolicy(GROUP_ID, newDeserializer, adminPolicy));
+    }
+}
@@ -1,21 +1,35 @@
 package org.bcia.julongchain.consenter.common.broadcast;
 
+import com.google.protobuf.ByteString;
+import io.grpc.stub.StreamObserver;
 import org.apache.commons.cli.ParseException;
 import org.bcia.julongchain.common.exception.ConsenterException;
 import org.bcia.julongchain.common.exception.NodeException;
 import org.bcia.julongchain.consenter.Consenter;
+import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
 import org.bcia.julongchain.consenter.common.server.ConsenterServer;
+import org.bcia.julongchain.consenter.consensus.IChain;
+import org.bcia.julongchain.consenter.consensus.IProcessor;
+import org.bcia.julongchain.consenter.util.ConsenterConstants;
 import org.bcia.julongchain.node.Node;
 import org.bcia.julongchain.node.cmd.INodeCmd;
 import org.bcia.julongchain.node.cmd.group.GroupCreateCmd;
 import org.bcia.julongchain.node.cmd.sc.ContractInvokeCmd;
 import org.bcia.julongchain.node.entity.NodeGroup;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Ab;
 import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
 
 /**
  * 消息处理测试类
@@ -31,6 +45,39 @@ public class BroadCastHandlerTest {
 
     }
 
+    /**
+     * 排序队列拒绝消息时应答SERVICE_UNAVAILABLE
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void rejectedByChain() throws Exception {
+        IChain chain = mock(IChain.class);
+        IProcessor processor = mock(IProcessor.class);
+        final ChainSupport chainSupport = mock(ChainSupport.class);
+        when(chainSupport.getChain()).thenReturn(chain);
+        when(chainSupport.getProcessor()).thenReturn(processor);
+        when(chain.order(any(Common.Envelope.class), anyLong())).thenReturn(false);
+        BroadcastHandler handler = new BroadcastHandler(new IGroupSupportRegistrar() {
+            @Override
+            public Map<String, Object> broadcastGroupSupport(Common.Envelope msg) {
+                Map<String, Object> map = new HashMap<>();
+                map.put(ConsenterConstants.ISCONFIG, false);
+                map.put(ConsenterConstants.GROUPHEADER, Common.GroupHeader.newBuilder().setGroupId("myGroup").build());
+                map.put(ConsenterConstants.CHAINSUPPORT, chainSupport);
+                return map;
+            }
+        });
+        StreamObserver<Ab.BroadcastResponse> responseObserver = mock(StreamObserver.class);
+
+        handler.handle(Common.Envelope.newBuilder().setPayload(ByteString.copyFromUtf8("payload"))
+                .build(), responseObserver);
+
+        verify(responseObserver).onNext(Ab.BroadcastResponse.newBuilder()
+                .setStatus(Common.Status.SERVICE_UNAVAILABLE).build());
+        verify(responseObserver, never()).onNext(Ab.BroadcastResponse.newBuilder()
+                .setStatus(Common.Status.SUCCESS).build());
+    }
+
     @Test
     public void processConfigMessage() throws NodeException {
         Node node = Node.getInstance();
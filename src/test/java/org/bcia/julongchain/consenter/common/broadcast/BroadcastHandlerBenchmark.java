@@ -0,0 +1,237 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.common.broadcast;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.stub.StreamObserver;
+import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
+import org.bcia.julongchain.consenter.consensus.IChain;
+import org.bcia.julongchain.consenter.consensus.IProcessor;
+import org.bcia.julongchain.consenter.entity.ConfigMsg;
+import org.bcia.julongchain.consenter.util.ConsenterConstants;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Ab;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * broadcast接收压力测试
+ * 每个JMH线程模拟一条客户端流, 消息经过解析、签名校验后进入链的排序队列。
+ * serialized=true时模拟改造前整个handle在类锁内执行的情况, 作为对比。
+ * 以不同线程数运行main方法, 得到吞吐量(envelopes/ms)随流数量的变化
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastHandlerBenchmark {
+    private static final String GROUP_ID = "myGroup";
+
+    @Param({"false", "true"})
+    private boolean serialized;
+
+    private BroadcastHandler handler;
+    private Common.Envelope envelope;
+    private final StreamObserver<Ab.BroadcastResponse> responseObserver = new StreamObserver<Ab.BroadcastResponse>() {
+        @Override
+        public void onNext(Ab.BroadcastResponse value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+
+        Common.GroupHeader groupHeader = Common.GroupHeader.newBuilder()
+                .setType(Common.HeaderType.ENDORSER_TRANSACTION_VALUE)
+                .setGroupId(GROUP_ID)
+                .setTxId("txId")
+                .build();
+        Common.Payload payload = Common.Payload.newBuilder()
+                .setHeader(Common.Header.newBuilder().setGroupHeader(groupHeader.toByteString()))
+                .setData(ByteString.copyFrom(new byte[1024]))
+                .build();
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(payload.toByteArray());
+        envelope = Common.Envelope.newBuilder()
+                .setPayload(payload.toByteString())
+                .setSignature(ByteString.copyFrom(signer.sign()))
+                .build();
+
+        final ChainSupport chainSupport = new StubChainSupport(new SigVerifyProcessor(keyPair.getPublic()),
+                new AcceptingChain());
+        handler = new BroadcastHandler(new IGroupSupportRegistrar() {
+            @Override
+            public Map<String, Object> broadcastGroupSupport(Common.Envelope msg)
+                    throws InvalidProtocolBufferException {
+                Common.Payload payload = Common.Payload.parseFrom(msg.getPayload());
+                Common.GroupHeader header = Common.GroupHeader.parseFrom(payload.getHeader().getGroupHeader());
+                Map<String, Object> map = new HashMap<>();
+                map.put(ConsenterConstants.ISCONFIG, header.getType() == Common.HeaderType.CONFIG_UPDATE_VALUE);
+                map.put(ConsenterConstants.GROUPHEADER, header);
+                map.put(ConsenterConstants.CHAINSUPPORT, chainSupport);
+                return map;
+            }
+        });
+    }
+
+    @Benchmark
+    public void broadcast() throws Exception {
+        if (serialized) {
+            synchronized (BroadcastHandler.class) {
+                handler.handle(envelope, responseObserver);
+            }
+        } else {
+            handler.handle(envelope, responseObserver);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        for (int streams = 1; streams <= cpus * 2; streams *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(BroadcastHandlerBenchmark.class.getSimpleName())
+                    .threads(streams)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    /**
+     * 模拟SigFilter, 校验消息签名
+     */
+    private static class SigVerifyProcessor implements IProcessor {
+        private final PublicKey publicKey;
+        private final ThreadLocal<Signature> verifier = new ThreadLocal<Signature>() {
+            @Override
+            protected Signature initialValue() {
+                try {
+                    return Signature.getInstance("SHA256withECDSA");
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+
+        SigVerifyProcessor(PublicKey publicKey) {
+            this.publicKey = publicKey;
+        }
+
+        @Override
+        public boolean classifyMsg(Common.GroupHeader chdr) {
+            return false;
+        }
+
+        @Override
+        public long processNormalMsg(Common.Envelope env) throws InvalidProtocolBufferException {
+            try {
+                Signature signature = verifier.get();
+                signature.initVerify(publicKey);
+                signature.update(env.getPayload().toByteArray());
+                if (!signature.verify(env.getSignature().toByteArray())) {
+                    throw new InvalidProtocolBufferException("Bad signature");
+                }
+            } catch (GeneralSecurityException e) {
+                throw new InvalidProtocolBufferException(e.getMessage());
+            }
+            return 0;
+        }
+
+        @Override
+        public ConfigMsg processConfigUpdateMsg(Common.Envelope env) {
+            return null;
+        }
+
+        @Override
+        public ConfigMsg processConfigMsg(Common.Envelope env) {
+            return null;
+        }
+    }
+
+    private static class AcceptingChain implements IChain {
+        @Override
+        public boolean order(Common.Envelope env, long configSeq) {
+            return true;
+        }
+
+        @Override
+        public boolean configure(Common.Envelope config, long configSeq) {
+            return true;
+        }
+
+        @Override
+        public void waitReady() {
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void halt() {
+        }
+    }
+
+    private static class StubChainSupport extends ChainSupport {
+        private final IProcessor processor;
+        private final IChain chain;
+
+        StubChainSupport(IProcessor processor, IChain chain) {
+            this.processor = processor;
+            this.chain = chain;
+        }
+
+        @Override
+        public IProcessor getProcessor() {
+            return processor;
+        }
+
+        @Override
+        public IChain getChain() {
+            return chain;
+        }
+    }
+}
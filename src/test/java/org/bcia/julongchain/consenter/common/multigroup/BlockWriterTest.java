@@ -0,0 +1,107 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.common.multigroup;
+
+import org.bcia.julongchain.common.ledger.blockledger.ReadWriteBase;
+import org.bcia.julongchain.common.localmsp.ILocalSigner;
+import org.bcia.julongchain.protos.common.Common;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 区块写入对象测试
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class BlockWriterTest {
+    private ChainSupport support;
+    private ReadWriteBase readWriteBase;
+    private BlockWriter blockWriter;
+
+    @Before
+    public void setUp() {
+        support = mock(ChainSupport.class);
+        readWriteBase = mock(ReadWriteBase.class);
+        LedgerResources ledgerResources = mock(LedgerResources.class);
+        ILocalSigner signer = mock(ILocalSigner.class);
+
+        when(support.getGroupId()).thenReturn("myGroup");
+        when(support.getSequence()).thenReturn(0L);
+        when(support.getLocalSigner()).thenReturn(signer);
+        when(support.getLedgerResources()).thenReturn(ledgerResources);
+        when(ledgerResources.getReadWriteBase()).thenReturn(readWriteBase);
+        when(signer.newSignatureHeader()).thenReturn(Common.SignatureHeader.getDefaultInstance());
+        when(signer.sign(any(byte[].class))).thenReturn(new byte[]{1});
+
+        blockWriter = new BlockWriter(support, null, Common.Block.newBuilder()
+                .setHeader(Common.BlockHeader.newBuilder().setNumber(0)).build());
+    }
+
+    /**
+     * 前一个区块写入账本期间,下一个区块的签名不被阻塞
+     */
+    @Test(timeout = 10000)
+    public void signOverlapsAppend() throws Exception {
+        final CountDownLatch appending = new CountDownLatch(1);
+        final CountDownLatch releaseAppend = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                appending.countDown();
+                releaseAppend.await();
+                return null;
+            }
+        }).when(readWriteBase).append(any(Common.Block.class));
+
+        final Common.Block first = blockWriter.signBlock(blockWriter.createNextBlock(new Common.Envelope[0]), null);
+        Common.Block second = blockWriter.createNextBlock(new Common.Envelope[0]);
+        Thread appendThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blockWriter.appendBlock(first);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        appendThread.start();
+        assertTrue(appending.await(5, TimeUnit.SECONDS));
+
+        try {
+            //写入阻塞期间完成签名
+            Common.Block signed = blockWriter.signBlock(second, null);
+            assertEquals(2, signed.getHeader().getNumber());
+            assertEquals(0, blockWriter.getLastBlock().getHeader().getNumber());
+        } finally {
+            releaseAppend.countDown();
+        }
+        appendThread.join(5000);
+        assertEquals(1, blockWriter.getLastBlock().getHeader().getNumber());
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.consensus.kafka;
+
+import com.google.protobuf.ByteString;
+import kafka.server.KafkaServerStartable;
+import org.apache.commons.io.FileUtils;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.bcia.julongchain.consenter.util.ConsenterConstants;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Kafka;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * 使用本地嵌入的ZooKeeper和Kafka broker测试字节数组消息的发送和读取
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class KafkaProduceTest {
+    private static File dataDir;
+    private static ServerCnxnFactory zkFactory;
+    private static KafkaServerStartable broker;
+    private static String brokerAddress;
+
+    @BeforeClass
+    public static void startBroker() throws Exception {
+        dataDir = Files.createTempDirectory("kafka-test").toFile();
+        ZooKeeperServer zkServer = new ZooKeeperServer(new File(dataDir, "zk"), new File(dataDir, "zk"), 500);
+        zkFactory = ServerCnxnFactory.createFactory(new InetSocketAddress("127.0.0.1", 0), 16);
+        zkFactory.startup(zkServer);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        brokerAddress = "127.0.0.1:" + port;
+        Properties props = new Properties();
+        props.put("zookeeper.connect", "127.0.0.1:" + zkFactory.getLocalPort());
+        props.put("broker.id", "0");
+        props.put("listeners", "PLAINTEXT://" + brokerAddress);
+        props.put("log.dirs", new File(dataDir, "kafka").getAbsolutePath());
+        props.put("offsets.topic.replication.factor", "1");
+        props.put("num.partitions", "1");
+        broker = KafkaServerStartable.fromProps(props);
+        broker.startup();
+    }
+
+    @AfterClass
+    public static void stopBroker() throws Exception {
+        if (broker != null) {
+            broker.shutdown();
+            broker.awaitShutdown();
+        }
+        if (zkFactory != null) {
+            zkFactory.shutdown();
+        }
+        FileUtils.deleteQuietly(dataDir);
+    }
+
+    @Test
+    public void sendAndConsume() {
+        KafkaTopicPartitionInfo topicPartitionInfo = new KafkaTopicPartitionInfo("myGroup", 0);
+        DataMessageHandle dataMessageHandle = new DataMessageHandle();
+        int count = 50;
+
+        Properties producerProps = new Properties();
+        producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerAddress);
+        producerProps.put(ProducerConfig.LINGER_MS_CONFIG, "5");
+        KafkaProduce produce = new KafkaProduce(producerProps);
+        try {
+            for (int i = 0; i < count; i++) {
+                Common.Envelope env = Common.Envelope.newBuilder()
+                        .setPayload(ByteString.copyFromUtf8("payload" + i)).build();
+                Kafka.KafkaMessage message = dataMessageHandle.newNormalMessage(env.toByteArray(), 1, 0);
+                produce.send(dataMessageHandle.newProducerMessage(topicPartitionInfo, message.toByteArray()));
+            }
+            produce.send(dataMessageHandle.newProducerMessage(topicPartitionInfo,
+                    dataMessageHandle.newTimeToCutMessage(1).toByteArray()));
+            produce.flush();
+        } finally {
+            produce.close();
+        }
+
+        Properties consumerProps = new Properties();
+        consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerAddress);
+        consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        KafkaMessageConsumer consumer = new KafkaMessageConsumer(consumerProps, topicPartitionInfo);
+        final List<Kafka.KafkaMessage> messages = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>();
+        try {
+            long deadline = System.currentTimeMillis() + 30000;
+            while (messages.size() < count + 1 && System.currentTimeMillis() < deadline) {
+                consumer.poll(500, new KafkaMessageConsumer.IMessageHandler() {
+                    @Override
+                    public void handle(Kafka.KafkaMessage message, long offset) {
+                        messages.add(message);
+                        offsets.add(offset);
+                    }
+                });
+            }
+        } finally {
+            consumer.close();
+        }
+
+        assertEquals(count + 1, messages.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals((long) i, (long) offsets.get(i));
+            assertEquals(Kafka.KafkaMessage.TypeCase.REGULAR, messages.get(i).getTypeCase());
+            assertEquals(Kafka.KafkaMessageRegular.Class.NORMAL, messages.get(i).getRegular().getClass_());
+        }
+        assertEquals(1, messages.get(count).getTimeToCut().getBlockNumber());
+    }
+
+    /**
+     * 重启后从已提交的偏移量继续读取, 不重复处理已写入区块的消息
+     */
+    @Test
+    public void resumeFromCommittedOffset() {
+        KafkaTopicPartitionInfo topicPartitionInfo = new KafkaTopicPartitionInfo("restartGroup", 0);
+        DataMessageHandle dataMessageHandle = new DataMessageHandle();
+        int count = 10;
+
+        Properties producerProps = new Properties();
+        producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerAddress);
+        KafkaProduce produce = new KafkaProduce(producerProps);
+        try {
+            for (int i = 0; i < count; i++) {
+                produce.send(dataMessageHandle.newProducerMessage(topicPartitionInfo,
+                        dataMessageHandle.newTimeToCutMessage(i).toByteArray()));
+            }
+            produce.flush();
+        } finally {
+            produce.close();
+        }
+
+        Properties consumerProps = new Properties();
+        consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerAddress);
+        consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        consumerProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "6");
+
+        List<Long> offsets = consume(consumerProps, topicPartitionInfo, 6);
+        assertEquals(6, offsets.size());
+        assertEquals(0L, (long) offsets.get(0));
+
+        //第二个消费者模拟重启, 从最后持久化的偏移量之后开始
+        List<Long> resumed = consume(consumerProps, topicPartitionInfo, count - 6);
+        assertEquals(count - 6, resumed.size());
+        for (int i = 0; i < resumed.size(); i++) {
+            assertEquals(6L + i, (long) resumed.get(i));
+        }
+    }
+
+    /**
+     * 读取指定条数的消息, 并提交最后一条的偏移量
+     */
+    private List<Long> consume(Properties consumerProps, KafkaTopicPartitionInfo topicPartitionInfo, int count) {
+        KafkaMessageConsumer consumer = new KafkaMessageConsumer(consumerProps, topicPartitionInfo);
+        final List<Long> offsets = new ArrayList<>();
+        try {
+            long deadline = System.currentTimeMillis() + 30000;
+            while (offsets.size() < count && System.currentTimeMillis() < deadline) {
+                consumer.poll(500, new KafkaMessageConsumer.IMessageHandler() {
+                    @Override
+                    public void handle(Kafka.KafkaMessage message, long offset) {
+                        offsets.add(offset);
+                    }
+                });
+            }
+            consumer.commit(offsets.get(offsets.size() - 1));
+        } finally {
+            consumer.close();
+        }
+        return offsets;
+    }
+
+    /**
+     * 发送失败通过Future返回给调用方
+     */
+    @Test
+    public void sendFailureIsReported() throws Exception {
+        Properties producerProps = new Properties();
+        producerProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "127.0.0.1:1");
+        producerProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, "500");
+        KafkaProduce produce = new KafkaProduce(producerProps);
+        DataMessageHandle dataMessageHandle = new DataMessageHandle();
+        try {
+            produce.send(dataMessageHandle.newProducerMessage(new KafkaTopicPartitionInfo("myGroup", 0),
+                    dataMessageHandle.newTimeToCutMessage(1).toByteArray())).get();
+            fail();
+        } catch (ExecutionException e) {
+            //元数据超时
+        } finally {
+            produce.close();
+        }
+    }
+
+    /**
+     * 开启重试时每个连接只允许一个在途请求
+     */
+    @Test
+    public void retriesKeepOrder() {
+        Map<String, Object> servers = new HashMap<>();
+        servers.put("brokerHost1", brokerAddress);
+        Map<String, Object> producer = new HashMap<>();
+        Map<String, Object> kafkaConfig = new HashMap<>();
+        kafkaConfig.put(ConsenterConstants.SERVER, servers);
+        kafkaConfig.put(ConsenterConstants.PRODUCER, producer);
+
+        Properties props = KafkaProduce.producerProperties(kafkaConfig);
+        assertNull(props.get(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION));
+
+        producer.put(ConsenterConstants.RETRIES, 3);
+        props = KafkaProduce.producerProperties(kafkaConfig);
+        assertEquals("3", props.get(ProducerConfig.RETRIES_CONFIG));
+        assertEquals("1", props.get(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION));
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.consensus.singleton;
+
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.consenter.common.multigroup.BlockWriter;
+import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
+import org.bcia.julongchain.protos.common.Common;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * 区块流水线测试
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class BlockPipelineTest {
+    private ChainSupport support;
+    private BlockWriter blockWriter;
+    private BlockPipeline pipeline;
+    private List<Long> appended;
+    private AtomicLong number;
+
+    @Before
+    public void setUp() throws Exception {
+        support = mock(ChainSupport.class);
+        blockWriter = mock(BlockWriter.class);
+        appended = Collections.synchronizedList(new ArrayList<Long>());
+        number = new AtomicLong();
+
+        when(support.getGroupId()).thenReturn("myGroup");
+        when(support.getBlockWriter()).thenReturn(blockWriter);
+        when(support.createNextBlock(any(Common.Envelope[].class))).thenAnswer(new Answer<Common.Block>() {
+            @Override
+            public Common.Block answer(InvocationOnMock invocation) {
+                return Common.Block.newBuilder()
+                        .setHeader(Common.BlockHeader.newBuilder().setNumber(number.incrementAndGet()))
+                        .build();
+            }
+        });
+        when(blockWriter.signBlock(any(Common.Block.class), isNull())).thenAnswer(new Answer<Common.Block>() {
+            @Override
+            public Common.Block answer(InvocationOnMock invocation) throws Exception {
+                //模拟耗时的签名
+                Thread.sleep(2);
+                return invocation.getArgument(0);
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                appended.add(((Common.Block) invocation.getArgument(0)).getHeader().getNumber());
+                return null;
+            }
+        }).when(blockWriter).appendBlock(any(Common.Block.class));
+        //以最后写入的区块重置区块号
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                synchronized (appended) {
+                    number.set(appended.isEmpty() ? 0 : appended.get(appended.size() - 1));
+                }
+                return null;
+            }
+        }).when(blockWriter).resetFromLedger();
+
+        pipeline = new BlockPipeline(support, 2);
+        pipeline.start();
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.halt();
+    }
+
+    @Test
+    public void blocksAreAppendedInOrder() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            pipeline.submit(new Common.Envelope[]{Common.Envelope.getDefaultInstance()});
+        }
+        pipeline.awaitFinished();
+
+        assertEquals(50, appended.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i + 1, appended.get(i).longValue());
+        }
+    }
+
+    /**
+     * 区块写入失败后,丢弃链接在其上的区块,重置区块头后继续写入,账本中不出现断档
+     */
+    @Test(timeout = 10000)
+    public void failedBlockResetsHeader() throws Exception {
+        final CountDownLatch releaseFailure = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                releaseFailure.await();
+                throw new LedgerException("disk full");
+            }
+        }).doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                appended.add(((Common.Block) invocation.getArgument(0)).getHeader().getNumber());
+                return null;
+            }
+        }).when(blockWriter).appendBlock(any(Common.Block.class));
+
+        for (int i = 0; i < 3; i++) {
+            pipeline.submit(new Common.Envelope[]{Common.Envelope.getDefaultInstance()});
+        }
+        //区块2、3在区块1写入失败前已组装
+        while (number.get() < 3) {
+            Thread.sleep(5);
+        }
+        releaseFailure.countDown();
+        pipeline.awaitFinished();
+        verify(blockWriter, times(1)).resetFromLedger();
+
+        for (int i = 0; i < 2; i++) {
+            pipeline.submit(new Common.Envelope[]{Common.Envelope.getDefaultInstance()});
+        }
+        pipeline.awaitFinished();
+
+        verify(blockWriter, times(1)).resetFromLedger();
+        verify(blockWriter, times(3)).appendBlock(any(Common.Block.class));
+        assertEquals(Arrays.asList(1L, 2L), appended);
+    }
+
+    /**
+     * 组装失败后,组装下一个批次前重置区块头
+     */
+    @Test(timeout = 10000)
+    public void failedAssembleResetsHeader() throws Exception {
+        final Answer<Common.Block> assemble = new Answer<Common.Block>() {
+            @Override
+            public Common.Block answer(InvocationOnMock invocation) {
+                return Common.Block.newBuilder()
+                        .setHeader(Common.BlockHeader.newBuilder().setNumber(number.incrementAndGet()))
+                        .build();
+            }
+        };
+        when(support.createNextBlock(any(Common.Envelope[].class))).thenAnswer(new Answer<Common.Block>() {
+            @Override
+            public Common.Block answer(InvocationOnMock invocation) {
+                //区块头已推进但组装失败
+                number.incrementAndGet();
+                throw new IllegalStateException("assemble failed");
+            }
+        }).thenAnswer(assemble);
+
+        pipeline.submit(new Common.Envelope[]{Common.Envelope.getDefaultInstance()});
+        pipeline.submit(new Common.Envelope[]{Common.Envelope.getDefaultInstance()});
+        pipeline.awaitFinished();
+
+        verify(blockWriter, times(1)).resetFromLedger();
+        assertEquals(Arrays.asList(1L), appended);
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.commiter;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.bcia.julongchain.common.exception.CommitterException;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.exception.ValidateException;
+import org.bcia.julongchain.common.groupconfig.capability.IApplicationCapabilities;
+import org.bcia.julongchain.common.util.CommConstant;
+import org.bcia.julongchain.core.ledger.INodeLedger;
+import org.bcia.julongchain.core.ledger.util.TxValidationFlags;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.common.Configtx;
+import org.bcia.julongchain.protos.node.ProposalPackage;
+import org.bcia.julongchain.protos.node.ProposalResponsePackage;
+import org.bcia.julongchain.protos.node.SmartContractPackage;
+import org.bcia.julongchain.protos.node.TransactionPackage;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Committer节点校验器测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class CommitterValidatorTest {
+    private static final String GROUP_ID = "myGroup";
+    private static final String EXISTED_TX_ID = "existedTx";
+    private static final String POLICY_FAILED_SC = "policyFailedSc";
+
+    private ICommitterSupport committerSupport;
+    private IVsscValidator vsscValidator;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws LedgerException {
+        IApplicationCapabilities capabilities = Mockito.mock(IApplicationCapabilities.class);
+        Mockito.when(capabilities.isForbidDuplicateTxId()).thenReturn(true);
+
+        committerSupport = Mockito.mock(ICommitterSupport.class);
+        Mockito.when(committerSupport.getCapabilities()).thenReturn(capabilities);
+
+        INodeLedger ledger = Mockito.mock(INodeLedger.class);
+        Mockito.when(ledger.getTransactionByID(EXISTED_TX_ID)).thenReturn(TransactionPackage.ProcessedTransaction
+                .getDefaultInstance());
+        Mockito.when(committerSupport.getLedger()).thenReturn(ledger);
+
+        vsscValidator = Mockito.mock(IVsscValidator.class);
+        Mockito.when(vsscValidator.vsscValidateTx(Mockito.any(Common.GroupHeader.class), Mockito.any(ProposalPackage
+                .SmartContractHeaderExtension.class), Mockito.any(byte[].class), Mockito.any(ProposalResponsePackage
+                .ProposalResponsePayload.class))).thenAnswer(new Answer<TransactionPackage.TxValidationCode>() {
+            @Override
+            public TransactionPackage.TxValidationCode answer(InvocationOnMock invocation) throws Throwable {
+                ProposalPackage.SmartContractHeaderExtension extension = invocation.getArgument(1);
+                if (POLICY_FAILED_SC.equals(extension.getSmartContractId().getName())) {
+                    return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
+                }
+                return TransactionPackage.TxValidationCode.VALID;
+            }
+        });
+        executor = TxValidatorPool.newExecutor(4, 8);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void validateParallelSameAsSerial() throws Exception {
+        Common.Block block = buildMixedBlock();
+
+        Common.Block serialBlock = newValidator(null).validate(block);
+        assertMixedBlockFlags(serialBlock);
+
+        Common.Block parallelBlock = newValidator(executor).validate(block);
+        assertMixedBlockFlags(parallelBlock);
+
+        Assert.assertEquals(serialBlock.getMetadata().getMetadata(Common.BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE),
+                parallelBlock.getMetadata().getMetadata(Common.BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE));
+    }
+
+    @Test
+    public void applyConfigTxsInOrder() throws Exception {
+        final Thread validatingThread = Thread.currentThread();
+        final List<Long> appliedSequences = new ArrayList<>();
+        //记录各交易最后一次校验时已应用的配置数
+        final Map<String, Integer> seenConfigs = new ConcurrentHashMap<>();
+        Mockito.when(vsscValidator.vsscValidateTx(Mockito.any(Common.GroupHeader.class), Mockito.any(ProposalPackage
+                .SmartContractHeaderExtension.class), Mockito.any(byte[].class), Mockito.any(ProposalResponsePackage
+                .ProposalResponsePayload.class))).thenAnswer(new Answer<TransactionPackage.TxValidationCode>() {
+            @Override
+            public TransactionPackage.TxValidationCode answer(InvocationOnMock invocation) throws Throwable {
+                Common.GroupHeader groupHeader = invocation.getArgument(0);
+                synchronized (appliedSequences) {
+                    seenConfigs.put(groupHeader.getTxId(), appliedSequences.size());
+                }
+                return TransactionPackage.TxValidationCode.VALID;
+            }
+        });
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                //配置交易只能在调用validate的线程上按序应用
+                Assert.assertSame(validatingThread, Thread.currentThread());
+                Configtx.ConfigEnvelope configEnvelope = invocation.getArgument(0);
+                synchronized (appliedSequences) {
+                    appliedSequences.add(configEnvelope.getConfig().getSequence());
+                }
+                if (configEnvelope.getConfig().getSequence() == 2) {
+                    throw new CommitterException("Bad config");
+                }
+                return null;
+            }
+        }).when(committerSupport).apply(Mockito.any(Configtx.ConfigEnvelope.class));
+
+        Common.BlockData.Builder dataBuilder = Common.BlockData.newBuilder();
+        for (int i = 0; i < 16; i++) {
+            if (i % 4 == 0) {
+                dataBuilder.addData(configTx(i / 4 + 1).toByteString());
+            } else {
+                dataBuilder.addData(invokeTx("cc1", "tx" + i).toByteString());
+            }
+        }
+
+        Common.Block block = newValidator(executor).validate(Common.Block.newBuilder().setData(dataBuilder).build());
+
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L), appliedSequences);
+        //与串行校验一致: 配置交易之后的交易基于新配置校验, 应用失败的配置不触发重新校验
+        int[] expectedConfigs = {1, 1, 3, 4};
+        for (int i = 0; i < 16; i++) {
+            if (i % 4 != 0) {
+                Assert.assertEquals("Tx " + i, Integer.valueOf(expectedConfigs[i / 4]), seenConfigs.get("tx" + i));
+            }
+        }
+        TxValidationFlags flags = TxValidationFlags.fromByteString(block.getMetadata().getMetadata(Common
+                .BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE));
+        for (int i = 0; i < 16; i++) {
+            Assert.assertEquals("Tx " + i, TransactionPackage.TxValidationCode.VALID, flags.flag(i));
+        }
+    }
+
+    @Test(expected = ValidateException.class)
+    public void validateEmptyBlock() throws ValidateException {
+        new CommitterValidator(committerSupport, vsscValidator, executor).validate(Common.Block.newBuilder()
+                .setData(Common.BlockData.newBuilder()).build());
+    }
+
+    private CommitterValidator newValidator(ExecutorService validatorExecutor) {
+        return new CommitterValidator(committerSupport, vsscValidator, validatorExecutor) {
+            @Override
+            Object[] validateMessage(Common.Envelope envelope, boolean signatureChecked) {
+                try {
+                    Common.Payload payload = Common.Payload.parseFrom(envelope.getPayload());
+                    Common.GroupHeader groupHeader = Common.GroupHeader.parseFrom(payload.getHeader().getGroupHeader());
+                    if (groupHeader.getType() == 0) {
+                        return super.validateMessage(envelope, signatureChecked);
+                    }
+                    //签名和提案哈希的校验由MsgValidation负责，这里只关心账本相关的校验及结果汇总
+                    return new Object[]{TransactionPackage.TxValidationCode.VALID, payload, groupHeader,
+                            ProposalPackage.SmartContractHeaderExtension.parseFrom(groupHeader.getExtension()),
+                            ProposalResponsePackage.ProposalResponsePayload.getDefaultInstance()};
+                } catch (InvalidProtocolBufferException e) {
+                    return new Object[]{TransactionPackage.TxValidationCode.BAD_PAYLOAD};
+                }
+            }
+        };
+    }
+
+    /**
+     * 构造包含各种校验结果的区块
+     */
+    private Common.Block buildMixedBlock() {
+        Common.BlockData.Builder dataBuilder = Common.BlockData.newBuilder();
+        //0: 有效交易
+        dataBuilder.addData(invokeTx("cc1", "tx0").toByteString());
+        //1: 无法解析的交易
+        dataBuilder.addData(ByteString.copyFrom(new byte[]{(byte) 0xFF, (byte) 1}));
+        //2: 与区块内交易0重复
+        dataBuilder.addData(invokeTx("cc1", "tx0").toByteString());
+        //3: 与账本中已有交易重复
+        dataBuilder.addData(invokeTx("cc1", EXISTED_TX_ID).toByteString());
+        //4: 调用的智能合约在同一区块中被升级
+        dataBuilder.addData(invokeTx("cc2", "tx4").toByteString());
+        //5: 升级智能合约cc2
+        dataBuilder.addData(upgradeTx("cc2", "tx5").toByteString());
+        //6: 不满足背书策略
+        dataBuilder.addData(invokeTx(POLICY_FAILED_SC, "tx6").toByteString());
+        //7: 空交易
+        dataBuilder.addData(Common.Envelope.getDefaultInstance().toByteString());
+        //8: 配置交易
+        dataBuilder.addData(configTx(1).toByteString());
+        //9: 有效交易
+        dataBuilder.addData(invokeTx("cc1", "tx9").toByteString());
+
+        return Common.Block.newBuilder().setData(dataBuilder).build();
+    }
+
+    /**
+     * 与串行校验器的标记规则一致: 交易自身的校验失败不写入标记,
+     * 未通过校验的交易以null参与区块内交易id去重
+     */
+    private void assertMixedBlockFlags(Common.Block block) {
+        TxValidationFlags flags = TxValidationFlags.fromByteString(block.getMetadata().getMetadata(Common
+                .BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE));
+        Assert.assertEquals(10, flags.length());
+        Assert.assertEquals(TransactionPackage.TxValidationCode.VALID, flags.flag(0));
+        Assert.assertEquals(TransactionPackage.TxValidationCode.VALID, flags.flag(1));
+        Assert.assertEquals(TransactionPackage.TxValidationCode.DUPLICATE_TXID, flags.flag(2));
+        Assert.assertEquals(TransactionPackage.TxValidationCode.DUPLICATE_TXID, flags.flag(3));
+        Assert.assertEquals(TransactionPackage.TxValidationCode.SMARTCONTRACT_VERSION_CONFLICT, flags.flag(4));
+        Assert.assertEquals(TransactionPackage.TxValidationCode.VALID, flags.flag(5));
+        Assert.assertEquals(TransactionPackage.TxValidationCode.DUPLICATE_TXID, flags.flag(6));
+        Assert.assertEquals(TransactionPackage.TxValidationCode.DUPLICATE_TXID, flags.flag(7));
+        Assert.assertEquals(TransactionPackage.TxValidationCode.VALID, flags.flag(8));
+        Assert.assertEquals(TransactionPackage.TxValidationCode.VALID, flags.flag(9));
+    }
+
+    private Common.Envelope invokeTx(String scName, String txId, ByteString... args) {
+        SmartContractPackage.SmartContractInput.Builder inputBuilder = SmartContractPackage.SmartContractInput
+                .newBuilder();
+        for (ByteString arg : args) {
+            inputBuilder.addArgs(arg);
+        }
+        SmartContractPackage.SmartContractInvocationSpec invocationSpec = SmartContractPackage
+                .SmartContractInvocationSpec.newBuilder().setSmartContractSpec(SmartContractPackage.SmartContractSpec
+                        .newBuilder().setSmartContractId(SmartContractPackage.SmartContractID.newBuilder()
+                                .setName(scName)).setInput(inputBuilder)).build();
+
+        TransactionPackage.SmartContractActionPayload actionPayload = TransactionPackage.SmartContractActionPayload
+                .newBuilder()
+                .setSmartContractProposalPayload(ProposalPackage.SmartContractProposalPayload.newBuilder()
+                        .setInput(invocationSpec.toByteString()).build().toByteString())
+                .setAction(TransactionPackage.SmartContractEndorsedAction.newBuilder()
+                        .setProposalResponsePayload(ProposalResponsePackage.ProposalResponsePayload
+                                .getDefaultInstance().toByteString()))
+                .build();
+        TransactionPackage.Transaction transaction = TransactionPackage.Transaction.newBuilder()
+                .addActions(TransactionPackage.TransactionAction.newBuilder()
+                        .setHeader(signatureHeader().toByteString())
+                        .setPayload(actionPayload.toByteString()))
+                .build();
+
+        return envelope(Common.HeaderType.ENDORSER_TRANSACTION_VALUE, txId, scName, transaction.toByteString());
+    }
+
+    private Common.Envelope upgradeTx(String scName, String txId) {
+        SmartContractPackage.SmartContractDeploymentSpec deploymentSpec = SmartContractPackage
+                .SmartContractDeploymentSpec.newBuilder().setSmartContractSpec(SmartContractPackage.SmartContractSpec
+                        .newBuilder().setSmartContractId(SmartContractPackage.SmartContractID.newBuilder()
+                                .setName(scName).setVersion("2.0"))).build();
+        return invokeTx(CommConstant.LSSC, txId, ByteString.copyFromUtf8(CommConstant.UPGRADE),
+                ByteString.copyFromUtf8(GROUP_ID), deploymentSpec.toByteString());
+    }
+
+    private Common.Envelope configTx(long sequence) {
+        Configtx.ConfigEnvelope configEnvelope = Configtx.ConfigEnvelope.newBuilder()
+                .setConfig(Configtx.Config.newBuilder().setSequence(sequence)).build();
+        return envelope(Common.HeaderType.CONFIG_VALUE, "config" + sequence, "", configEnvelope.toByteString());
+    }
+
+    private Common.Envelope envelope(int type, String txId, String scName, ByteString data) {
+        Common.GroupHeader groupHeader = Common.GroupHeader.newBuilder()
+                .setType(type)
+                .setGroupId(GROUP_ID)
+                .setTxId(txId)
+                .setExtension(ProposalPackage.SmartContractHeaderExtension.newBuilder()
+                        .setSmartContractId(SmartContractPackage.SmartContractID.newBuilder().setName(scName))
+                        .build().toByteString())
+                .build();
+        Common.Payload payload = Common.Payload.newBuilder()
+                .setHeader(Common.Header.newBuilder()
+                        .setGroupHeader(groupHeader.toByteString())
+                        .setSignatureHeader(signatureHeader().toByteString()))
+                .setData(data)
+                .build();
+        return Common.Envelope.newBuilder().setPayload(payload.toByteString()).build();
+    }
+
+    private Common.SignatureHeader signatureHeader() {
+        return Common.SignatureHeader.newBuilder()
+                .setCreator(ByteString.copyFromUtf8("creator"))
+                .setNonce(ByteString.copyFromUtf8("nonce"))
+                .build();
+    }
+}
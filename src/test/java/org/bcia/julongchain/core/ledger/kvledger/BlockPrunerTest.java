@@ -0,0 +1,115 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger;
+
+import org.bcia.julongchain.common.ledger.IPrunePolicy;
+import org.bcia.julongchain.common.ledger.blkstorage.IBlockStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 区块文件修剪器测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class BlockPrunerTest {
+    private IBlockStore blockStore;
+    private IPrunePolicy policy;
+    private BlockPruner pruner;
+    private Semaphore pruned = new Semaphore(0);
+    private CountDownLatch release = new CountDownLatch(0);
+
+    @Before
+    public void setUp() throws Exception {
+        blockStore = mock(IBlockStore.class);
+        policy = mock(IPrunePolicy.class);
+        when(blockStore.prune(any(IPrunePolicy.class))).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocation) throws Exception {
+                release.await();
+                pruned.release();
+                return 1;
+            }
+        });
+        pruner = new BlockPruner("myGroup", blockStore, policy, 2);
+    }
+
+    @After
+    public void tearDown() {
+        release = new CountDownLatch(0);
+        pruner.shutdown();
+    }
+
+    @Test
+    public void pruneEveryInterval() throws Exception {
+        for (long blockNum = 1; blockNum <= 5; blockNum++) {
+            pruner.blockCommitted(blockNum);
+            if (blockNum % 2 == 0) {
+                awaitPruned();
+            }
+        }
+        verify(blockStore, times(2)).prune(policy);
+    }
+
+    @Test
+    public void skipWhilePruning() throws Exception {
+        release = new CountDownLatch(1);
+        pruner.blockCommitted(2);
+        //上一次修剪未完成时不重复调度
+        pruner.blockCommitted(4);
+        release.countDown();
+        awaitPruned();
+
+        pruner.blockCommitted(6);
+        awaitPruned();
+        verify(blockStore, times(2)).prune(policy);
+    }
+
+    @Test
+    public void shutdown() throws Exception {
+        pruner.shutdown();
+        pruner.blockCommitted(2);
+        assertEquals(0, pruner.prune());
+        verify(blockStore, never()).prune(any(IPrunePolicy.class));
+    }
+
+    /**
+     * 等待后台修剪完成
+     */
+    private void awaitPruned() throws InterruptedException {
+        assertTrue(pruned.tryAcquire(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pruner.isPruneScheduled() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(pruner.isPruneScheduled());
+    }
+}
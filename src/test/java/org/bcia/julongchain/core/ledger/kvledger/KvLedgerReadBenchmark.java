@@ -0,0 +1,120 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger;
+
+import org.bcia.julongchain.common.ledger.util.Utils;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.core.ledger.INodeLedger;
+import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
+import org.bcia.julongchain.core.ledger.ledgermgmt.LedgerManager;
+import org.bcia.julongchain.protos.common.Common;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.bcia.julongchain.common.ledger.util.Utils.rmrf;
+
+/**
+ * KvLedger读性能基准测试
+ * 后台线程持续提交区块, 同时测量读接口的吞吐量
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KvLedgerReadBenchmark {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(KvLedgerReadBenchmark.class);
+
+    private static final String GROUP_ID = "myGroup";
+    private static final String NAMESPACE = "mycc";
+
+    private INodeLedger ledger;
+    private Thread committer;
+    private volatile boolean running;
+    private final AtomicLong committedBlocks = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        rmrf(LedgerConfig.getRootPath());
+        ledger = Utils.constructDefaultLedger();
+
+        running = true;
+        committer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Common.Block preBlock = ledger.getBlockByNumber(ledger.getBlockchainInfo().getHeight() - 1);
+                    while (running) {
+                        Common.Block block = Utils.constructDefaultBlock(ledger, preBlock, GROUP_ID, NAMESPACE);
+                        ledger.commit(block);
+                        committedBlocks.incrementAndGet();
+                        preBlock = block;
+                    }
+                } catch (Exception e) {
+                    log.error(e.getMessage(), e);
+                }
+            }
+        }, "benchmark-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        running = false;
+        committer.join();
+        log.info("Blocks committed during benchmark: " + committedBlocks.get());
+        LedgerManager.close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getBlockchainInfo() throws Exception {
+        return ledger.getBlockchainInfo();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getBlockByNumber() throws Exception {
+        long height = ledger.getBlockchainInfo().getHeight();
+        return ledger.getBlockByNumber(ThreadLocalRandom.current().nextLong(height));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getTransactionByID() throws Exception {
+        return ledger.getTransactionByID("txID" + ThreadLocalRandom.current().nextInt(4));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(KvLedgerReadBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
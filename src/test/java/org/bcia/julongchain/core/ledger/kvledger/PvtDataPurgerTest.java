@@ -0,0 +1,169 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger;
+
+import com.google.protobuf.ByteString;
+import org.apache.commons.io.FileUtils;
+import org.bcia.julongchain.common.ledger.util.leveldbhelper.LevelDBProvider;
+import org.bcia.julongchain.core.ledger.TxPvtData;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.privacyenabledstate.IDB;
+import org.bcia.julongchain.core.ledger.pvtdatapolicy.ConfigBTLPolicy;
+import org.bcia.julongchain.core.ledger.pvtdatapolicy.IBTLPolicy;
+import org.bcia.julongchain.core.ledger.pvtdatastorage.PvtDataStoreImpl;
+import org.bcia.julongchain.protos.ledger.rwset.Rwset;
+import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 私有数据清除测试类
+ * ns1/coll1的存活区块数为2, ns1/coll2永久保存
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class PvtDataPurgerTest {
+    private static final int BLOCKS = 6;
+
+    private File dir;
+    private PvtDataStoreImpl store;
+    private IDB stateDB;
+    private PvtDataPurger purger;
+    @Captor
+    private ArgumentCaptor<List<TxPvtData>> purged;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        dir = Files.createTempDirectory("pvtdata").toFile();
+        IBTLPolicy btlPolicy = new IBTLPolicy() {
+            @Override
+            public long getBTL(String ns, String coll) {
+                return "coll1".equals(coll) ? 2 : 0;
+            }
+
+            @Override
+            public long getExpiringBlock(String ns, String coll, long committingBlock) {
+                return ConfigBTLPolicy.computeExpiringBlock(getBTL(ns, coll), committingBlock);
+            }
+        };
+        store = new PvtDataStoreImpl(new LevelDBProvider(dir.getAbsolutePath()), "myGroup", btlPolicy).initState();
+        for (int blockNum = 0; blockNum < BLOCKS; blockNum++) {
+            List<TxPvtData> pvtData = new ArrayList<>();
+            pvtData.add(new TxPvtData(0, newTxPvtWSet("k" + blockNum)));
+            store.prepare(blockNum, pvtData);
+            store.commit();
+        }
+        stateDB = mock(IDB.class);
+        purger = new PvtDataPurger("myGroup", this, store, stateDB, 1, 2);
+    }
+
+    @After
+    public void tearDown() {
+        purger.shutdown();
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void purgeExpired() throws Exception {
+        //区块0, 1中的coll1分别在区块3, 4提交时到期
+        assertEquals(2, store.getExpiryEntries(4, 100).size());
+        assertEquals(2, purger.purgeExpired(4));
+        assertTrue(store.getExpiryEntries(4, 100).isEmpty());
+        assertEquals(BLOCKS - 2, store.getExpiryEntries(Long.MAX_VALUE - 1, 100).size());
+
+        //coll2仍然保留
+        for (long blockNum = 0; blockNum <= 1; blockNum++) {
+            Rwset.TxPvtReadWriteSet wSet = store.getPvtDataByBlockNum(blockNum, null).get(0).getWriteSet();
+            assertEquals(1, wSet.getNsPvtRwset(0).getCollectionPvtRwsetCount());
+            assertEquals("coll2", wSet.getNsPvtRwset(0).getCollectionPvtRwset(0).getCollectionName());
+        }
+        assertEquals(2, store.getPvtDataByBlockNum(2, null).get(0).getWriteSet().getNsPvtRwset(0)
+                .getCollectionPvtRwsetCount());
+
+        verify(stateDB).purgePrivateData(eq(0L), purged.capture());
+        verify(stateDB).purgePrivateData(eq(1L), anyList());
+        Rwset.TxPvtReadWriteSet purgedWSet = purged.getValue().get(0).getWriteSet();
+        assertEquals("coll1", purgedWSet.getNsPvtRwset(0).getCollectionPvtRwset(0).getCollectionName());
+
+        //重复清除没有影响
+        assertEquals(0, purger.purgeExpired(4));
+    }
+
+    @Test(timeout = 10000)
+    public void purgeBlocksBeyondHeight() throws Exception {
+        //超过已提交高度时只清除到已提交高度
+        assertEquals(BLOCKS, purger.purgeBlocksBelow(BLOCKS + 3));
+        assertTrue(store.getPvtDataByBlockNum(BLOCKS - 1, null).isEmpty());
+        assertEquals(0, purger.purgeBlocksBelow(BLOCKS + 3));
+        verify(stateDB, times(BLOCKS)).purgePrivateData(anyLong(), anyList());
+    }
+
+    @Test
+    public void purgeBlocksBelow() throws Exception {
+        assertEquals(0, store.getMinBlockNum());
+        assertEquals(3, purger.purgeBlocksBelow(3));
+        assertEquals(3, store.getMinBlockNum());
+        assertTrue(store.getPvtDataByBlockNum(2, null).isEmpty());
+        verify(stateDB, times(3)).purgePrivateData(anyLong(), anyList());
+
+        //被清除区块的到期索引仍可处理
+        assertEquals(1, purger.purgeExpired(BLOCKS));
+        assertTrue(store.getExpiryEntries(BLOCKS, 100).isEmpty());
+        assertEquals(3, store.getMinBlockNum());
+    }
+
+    @Test
+    public void rollbackRemovesExpiryEntries() throws Exception {
+        List<TxPvtData> pvtData = new ArrayList<>();
+        pvtData.add(new TxPvtData(0, newTxPvtWSet("k" + BLOCKS)));
+        store.prepare(BLOCKS, pvtData);
+        assertEquals(1, store.getExpiryEntries(BLOCKS + 3, 100).size() - store.getExpiryEntries(BLOCKS + 2, 100).size());
+        store.rollback();
+        assertEquals(0, store.getExpiryEntries(BLOCKS + 3, 100).size() - store.getExpiryEntries(BLOCKS + 2, 100).size());
+    }
+
+    private static Rwset.TxPvtReadWriteSet newTxPvtWSet(String key) {
+        KvRwset.KVRWSet kvRwSet = KvRwset.KVRWSet.newBuilder()
+                .addWrites(KvRwset.KVWrite.newBuilder().setKey(key).setValue(ByteString.copyFromUtf8(key)))
+                .build();
+        return Rwset.TxPvtReadWriteSet.newBuilder()
+                .setDataModel(Rwset.TxReadWriteSet.DataModel.KV)
+                .addNsPvtRwset(Rwset.NsPvtReadWriteSet.newBuilder()
+                        .setNamespace("ns1")
+                        .addCollectionPvtRwset(Rwset.CollectionPvtReadWriteSet.newBuilder()
+                                .setCollectionName("coll1").setRwset(kvRwSet.toByteString()))
+                        .addCollectionPvtRwset(Rwset.CollectionPvtReadWriteSet.newBuilder()
+                                .setCollectionName("coll2").setRwset(kvRwSet.toByteString())))
+                .build();
+    }
+}
@@ -5,7 +5,7 @@ import org.bcia.julongchain.core.ledger.INodeLedger;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
 import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
 import org.bcia.julongchain.protos.common.Common;
-import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
+import org.bcia.julongchain.protos.ledger.queryresult.KvQueryResult;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -54,9 +54,10 @@ public class IHistoryQueryExecutorTest {
 			if (next == null) {
 				break;
 			}
-			KvRwset.Version version = (KvRwset.Version) next.getObj();
-			assertSame((long) 1, version.getBlockNum());
-			assertSame((long) i, version.getTxNum());
+			KvQueryResult.KeyModification modification = (KvQueryResult.KeyModification) next.getObj();
+			assertEquals("txID" + i, modification.getTxId());
+			assertEquals("value" + i, modification.getValue().toStringUtf8());
+			assertFalse(modification.getIsDelete());
 			i++;
 		}
 
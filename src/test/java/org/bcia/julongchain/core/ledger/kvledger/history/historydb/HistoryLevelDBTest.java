@@ -13,7 +13,7 @@ import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
 import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
 import org.bcia.julongchain.protos.common.Common;
-import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
+import org.bcia.julongchain.protos.ledger.queryresult.KvQueryResult;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -85,6 +85,8 @@ public class HistoryLevelDBTest {
 	public void commit() throws Exception{
 		long height = l.getBlockchainInfo().getHeight();
 		block = constructDefaultBlock(l, l.getBlockByNumber(height - 1), ledgerID, "mycc");
+		//历史查询从区块存储读取交易
+		blockStore.addBlock(block);
 		db.commit(block);
 		IHistoryQueryExecutor hqe = db.newHistoryQueryExecutor(blockStore);
 		IResultsIterator itr = hqe.getHistoryForKey("mycc", "key0");
@@ -95,9 +97,9 @@ public class HistoryLevelDBTest {
 			if (next == null) {
 				break;
 			}
-			KvRwset.Version version = (KvRwset.Version) next.getObj();
-			assertSame(i + 1L, version.getBlockNum());
-			assertSame(0L, version.getTxNum());
+			KvQueryResult.KeyModification modification = (KvQueryResult.KeyModification) next.getObj();
+			assertEquals("txID0", modification.getTxId());
+			assertEquals("value0", modification.getValue().toStringUtf8());
 			i++;
 		}
 	}
@@ -0,0 +1,282 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.statecouchdb;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.stateleveldb.CompositeKey;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.stateleveldb.UpdateBatch;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lightcouch.CouchDbProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * VersionedCouchDB测试类
+ * 使用进程内的HTTP服务模拟couchdb, 统计_all_docs及_bulk_docs请求次数
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class VersionedCouchDBTest {
+	private static final String GROUP_ID = "mygroup";
+	private static final String NAMESPACE = "mycc";
+
+	private MockCouchDB couchDB;
+	private VersionedCouchDB vdb;
+
+	@Before
+	public void setUp() throws Exception {
+		couchDB = new MockCouchDB();
+		CouchDbProperties properties = new CouchDbProperties()
+				.setProtocol("http")
+				.setHost("127.0.0.1")
+				.setPort(couchDB.getPort());
+		vdb = new VersionedCouchDB(properties, GROUP_ID);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		vdb.close();
+		couchDB.stop();
+	}
+
+	@Test
+	public void loadCommittedVersionsWithOneRequest() throws Exception {
+		UpdateBatch batch = new UpdateBatch();
+		for (int i = 0; i < 10; i++) {
+			batch.put(NAMESPACE, "key" + i, ("value" + i).getBytes(), new LedgerHeight(1, i));
+		}
+		vdb.applyUpdates(batch, new LedgerHeight(1, 9));
+		vdb.clearCachedVersions();
+
+		couchDB.allDocsRequests.set(0);
+		couchDB.docRequests.set(0);
+		List<CompositeKey> keys = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			keys.add(new CompositeKey(NAMESPACE, "key" + i));
+		}
+		vdb.loadCommittedVersions(keys);
+		assertEquals(1, couchDB.allDocsRequests.get());
+
+		for (int i = 0; i < 10; i++) {
+			LedgerHeight height = vdb.getHeight(NAMESPACE, "key" + i);
+			assertEquals(1, height.getBlockNum());
+			assertEquals(i, height.getTxNum());
+		}
+		//不存在的key同样被缓存, 不再单独读取
+		assertNull(vdb.getHeight(NAMESPACE, "key10"));
+		assertNull(vdb.getCachedVersion(NAMESPACE, "key11"));
+		assertEquals(0, couchDB.docRequests.get());
+	}
+
+	@Test
+	public void applyUpdatesWithBulkDocs() throws Exception {
+		UpdateBatch batch = new UpdateBatch();
+		batch.put(NAMESPACE, "binary", new byte[]{0, 1, 2, (byte) 0xff}, new LedgerHeight(1, 0));
+		batch.put(NAMESPACE, "json", "{\"owner\":\"tom\",\"size\":10}".getBytes(), new LedgerHeight(1, 1));
+		batch.put(NAMESPACE, "removed", "value".getBytes(), new LedgerHeight(1, 2));
+		vdb.applyUpdates(batch, new LedgerHeight(1, 2));
+		vdb.clearCachedVersions();
+
+		couchDB.allDocsRequests.set(0);
+		couchDB.bulkDocsRequests.set(0);
+		//更新已存在的key时需要修订号, 通过一次_all_docs请求读取
+		batch = new UpdateBatch();
+		batch.put(NAMESPACE, "binary", new byte[]{3, 4}, new LedgerHeight(2, 0));
+		batch.delete(NAMESPACE, "removed", new LedgerHeight(2, 1));
+		batch.delete(NAMESPACE, "notExists", new LedgerHeight(2, 2));
+		vdb.applyUpdates(batch, new LedgerHeight(2, 2));
+		assertEquals(1, couchDB.allDocsRequests.get());
+		//namespace数据库及metadata数据库各一次
+		assertEquals(2, couchDB.bulkDocsRequests.get());
+
+		assertArrayEquals(new byte[]{3, 4}, vdb.getState(NAMESPACE, "binary").getValue());
+		assertEquals(2, vdb.getState(NAMESPACE, "binary").getHeight().getBlockNum());
+		JSONObject json = JSON.parseObject(new String(vdb.getState(NAMESPACE, "json").getValue(), StandardCharsets.UTF_8));
+		assertEquals("tom", json.getString("owner"));
+		assertEquals(10, json.getIntValue("size"));
+		assertNull(vdb.getState(NAMESPACE, "removed"));
+
+		LedgerHeight savepoint = vdb.getLatestSavePoint();
+		assertEquals(2, savepoint.getBlockNum());
+		assertEquals(2, savepoint.getTxNum());
+	}
+
+	@Test
+	public void cachedRevisionsAreReused() throws Exception {
+		UpdateBatch batch = new UpdateBatch();
+		batch.put(NAMESPACE, "key", "v1".getBytes(), new LedgerHeight(1, 0));
+		vdb.applyUpdates(batch, new LedgerHeight(1, 0));
+
+		//提交成功后缓存新的修订号, 连续更新不会产生冲突也不需要重新读取
+		couchDB.allDocsRequests.set(0);
+		batch = new UpdateBatch();
+		batch.put(NAMESPACE, "key", "v2".getBytes(), new LedgerHeight(2, 0));
+		vdb.applyUpdates(batch, new LedgerHeight(2, 0));
+		assertEquals(0, couchDB.allDocsRequests.get());
+		assertArrayEquals("v2".getBytes(), vdb.getState(NAMESPACE, "key").getValue());
+	}
+
+	/**
+	 * 只实现VersionedCouchDB使用到的接口的couchdb模拟服务
+	 */
+	private static class MockCouchDB implements HttpHandler {
+		private final HttpServer server;
+		private final Map<String, Map<String, JSONObject>> databases = new HashMap<>();
+		private final AtomicInteger allDocsRequests = new AtomicInteger();
+		private final AtomicInteger bulkDocsRequests = new AtomicInteger();
+		private final AtomicInteger docRequests = new AtomicInteger();
+
+		MockCouchDB() throws IOException {
+			server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+			server.createContext("/", this);
+			server.start();
+		}
+
+		int getPort() {
+			return server.getAddress().getPort();
+		}
+
+		void stop() {
+			server.stop(0);
+		}
+
+		@Override
+		public synchronized void handle(HttpExchange exchange) throws IOException {
+			String[] path = exchange.getRequestURI().getRawPath().substring(1).split("/", 2);
+			String dbName = URLDecoder.decode(path[0], "UTF-8");
+			String docId = path.length > 1 && !path[1].isEmpty() ? URLDecoder.decode(path[1], "UTF-8") : null;
+			String method = exchange.getRequestMethod();
+			Map<String, JSONObject> db = databases.get(dbName);
+
+			if (docId == null) {
+				if ("PUT".equals(method)) {
+					databases.put(dbName, new HashMap<String, JSONObject>());
+					send(exchange, 201, "{\"ok\":true}");
+				} else if (db == null) {
+					send(exchange, 404, "{\"error\":\"not_found\",\"reason\":\"Database does not exist.\"}");
+				} else {
+					send(exchange, 200, "{\"db_name\":\"" + dbName + "\"}");
+				}
+			} else if (db == null) {
+				send(exchange, 404, "{\"error\":\"not_found\",\"reason\":\"Database does not exist.\"}");
+			} else if ("_all_docs".equals(docId)) {
+				allDocsRequests.incrementAndGet();
+				JSONArray rows = new JSONArray();
+				for (Object key : JSON.parseObject(readBody(exchange)).getJSONArray("keys")) {
+					JSONObject row = new JSONObject();
+					row.put("key", key);
+					JSONObject doc = db.get(key);
+					if (doc == null) {
+						row.put("error", "not_found");
+					} else {
+						row.put("id", key);
+						row.put("doc", doc);
+					}
+					rows.add(row);
+				}
+				send(exchange, 200, "{\"total_rows\":" + db.size() + ",\"rows\":" + rows.toJSONString() + "}");
+			} else if ("_bulk_docs".equals(docId)) {
+				bulkDocsRequests.incrementAndGet();
+				JSONArray results = new JSONArray();
+				for (Object obj : JSON.parseObject(readBody(exchange)).getJSONArray("docs")) {
+					results.add(save(db, (JSONObject) obj));
+				}
+				send(exchange, 201, results.toJSONString());
+			} else {
+				docRequests.incrementAndGet();
+				JSONObject doc = db.get(docId);
+				if (doc == null) {
+					send(exchange, 404, "{\"error\":\"not_found\",\"reason\":\"missing\"}");
+				} else {
+					send(exchange, 200, doc.toJSONString());
+				}
+			}
+		}
+
+		private JSONObject save(Map<String, JSONObject> db, JSONObject doc) {
+			String id = doc.getString("_id");
+			JSONObject result = new JSONObject();
+			result.put("id", id);
+			JSONObject old = db.get(id);
+			String oldRev = old == null ? null : old.getString("_rev");
+			if (oldRev == null ? doc.containsKey("_rev") : !oldRev.equals(doc.getString("_rev"))) {
+				result.put("error", "conflict");
+				result.put("reason", "Document update conflict.");
+				return result;
+			}
+			int revNum = oldRev == null ? 1 : Integer.parseInt(oldRev.split("-")[0]) + 1;
+			String rev = revNum + "-" + Integer.toHexString(Arrays.hashCode(doc.toJSONString().getBytes()));
+			if (doc.getBooleanValue("_deleted")) {
+				db.remove(id);
+			} else {
+				doc.put("_rev", rev);
+				db.put(id, doc);
+			}
+			result.put("ok", true);
+			result.put("rev", rev);
+			return result;
+		}
+
+		private String readBody(HttpExchange exchange) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			InputStream in = exchange.getRequestBody();
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+
+		private void send(HttpExchange exchange, int code, String body) throws IOException {
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			if ("HEAD".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(code, -1);
+			} else {
+				exchange.sendResponseHeaders(code, bytes.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(bytes);
+				out.close();
+			}
+			exchange.close();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.statebasedval;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.privacyenabledstate.IDB;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.NsRwSet;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.RwSetUtil;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.TxRwSet;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valinternal.Block;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valinternal.PubAndHashUpdates;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valinternal.Transaction;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
+import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
+import org.bcia.julongchain.protos.node.TransactionPackage;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * statedb验证器测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class ValidatorTest {
+    private static final String NS = "mycc";
+    private static final int INDEPENDENT_TXS = 40;
+
+    private IDB db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = mock(IDB.class);
+        when(db.getHeight(NS, "a")).thenReturn(new LedgerHeight(1, 0));
+        when(db.getHeight(NS, "b")).thenReturn(new LedgerHeight(1, 1));
+    }
+
+    @Test
+    public void validateInline() throws Exception {
+        checkBlock(new Validator(db, null));
+    }
+
+    @Test
+    public void validateConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int i = 0; i < 5; i++) {
+                checkBlock(new Validator(db, executor));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void skipMVCCValidation() throws Exception {
+        Block block = newBlock();
+        new Validator(db, null).validateAndPrepareBatch(block, false);
+        for (Transaction tx : block.getTxs()) {
+            assertEquals(TransactionPackage.TxValidationCode.VALID, tx.getValidationCode());
+        }
+    }
+
+    private void checkBlock(Validator validator) throws Exception {
+        Block block = newBlock();
+        PubAndHashUpdates updates = validator.validateAndPrepareBatch(block, true);
+
+        //读写a, 有效
+        assertEquals(TransactionPackage.TxValidationCode.VALID, block.getTxs().get(0).getValidationCode());
+        //读取被前一个交易写过的a
+        assertEquals(TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT, block.getTxs().get(1).getValidationCode());
+        //b的版本已过期
+        assertEquals(TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT, block.getTxs().get(2).getValidationCode());
+        //读写不存在的c, 有效
+        assertEquals(TransactionPackage.TxValidationCode.VALID, block.getTxs().get(3).getValidationCode());
+        //读取被前一个交易写过的c
+        assertEquals(TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT, block.getTxs().get(4).getValidationCode());
+        for (int i = 5; i < block.getTxs().size(); i++) {
+            assertEquals(TransactionPackage.TxValidationCode.VALID, block.getTxs().get(i).getValidationCode());
+        }
+
+        assertTrue(LedgerHeight.areSame(new LedgerHeight(2, 0),
+                updates.getPubUpdates().getBatch().get(NS, "a").getHeight()));
+        assertTrue(LedgerHeight.areSame(new LedgerHeight(2, 3),
+                updates.getPubUpdates().getBatch().get(NS, "c").getHeight()));
+        //无效交易的写集合不生效
+        assertFalse(updates.getPubUpdates().getBatch().exists(NS, "b"));
+        assertTrue(updates.getPubUpdates().getBatch().exists(NS, "d" + (INDEPENDENT_TXS - 1)));
+    }
+
+    private Block newBlock() {
+        Block block = new Block(2);
+        block.getTxs().add(newTx(0, "a", new LedgerHeight(1, 0), "a"));
+        block.getTxs().add(newTx(1, "a", new LedgerHeight(1, 0), "x"));
+        block.getTxs().add(newTx(2, "b", new LedgerHeight(1, 0), "b"));
+        block.getTxs().add(newTx(3, "c", null, "c"));
+        block.getTxs().add(newTx(4, "c", null, "y"));
+        for (int i = 0; i < INDEPENDENT_TXS; i++) {
+            int index = block.getTxs().size();
+            block.getTxs().add(newTx(index, "d" + i, null, "d" + i));
+        }
+        return block;
+    }
+
+    private static Transaction newTx(int index, String readKey, LedgerHeight readVersion, String writeKey) {
+        KvRwset.KVRWSet kvRwSet = KvRwset.KVRWSet.newBuilder()
+                .addReads(RwSetUtil.newKVRead(readKey, readVersion))
+                .addWrites(KvRwset.KVWrite.newBuilder().setKey(writeKey).setValue(ByteString.copyFromUtf8(writeKey)))
+                .build();
+        TxRwSet txRwSet = new TxRwSet();
+        txRwSet.getNsRwSets().add(new NsRwSet(NS, kvRwSet));
+        return new Transaction(index, "txID" + index, txRwSet, null);
+    }
+}
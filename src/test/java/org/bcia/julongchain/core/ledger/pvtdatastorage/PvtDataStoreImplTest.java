@@ -0,0 +1,146 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.pvtdatastorage;
+
+import com.google.protobuf.ByteString;
+import org.apache.commons.io.FileUtils;
+import org.bcia.julongchain.common.ledger.util.leveldbhelper.LevelDBProvider;
+import org.bcia.julongchain.core.ledger.PvtNsCollFilter;
+import org.bcia.julongchain.core.ledger.TxPvtData;
+import org.bcia.julongchain.protos.ledger.rwset.Rwset;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * pvtdata存储测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class PvtDataStoreImplTest {
+    private static final int BLOCKS = 5;
+    private static final int TXS_PER_BLOCK = 2;
+
+    private File dir;
+    private LevelDBProvider db;
+    private PvtDataStoreImpl store;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("pvtdata").toFile();
+        db = new LevelDBProvider(dir.getAbsolutePath());
+        store = new PvtDataStoreImpl(db, "myGroup").initState();
+        for (int blockNum = 0; blockNum < BLOCKS; blockNum++) {
+            store.prepare(blockNum, newBlockPvtData(blockNum));
+            store.commit();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void getPvtDataByBlockNum() throws Exception {
+        List<TxPvtData> pvtData = store.getPvtDataByBlockNum(2, null);
+        assertEquals(TXS_PER_BLOCK, pvtData.size());
+        for (int i = 0; i < TXS_PER_BLOCK; i++) {
+            assertEquals(i, pvtData.get(i).getSeqInBlock());
+            assertEquals(newTxPvtWSet(2, i), pvtData.get(i).getWriteSet());
+        }
+        assertEquals(TXS_PER_BLOCK, store.getPvtDataByBlockNum(BLOCKS - 1, null).size());
+    }
+
+    @Test
+    public void getPvtDataByBlockRange() throws Exception {
+        Map<Long, List<TxPvtData>> pvtData = store.getPvtDataByBlockRange(1, 3, null);
+        assertEquals(3, pvtData.size());
+        long expected = 1;
+        for (Map.Entry<Long, List<TxPvtData>> entry : pvtData.entrySet()) {
+            assertEquals(expected, (long) entry.getKey());
+            assertEquals(TXS_PER_BLOCK, entry.getValue().size());
+            assertEquals(newTxPvtWSet(expected, 1), entry.getValue().get(1).getWriteSet());
+            expected++;
+        }
+    }
+
+    @Test
+    public void filter() throws Exception {
+        PvtNsCollFilter filter = new PvtNsCollFilter();
+        filter.add("ns1", "coll2");
+        List<TxPvtData> pvtData = store.getPvtDataByBlockNum(3, filter);
+        assertEquals(TXS_PER_BLOCK, pvtData.size());
+        Rwset.TxPvtReadWriteSet wSet = pvtData.get(0).getWriteSet();
+        assertEquals(Rwset.TxReadWriteSet.DataModel.KV, wSet.getDataModel());
+        assertEquals(1, wSet.getNsPvtRwsetCount());
+        assertEquals("ns1", wSet.getNsPvtRwset(0).getNamespace());
+        assertEquals(1, wSet.getNsPvtRwset(0).getCollectionPvtRwsetCount());
+        assertEquals(newTxPvtWSet(3, 0).getNsPvtRwset(0).getCollectionPvtRwset(1),
+                wSet.getNsPvtRwset(0).getCollectionPvtRwset(0));
+
+        PvtNsCollFilter noMatch = new PvtNsCollFilter();
+        noMatch.add("ns3", "coll1");
+        assertNull(store.getPvtDataByBlockNum(3, noMatch).get(0).getWriteSet());
+    }
+
+    @Test
+    public void rollbackOnlyPendingBlock() throws Exception {
+        store.prepare(BLOCKS, newBlockPvtData(BLOCKS));
+        store.rollback();
+        assertEquals(BLOCKS, store.lastCommitedBlockHeight());
+        assertEquals(BLOCKS, store.getPvtDataByBlockRange(0, BLOCKS - 1, null).size());
+    }
+
+    private static List<TxPvtData> newBlockPvtData(long blockNum) {
+        List<TxPvtData> pvtData = new ArrayList<>();
+        for (int i = 0; i < TXS_PER_BLOCK; i++) {
+            pvtData.add(new TxPvtData(i, newTxPvtWSet(blockNum, i)));
+        }
+        return pvtData;
+    }
+
+    private static Rwset.TxPvtReadWriteSet newTxPvtWSet(long blockNum, int txNum) {
+        String suffix = blockNum + "-" + txNum;
+        return Rwset.TxPvtReadWriteSet.newBuilder()
+                .setDataModel(Rwset.TxReadWriteSet.DataModel.KV)
+                .addNsPvtRwset(Rwset.NsPvtReadWriteSet.newBuilder()
+                        .setNamespace("ns1")
+                        .addCollectionPvtRwset(newCollPvtWSet("coll1", suffix))
+                        .addCollectionPvtRwset(newCollPvtWSet("coll2", suffix)))
+                .addNsPvtRwset(Rwset.NsPvtReadWriteSet.newBuilder()
+                        .setNamespace("ns2")
+                        .addCollectionPvtRwset(newCollPvtWSet("coll1", suffix)))
+                .build();
+    }
+
+    private static Rwset.CollectionPvtReadWriteSet newCollPvtWSet(String collection, String suffix) {
+        return Rwset.CollectionPvtReadWriteSet.newBuilder()
+                .setCollectionName(collection)
+                .setRwset(ByteString.copyFromUtf8(collection + "-" + suffix))
+                .build();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.util;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.util.proto.ProtoUtils;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.TxRwSet;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.node.ProposalPackage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ParsedBlock基准测试
+ * 模拟一次区块提交中各步骤对交易的解析: 提交前判断配置区块、校验(Helper.preprocessProtoBlock)、写HistoryDB。
+ * legacy为改造前各步骤分别解析的方式, 作为对比。
+ * 使用 -prof gc 查看每个区块的内存分配(gc.alloc.rate.norm)
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsedBlockBenchmark {
+    @Param({"10", "100"})
+    private int txsPerBlock;
+
+    private Common.Block block;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        block = ParsedBlockTest.newBlock(txsPerBlock);
+    }
+
+    @Benchmark
+    public int parsedBlock() throws Exception {
+        ParsedBlock parsedBlock = new ParsedBlock(block);
+        int count = parsedBlock.getTx(0).getGroupHeader().getType();
+        //校验
+        for (int i = 0; i < parsedBlock.getTxCount(); i++) {
+            ParsedBlock.ParsedTx tx = parsedBlock.getTx(i);
+            tx.getEnvelope();
+            tx.getGroupHeader();
+            count += tx.getTxRwSet().getNsRwSets().size();
+        }
+        //HistoryDB
+        for (int i = 0; i < parsedBlock.getTxCount(); i++) {
+            ParsedBlock.ParsedTx tx = parsedBlock.getTx(i);
+            tx.getGroupHeader();
+            if (tx.getAction().hasResponse()) {
+                count += tx.getTxRwSet().getNsRwSets().size();
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int legacy() throws Exception {
+        Common.Envelope first = Common.Envelope.parseFrom(block.getData().getData(0));
+        int count = Common.GroupHeader.parseFrom(Common.Payload.parseFrom(first.getPayload()).getHeader()
+                .getGroupHeader()).getType();
+        //校验
+        for (ByteString envBytes : block.getData().getDataList()) {
+            byte[] bytes = envBytes.toByteArray();
+            Common.Envelope env = ProtoUtils.getEnvelopeFromBlock(bytes);
+            Common.Payload payload = ProtoUtils.getPayload(env);
+            ProtoUtils.unMarshalGroupHeader(payload.getHeader().getGroupHeader());
+            ProposalPackage.SmartContractAction respPayload = Util.getActionFromEnvelope(ByteString.copyFrom(bytes));
+            TxRwSet txRwSet = new TxRwSet();
+            txRwSet.fromProtoBytes(respPayload.getResults());
+            count += txRwSet.getNsRwSets().size();
+        }
+        //HistoryDB
+        for (ByteString envBytes : block.getData().getDataList()) {
+            Common.Envelope env = Util.getEnvelopFromBlock(envBytes);
+            Common.Payload payload = Util.getPayload(env);
+            Util.getGroupHeader(payload.getHeader().getGroupHeader());
+            ProposalPackage.SmartContractAction respPayload = Util.getActionFromEnvelope(envBytes);
+            if (respPayload.hasResponse()) {
+                TxRwSet txRwSet = new TxRwSet();
+                txRwSet.fromProtoBytes(respPayload.getResults());
+                count += txRwSet.getNsRwSets().size();
+            }
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ParsedBlockBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
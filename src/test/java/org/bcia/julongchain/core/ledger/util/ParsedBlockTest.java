@@ -0,0 +1,143 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.util;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.core.ledger.BlockAndPvtData;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.TxRwSet;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.ledger.rwset.Rwset;
+import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
+import org.bcia.julongchain.protos.node.ProposalPackage;
+import org.bcia.julongchain.protos.node.ProposalResponsePackage;
+import org.bcia.julongchain.protos.node.TransactionPackage;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * ParsedBlock测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class ParsedBlockTest {
+
+    @Test
+    public void decodeOnce() throws Exception {
+        ParsedBlock parsedBlock = new ParsedBlock(newBlock(3));
+        assertEquals(3, parsedBlock.getTxCount());
+
+        ParsedBlock.ParsedTx tx = parsedBlock.getTx(1);
+        assertSame(tx, parsedBlock.getTx(1));
+        assertEquals("txID1", tx.getGroupHeader().getTxId());
+        assertSame(tx.getGroupHeader(), tx.getGroupHeader());
+        assertSame(tx.getAction(), tx.getAction());
+
+        TxRwSet txRwSet = tx.getTxRwSet();
+        assertSame(txRwSet, tx.getTxRwSet());
+        assertEquals("mycc", txRwSet.getNsRwSets().get(0).getNameSpace());
+        assertEquals("key1", txRwSet.getNsRwSets().get(0).getKvRwSet().getWrites(0).getKey());
+    }
+
+    @Test
+    public void invalidEnvelope() throws Exception {
+        Common.Block block = Common.Block.newBuilder()
+                .setHeader(Common.BlockHeader.newBuilder().setNumber(1))
+                .setData(Common.BlockData.newBuilder().addData(ByteString.copyFromUtf8("not an envelope")))
+                .build();
+        ParsedBlock.ParsedTx tx = new ParsedBlock(block).getTx(0);
+        try {
+            tx.getGroupHeader();
+            fail("Invalid envelope should not be parsed");
+        } catch (LedgerException e) {
+            //预期异常
+        }
+    }
+
+    @Test
+    public void keepParsedTxsWhenMetadataChanged() throws Exception {
+        Common.Block block = newBlock(2);
+        BlockAndPvtData blockAndPvtData = new BlockAndPvtData(block, null, null);
+        ParsedBlock.ParsedTx tx = blockAndPvtData.getParsedBlock().getTx(0);
+
+        //校验后只更新metadata
+        Common.Block validated = block.toBuilder()
+                .setMetadata(Common.BlockMetadata.newBuilder().addMetadata(ByteString.copyFromUtf8("flags")))
+                .build();
+        blockAndPvtData.setBlock(validated);
+        assertSame(validated, blockAndPvtData.getParsedBlock().getBlock());
+        assertSame(tx, blockAndPvtData.getParsedBlock().getTx(0));
+
+        //交易数据不同的区块重新解析
+        blockAndPvtData.setBlock(newBlock(2).toBuilder().setData(newBlock(1).getData()).build());
+        assertNotSame(tx, blockAndPvtData.getParsedBlock().getTx(0));
+        assertEquals(1, blockAndPvtData.getParsedBlock().getTxCount());
+    }
+
+    /**
+     * 构造包含txCount个背书交易的区块, 第i个交易写入mycc的key{i}
+     */
+    static Common.Block newBlock(int txCount) {
+        Common.BlockData.Builder data = Common.BlockData.newBuilder();
+        for (int i = 0; i < txCount; i++) {
+            data.addData(newEnvelope("txID" + i, "key" + i, "value" + i).toByteString());
+        }
+        return Common.Block.newBuilder()
+                .setHeader(Common.BlockHeader.newBuilder().setNumber(1))
+                .setData(data)
+                .setMetadata(Common.BlockMetadata.newBuilder()
+                        .addMetadata(ByteString.EMPTY)
+                        .addMetadata(ByteString.EMPTY)
+                        .addMetadata(ByteString.copyFrom(new byte[txCount])))
+                .build();
+    }
+
+    private static Common.Envelope newEnvelope(String txID, String key, String value) {
+        KvRwset.KVRWSet kvRwSet = KvRwset.KVRWSet.newBuilder()
+                .addWrites(KvRwset.KVWrite.newBuilder().setKey(key).setValue(ByteString.copyFromUtf8(value)))
+                .build();
+        Rwset.TxReadWriteSet txRwSet = Rwset.TxReadWriteSet.newBuilder()
+                .addNsRwset(Rwset.NsReadWriteSet.newBuilder().setNamespace("mycc").setRwset(kvRwSet.toByteString()))
+                .build();
+        ProposalPackage.SmartContractAction action = ProposalPackage.SmartContractAction.newBuilder()
+                .setResults(txRwSet.toByteString())
+                .setResponse(ProposalResponsePackage.Response.newBuilder())
+                .build();
+        ProposalResponsePackage.ProposalResponsePayload prPayload = ProposalResponsePackage.ProposalResponsePayload
+                .newBuilder().setExtension(action.toByteString()).build();
+        TransactionPackage.SmartContractActionPayload scaPayload = TransactionPackage.SmartContractActionPayload
+                .newBuilder()
+                .setAction(TransactionPackage.SmartContractEndorsedAction.newBuilder()
+                        .setProposalResponsePayload(prPayload.toByteString()))
+                .build();
+        TransactionPackage.Transaction transaction = TransactionPackage.Transaction.newBuilder()
+                .addActions(TransactionPackage.TransactionAction.newBuilder().setPayload(scaPayload.toByteString()))
+                .build();
+        Common.GroupHeader groupHeader = Common.GroupHeader.newBuilder()
+                .setType(Common.HeaderType.ENDORSER_TRANSACTION_VALUE)
+                .setTxId(txID)
+                .setGroupId("myGroup")
+                .build();
+        Common.Payload payload = Common.Payload.newBuilder()
+                .setHeader(Common.Header.newBuilder().setGroupHeader(groupHeader.toByteString()))
+                .setData(transaction.toByteString())
+                .build();
+        return Common.Envelope.newBuilder().setPayload(payload.toByteString()).build();
+    }
+}
@@ -37,7 +37,12 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 import org.mockito.quality.Strictness;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.bcia.julongchain.protos.node.SmartContractShim.SmartContractMessage.Type.*;
 import static org.mockito.Mockito.when;
@@ -106,8 +111,38 @@ public class HandlerTest {
     }
 
     @Test
-    public void serialSendAsync(){
+    public void serialSendAsync() throws InterruptedException {
+        //超过发送队列长度的消息, 队列满时等待而不打乱顺序
+        int count = 2500;
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(count);
+        handler.setChatStream(new ISmartContractStream() {
+            @Override
+            public void send(SmartContractShim.SmartContractMessage msg) {
+                if (sent.isEmpty()) {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                sent.add(msg.getTxid());
+                latch.countDown();
+            }
 
+            @Override
+            public SmartContractShim.SmartContractMessage recv() {
+                return null;
+            }
+        });
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            expected.add("txid" + i);
+            handler.serialSendAsync(SmartContractShim.SmartContractMessage.newBuilder().setTxid("txid" + i).build());
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        //异步发送保持提交顺序
+        Assert.assertEquals(expected, sent);
     }
 
     @Test
@@ -0,0 +1,135 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * <p>Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ * <p>
+ * <p>http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * <p>Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.smartcontract.node;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.IResultsIterator;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
+import org.bcia.julongchain.protos.node.SmartContractShim;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * QueryRunningUtil测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class QueryRunningUtilTest {
+    private static final String TX_ID = "txId";
+
+    private static final QueryRunningUtil.ResultEncoder ENCODER = new QueryRunningUtil.ResultEncoder() {
+        @Override
+        public ByteString encode(QueryResult queryResult) {
+            return ByteString.copyFromUtf8(String.valueOf(queryResult.getObj()));
+        }
+    };
+
+    @Before
+    public void setUp() {
+        QueryRunningUtil.setPageSize(3);
+    }
+
+    @After
+    public void tearDown() {
+        QueryRunningUtil.closeQueries(TX_ID);
+        QueryRunningUtil.setPageSize(0);
+    }
+
+    @Test
+    public void pages() throws Exception {
+        CountingIterator iterator = new CountingIterator(7);
+        SmartContractShim.QueryResponse response = QueryRunningUtil.newQuery(TX_ID, iterator, ENCODER);
+        assertPage(response, true, 0, 1, 2);
+        assertEquals(1, QueryRunningUtil.getPendingQueryCount(TX_ID));
+
+        response = QueryRunningUtil.nextPage(TX_ID, response.getId());
+        assertPage(response, true, 3, 4, 5);
+        response = QueryRunningUtil.nextPage(TX_ID, response.getId());
+        assertPage(response, false, 6);
+        //读完后关闭迭代器
+        assertTrue(iterator.closed);
+        assertEquals(0, QueryRunningUtil.getPendingQueryCount(TX_ID));
+    }
+
+    @Test
+    public void exactPage() throws Exception {
+        CountingIterator iterator = new CountingIterator(3);
+        SmartContractShim.QueryResponse response = QueryRunningUtil.newQuery(TX_ID, iterator, ENCODER);
+        assertPage(response, false, 0, 1, 2);
+        assertTrue(iterator.closed);
+        assertEquals(0, QueryRunningUtil.getPendingQueryCount(TX_ID));
+    }
+
+    @Test
+    public void closeQuery() throws Exception {
+        CountingIterator iterator = new CountingIterator(10);
+        SmartContractShim.QueryResponse response = QueryRunningUtil.newQuery(TX_ID, iterator, ENCODER);
+        QueryRunningUtil.closeQuery(TX_ID, response.getId());
+        assertTrue(iterator.closed);
+        try {
+            QueryRunningUtil.nextPage(TX_ID, response.getId());
+            fail("Closed query should not be readable");
+        } catch (LedgerException e) {
+            //预期异常
+        }
+    }
+
+    @Test
+    public void closeQueriesOfTx() throws Exception {
+        CountingIterator first = new CountingIterator(10);
+        CountingIterator second = new CountingIterator(10);
+        QueryRunningUtil.newQuery(TX_ID, first, ENCODER);
+        QueryRunningUtil.newQuery(TX_ID, second, ENCODER);
+        assertEquals(2, QueryRunningUtil.getPendingQueryCount(TX_ID));
+
+        QueryRunningUtil.closeQueries(TX_ID);
+        assertTrue(first.closed);
+        assertTrue(second.closed);
+        assertEquals(0, QueryRunningUtil.getPendingQueryCount(TX_ID));
+    }
+
+    private static void assertPage(SmartContractShim.QueryResponse response, boolean hasMore, int... values) {
+        assertEquals(hasMore, response.getHasMore());
+        assertEquals(values.length, response.getResultsCount());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(String.valueOf(values[i]), response.getResults(i).getResultBytes().toStringUtf8());
+        }
+    }
+
+    private static class CountingIterator implements IResultsIterator {
+        private final int total;
+        private int next;
+        private boolean closed;
+
+        CountingIterator(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public QueryResult next() {
+            return next < total ? new QueryResult(next++) : null;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
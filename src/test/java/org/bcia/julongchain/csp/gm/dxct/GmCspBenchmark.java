@@ -0,0 +1,104 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.csp.gm.dxct;
+
+import org.bcia.julongchain.csp.gm.dxct.sm2.SM2;
+import org.bcia.julongchain.csp.gm.dxct.sm2.SM2KeyImport;
+import org.bcia.julongchain.csp.gm.dxct.sm2.SM2KeyPair;
+import org.bcia.julongchain.csp.gm.dxct.sm2.SM2SignerOpts;
+import org.bcia.julongchain.csp.gm.dxct.sm3.SM3HashOpts;
+import org.bcia.julongchain.csp.intfs.ICsp;
+import org.bcia.julongchain.csp.intfs.IKey;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.MessageDigest;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 国密Csp基准测试: SM3摘要、SM2签名、SM2验签的每秒操作数
+ * legacyHash为每次摘要都查找Provider并创建MessageDigest的方式, 作为对比。
+ * 使用 -t 指定线程数查看多线程下的吞吐量
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GmCspBenchmark {
+    @Param({"256"})
+    private int size;
+
+    private ICsp csp;
+    private byte[] data;
+    private IKey privateKey;
+    private IKey publicKey;
+    private byte[] signValue;
+    private SM2SignerOpts signerOpts = new SM2SignerOpts();
+    private SM3HashOpts hashOpts = new SM3HashOpts();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        csp = new GmCspFactory().getCsp(new GmFactoryOpts());
+        data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        SM2KeyPair keyPair = new SM2().generateKeyPair();
+        privateKey = new SM2KeyImport(keyPair.getPrivatekey(), null);
+        publicKey = new SM2KeyImport(null, keyPair.getPublickey());
+        signValue = csp.sign(privateKey, data, signerOpts);
+    }
+
+    @Benchmark
+    public byte[] hash() throws Exception {
+        return csp.hash(data, hashOpts);
+    }
+
+    @Benchmark
+    public byte[] legacyHash() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        MessageDigest digest = MessageDigest.getInstance("SM3");
+        digest.update(data);
+        return digest.digest();
+    }
+
+    @Benchmark
+    public byte[] sign() throws Exception {
+        return csp.sign(privateKey, data, signerOpts);
+    }
+
+    @Benchmark
+    public boolean verify() throws Exception {
+        return csp.verify(publicKey, signValue, data, signerOpts);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(GmCspBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
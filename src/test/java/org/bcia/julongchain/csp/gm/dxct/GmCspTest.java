@@ -23,6 +23,7 @@ import org.bcia.julongchain.csp.gm.dxct.sm3.SM3HashOpts;
 import org.bcia.julongchain.csp.gm.dxct.sm4.*;
 import org.bcia.julongchain.csp.intfs.ICsp;
 import org.bcia.julongchain.csp.intfs.IKey;
+import org.bcia.julongchain.csp.intfs.VerifyItem;
 import org.bcia.julongchain.csp.intfs.opts.IHashOpts;
 import org.bouncycastle.util.encoders.Hex;
 import org.bouncycastle.util.io.pem.PemObject;
@@ -38,6 +39,9 @@ import sun.security.pkcs.PKCS8Key;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 import static org.bcia.julongchain.csp.factory.CspManager.getDefaultCsp;
 
@@ -207,6 +211,42 @@ public class GmCspTest {
     }
 
 
+    /**
+     * 批量验签测试, 结果与逐个验签一致
+     *
+     * @throws CspException
+     */
+    @Test
+    public void verifyBatchTest() throws CspException {
+        SM2 sm2 = new SM2();
+        SM2KeyPair[] keyPairs = {sm2.generateKeyPair(), sm2.generateKeyPair()};
+        List<VerifyItem> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            SM2KeyPair keyPair = keyPairs[i % keyPairs.length];
+            byte[] data = ("message" + i).getBytes();
+            byte[] signValue = csp.sign(new SM2KeyImport(keyPair.getPrivatekey(), null), data, new SM2SignerOpts());
+            if (i % 7 == 3) {
+                //篡改消息
+                data = ("tampered" + i).getBytes();
+            }
+            items.add(new VerifyItem(new SM2KeyImport(null, keyPair.getPublickey()), signValue, data));
+        }
+        //无效的签名值和密钥
+        items.add(new VerifyItem(new SM2KeyImport(null, keyPairs[0].getPublickey()), "bad".getBytes(),
+                "message".getBytes()));
+        items.add(new VerifyItem(null, "bad".getBytes(), "message".getBytes()));
+
+        BitSet result = csp.verifyBatch(items, new SM2SignerOpts());
+        for (int i = 0; i < 20; i++) {
+            VerifyItem item = items.get(i);
+            Assert.assertEquals(csp.verify(item.getKey(), item.getSignature(), item.getDigest(), new SM2SignerOpts()),
+                    result.get(i));
+            Assert.assertEquals(i % 7 != 3, result.get(i));
+        }
+        Assert.assertFalse(result.get(20));
+        Assert.assertFalse(result.get(21));
+    }
+
     @Test
     public void encryptAndDecryptTest() throws CspException {
         byte[] testData = Hex.decode("01234567454545");
@@ -0,0 +1,100 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.csp.gm.dxct;
+
+import org.bcia.julongchain.csp.gm.dxct.sm2.SM2;
+import org.bcia.julongchain.csp.gm.dxct.sm2.SM2KeyImport;
+import org.bcia.julongchain.csp.gm.dxct.sm2.SM2KeyPair;
+import org.bcia.julongchain.csp.gm.dxct.sm2.SM2SignerOpts;
+import org.bcia.julongchain.csp.intfs.ICsp;
+import org.bcia.julongchain.csp.intfs.VerifyItem;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SM2验签基准测试
+ * 模拟校验一个区块中各交易的签名: 共signatures个签名, 来自signers个不同的公钥。
+ * single为逐个调用ICsp.verify, batch为一次调用ICsp.verifyBatch
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GmCspVerifyBenchmark {
+    @Param({"1", "10"})
+    private int signers;
+
+    @Param({"100"})
+    private int signatures;
+
+    private ICsp csp;
+    private List<VerifyItem> items;
+    private SM2SignerOpts opts = new SM2SignerOpts();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        csp = new GmCspFactory().getCsp(new GmFactoryOpts());
+        SM2 sm2 = new SM2();
+        SM2KeyPair[] keyPairs = new SM2KeyPair[signers];
+        for (int i = 0; i < signers; i++) {
+            keyPairs[i] = sm2.generateKeyPair();
+        }
+        items = new ArrayList<>(signatures);
+        for (int i = 0; i < signatures; i++) {
+            SM2KeyPair keyPair = keyPairs[i % signers];
+            byte[] data = ("transaction payload " + i).getBytes();
+            byte[] signValue = csp.sign(new SM2KeyImport(keyPair.getPrivatekey(), null), data, opts);
+            items.add(new VerifyItem(new SM2KeyImport(null, keyPair.getPublickey()), signValue, data));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public int single() throws Exception {
+        int verified = 0;
+        for (VerifyItem item : items) {
+            if (csp.verify(item.getKey(), item.getSignature(), item.getDigest(), opts)) {
+                verified++;
+            }
+        }
+        return verified;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public int batch() throws Exception {
+        return csp.verifyBatch(items, opts).cardinality();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(GmCspVerifyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
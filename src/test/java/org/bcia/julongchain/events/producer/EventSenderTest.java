@@ -0,0 +1,219 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.events.producer;
+
+import org.bcia.julongchain.protos.node.EventsPackage;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * 订阅者事件发送器测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class EventSenderTest {
+    private static final int BUFFER_SIZE = 4;
+
+    private CountDownLatch release = new CountDownLatch(1);
+    private CountDownLatch firstSending = new CountDownLatch(1);
+    private List<EventsPackage.Event> sent = new CopyOnWriteArrayList<>();
+    private List<String> disconnects = new CopyOnWriteArrayList<>();
+    private EventSender sender;
+
+    /**
+     * 第一个事件发送时阻塞, 直到release, 模拟慢速的客户端
+     */
+    private EventHubServer.Callback slowCallback = new EventHubServer.Callback() {
+        @Override
+        public void sendMessage(EventsPackage.Event event) {
+            firstSending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sent.add(event);
+        }
+
+        @Override
+        public void disconnect(String reason) {
+        }
+    };
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (sender != null) {
+            sender.close();
+        }
+    }
+
+    @Test
+    public void dropOldest() throws Exception {
+        sender = newSender(EventsServerConfig.OverflowPolicy.DROP_OLDEST, 10);
+        assertTrue(sender.offer(event(0)));
+        assertTrue(firstSending.await(5, TimeUnit.SECONDS));
+
+        //发送线程阻塞在事件0, 队列中保留最新的BUFFER_SIZE个事件
+        for (int i = 1; i <= BUFFER_SIZE + 3; i++) {
+            assertTrue(sender.offer(event(i)));
+        }
+        assertEquals(BUFFER_SIZE, sender.getPendingEvents());
+        assertEquals(3, sender.getDroppedEvents());
+
+        release.countDown();
+        waitForSent(BUFFER_SIZE + 1);
+        assertEquals(0, sent.get(0).getTimestamp().getSeconds());
+        assertEquals(4, sent.get(1).getTimestamp().getSeconds());
+        assertEquals(BUFFER_SIZE + 3, sent.get(BUFFER_SIZE).getTimestamp().getSeconds());
+        assertEquals(BUFFER_SIZE + 1, sender.getSentEvents());
+        assertEquals(0, sender.getLagMillis());
+    }
+
+    @Test
+    public void disconnect() throws Exception {
+        sender = newSender(EventsServerConfig.OverflowPolicy.DISCONNECT, 10);
+        assertTrue(sender.offer(event(0)));
+        assertTrue(firstSending.await(5, TimeUnit.SECONDS));
+
+        for (int i = 1; i <= BUFFER_SIZE; i++) {
+            assertTrue(sender.offer(event(i)));
+        }
+        assertTrue(sender.getLagMillis() >= 0);
+        assertFalse(sender.offer(event(BUFFER_SIZE + 1)));
+        assertEquals(0, sender.getDroppedEvents());
+    }
+
+    @Test
+    public void blockWithTimeout() throws Exception {
+        sender = newSender(EventsServerConfig.OverflowPolicy.BLOCK, 50);
+        assertTrue(sender.offer(event(0)));
+        assertTrue(firstSending.await(5, TimeUnit.SECONDS));
+
+        for (int i = 1; i <= BUFFER_SIZE; i++) {
+            assertTrue(sender.offer(event(i)));
+        }
+        long start = System.currentTimeMillis();
+        assertTrue(sender.offer(event(BUFFER_SIZE + 1)));
+        assertTrue(System.currentTimeMillis() - start >= 40);
+        assertEquals(1, sender.getDroppedEvents());
+
+        release.countDown();
+        waitForSent(BUFFER_SIZE + 1);
+    }
+
+    @Test
+    public void sendFailure() throws Exception {
+        sender = new EventSender(new EventsServerConfig(BUFFER_SIZE, 10, 0, null), new EventHubServer.Callback() {
+            @Override
+            public void sendMessage(EventsPackage.Event event) {
+                throw new IllegalStateException("stream closed");
+            }
+
+            @Override
+            public void disconnect(String reason) {
+            }
+        }, new EventSender.IDisconnectListener() {
+            @Override
+            public void onDisconnect(String reason) {
+                disconnects.add(reason);
+            }
+        });
+
+        assertTrue(sender.offer(event(0)));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (disconnects.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, disconnects.size());
+        assertTrue(sender.isClosed());
+        assertFalse(sender.offer(event(1)));
+    }
+
+    /**
+     * close返回时发送线程已退出, 不会再调用responseObserver
+     */
+    @Test
+    public void closeWaitsForSenderThread() throws Exception {
+        final AtomicBoolean sending = new AtomicBoolean();
+        sender = new EventSender(new EventsServerConfig(BUFFER_SIZE, 10, 0, null), new EventHubServer.Callback() {
+            @Override
+            public void sendMessage(EventsPackage.Event event) {
+                sending.set(true);
+                firstSending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sent.add(event);
+                sending.set(false);
+            }
+
+            @Override
+            public void disconnect(String reason) {
+            }
+        }, null);
+
+        assertTrue(sender.offer(event(0)));
+        assertTrue(sender.offer(event(1)));
+        assertTrue(firstSending.await(5, TimeUnit.SECONDS));
+
+        sender.close();
+        assertFalse(sending.get());
+        assertEquals(1, sent.size());
+        assertFalse(sender.offer(event(2)));
+        Thread.sleep(50);
+        assertEquals(1, sent.size());
+    }
+
+    private EventSender newSender(EventsServerConfig.OverflowPolicy policy, long timeout) {
+        return new EventSender(new EventsServerConfig(BUFFER_SIZE, timeout, 0, policy, null), slowCallback,
+                new EventSender.IDisconnectListener() {
+                    @Override
+                    public void onDisconnect(String reason) {
+                        disconnects.add(reason);
+                    }
+                });
+    }
+
+    private void waitForSent(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sent.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, sent.size());
+    }
+
+    /**
+     * 用时间戳的秒数标记事件序号
+     */
+    private static EventsPackage.Event event(int seq) {
+        EventsPackage.Event.Builder builder = EventsPackage.Event.newBuilder();
+        builder.getTimestampBuilder().setSeconds(seq);
+        return builder.build();
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.gossip.state;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.core.commiter.Committer;
+import org.bcia.julongchain.core.commiter.ICommitterValidator;
+import org.bcia.julongchain.core.ledger.BlockAndPvtData;
+import org.bcia.julongchain.core.ledger.INodeLedger;
+import org.bcia.julongchain.gossip.GossipClientStream;
+import org.bcia.julongchain.gossip.GossipService;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.common.Ledger;
+import org.bcia.julongchain.protos.gossip.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * StatePuller测试类
+ * 模拟的consenter对每个区间请求倒序返回区块
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class StatePullerTest {
+    private static final String LEDGER_ID = "myGroup";
+    private static final long CONSENTER_HEIGHT = 57;
+
+    private GossipClientStream gossipClientStream;
+    private INodeLedger ledger;
+    private LinkedBlockingQueue<Message.Envelope> receiveQueue;
+    private List<Long> committed;
+    private List<long[]> requests;
+    /**
+     * 模拟丢失回复的请求起始区块号, 只丢失一次
+     */
+    private final Set<Long> lostReplies = Collections.synchronizedSet(new HashSet<Long>());
+    private StatePuller puller;
+
+    @Before
+    public void setUp() throws Exception {
+        receiveQueue = new LinkedBlockingQueue<>();
+        committed = Collections.synchronizedList(new ArrayList<Long>());
+        requests = Collections.synchronizedList(new ArrayList<long[]>());
+
+        gossipClientStream = mock(GossipClientStream.class);
+        when(gossipClientStream.getQueue(LEDGER_ID)).thenReturn(receiveQueue);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                Message.Envelope envelope = invocation.getArgument(0);
+                Message.RemoteStateRequest request = Message.GossipMessage.parseFrom(envelope.getPayload())
+                        .getStateRequest();
+                requests.add(new long[]{request.getStartSeqNum(), request.getEndSeqNum()});
+                if (lostReplies.remove(request.getStartSeqNum())) {
+                    return null;
+                }
+                long end = Math.min(request.getEndSeqNum(), CONSENTER_HEIGHT - 1);
+                for (long seqNum = end; seqNum >= request.getStartSeqNum(); seqNum--) {
+                    receiveQueue.put(GossipService.newGossipEnvelope(LEDGER_ID, seqNum, block(seqNum)));
+                }
+                return null;
+            }
+        }).when(gossipClientStream).serialSend(any(Message.Envelope.class));
+
+        ledger = mock(INodeLedger.class);
+        when(ledger.getBlockchainInfo()).thenAnswer(new Answer<Ledger.BlockchainInfo>() {
+            @Override
+            public Ledger.BlockchainInfo answer(InvocationOnMock invocation) {
+                return Ledger.BlockchainInfo.newBuilder().setHeight(committed.size() + 1).build();
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                BlockAndPvtData blockAndPvtData = invocation.getArgument(0);
+                long number = blockAndPvtData.getBlock().getHeader().getNumber();
+                if (number != committed.size() + 1) {
+                    throw new LedgerException("Unexpected block " + number);
+                }
+                committed.add(number);
+                return null;
+            }
+        }).when(ledger).commitWithPvtData(any(BlockAndPvtData.class));
+    }
+
+    @After
+    public void tearDown() {
+        if (puller != null) {
+            puller.stop();
+        }
+    }
+
+    @Test
+    public void pullInOrderWithWindow() throws Exception {
+        puller = new StatePuller(gossipClientStream, LEDGER_ID, ledger, 4, 10);
+        puller.start();
+        waitCommitted(CONSENTER_HEIGHT - 1);
+
+        for (int i = 0; i < committed.size(); i++) {
+            assertEquals(i + 1, committed.get(i).longValue());
+        }
+        //区间请求连续且不超过批大小
+        long expectedStart = 1;
+        for (long[] request : new ArrayList<>(requests)) {
+            assertEquals(expectedStart, request[0]);
+            assertTrue(request[1] - request[0] < 4);
+            expectedStart = request[1] + 1;
+        }
+    }
+
+    @Test
+    public void resendAfterLostReply() throws Exception {
+        lostReplies.add(5L);
+        puller = new StatePuller(gossipClientStream, LEDGER_ID, ledger, 4, 10, 200);
+        puller.start();
+        waitCommitted(CONSENTER_HEIGHT - 1);
+
+        for (int i = 0; i < committed.size(); i++) {
+            assertEquals(i + 1, committed.get(i).longValue());
+        }
+        //丢失回复的区间被重新请求
+        int requestsOf5 = 0;
+        for (long[] request : new ArrayList<>(requests)) {
+            if (request[0] == 5) {
+                requestsOf5++;
+            }
+        }
+        assertTrue(requestsOf5 >= 2);
+    }
+
+    @Test
+    public void probeOnlyFirstRangeWhenCaughtUp() throws Exception {
+        puller = new StatePuller(gossipClientStream, LEDGER_ID, ledger, 4, 10, 100);
+        puller.start();
+        waitCommitted(CONSENTER_HEIGHT - 1);
+        Thread.sleep(1500);
+
+        //consenter没有的区块只从第一个缺失的区块重发, 之后的区间不重复请求
+        int resent = 0;
+        Set<Long> others = new HashSet<>();
+        for (long[] request : new ArrayList<>(requests)) {
+            if (request[0] == CONSENTER_HEIGHT) {
+                resent++;
+            } else if (request[0] > CONSENTER_HEIGHT) {
+                assertTrue(others.add(request[0]));
+            }
+        }
+        assertTrue(resent >= 1);
+        assertTrue(others.size() >= 1);
+    }
+
+    @Test
+    public void commitThroughCommitter() throws Exception {
+        //提交者先校验区块, 账本写入校验后的区块
+        ICommitterValidator validator = mock(ICommitterValidator.class);
+        when(validator.validate(any(Common.Block.class))).thenAnswer(new Answer<Common.Block>() {
+            @Override
+            public Common.Block answer(InvocationOnMock invocation) {
+                Common.Block block = invocation.getArgument(0);
+                return block.toBuilder().setMetadata(Common.BlockMetadata.newBuilder()
+                        .addMetadata(ByteString.copyFromUtf8("validated"))).build();
+            }
+        });
+        final List<Long> validated = Collections.synchronizedList(new ArrayList<Long>());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                BlockAndPvtData blockAndPvtData = invocation.getArgument(0);
+                if (blockAndPvtData.getBlock().getMetadata().getMetadataCount() > 0) {
+                    validated.add(blockAndPvtData.getBlock().getHeader().getNumber());
+                }
+                committed.add(blockAndPvtData.getBlock().getHeader().getNumber());
+                return null;
+            }
+        }).when(ledger).commitWithPvtData(any(BlockAndPvtData.class));
+
+        puller = new StatePuller(gossipClientStream, LEDGER_ID, ledger, new Committer(ledger, validator, null), 4, 10,
+                0);
+        puller.start();
+        waitCommitted(CONSENTER_HEIGHT - 1);
+
+        assertEquals(committed, validated);
+        verify(validator, times((int) CONSENTER_HEIGHT - 1)).validate(any(Common.Block.class));
+    }
+
+    @Test
+    public void defaultSizes() {
+        StatePuller statePuller = new StatePuller(gossipClientStream, LEDGER_ID, ledger, 0, 5);
+        assertEquals(StatePuller.DEFAULT_BATCH_SIZE, statePuller.getBatchSize());
+        //窗口不小于批大小
+        assertEquals(StatePuller.DEFAULT_BATCH_SIZE, statePuller.getWindowSize());
+        assertEquals(StatePuller.DEFAULT_REQUEST_TIMEOUT, statePuller.getRequestTimeout());
+    }
+
+    private void waitCommitted(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (committed.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, committed.size());
+    }
+
+    private static Common.Block block(long number) {
+        return Common.Block.newBuilder().setHeader(Common.BlockHeader.newBuilder().setNumber(number)).build();
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.gossip.state;
+
+import io.grpc.stub.StreamObserver;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.blockledger.IFactory;
+import org.bcia.julongchain.common.ledger.blockledger.IIterator;
+import org.bcia.julongchain.common.ledger.blockledger.ReadWriteBase;
+import org.bcia.julongchain.common.ledger.blockledger.file.FileLedger;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Ab;
+import org.bcia.julongchain.protos.gossip.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * StateRequestServer测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class StateRequestServerTest {
+    private static final String GROUP_ID = "myGroup";
+
+    private MemoryLedger ledger;
+    private IFactory ledgerFactory;
+    private StateRequestServer server;
+    private List<Long> received;
+    private StreamObserver<Message.Envelope> responseObserver;
+
+    @Before
+    public void setUp() throws Exception {
+        ledger = new MemoryLedger();
+        for (long i = 0; i < 20; i++) {
+            ledger.append(block(i));
+        }
+        ledgerFactory = mock(IFactory.class);
+        when(ledgerFactory.getOrCreate(GROUP_ID)).thenReturn(ledger);
+        server = new StateRequestServer(ledgerFactory, 2, 10);
+
+        received = Collections.synchronizedList(new ArrayList<Long>());
+        responseObserver = new StreamObserver<Message.Envelope>() {
+            @Override
+            public void onNext(Message.Envelope envelope) {
+                try {
+                    Message.Payload payload = Message.GossipMessage.parseFrom(envelope.getPayload()).getDataMsg()
+                            .getPayload();
+                    assertEquals(payload.getSeqNum(),
+                            Common.Block.parseFrom(payload.getData()).getHeader().getNumber());
+                    received.add(payload.getSeqNum());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    @Test
+    public void serveRangesInOrder() throws Exception {
+        StateRequestServer.Connection connection = server.newConnection(responseObserver);
+        connection.request(GROUP_ID, 1, 8);
+        connection.request(GROUP_ID, 9, 12);
+        connection.request(GROUP_ID, 13, 19);
+        waitReceived(19);
+
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(i + 1, received.get(i).longValue());
+        }
+        //账本句柄只打开一次
+        verify(ledgerFactory, times(1)).getOrCreate(GROUP_ID);
+    }
+
+    @Test
+    public void waitForNewBlocks() throws Exception {
+        StateRequestServer.Connection connection = server.newConnection(responseObserver);
+        connection.request(GROUP_ID, 18, 22);
+        waitReceived(2);
+
+        ledger.append(block(20));
+        ledger.append(block(21));
+        ledger.append(block(22));
+        waitReceived(5);
+        assertEquals(22L, received.get(4).longValue());
+    }
+
+    @Test
+    public void closedConnection() throws Exception {
+        StateRequestServer.Connection connection = server.newConnection(responseObserver);
+        connection.request(GROUP_ID, 25, 30);
+        connection.close();
+        for (long i = 20; i <= 30; i++) {
+            ledger.append(block(i));
+        }
+        Thread.sleep(200);
+        assertEquals(0, received.size());
+    }
+
+    @Test
+    public void ignoreDuplicateRanges() throws Exception {
+        StateRequestServer.Connection connection = server.newConnection(responseObserver);
+        //请求方重发等待中的区间
+        for (int i = 0; i < 5; i++) {
+            connection.request(GROUP_ID, 20, 23);
+        }
+        connection.request(GROUP_ID, 22, 25);
+        for (long i = 20; i <= 25; i++) {
+            ledger.append(block(i));
+        }
+        waitReceived(6);
+        Thread.sleep(200);
+        assertEquals(6, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(20 + i, received.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void limitRangesPerStream() throws Exception {
+        StateRequestServer.Connection connection = server.newConnection(responseObserver);
+        int count = StateRequestServer.MAX_RANGES_PER_STREAM + 10;
+        for (long i = 20; i < 20 + count; i++) {
+            connection.request(GROUP_ID, i, i);
+        }
+        for (long i = 20; i < 20 + count; i++) {
+            ledger.append(block(i));
+        }
+        waitReceived(StateRequestServer.MAX_RANGES_PER_STREAM);
+        Thread.sleep(200);
+        assertEquals(StateRequestServer.MAX_RANGES_PER_STREAM, received.size());
+    }
+
+    private void waitReceived(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, received.size());
+    }
+
+    private static Common.Block block(long number) {
+        return Common.Block.newBuilder().setHeader(Common.BlockHeader.newBuilder().setNumber(number)).build();
+    }
+
+    /**
+     * 内存账本, 写入区块时与FileLedger一样通知等待的线程
+     */
+    private static class MemoryLedger extends ReadWriteBase {
+        private final List<Common.Block> blocks = Collections.synchronizedList(new ArrayList<Common.Block>());
+
+        @Override
+        public IIterator iterator(Ab.SeekPosition startType) {
+            final long start = startType.getSpecified().getNumber();
+            return new IIterator() {
+                private long next = start;
+
+                @Override
+                public QueryResult next() {
+                    Common.Block block = blocks.get((int) next++);
+                    return new QueryResult(new AbstractMap.SimpleEntry<>(new QueryResult(block),
+                            Common.Status.SUCCESS));
+                }
+
+                @Override
+                public void readyChain() {
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public long height() {
+            return blocks.size();
+        }
+
+        @Override
+        public void append(Common.Block block) throws LedgerException {
+            blocks.add(block);
+            synchronized (FileLedger.LOCK) {
+                FileLedger.LOCK.notifyAll();
+            }
+        }
+    }
+}
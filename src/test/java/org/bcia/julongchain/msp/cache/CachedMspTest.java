@@ -0,0 +1,180 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.msp.cache;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.exception.MspException;
+import org.bcia.julongchain.msp.IIdentity;
+import org.bcia.julongchain.msp.IMsp;
+import org.bcia.julongchain.protos.common.MspPrincipal;
+import org.bcia.julongchain.protos.msp.MspConfigPackage;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * CachedMsp测试类
+ *
+ * @author agent
+ * @date 2026/10/18
+ * @company Dingxuan
+ */
+public class CachedMspTest {
+    private static final byte[] SERIALIZED_ID = "serializedIdentity".getBytes();
+
+    private IMsp msp;
+    private IIdentity identity;
+    private CachedMsp cachedMsp;
+
+    @Before
+    public void setUp() throws Exception {
+        msp = mock(IMsp.class);
+        identity = mock(IIdentity.class);
+        when(identity.serialize()).thenReturn(SERIALIZED_ID);
+        when(identity.expireAt()).thenReturn(new Date(System.currentTimeMillis() + 3600 * 1000L));
+        when(msp.deserializeIdentity(any(byte[].class))).thenReturn(identity);
+        when(msp.setup(any(MspConfigPackage.MSPConfig.class))).thenReturn(msp);
+        cachedMsp = new CachedMsp(msp);
+    }
+
+    @Test
+    public void deserializeIdentity() throws Exception {
+        IIdentity id = cachedMsp.deserializeIdentity(SERIALIZED_ID);
+        assertSame(id, cachedMsp.deserializeIdentity(SERIALIZED_ID.clone()));
+        verify(msp, times(1)).deserializeIdentity(any(byte[].class));
+        assertEquals(1, cachedMsp.getDeserializeIdentityCache().getHitCount());
+        assertEquals(1, cachedMsp.getDeserializeIdentityCache().getMissCount());
+    }
+
+    @Test
+    public void validate() throws Exception {
+        IIdentity id = cachedMsp.deserializeIdentity(SERIALIZED_ID);
+        id.validate();
+        id.validate();
+        //被包装的MSP收到的是原身份
+        verify(msp, times(1)).validate(identity);
+    }
+
+    @Test
+    public void validateFailureIsNotCached() throws Exception {
+        doThrow(new MspException("expired")).doNothing().when(msp).validate(identity);
+        IIdentity id = cachedMsp.deserializeIdentity(SERIALIZED_ID);
+        try {
+            id.validate();
+            fail();
+        } catch (MspException e) {
+            assertTrue(e.getMessage().endsWith("expired"));
+        }
+        id.validate();
+        verify(msp, times(2)).validate(identity);
+    }
+
+    @Test
+    public void validateAfterExpiration() throws Exception {
+        when(identity.expireAt()).thenReturn(new Date(System.currentTimeMillis() + 200));
+        IIdentity id = cachedMsp.deserializeIdentity(SERIALIZED_ID);
+        id.validate();
+        id.validate();
+        verify(msp, times(1)).validate(identity);
+
+        //证书过期后不再使用缓存的结果
+        Thread.sleep(300);
+        doThrow(new MspException("expired")).when(msp).validate(identity);
+        try {
+            id.validate();
+            fail();
+        } catch (MspException e) {
+            assertTrue(e.getMessage().endsWith("expired"));
+        }
+        verify(msp, times(2)).validate(identity);
+    }
+
+    @Test
+    public void satisfiesPrincipal() throws Exception {
+        MspPrincipal.MSPPrincipal admin = principal("admin");
+        MspPrincipal.MSPPrincipal member = principal("member");
+        doThrow(new MspException("This identity is not an admin")).when(msp).satisfiesPrincipal(identity, admin);
+
+        IIdentity id = cachedMsp.deserializeIdentity(SERIALIZED_ID);
+        MspException lastException = null;
+        for (int i = 0; i < 3; i++) {
+            id.satisfiesPrincipal(member);
+            try {
+                id.satisfiesPrincipal(admin);
+                fail();
+            } catch (MspException e) {
+                assertTrue(e.getMessage().endsWith("This identity is not an admin"));
+                //每次抛出新的异常
+                assertNotSame(lastException, e);
+                lastException = e;
+            }
+        }
+        verify(msp, times(1)).satisfiesPrincipal(identity, member);
+        verify(msp, times(1)).satisfiesPrincipal(identity, admin);
+        assertEquals(4, cachedMsp.getSatisfiesPrincipalCache().getHitCount());
+    }
+
+    @Test
+    public void setupClearsCaches() throws Exception {
+        IIdentity id = cachedMsp.deserializeIdentity(SERIALIZED_ID);
+        id.validate();
+        assertSame(cachedMsp, cachedMsp.setup(MspConfigPackage.MSPConfig.getDefaultInstance()));
+
+        cachedMsp.deserializeIdentity(SERIALIZED_ID).validate();
+        verify(msp, times(2)).deserializeIdentity(any(byte[].class));
+        verify(msp, times(2)).validate(identity);
+    }
+
+    @Test
+    public void failedSetup() {
+        when(msp.setup(any(MspConfigPackage.MSPConfig.class))).thenReturn(null);
+        assertNull(cachedMsp.setup(MspConfigPackage.MSPConfig.getDefaultInstance()));
+    }
+
+    @Test
+    public void lruEviction() throws Exception {
+        for (int i = 0; i <= 100; i++) {
+            cachedMsp.deserializeIdentity(("id" + i).getBytes());
+        }
+        assertEquals(100, cachedMsp.getDeserializeIdentityCache().size());
+        //最早的身份已被淘汰
+        cachedMsp.deserializeIdentity("id0".getBytes());
+        verify(msp, times(102)).deserializeIdentity(any(byte[].class));
+        verify(msp, times(1)).deserializeIdentity(eq("id100".getBytes()));
+    }
+
+    @Test
+    public void cacheSize() throws Exception {
+        cachedMsp = new CachedMsp(msp, 10);
+        for (int i = 0; i < 20; i++) {
+            cachedMsp.deserializeIdentity(("id" + i).getBytes());
+        }
+        assertEquals(10, cachedMsp.getDeserializeIdentityCache().size());
+    }
+
+    private MspPrincipal.MSPPrincipal principal(String role) {
+        return MspPrincipal.MSPPrincipal.newBuilder()
+                .setPrincipalClassification(MspPrincipal.MSPPrincipal.Classification.ROLE)
+                .setPrincipal(ByteString.copyFromUtf8(role))
+                .build();
+    }
+}